@@ -1104,6 +1104,7 @@ show_result_panel() {
         log "  Higress Console:      http://localhost:8001"
     fi
     log "  HiMarket Server API:  http://localhost:18081"
+    log "  HiMarket Metrics:     http://localhost:18091/actuator/prometheus"
     log ""
     log "  Admin login:          ${ADMIN_USERNAME} / ${ADMIN_PASSWORD}"
     log "  Developer login:      ${FRONT_USERNAME} / ${FRONT_PASSWORD}"
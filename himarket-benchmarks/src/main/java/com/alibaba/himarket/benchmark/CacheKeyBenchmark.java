@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.benchmark;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.service.hichat.manager.ChatBotManager;
+import com.alibaba.himarket.service.hichat.manager.ToolManager;
+import com.alibaba.himarket.service.hichat.memory.LocalChatMemoryStore;
+import com.alibaba.himarket.service.hichat.support.ChatBot;
+import com.alibaba.himarket.service.hichat.support.LlmChatRequest;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import io.agentscope.core.formatter.openai.OpenAIChatFormatter;
+import io.agentscope.core.model.Model;
+import io.agentscope.core.model.OpenAIChatModel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ChatBot and MCP client cache keys are built and hashed on every chat request. The ChatBot is
+ * cached, as it is for every turn after the first, so the lookup is dominated by its cache key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheKeyBenchmark {
+
+    private ChatBotManager chatBotManager;
+
+    private ToolManager toolManager;
+
+    private LlmChatRequest request;
+
+    private Supplier<Model> modelSupplier;
+
+    private MCPTransportConfig mcpConfig;
+
+    @Setup
+    public void setup() {
+        HiChatProperties hiChatProperties = new HiChatProperties();
+        toolManager = Fixtures.newComponent(ToolManager.class, hiChatProperties);
+        chatBotManager =
+                Fixtures.newComponent(
+                        ChatBotManager.class,
+                        toolManager,
+                        hiChatProperties,
+                        new LocalChatMemoryStore(hiChatProperties));
+
+        Model model =
+                OpenAIChatModel.builder()
+                        .baseUrl("https://gw.example.com:8443/v1")
+                        .apiKey("sk-benchmark")
+                        .modelName("qwen-max")
+                        .stream(true)
+                        .formatter(new OpenAIChatFormatter())
+                        .build();
+        modelSupplier = () -> model;
+
+        // The MCP servers are not part of the key, create the ChatBot without connecting them
+        LlmChatRequest warmup = Fixtures.chatRequest();
+        warmup.getProduct().setName("qwen-max");
+        warmup.setMcpConfigs(List.of());
+        chatBotManager.getOrCreateChatBot(warmup, modelSupplier).block();
+
+        request = Fixtures.chatRequest();
+        mcpConfig = Fixtures.mcpConfig(0);
+    }
+
+    @Benchmark
+    public ChatBot chatBotLookup() {
+        return chatBotManager.getOrCreateChatBot(request, modelSupplier).block();
+    }
+
+    @Benchmark
+    public String toolKey() {
+        return toolManager.buildCacheKey(mcpConfig);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.benchmark;
+
+import com.alibaba.himarket.service.hichat.support.ChatContext;
+import com.alibaba.himarket.service.hichat.support.ChatEvent;
+import com.alibaba.himarket.support.chat.ChatUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ChatContext#collect} accumulates every event of a chat, measured over a whole answer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatContextBenchmark {
+
+    private static final String CHAT_ID = "chat-1a2b3c4d5e6f";
+
+    /**
+     * Streamed chunks of one answer
+     */
+    @Param({"100", "1000"})
+    public int chunks;
+
+    private List<ChatEvent> answerEvents;
+
+    private ChatEvent toolCall;
+
+    private ChatEvent toolResult;
+
+    @Setup
+    public void setup() {
+        answerEvents = new ArrayList<>(chunks + 1);
+        String text = Fixtures.text(chunks * 4);
+        for (int i = 0; i < chunks; i++) {
+            answerEvents.add(ChatEvent.text(CHAT_ID, text.substring(i * 4, i * 4 + 4)));
+        }
+        answerEvents.add(
+                ChatEvent.done(
+                        CHAT_ID,
+                        ChatUsage.builder()
+                                .inputTokens(1200)
+                                .outputTokens(chunks)
+                                .totalTokens(1200 + chunks)
+                                .build()));
+
+        toolCall =
+                ChatEvent.toolCall(
+                        CHAT_ID,
+                        ChatEvent.ToolCallContent.builder()
+                                .id("call_0")
+                                .name("search")
+                                .arguments(Map.of("query", Fixtures.text(60)))
+                                .mcpServerName("mcp-server-0")
+                                .build());
+        toolResult =
+                ChatEvent.toolResult(
+                        CHAT_ID,
+                        ChatEvent.ToolResultContent.builder()
+                                .id("call_0")
+                                .name("search")
+                                .result(Fixtures.text(2000))
+                                .build());
+    }
+
+    @Benchmark
+    public String answer() {
+        ChatContext chatContext = new ChatContext(CHAT_ID);
+        chatContext.start();
+        for (ChatEvent event : answerEvents) {
+            chatContext.collect(event);
+        }
+        chatContext.stop();
+        return chatContext.getAnswer();
+    }
+
+    @Benchmark
+    public ChatContext toolCallRoundTrip() {
+        ChatContext chatContext = new ChatContext(CHAT_ID);
+        chatContext.start();
+        chatContext.collect(toolCall);
+        chatContext.collect(toolResult);
+        return chatContext;
+    }
+}
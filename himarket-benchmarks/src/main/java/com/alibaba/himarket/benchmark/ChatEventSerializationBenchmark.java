@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.benchmark;
+
+import com.alibaba.himarket.service.hichat.support.ChatEvent;
+import com.alibaba.himarket.support.chat.ChatUsage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Every {@link ChatEvent} is written to the SSE stream as JSON by the Spring message converter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatEventSerializationBenchmark {
+
+    private static final String CHAT_ID = "chat-1a2b3c4d5e6f";
+
+    private ObjectMapper objectMapper;
+
+    private ChatEvent textChunk;
+
+    private ChatEvent toolCall;
+
+    private ChatEvent toolResult;
+
+    private ChatEvent done;
+
+    @Setup
+    public void setup() {
+        // Configured like the mapper of the Spring MVC message converters
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        textChunk = ChatEvent.text(CHAT_ID, " the gateway");
+        toolCall =
+                ChatEvent.toolCall(
+                        CHAT_ID,
+                        ChatEvent.ToolCallContent.builder()
+                                .id("call_0")
+                                .name("search")
+                                .arguments(Map.of("query", Fixtures.text(60), "limit", 10))
+                                .mcpServerName("mcp-server-0")
+                                .build());
+        toolResult =
+                ChatEvent.toolResult(
+                        CHAT_ID,
+                        ChatEvent.ToolResultContent.builder()
+                                .id("call_0")
+                                .name("search")
+                                .result(Fixtures.text(2000))
+                                .build());
+
+        Map<String, Long> phaseTimings = new LinkedHashMap<>();
+        phaseTimings.put("checks", 3L);
+        phaseTimings.put("prepare", 12L);
+        phaseTimings.put("firstToken", 640L);
+        phaseTimings.put("reasoning", 2100L);
+        phaseTimings.put("total", 2300L);
+        done =
+                ChatEvent.done(
+                        CHAT_ID,
+                        ChatUsage.builder()
+                                .inputTokens(1200)
+                                .outputTokens(350)
+                                .totalTokens(1550)
+                                .elapsedTime(2300L)
+                                .firstByteTimeout(640L)
+                                .phaseTimings(phaseTimings)
+                                .build());
+    }
+
+    @Benchmark
+    public byte[] textChunk() throws Exception {
+        return objectMapper.writeValueAsBytes(textChunk);
+    }
+
+    @Benchmark
+    public byte[] toolCall() throws Exception {
+        return objectMapper.writeValueAsBytes(toolCall);
+    }
+
+    @Benchmark
+    public byte[] toolResult() throws Exception {
+        return objectMapper.writeValueAsBytes(toolResult);
+    }
+
+    @Benchmark
+    public byte[] done() throws Exception {
+        return objectMapper.writeValueAsBytes(done);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.benchmark;
+
+import com.alibaba.himarket.service.hichat.support.ChatContext;
+import com.alibaba.himarket.service.hichat.support.ChatFormatter;
+import io.agentscope.core.agent.Event;
+import io.agentscope.core.agent.EventType;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.ThinkingBlock;
+import io.agentscope.core.message.ToolUseBlock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link ChatFormatter#format} runs once per streamed model chunk, so its cost is paid per token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChatFormatterBenchmark {
+
+    private ChatFormatter formatter;
+
+    private ChatContext chatContext;
+
+    private Event textChunk;
+
+    private Event thinkingChunk;
+
+    private Event toolCalls;
+
+    @Setup
+    public void setup() {
+        formatter = new ChatFormatter();
+        chatContext = new ChatContext("chat-1a2b3c4d5e6f");
+
+        // A streamed chunk carries a few tokens
+        textChunk =
+                new Event(
+                        EventType.REASONING,
+                        Msg.builder()
+                                .role(MsgRole.ASSISTANT)
+                                .textContent(" the gateway")
+                                .build(),
+                        false);
+        thinkingChunk =
+                new Event(
+                        EventType.REASONING,
+                        Msg.builder()
+                                .role(MsgRole.ASSISTANT)
+                                .content(
+                                        List.<ContentBlock>of(
+                                                ThinkingBlock.builder()
+                                                        .thinking(" so the user wants")
+                                                        .build()))
+                                .build(),
+                        false);
+
+        // Final message of a reasoning step calling three tools
+        List<ContentBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            blocks.add(
+                    ToolUseBlock.builder()
+                            .id("call_" + i)
+                            .name("search_" + i)
+                            .input(Map.of("query", Fixtures.text(60), "limit", 10))
+                            .build());
+        }
+        toolCalls =
+                new Event(
+                        EventType.REASONING,
+                        Msg.builder().role(MsgRole.ASSISTANT).content(blocks).build(),
+                        true);
+    }
+
+    @Benchmark
+    public void textChunk(Blackhole bh) {
+        formatter.format(textChunk, chatContext).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void thinkingChunk(Blackhole bh) {
+        formatter.format(thinkingChunk, chatContext).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void toolCalls(Blackhole bh) {
+        // Fresh formatter, pending tool calls would otherwise pile up across invocations
+        new ChatFormatter().format(toolCalls, chatContext).subscribe(bh::consume);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.benchmark;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.dto.params.chat.CreateChatParam;
+import com.alibaba.himarket.entity.Chat;
+import com.alibaba.himarket.repository.ChatRepository;
+import com.alibaba.himarket.service.hichat.manager.ChatArchiveManager;
+import com.alibaba.himarket.service.hichat.manager.ChatHistoryManager;
+import com.alibaba.himarket.service.hichat.manager.ChatResultPersister;
+import com.alibaba.himarket.service.hichat.service.ChatService;
+import com.alibaba.himarket.support.enums.ChatStatus;
+import io.agentscope.core.message.Msg;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ChatService#buildHistoryMsgList} runs on every chat that needs memory. The session
+ * history is warm, as it is for every turn after the first, and the completion-time check that
+ * keeps it fresh is answered in memory, so no database read is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatHistoryBenchmark {
+
+    private static final String SESSION_ID = "session-9e8d7c6b5a4f";
+
+    private static final String PRODUCT_ID = "product-7f3c9a1e2b4d";
+
+    /**
+     * Earlier conversations of the session
+     */
+    @Param({"5", "50"})
+    public int conversations;
+
+    /**
+     * Whether chats carry stored token counts, legacy rows are estimated instead
+     */
+    @Param({"true", "false"})
+    public boolean storedTokens;
+
+    private ChatService chatService;
+
+    private CreateChatParam param;
+
+    private int tokenBudget;
+
+    @Setup
+    public void setup() {
+        List<Chat> chats = new ArrayList<>(conversations);
+        for (int i = 0; i < conversations; i++) {
+            String question = Fixtures.text(200);
+            String answer = Fixtures.text(2000);
+            chats.add(
+                    Chat.builder()
+                            .chatId("chat-" + i)
+                            .sessionId(SESSION_ID)
+                            .productId(PRODUCT_ID)
+                            .conversationId("conversation-" + i)
+                            .questionId("question-" + i)
+                            .status(ChatStatus.SUCCESS)
+                            .question(question)
+                            .answer(answer)
+                            .questionTokens(storedTokens ? 50 : null)
+                            .answerTokens(storedTokens ? 500 : null)
+                            .build());
+        }
+
+        // Only the seeding and completion-time queries of the history manager are answered, the
+        // session has no archived chats
+        ChatRepository chatRepository =
+                (ChatRepository)
+                        Proxy.newProxyInstance(
+                                ChatRepository.class.getClassLoader(),
+                                new Class<?>[] {ChatRepository.class},
+                                (proxy, method, args) -> {
+                                    if ("findBySessionIdAndStatusIn".equals(method.getName())) {
+                                        return chats;
+                                    }
+                                    if ("findArchivedBySessionIdAndStatus"
+                                            .equals(method.getName())) {
+                                        return List.of();
+                                    }
+                                    if ("findLatestUpdatedAt".equals(method.getName())) {
+                                        return null;
+                                    }
+                                    throw new UnsupportedOperationException(method.getName());
+                                });
+
+        HiChatProperties hiChatProperties = new HiChatProperties();
+        // Never started, nothing is queued so the history is read as stored
+        ChatResultPersister chatResultPersister =
+                Fixtures.newComponent(ChatResultPersister.class, hiChatProperties);
+        ChatArchiveManager chatArchiveManager =
+                Fixtures.newComponent(
+                        ChatArchiveManager.class,
+                        chatRepository,
+                        hiChatProperties,
+                        chatResultPersister);
+        ChatHistoryManager chatHistoryManager =
+                Fixtures.newComponent(
+                        ChatHistoryManager.class,
+                        chatRepository,
+                        hiChatProperties,
+                        chatArchiveManager);
+        chatService =
+                Fixtures.newComponent(ChatService.class, chatHistoryManager, hiChatProperties);
+
+        param = new CreateChatParam();
+        param.setSessionId(SESSION_ID);
+        param.setProductId(PRODUCT_ID);
+        param.setConversationId("conversation-current");
+        tokenBudget = hiChatProperties.getContext().getDefaultTokenBudget();
+
+        // Warm the session history
+        chatService.buildHistoryMsgList(param, tokenBudget);
+    }
+
+    @Benchmark
+    public List<Msg> buildHistory() {
+        return chatService.buildHistoryMsgList(param, tokenBudget);
+    }
+}
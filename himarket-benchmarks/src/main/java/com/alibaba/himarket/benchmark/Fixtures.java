@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.benchmark;
+
+import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.service.hichat.support.LlmChatRequest;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import com.alibaba.himarket.support.enums.MCPTransportMode;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realistic inputs shared by the benchmarks.
+ */
+public final class Fixtures {
+
+    private static final String WORDS =
+            "The gateway routes each request to the model service and streams tokens back to the"
+                    + " portal while tools are called over MCP. ";
+
+    private Fixtures() {}
+
+    /**
+     * Deterministic English-like text
+     *
+     * @param chars length of the text
+     * @return text of the given length
+     */
+    public static String text(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            sb.append(WORDS, 0, Math.min(WORDS.length(), chars - sb.length()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Create a Spring component through its only constructor, passing the given dependencies by
+     * type and null for the rest, so benchmarks do not break when unrelated dependencies change
+     *
+     * @param type         component type
+     * @param dependencies dependencies the benchmarked code needs
+     * @return component instance
+     */
+    public static <T> T newComponent(Class<T> type, Object... dependencies) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructors()[0];
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            Object[] args = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                for (Object dependency : dependencies) {
+                    if (parameterTypes[i].isInstance(dependency)) {
+                        args[i] = dependency;
+                        break;
+                    }
+                }
+            }
+            constructor.setAccessible(true);
+            return type.cast(constructor.newInstance(args));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Chat request as built for a subscribed model product with three MCP servers
+     */
+    public static LlmChatRequest chatRequest() {
+        ProductResult product = new ProductResult();
+        product.setProductId("product-7f3c9a1e2b4d");
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("X-Request-Source", "himarket");
+        headers.put("X-Consumer-Id", "consumer-5d2e8c41");
+        headers.put("Authorization", "Bearer sk-" + text(40).replace(' ', 'x'));
+
+        Map<String, Object> bodyParams = new LinkedHashMap<>();
+        bodyParams.put("enable_search", true);
+        bodyParams.put("search_options", Map.of("search_strategy", "standard"));
+
+        List<MCPTransportConfig> mcpConfigs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            mcpConfigs.add(mcpConfig(i));
+        }
+
+        return LlmChatRequest.builder()
+                .chatId("chat-1a2b3c4d5e6f")
+                .sessionId("session-9e8d7c6b5a4f")
+                .product(product)
+                .uri(URI.create("https://gw.example.com:8443/v1/chat/completions"))
+                .apiKey("sk-" + text(32).replace(' ', 'k'))
+                .headers(headers)
+                .queryParams(Map.of("api-version", "2024-06-01"))
+                .bodyParams(bodyParams)
+                .mcpConfigs(mcpConfigs)
+                .build();
+    }
+
+    /**
+     * MCP server config with credentials of a subscribed consumer
+     *
+     * @param index server index, makes URL and name unique
+     */
+    public static MCPTransportConfig mcpConfig(int index) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer sk-" + text(40).replace(' ', 'm'));
+        headers.put("X-Consumer-Id", "consumer-5d2e8c41");
+
+        return MCPTransportConfig.builder()
+                .mcpServerName("mcp-server-" + index)
+                .productId("product-mcp-" + index)
+                .transportMode(MCPTransportMode.SSE)
+                .url("https://gw.example.com/mcp-servers/server-" + index + "/sse")
+                .headers(headers)
+                .queryParams(Map.of("region", "cn-hangzhou"))
+                .build();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.alibaba.himarket.converter;
+
+import com.alibaba.himarket.benchmark.Fixtures;
+import com.alibaba.himarket.support.chat.ToolCallInfo;
+import com.alibaba.himarket.support.common.Encryptor;
+import com.alibaba.himarket.support.enums.SearchEngineType;
+import com.alibaba.himarket.support.gateway.APIGConfig;
+import com.alibaba.himarket.support.portal.PortalSettingConfig;
+import com.alibaba.himarket.support.portal.SearchEngineConfig;
+import com.alibaba.himarket.support.product.ModelFeature;
+import com.alibaba.himarket.support.product.ProductFeature;
+import jakarta.persistence.AttributeConverter;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every JSON column of a loaded or saved entity goes through a {@link JsonConverter}. Compares it
+ * with {@link LegacyJsonConverter}, the implementation it replaced, per entity type.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonConverterBenchmark {
+
+    /**
+     * Column type: gateway credentials (encrypted), product feature (plain), portal settings
+     * (nested encrypted) and the tool calls of a chat (list)
+     */
+    @Param({"apigConfig", "productFeature", "portalSetting", "toolCalls"})
+    public String column;
+
+    @Param({"legacy", "current"})
+    public String converter;
+
+    private AttributeConverter<Object, String> attributeConverter;
+
+    private Object attribute;
+
+    private String dbData;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws ReflectiveOperationException {
+        // Normally read from the Spring environment
+        Field rootKey = Encryptor.class.getDeclaredField("ROOT_KEY");
+        rootKey.setAccessible(true);
+        rootKey.set(null, "portalmanagement");
+
+        boolean legacy = "legacy".equals(converter);
+        AttributeConverter<?, String> selected;
+        switch (column) {
+            case "apigConfig" -> {
+                attribute = apigConfig();
+                selected =
+                        legacy
+                                ? new LegacyJsonConverter<>(APIGConfig.class, null)
+                                : new APIGConfigConverter();
+            }
+            case "productFeature" -> {
+                attribute = productFeature();
+                selected =
+                        legacy
+                                ? new LegacyJsonConverter<>(ProductFeature.class, null)
+                                : new ProductFeatureConverter();
+            }
+            case "portalSetting" -> {
+                attribute = portalSetting();
+                selected =
+                        legacy
+                                ? new LegacyJsonConverter<>(PortalSettingConfig.class, null)
+                                : new PortalSettingConfigConverter();
+            }
+            case "toolCalls" -> {
+                attribute = toolCalls();
+                selected =
+                        legacy
+                                ? new LegacyJsonConverter<>(List.class, ToolCallInfo.class)
+                                : new ListToolCallInfoConverter();
+            }
+            default -> throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        attributeConverter = (AttributeConverter<Object, String>) selected;
+        dbData = attributeConverter.convertToDatabaseColumn(attribute);
+    }
+
+    /**
+     * Entity load
+     */
+    @Benchmark
+    public Object read() {
+        return attributeConverter.convertToEntityAttribute(dbData);
+    }
+
+    /**
+     * Entity save or dirty check
+     */
+    @Benchmark
+    public String write() {
+        return attributeConverter.convertToDatabaseColumn(attribute);
+    }
+
+    private static APIGConfig apigConfig() {
+        APIGConfig config = new APIGConfig();
+        config.setAccessKey("LTAI5t" + Fixtures.text(18).replace(' ', 'a'));
+        config.setSecretKey(Fixtures.text(30).replace(' ', 's'));
+        config.setRegion("cn-hangzhou");
+        return config;
+    }
+
+    private static ProductFeature productFeature() {
+        return ProductFeature.builder()
+                .modelFeature(
+                        ModelFeature.builder()
+                                .model("qwen-max")
+                                .maxTokens(4096)
+                                .contextTokenBudget(16000)
+                                .temperature(0.7)
+                                .streaming(true)
+                                .webSearch(false)
+                                .enableThinking(true)
+                                .enableMultiModal(false)
+                                .build())
+                .build();
+    }
+
+    private static PortalSettingConfig portalSetting() {
+        SearchEngineConfig searchEngine = new SearchEngineConfig();
+        searchEngine.setEngineType(SearchEngineType.GOOGLE);
+        searchEngine.setEngineName("Google");
+        searchEngine.setApiKey(Fixtures.text(39).replace(' ', 'g'));
+        searchEngine.setExtraConfig(Map.of("cx", "017576662512468239146", "num", 10));
+
+        PortalSettingConfig config = new PortalSettingConfig();
+        config.setSearchEngineConfig(searchEngine);
+        return config;
+    }
+
+    private static List<ToolCallInfo> toolCalls() {
+        List<ToolCallInfo> toolCalls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            toolCalls.add(
+                    ToolCallInfo.builder()
+                            .id("call_" + i)
+                            .name("search")
+                            .arguments(Map.of("query", Fixtures.text(60), "limit", 10))
+                            .mcpServerName("mcp-server-" + i)
+                            .result(Fixtures.text(2000))
+                            .build());
+        }
+        return toolCalls;
+    }
+}
@@ -80,6 +80,9 @@ public class SecurityConfig {
     // System endpoints
     private static final String[] SYSTEM_WHITELIST = {"/favicon.ico", "/error"};
 
+    // Actuator endpoints, served only on management.server.port
+    private static final String[] ACTUATOR_WHITELIST = {"/actuator/health", "/actuator/prometheus"};
+
     // Open API endpoints (API Key auth handled in controller)
     private static final String[] OPEN_API_WHITELIST = {"/open-api/**"};
 
@@ -112,6 +115,9 @@ public class SecurityConfig {
                                     // Permit system endpoints
                                     .requestMatchers(SYSTEM_WHITELIST)
                                     .permitAll()
+                                    // Permit actuator endpoints
+                                    .requestMatchers(ACTUATOR_WHITELIST)
+                                    .permitAll()
                                     // Permit open API endpoints
                                     .requestMatchers(OPEN_API_WHITELIST)
                                     .permitAll();
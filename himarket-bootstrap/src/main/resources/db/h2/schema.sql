@@ -0,0 +1,33 @@
+-- Tables of the h2 profile without a JPA entity, Flyway is disabled there and
+-- Hibernate only creates entity tables. Keep in sync with db/migration.
+
+-- V20__Add_chat_memory_table.sql
+CREATE TABLE IF NOT EXISTS `chat_memory` (
+    `id` bigint NOT NULL AUTO_INCREMENT,
+    `session_id` varchar(64) NOT NULL,
+    `product_id` varchar(64) NOT NULL,
+    `message` mediumtext NOT NULL,
+    `created_at` datetime(3) DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`id`)
+);
+
+CREATE INDEX IF NOT EXISTS `idx_chat_memory_session_product`
+    ON `chat_memory` (`session_id`, `product_id`, `id`);
+
+-- V21__Chat_storage_v2.sql, read and cleaned up even though archiving is MySQL only
+CREATE TABLE IF NOT EXISTS `chat_archive` AS SELECT * FROM `chat` WITH NO DATA;
+
+-- V22__Add_chat_tool_result_table.sql
+CREATE TABLE IF NOT EXISTS `chat_tool_result` (
+    `id` bigint NOT NULL AUTO_INCREMENT,
+    `session_id` varchar(64) NOT NULL,
+    `result_key` varchar(64) NOT NULL,
+    `created_at` datetime(3) DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`id`)
+);
+
+CREATE INDEX IF NOT EXISTS `idx_chat_tool_result_session`
+    ON `chat_tool_result` (`session_id`);
+
+CREATE INDEX IF NOT EXISTS `idx_chat_tool_result_key`
+    ON `chat_tool_result` (`result_key`);
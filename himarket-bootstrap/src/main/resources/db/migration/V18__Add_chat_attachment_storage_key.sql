@@ -0,0 +1,29 @@
+-- V18__Add_chat_attachment_storage_key.sql
+-- Add storage_key column to chat_attachment table
+-- Description: Attachment content moves to a content-addressed attachment store, the row keeps metadata only.
+--              Existing rows keep their data until migrated by the server at startup.
+
+START TRANSACTION;
+
+-- ========================================
+-- Add storage_key column to chat_attachment (safe)
+-- ========================================
+SET @dbname = DATABASE();
+SET @tablename = 'chat_attachment';
+SET @columnname = 'storage_key';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (COLUMN_NAME = @columnname)
+  ) > 0,
+  'SELECT ''Column storage_key already exists in chat_attachment'' AS result;',
+  'ALTER TABLE `chat_attachment` ADD COLUMN `storage_key` varchar(64) DEFAULT NULL COMMENT ''SHA-256 key in attachment store'' AFTER `size`, ADD KEY `idx_storage_key` (`storage_key`);'
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+COMMIT;
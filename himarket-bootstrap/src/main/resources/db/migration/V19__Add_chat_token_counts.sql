@@ -0,0 +1,49 @@
+-- V19__Add_chat_token_counts.sql
+-- Add question_tokens and answer_tokens columns to chat table
+-- Description: Estimated token counts per message, computed once and used to fit history into the context token budget
+
+START TRANSACTION;
+
+-- ========================================
+-- Add question_tokens column to chat table (safe)
+-- ========================================
+SET @dbname = DATABASE();
+SET @tablename = 'chat';
+SET @columnname = 'question_tokens';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (COLUMN_NAME = @columnname)
+  ) > 0,
+  'SELECT ''Column question_tokens already exists in chat'' AS result;',
+  'ALTER TABLE `chat` ADD COLUMN `question_tokens` int DEFAULT NULL COMMENT ''Estimated question tokens'' AFTER `question`;'
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- ========================================
+-- Add answer_tokens column to chat table (safe)
+-- ========================================
+SET @dbname = DATABASE();
+SET @tablename = 'chat';
+SET @columnname = 'answer_tokens';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (COLUMN_NAME = @columnname)
+  ) > 0,
+  'SELECT ''Column answer_tokens already exists in chat'' AS result;',
+  'ALTER TABLE `chat` ADD COLUMN `answer_tokens` int DEFAULT NULL COMMENT ''Estimated answer tokens'' AFTER `answer`;'
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+COMMIT;
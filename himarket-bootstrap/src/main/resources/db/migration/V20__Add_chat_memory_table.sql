@@ -0,0 +1,13 @@
+-- V20__Add_chat_memory_table.sql
+-- Add chat_memory table
+-- Description: Agent memory per session and model product, shared by all HiChat nodes
+
+CREATE TABLE IF NOT EXISTS `chat_memory` (
+    `id` bigint NOT NULL AUTO_INCREMENT,
+    `session_id` varchar(64) NOT NULL,
+    `product_id` varchar(64) NOT NULL,
+    `message` mediumtext NOT NULL COMMENT 'Serialized agent message',
+    `created_at` datetime(3) DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`id`),
+    KEY `idx_session_product_id` (`session_id`, `product_id`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
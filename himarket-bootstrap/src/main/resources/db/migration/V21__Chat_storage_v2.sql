@@ -0,0 +1,130 @@
+-- V21__Chat_storage_v2.sql
+-- Composite indexes, monthly partitioning and cold archive table for chat
+-- Description: Index the chat lookups by their full predicates, partition chat by month of created_at
+-- so old months can be pruned and archived cheaply, and add the compressed chat_archive table
+
+-- ========================================
+-- Add composite index for session listing and conversation paging (safe)
+-- ========================================
+SET @dbname = DATABASE();
+SET @tablename = 'chat';
+SET @indexname = 'idx_session_user_conversation';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (INDEX_NAME = @indexname)
+  ) > 0,
+  'SELECT ''Index idx_session_user_conversation already exists in chat'' AS result;',
+  'ALTER TABLE `chat` ADD INDEX `idx_session_user_conversation` (`session_id`, `user_id`, `conversation_id`, `created_at`);'
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- ========================================
+-- Add covering index for current sequence lookup (safe)
+-- ========================================
+SET @indexname = 'idx_sequence_lookup';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (INDEX_NAME = @indexname)
+  ) > 0,
+  'SELECT ''Index idx_sequence_lookup already exists in chat'' AS result;',
+  'ALTER TABLE `chat` ADD INDEX `idx_sequence_lookup` (`session_id`, `conversation_id`, `question_id`, `product_id`, `sequence`);'
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- ========================================
+-- Add composite index for session history by status (safe)
+-- ========================================
+SET @indexname = 'idx_session_status_created';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (INDEX_NAME = @indexname)
+  ) > 0,
+  'SELECT ''Index idx_session_status_created already exists in chat'' AS result;',
+  'ALTER TABLE `chat` ADD INDEX `idx_session_status_created` (`session_id`, `status`, `created_at`);'
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- ========================================
+-- Drop idx_session_id, a prefix of the composite indexes (safe)
+-- ========================================
+SET @indexname = 'idx_session_id';
+SET @preparedStatement = (SELECT IF(
+  (
+    SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE
+      (TABLE_SCHEMA = @dbname)
+      AND (TABLE_NAME = @tablename)
+      AND (INDEX_NAME = @indexname)
+  ) > 0,
+  'ALTER TABLE `chat` DROP INDEX `idx_session_id`;',
+  'SELECT ''Index idx_session_id does not exist in chat'' AS result;'
+));
+PREPARE alterIfExists FROM @preparedStatement;
+EXECUTE alterIfExists;
+DEALLOCATE PREPARE alterIfExists;
+
+-- ========================================
+-- Cold archive table, same columns and indexes as chat, compressed
+-- ========================================
+CREATE TABLE IF NOT EXISTS `chat_archive` LIKE `chat`;
+ALTER TABLE `chat_archive` ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
+
+-- ========================================
+-- Partition chat by month of created_at (safe)
+-- Every unique key of a partitioned table must contain the partition column, so the primary key
+-- becomes (id, created_at) and uk_chat_id becomes (chat_id, created_at). Rows before the current
+-- month go to p_history, later months are added ahead of time by ChatPartitionManager.
+-- The widened key no longer rejects a duplicate chat_id in chat, chat IDs are generated unique.
+-- chat_archive is created above and keeps uk_chat_id on chat_id alone, ChatArchiveManager checks
+-- for a chat ID already archived under another row before moving a chat.
+-- ========================================
+SET @partitioned = (
+  SELECT COUNT(*) FROM INFORMATION_SCHEMA.PARTITIONS
+  WHERE
+    (TABLE_SCHEMA = @dbname)
+    AND (TABLE_NAME = @tablename)
+    AND (PARTITION_NAME IS NOT NULL)
+);
+SET @currentMonth = DATE_FORMAT(CURRENT_DATE, '%Y-%m-01');
+SET @nextMonth = DATE_FORMAT(CURRENT_DATE + INTERVAL 1 MONTH, '%Y-%m-01');
+
+SET @preparedStatement = (SELECT IF(
+  @partitioned > 0,
+  'SELECT ''Table chat is already partitioned'' AS result;',
+  'ALTER TABLE `chat` MODIFY `created_at` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `created_at`), DROP INDEX `uk_chat_id`, ADD UNIQUE KEY `uk_chat_id` (`chat_id`, `created_at`);'
+));
+PREPARE alterIfNotPartitioned FROM @preparedStatement;
+EXECUTE alterIfNotPartitioned;
+DEALLOCATE PREPARE alterIfNotPartitioned;
+
+SET @preparedStatement = (SELECT IF(
+  @partitioned > 0,
+  'SELECT ''Table chat is already partitioned'' AS result;',
+  CONCAT(
+    'ALTER TABLE `chat` PARTITION BY RANGE COLUMNS(`created_at`) (',
+    'PARTITION `p_history` VALUES LESS THAN (''', @currentMonth, '''), ',
+    'PARTITION `p', DATE_FORMAT(@currentMonth, '%Y%m'), '` VALUES LESS THAN (''', @nextMonth, '''), ',
+    'PARTITION `p_future` VALUES LESS THAN (MAXVALUE));'
+  )
+));
+PREPARE partitionIfNotPartitioned FROM @preparedStatement;
+EXECUTE partitionIfNotPartitioned;
+DEALLOCATE PREPARE partitionIfNotPartitioned;
@@ -0,0 +1,13 @@
+-- V22__Add_chat_tool_result_table.sql
+-- Add chat_tool_result table
+-- Description: Tool results spilled to the attachment store per session, deleted with the session
+
+CREATE TABLE IF NOT EXISTS `chat_tool_result` (
+    `id` bigint NOT NULL AUTO_INCREMENT,
+    `session_id` varchar(64) NOT NULL,
+    `result_key` varchar(64) NOT NULL COMMENT 'SHA-256 key in attachment store',
+    `created_at` datetime(3) DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`id`),
+    KEY `idx_session_id` (`session_id`),
+    KEY `idx_result_key` (`result_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.alibaba.himarket.core.utils.TokenUtil;
+import com.alibaba.himarket.entity.ChatSession;
+import com.alibaba.himarket.entity.Consumer;
+import com.alibaba.himarket.entity.ConsumerCredential;
+import com.alibaba.himarket.entity.Developer;
+import com.alibaba.himarket.entity.McpServerEndpoint;
+import com.alibaba.himarket.entity.McpServerMeta;
+import com.alibaba.himarket.entity.Portal;
+import com.alibaba.himarket.entity.Product;
+import com.alibaba.himarket.entity.ProductPublication;
+import com.alibaba.himarket.entity.ProductRef;
+import com.alibaba.himarket.entity.ProductSubscription;
+import com.alibaba.himarket.loadtest.driver.ChatLoadDriver;
+import com.alibaba.himarket.loadtest.driver.LoadOptions;
+import com.alibaba.himarket.loadtest.driver.LoadReport;
+import com.alibaba.himarket.loadtest.mock.MockLlmOptions;
+import com.alibaba.himarket.loadtest.mock.MockLlmServer;
+import com.alibaba.himarket.loadtest.mock.MockMcpServer;
+import com.alibaba.himarket.loadtest.mock.MockMcpTool;
+import com.alibaba.himarket.repository.ChatSessionRepository;
+import com.alibaba.himarket.repository.ConsumerCredentialRepository;
+import com.alibaba.himarket.repository.ConsumerRepository;
+import com.alibaba.himarket.repository.DeveloperRepository;
+import com.alibaba.himarket.repository.McpServerEndpointRepository;
+import com.alibaba.himarket.repository.McpServerMetaRepository;
+import com.alibaba.himarket.repository.PortalRepository;
+import com.alibaba.himarket.repository.ProductPublicationRepository;
+import com.alibaba.himarket.repository.ProductRefRepository;
+import com.alibaba.himarket.repository.ProductRepository;
+import com.alibaba.himarket.repository.SubscriptionRepository;
+import com.alibaba.himarket.service.GatewayService;
+import com.alibaba.himarket.support.consumer.ApiKeyConfig;
+import com.alibaba.himarket.support.enums.DeveloperAuthType;
+import com.alibaba.himarket.support.enums.DeveloperStatus;
+import com.alibaba.himarket.support.enums.McpEndpointStatus;
+import com.alibaba.himarket.support.enums.ProductStatus;
+import com.alibaba.himarket.support.enums.ProductType;
+import com.alibaba.himarket.support.enums.SourceType;
+import com.alibaba.himarket.support.enums.SubscriptionStatus;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Drives concurrent chat streams through the whole HiChat stack against the mock LLM and MCP
+ * servers, with an in-memory database and no gateway. Run with {@code make loadtest}.
+ */
+@Tag("loadtest")
+@ActiveProfiles("h2")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HiChatLoadIT {
+
+    private static final String PORTAL_ID = "portal-loadtest";
+
+    private static final String DEVELOPER_ID = "dev-loadtest";
+
+    private static final String CONSUMER_ID = "consumer-loadtest";
+
+    private static final String MODEL_PRODUCT_ID = "product-model-loadtest";
+
+    private static final String MCP_PRODUCT_ID = "product-mcp-loadtest";
+
+    private static final String SESSION_ID = "session-loadtest";
+
+    private static MockLlmServer mockLlm;
+
+    private static MockMcpServer mockMcp;
+
+    @LocalServerPort private int port;
+
+    @LocalManagementPort private int managementPort;
+
+    @MockBean private GatewayService gatewayService;
+
+    @Autowired private PortalRepository portalRepository;
+
+    @Autowired private DeveloperRepository developerRepository;
+
+    @Autowired private ConsumerRepository consumerRepository;
+
+    @Autowired private ConsumerCredentialRepository credentialRepository;
+
+    @Autowired private ProductRepository productRepository;
+
+    @Autowired private ProductRefRepository productRefRepository;
+
+    @Autowired private ProductPublicationRepository publicationRepository;
+
+    @Autowired private SubscriptionRepository subscriptionRepository;
+
+    @Autowired private McpServerMetaRepository mcpServerMetaRepository;
+
+    @Autowired private McpServerEndpointRepository mcpServerEndpointRepository;
+
+    @Autowired private ChatSessionRepository chatSessionRepository;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws Exception {
+        mockLlm =
+                new MockLlmServer(
+                                MockLlmOptions.builder()
+                                        .ttfbMs(50)
+                                        .tokensPerSecond(200)
+                                        .outputTokens(40)
+                                        .toolCallRatio(0.5)
+                                        .build())
+                        .start();
+        mockMcp =
+                new MockMcpServer(
+                                0,
+                                List.of(
+                                        MockMcpTool.builder()
+                                                .name("search")
+                                                .latencyMs(50)
+                                                .result("nothing found")
+                                                .build()))
+                        .start();
+
+        registry.add(
+                "spring.datasource.url",
+                () ->
+                        "jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+                                + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1");
+        registry.add(
+                "hichat.attachment.local-path",
+                () -> System.getProperty("java.io.tmpdir") + "/himarket-loadtest");
+        // All streams come from one developer
+        registry.add("hichat.admission.max-concurrent-per-user", () -> 1000);
+        // Single node, the jdbc memory store is not what is measured here
+        registry.add("hichat.memory.store", () -> "local");
+        registry.add("management.server.port", () -> 0);
+    }
+
+    @BeforeAll
+    void seed() {
+        portalRepository.save(Portal.builder().portalId(PORTAL_ID).name("loadtest").build());
+        developerRepository.save(
+                Developer.builder()
+                        .developerId(DEVELOPER_ID)
+                        .username("loadtest")
+                        .portalId(PORTAL_ID)
+                        .status(DeveloperStatus.APPROVED)
+                        .authType(DeveloperAuthType.BUILTIN)
+                        .build());
+
+        consumerRepository.save(
+                Consumer.builder()
+                        .consumerId(CONSUMER_ID)
+                        .name("loadtest")
+                        .portalId(PORTAL_ID)
+                        .developerId(DEVELOPER_ID)
+                        .isPrimary(true)
+                        .build());
+        ApiKeyConfig.ApiKeyCredential apiKey = new ApiKeyConfig.ApiKeyCredential();
+        apiKey.setApiKey("sk-loadtest");
+        ApiKeyConfig apiKeyConfig = new ApiKeyConfig();
+        apiKeyConfig.setCredentials(List.of(apiKey));
+        credentialRepository.save(
+                ConsumerCredential.builder()
+                        .consumerId(CONSUMER_ID)
+                        .apiKeyConfig(apiKeyConfig)
+                        .build());
+
+        seedModelProduct();
+        seedMcpProduct();
+
+        chatSessionRepository.save(
+                ChatSession.builder()
+                        .sessionId(SESSION_ID)
+                        .userId(DEVELOPER_ID)
+                        .name("loadtest")
+                        .products(List.of(MODEL_PRODUCT_ID))
+                        .build());
+    }
+
+    private void seedModelProduct() {
+        productRepository.save(
+                Product.builder()
+                        .productId(MODEL_PRODUCT_ID)
+                        .name("mock-model")
+                        .type(ProductType.MODEL_API)
+                        .status(ProductStatus.PUBLISHED)
+                        .autoApprove(true)
+                        .build());
+
+        // Route straight to the mock LLM, the gateway is never asked
+        String modelConfig =
+                """
+                {"modelAPIConfig": {
+                  "modelCategory": "Text",
+                  "aiProtocols": ["OpenAI/V1"],
+                  "routes": [{
+                    "domains": [{"domain": "127.0.0.1", "port": %d, "protocol": "http"}],
+                    "match": {"path": {"value": "/v1/chat/completions", "type": "Exact"}}
+                  }]
+                }}
+                """
+                        .formatted(mockLlm.getPort());
+        productRefRepository.save(
+                ProductRef.builder()
+                        .productId(MODEL_PRODUCT_ID)
+                        .gatewayId("gw-loadtest")
+                        .sourceType(SourceType.GATEWAY)
+                        .modelConfig(modelConfig)
+                        .enabled(true)
+                        .build());
+        publicationRepository.save(
+                ProductPublication.builder()
+                        .publicationId("pub-model-loadtest")
+                        .portalId(PORTAL_ID)
+                        .productId(MODEL_PRODUCT_ID)
+                        .build());
+    }
+
+    private void seedMcpProduct() {
+        productRepository.save(
+                Product.builder()
+                        .productId(MCP_PRODUCT_ID)
+                        .name("mock-mcp")
+                        .type(ProductType.MCP_SERVER)
+                        .status(ProductStatus.PUBLISHED)
+                        .autoApprove(true)
+                        .build());
+        publicationRepository.save(
+                ProductPublication.builder()
+                        .publicationId("pub-mcp-loadtest")
+                        .portalId(PORTAL_ID)
+                        .productId(MCP_PRODUCT_ID)
+                        .build());
+        subscriptionRepository.save(
+                ProductSubscription.builder()
+                        .subscriptionId("sub-mcp-loadtest")
+                        .productId(MCP_PRODUCT_ID)
+                        .consumerId(CONSUMER_ID)
+                        .developerId(DEVELOPER_ID)
+                        .portalId(PORTAL_ID)
+                        .status(SubscriptionStatus.APPROVED)
+                        .build());
+
+        mcpServerMetaRepository.save(
+                McpServerMeta.builder()
+                        .mcpServerId("mcp-loadtest")
+                        .productId(MCP_PRODUCT_ID)
+                        .mcpName("mock-mcp")
+                        .origin("CUSTOM")
+                        .protocolType("sse")
+                        .connectionConfig("{}")
+                        .build());
+        mcpServerEndpointRepository.save(
+                McpServerEndpoint.builder()
+                        .endpointId("ep-loadtest")
+                        .mcpServerId("mcp-loadtest")
+                        .mcpName("mock-mcp")
+                        .endpointUrl(mockMcp.getBaseUrl() + MockMcpServer.SSE_PATH)
+                        .hostingType("CUSTOM")
+                        .protocol("sse")
+                        .userId(McpEndpointStatus.PUBLIC_USER_ID)
+                        .status(McpEndpointStatus.ACTIVE.name())
+                        .build());
+    }
+
+    @AfterAll
+    void stopMocks() {
+        mockLlm.close();
+        mockMcp.close();
+    }
+
+    @Test
+    void concurrentChatStreams() throws Exception {
+        LoadOptions options =
+                LoadOptions.builder()
+                        .baseUrl("http://127.0.0.1:" + port)
+                        .token(TokenUtil.generateDeveloperToken(DEVELOPER_ID))
+                        .sessionId(SESSION_ID)
+                        .productId(MODEL_PRODUCT_ID)
+                        .mcpProducts(List.of(MCP_PRODUCT_ID))
+                        .concurrencyLevels(List.of(1, 10, 50))
+                        .requestsPerWorker(2)
+                        .timeoutSeconds(60)
+                        .metricsUrl("http://127.0.0.1:" + managementPort + "/actuator/prometheus")
+                        .build();
+
+        List<LoadReport> reports = new ChatLoadDriver(options).run();
+
+        assertEquals(options.getConcurrencyLevels().size(), reports.size());
+        for (LoadReport report : reports) {
+            assertEquals(
+                    report.getConcurrency() * options.getRequestsPerWorker(),
+                    report.getTotalRequests(),
+                    report.toSummary());
+            assertEquals(0, report.getFailedRequests(), report.toSummary());
+            assertTrue(report.getTokensPerSecond() > 0, report.toSummary());
+        }
+        assertTrue(mockMcp.getToolCallCount() > 0, "No tool was called");
+    }
+}
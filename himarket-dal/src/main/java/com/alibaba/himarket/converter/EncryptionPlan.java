@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.alibaba.himarket.converter;
+
+import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.support.common.Encrypted;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Precomputed fields of a class that hold {@link Encrypted} values, directly or through nested
+ * objects, collections and maps.
+ *
+ * <p>Plans are built once per class from the declared field types and cached. Classes that cannot
+ * reach any encrypted field get {@link #NONE} and are skipped without touching their values.
+ */
+final class EncryptionPlan {
+
+    static final EncryptionPlan NONE = new EncryptionPlan(List.of(), List.of());
+
+    private static final Map<Class<?>, EncryptionPlan> PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * String fields annotated with {@link Encrypted}
+     */
+    private final List<PlanField> encryptedFields;
+
+    /**
+     * Fields whose values may contain encrypted fields
+     */
+    private final List<PlanField> nestedFields;
+
+    private EncryptionPlan(List<PlanField> encryptedFields, List<PlanField> nestedFields) {
+        this.encryptedFields = encryptedFields;
+        this.nestedFields = nestedFields;
+    }
+
+    /**
+     * Get the plan of a class
+     *
+     * @param type class of the value
+     * @return plan, {@link #NONE} if the class holds no encrypted field
+     */
+    static EncryptionPlan of(Class<?> type) {
+        EncryptionPlan plan = PLANS.get(type);
+        if (plan == null) {
+            plan = build(type, new HashSet<>());
+            PLANS.putIfAbsent(type, plan);
+        }
+        return plan;
+    }
+
+    boolean isEmpty() {
+        return this == NONE;
+    }
+
+    /**
+     * Apply a function to every encrypted field of an object graph in place
+     *
+     * @param value    object, collection or map
+     * @param function encrypt or decrypt
+     */
+    static void transform(Object value, UnaryOperator<String> function) {
+        if (value == null || ClassUtil.isSimpleValueType(value.getClass())) {
+            return;
+        }
+        if (value instanceof Collection<?> collection) {
+            collection.forEach(element -> transform(element, function));
+            return;
+        }
+        if (value instanceof Map<?, ?> map) {
+            map.values().forEach(element -> transform(element, function));
+            return;
+        }
+
+        EncryptionPlan plan = of(value.getClass());
+        for (PlanField encrypted : plan.encryptedFields) {
+            if (encrypted.get(value) instanceof String text) {
+                encrypted.set(value, function.apply(text));
+            }
+        }
+        for (PlanField nested : plan.nestedFields) {
+            transform(nested.get(value), function);
+        }
+    }
+
+    /**
+     * Apply a function to the encrypted fields of the JSON tree serialized from an object graph,
+     * leaving the object itself untouched
+     *
+     * @param value    object the tree was serialized from
+     * @param node     JSON tree of the value
+     * @param function encrypt or decrypt
+     */
+    static void transformTree(Object value, JsonNode node, UnaryOperator<String> function) {
+        if (value == null || node == null || ClassUtil.isSimpleValueType(value.getClass())) {
+            return;
+        }
+        if (value instanceof Collection<?> collection) {
+            // Collections are serialized in iteration order
+            int index = 0;
+            for (Object element : collection) {
+                transformTree(element, node.get(index++), function);
+            }
+            return;
+        }
+        if (value instanceof Map<?, ?> map) {
+            map.forEach(
+                    (key, element) ->
+                            transformTree(element, node.get(String.valueOf(key)), function));
+            return;
+        }
+        if (!(node instanceof ObjectNode objectNode)) {
+            return;
+        }
+
+        EncryptionPlan plan = of(value.getClass());
+        for (PlanField encrypted : plan.encryptedFields) {
+            if (encrypted.get(value) instanceof String text && objectNode.has(encrypted.name)) {
+                objectNode.put(encrypted.name, function.apply(text));
+            }
+        }
+        for (PlanField nested : plan.nestedFields) {
+            transformTree(nested.get(value), objectNode.get(nested.name), function);
+        }
+    }
+
+    private static EncryptionPlan build(Class<?> type, Set<Class<?>> visiting) {
+        if (isOpaque(type) || !visiting.add(type)) {
+            return NONE;
+        }
+
+        List<PlanField> encryptedFields = new ArrayList<>();
+        List<PlanField> nestedFields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers)
+                        || Modifier.isTransient(modifiers)
+                        || field.isSynthetic()) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(Encrypted.class)) {
+                    encryptedFields.add(new PlanField(field));
+                } else if (mayContainEncrypted(field.getGenericType(), visiting)) {
+                    nestedFields.add(new PlanField(field));
+                }
+            }
+        }
+        visiting.remove(type);
+
+        if (encryptedFields.isEmpty() && nestedFields.isEmpty()) {
+            return NONE;
+        }
+        return new EncryptionPlan(List.copyOf(encryptedFields), List.copyOf(nestedFields));
+    }
+
+    private static boolean mayContainEncrypted(Type type, Set<Class<?>> visiting) {
+        if (type instanceof ParameterizedType parameterized) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            Type raw = parameterized.getRawType();
+            if (raw instanceof Class<?> rawClass && Collection.class.isAssignableFrom(rawClass)) {
+                return mayContainEncrypted(arguments[0], visiting);
+            }
+            if (raw instanceof Class<?> rawClass && Map.class.isAssignableFrom(rawClass)) {
+                return mayContainEncrypted(arguments[1], visiting);
+            }
+            return mayContainEncrypted(raw, visiting);
+        }
+        if (type instanceof GenericArrayType) {
+            return false;
+        }
+        if (!(type instanceof Class<?> c)) {
+            // Type variables and wildcards, decided by the runtime value
+            return true;
+        }
+
+        if (c.isArray() || c.isPrimitive() || ClassUtil.isSimpleValueType(c)) {
+            return false;
+        }
+        if (c == Object.class
+                || c.isInterface()
+                || Modifier.isAbstract(c.getModifiers())
+                || Collection.class.isAssignableFrom(c)
+                || Map.class.isAssignableFrom(c)) {
+            // Raw containers and open types, decided by the runtime value
+            return true;
+        }
+        if (visiting.contains(c)) {
+            // Cyclic reference, the class is being planned already
+            return true;
+        }
+        EncryptionPlan plan = PLANS.get(c);
+        return plan != null ? !plan.isEmpty() : !build(c, visiting).isEmpty();
+    }
+
+    /**
+     * JDK classes are never walked into, they hold no {@link Encrypted} fields
+     */
+    private static boolean isOpaque(Class<?> type) {
+        return type.isPrimitive()
+                || type.isArray()
+                || ClassUtil.isSimpleValueType(type)
+                || StrUtil.startWithAny(type.getName(), "java.", "javax.", "jdk.", "sun.");
+    }
+
+    /**
+     * Accessible field with its JSON property name
+     */
+    private static final class PlanField {
+
+        private final Field field;
+
+        private final String name;
+
+        PlanField(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+
+            JsonProperty property = field.getAnnotation(JsonProperty.class);
+            this.name =
+                    property != null && StrUtil.isNotEmpty(property.value())
+                            ? property.value()
+                            : field.getName();
+        }
+
+        Object get(Object target) {
+            try {
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot read field " + field, e);
+            }
+        }
+
+        void set(Object target, Object value) {
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot write field " + field, e);
+            }
+        }
+    }
+}
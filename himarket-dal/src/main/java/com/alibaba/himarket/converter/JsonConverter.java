@@ -19,23 +19,51 @@
 
 package com.alibaba.himarket.converter;
 
-import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.util.ClassUtil;
-import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.alibaba.himarket.support.common.Encrypted;
 import com.alibaba.himarket.support.common.Encryptor;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import jakarta.persistence.AttributeConverter;
-import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Converts JSON columns with Jackson, encrypting {@link Encrypted} fields on the way.
+ *
+ * <p>The format is the one Hutool wrote before: properties are the field names, nulls are
+ * omitted and {@link LocalDateTime} is stored as epoch milliseconds. Rows Jackson cannot bind are
+ * read with Hutool as before. Encrypted fields are located by a cached {@link EncryptionPlan}, and
+ * types without any are neither walked nor copied.
+ */
 @Slf4j
 public abstract class JsonConverter<T> implements AttributeConverter<T, String> {
 
+    private static final ObjectMapper MAPPER = newObjectMapper();
+
     /**
      * Field type: object class for simple types, List.class for List, Map.class for Map
      */
@@ -47,6 +75,16 @@ public abstract class JsonConverter<T> implements AttributeConverter<T, String>
      */
     private final Class<?> elementType;
 
+    /**
+     * Jackson type of the column value
+     */
+    private final JavaType javaType;
+
+    /**
+     * Whether values of the declared type may hold encrypted fields
+     */
+    private final boolean encrypted;
+
     /**
      * For simple object types: super(ChatUsage.class)
      */
@@ -60,6 +98,15 @@ public abstract class JsonConverter<T> implements AttributeConverter<T, String>
     protected JsonConverter(Class<T> type, Class<?> elementType) {
         this.type = type;
         this.elementType = elementType;
+
+        boolean isList = List.class.isAssignableFrom(type);
+        Class<?> valueType = isList ? (elementType != null ? elementType : Object.class) : type;
+        this.javaType =
+                isList
+                        ? MAPPER.getTypeFactory().constructCollectionType(List.class, valueType)
+                        : MAPPER.constructType(type);
+        // Open types are decided per value
+        this.encrypted = valueType == Object.class || !EncryptionPlan.of(valueType).isEmpty();
     }
 
     @Override
@@ -68,93 +115,114 @@ public abstract class JsonConverter<T> implements AttributeConverter<T, String>
             return null;
         }
 
-        T clonedAttribute = cloneAndEncrypt(attribute);
-        return JSONUtil.toJsonStr(clonedAttribute);
+        try {
+            if (!encrypted) {
+                return MAPPER.writeValueAsString(attribute);
+            }
+            // Encrypt the serialized tree, the attribute itself stays managed by JPA untouched
+            JsonNode tree = MAPPER.valueToTree(attribute);
+            EncryptionPlan.transformTree(attribute, tree, Encryptor::encrypt);
+            return MAPPER.writeValueAsString(tree);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new IllegalStateException(
+                    "Failed to convert " + type.getSimpleName() + " to JSON", e);
+        }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public T convertToEntityAttribute(String dbData) {
         if (dbData == null) {
             return null;
         }
+
+        T attribute = read(dbData);
+        if (encrypted) {
+            EncryptionPlan.transform(attribute, Encryptor::decrypt);
+        }
+        return attribute;
+    }
+
+    private T read(String dbData) {
+        try {
+            return MAPPER.readValue(dbData, javaType);
+        } catch (JsonProcessingException e) {
+            log.debug(
+                    "Read {} with Hutool, not bindable by Jackson: {}",
+                    type.getSimpleName(),
+                    e.getOriginalMessage());
+            return readWithHutool(dbData);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readWithHutool(String dbData) {
         if (List.class.isAssignableFrom(type)) {
             // Use elementType if specified, otherwise fallback to Object.class for backward
             // compatibility
             Class<?> listElementType = elementType != null ? elementType : Object.class;
-            T attribute = (T) JSONUtil.toList(dbData, listElementType);
-            decrypt(attribute);
-            return attribute;
+            return (T) JSONUtil.toList(dbData, listElementType);
         }
-
-        T attribute = JSONUtil.toBean(dbData, type);
-        decrypt(attribute);
-        return attribute;
+        return JSONUtil.toBean(dbData, type);
     }
 
-    @SuppressWarnings("unchecked")
-    private T cloneAndEncrypt(T original) {
-        // Clone to avoid automatic database updates through JPA persistence
-        T cloned =
-                original instanceof List
-                        ? (T) new ArrayList<>((List<?>) original)
-                        : JSONUtil.toBean(JSONUtil.toJsonStr(original), type);
-        handleEncryption(cloned, true);
-        return cloned;
+    private static ObjectMapper newObjectMapper() {
+        SimpleModule timeModule = new SimpleModule();
+        timeModule.addSerializer(LocalDateTime.class, new EpochMillisSerializer());
+        timeModule.addDeserializer(LocalDateTime.class, new EpochMillisDeserializer());
+
+        return JsonMapper.builder()
+                // Field names, as Hutool wrote them
+                .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .visibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE)
+                .visibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE)
+                .visibility(PropertyAccessor.SETTER, JsonAutoDetect.Visibility.NONE)
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL)
+                .enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT)
+                .addModule(timeModule)
+                .build();
     }
 
-    private void decrypt(T attribute) {
-        handleEncryption(attribute, false);
-    }
+    /**
+     * Writes {@link LocalDateTime} as epoch milliseconds in the system zone, as Hutool does
+     */
+    private static class EpochMillisSerializer extends JsonSerializer<LocalDateTime> {
 
-    private void handleEncryption(Object obj, boolean isEncrypt) {
-        if (obj == null) {
-            return;
+        @Override
+        public void serialize(
+                LocalDateTime value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeNumber(value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
         }
+    }
 
-        // Process Collection elements directly to avoid StackOverflowError caused by
-        // circular references in JDK collection internals (e.g. LinkedHashMap.Entry.before/after)
-        if (obj instanceof Collection<?>) {
-            for (Object element : (Collection<?>) obj) {
-                if (element != null && !ClassUtil.isSimpleValueType(element.getClass())) {
-                    handleEncryption(element, isEncrypt);
-                }
+    /**
+     * Reads {@link LocalDateTime} from epoch milliseconds, or from an ISO-8601 string
+     */
+    private static class EpochMillisDeserializer extends JsonDeserializer<LocalDateTime> {
+
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context)
+                throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                return LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(parser.getLongValue()), ZoneId.systemDefault());
             }
-            return;
-        }
-
-        if (obj instanceof Map<?, ?>) {
-            for (Object value : ((Map<?, ?>) obj).values()) {
-                if (value != null && !ClassUtil.isSimpleValueType(value.getClass())) {
-                    handleEncryption(value, isEncrypt);
-                }
+            String text = StrUtil.trim(parser.getValueAsString());
+            if (StrUtil.isEmpty(text)) {
+                return null;
+            }
+            try {
+                return NumberUtil.isLong(text)
+                        ? LocalDateTime.ofInstant(
+                                Instant.ofEpochMilli(Long.parseLong(text)), ZoneId.systemDefault())
+                        : LocalDateTime.parse(text);
+            } catch (DateTimeException e) {
+                throw context.weirdStringException(
+                        text, LocalDateTime.class, "Expected epoch millis or ISO-8601");
             }
-            return;
         }
-
-        BeanUtil.descForEach(
-                obj.getClass(),
-                pd -> {
-                    Field field = pd.getField();
-                    if (field == null) {
-                        return;
-                    }
-
-                    Object value = ReflectUtil.getFieldValue(obj, field);
-                    if (value == null) {
-                        return;
-                    }
-
-                    // Process fields that require encryption/decryption
-                    if (field.isAnnotationPresent(Encrypted.class) && value instanceof String) {
-                        String result =
-                                isEncrypt
-                                        ? Encryptor.encrypt((String) value)
-                                        : Encryptor.decrypt((String) value);
-                        ReflectUtil.setFieldValue(obj, field, result);
-                    } else if (!ClassUtil.isSimpleValueType(value.getClass())) {
-                        handleEncryption(value, isEncrypt);
-                    }
-                });
     }
 }
@@ -35,7 +35,7 @@ import lombok.*;
         name = "chat",
         uniqueConstraints = {
             @UniqueConstraint(
-                    columnNames = {"chat_id"},
+                    columnNames = {"chat_id", "created_at"},
                     name = "uk_chat_id")
         })
 @Data
@@ -99,6 +99,12 @@ public class Chat extends BaseEntity {
     @Column(name = "question", columnDefinition = "text")
     private String question;
 
+    /**
+     * Estimated tokens of the question, including text attachments
+     */
+    @Column(name = "question_tokens")
+    private Integer questionTokens;
+
     /**
      * Multi-modal content
      */
@@ -118,6 +124,12 @@ public class Chat extends BaseEntity {
     @Column(name = "answer", columnDefinition = "longtext")
     private String answer;
 
+    /**
+     * Estimated tokens of the answer
+     */
+    @Column(name = "answer_tokens")
+    private Integer answerTokens;
+
     /**
      * The index of the question submitted
      */
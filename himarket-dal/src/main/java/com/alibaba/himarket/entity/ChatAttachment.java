@@ -82,7 +82,13 @@ public class ChatAttachment extends BaseEntity {
     private Long size;
 
     /**
-     * Raw data
+     * Content key in the attachment store (SHA-256 of the content)
+     */
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    /**
+     * Raw data, only kept by legacy rows not yet moved to the attachment store
      */
     @Column(name = "data", columnDefinition = "mediumblob")
     private byte[] data;
@@ -22,6 +22,7 @@ package com.alibaba.himarket.repository;
 import com.alibaba.himarket.entity.ChatAttachment;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -42,4 +43,14 @@ public interface ChatAttachmentRepository extends BaseRepository<ChatAttachment,
      * @return the list of chat attachments
      */
     List<ChatAttachment> findByAttachmentIdIn(List<String> attachmentIds);
+
+    /**
+     * Find legacy attachments (data not moved to the attachment store) after the given ID
+     *
+     * @param id the last processed ID
+     * @param pageable the page request
+     * @return the list of chat attachments
+     */
+    List<ChatAttachment> findByIdGreaterThanAndStorageKeyIsNullAndDataIsNotNull(
+            Long id, Pageable pageable);
 }
@@ -21,9 +21,13 @@ package com.alibaba.himarket.repository;
 
 import com.alibaba.himarket.entity.Chat;
 import com.alibaba.himarket.support.enums.ChatStatus;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -41,6 +45,17 @@ public interface ChatRepository extends BaseRepository<Chat, Long> {
      */
     List<Chat> findBySessionIdAndStatus(String sessionId, ChatStatus status, Sort sort);
 
+    /**
+     * Find chats by session ID and any of the statuses
+     *
+     * @param sessionId the session ID
+     * @param statuses the chat statuses
+     * @param sort the sort order
+     * @return the list of chats
+     */
+    List<Chat> findBySessionIdAndStatusIn(
+            String sessionId, Collection<ChatStatus> statuses, Sort sort);
+
     /**
      * Find chat by chat ID
      *
@@ -59,6 +74,65 @@ public interface ChatRepository extends BaseRepository<Chat, Long> {
      */
     List<Chat> findAllBySessionIdAndUserId(String sessionId, String userId, Sort sort);
 
+    /**
+     * Find chats of a conversation
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @param conversationId the conversation ID
+     * @param sort the sort order
+     * @return the list of chats
+     */
+    List<Chat> findAllBySessionIdAndUserIdAndConversationId(
+            String sessionId, String userId, String conversationId, Sort sort);
+
+    /**
+     * Find a page of conversations of a session, newest first
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @param beforeId cursor, only conversations whose first chat ID is below it
+     * @param pageable page size
+     * @return the conversation cursors
+     */
+    @Query(
+            "SELECT c.conversationId AS conversationId, MIN(c.id) AS firstChatId "
+                    + "FROM Chat c "
+                    + "WHERE c.sessionId = :sessionId "
+                    + "AND c.userId = :userId "
+                    + "GROUP BY c.conversationId "
+                    + "HAVING MIN(c.id) < :beforeId "
+                    + "ORDER BY MIN(c.id) DESC")
+    List<ConversationCursor> findConversationCursors(
+            @Param("sessionId") String sessionId,
+            @Param("userId") String userId,
+            @Param("beforeId") Long beforeId,
+            Pageable pageable);
+
+    /**
+     * Find chat summaries of conversations, without answers, tool calls and attachments
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @param conversationIds the conversation IDs
+     * @return the chat summaries in creation order
+     */
+    @Query(
+            "SELECT c.chatId AS chatId, c.conversationId AS conversationId, "
+                    + "c.questionId AS questionId, c.question AS question, "
+                    + "c.productId AS productId, c.answerId AS answerId, "
+                    + "c.sequence AS sequence, c.status AS status, "
+                    + "c.createAt AS createAt, c.updatedAt AS updatedAt "
+                    + "FROM Chat c "
+                    + "WHERE c.sessionId = :sessionId "
+                    + "AND c.userId = :userId "
+                    + "AND c.conversationId IN :conversationIds "
+                    + "ORDER BY c.id ASC")
+    List<ChatSummary> findChatSummaries(
+            @Param("sessionId") String sessionId,
+            @Param("userId") String userId,
+            @Param("conversationIds") Collection<String> conversationIds);
+
     /**
      * Find current sequence number for a conversation
      *
@@ -81,10 +155,202 @@ public interface ChatRepository extends BaseRepository<Chat, Long> {
             @Param("questionId") String questionId,
             @Param("productId") String productId);
 
+    /**
+     * Find the latest update time of chats by session ID and status
+     *
+     * @param sessionId the session ID
+     * @param status the chat status
+     * @return the latest update time, null if no chat matches
+     */
+    @Query(
+            "SELECT MAX(c.updatedAt) FROM Chat c "
+                    + "WHERE c.sessionId = :sessionId AND c.status = :status")
+    LocalDateTime findLatestUpdatedAt(
+            @Param("sessionId") String sessionId, @Param("status") ChatStatus status);
+
     /**
      * Delete all chats by session ID
      *
      * @param sessionId the session ID
      */
     void deleteAllBySessionId(String sessionId);
+
+    /**
+     * Find an archived chat by chat ID
+     *
+     * @param chatId the chat ID
+     * @return the archived chat if found
+     */
+    @Query(value = "SELECT * FROM chat_archive WHERE chat_id = :chatId", nativeQuery = true)
+    Optional<Chat> findArchivedByChatId(@Param("chatId") String chatId);
+
+    /**
+     * Find archived chats by session ID and user ID, in creation order
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @return the list of archived chats
+     */
+    @Query(
+            value =
+                    "SELECT * FROM chat_archive "
+                            + "WHERE session_id = :sessionId AND user_id = :userId "
+                            + "ORDER BY id ASC",
+            nativeQuery = true)
+    List<Chat> findArchivedBySessionIdAndUserId(
+            @Param("sessionId") String sessionId, @Param("userId") String userId);
+
+    /**
+     * Find archived chats of a conversation, in creation order
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @param conversationId the conversation ID
+     * @return the list of archived chats
+     */
+    @Query(
+            value =
+                    "SELECT * FROM chat_archive "
+                            + "WHERE session_id = :sessionId AND user_id = :userId "
+                            + "AND conversation_id = :conversationId "
+                            + "ORDER BY id ASC",
+            nativeQuery = true)
+    List<Chat> findArchivedBySessionIdAndUserIdAndConversationId(
+            @Param("sessionId") String sessionId,
+            @Param("userId") String userId,
+            @Param("conversationId") String conversationId);
+
+    /**
+     * Find archived chats by session ID and status, in creation order
+     *
+     * @param sessionId the session ID
+     * @param status the chat status name
+     * @return the list of archived chats
+     */
+    @Query(
+            value =
+                    "SELECT * FROM chat_archive "
+                            + "WHERE session_id = :sessionId AND status = :status "
+                            + "ORDER BY id ASC",
+            nativeQuery = true)
+    List<Chat> findArchivedBySessionIdAndStatus(
+            @Param("sessionId") String sessionId, @Param("status") String status);
+
+    /**
+     * Find the current sequence of a question among archived chats
+     *
+     * @param sessionId the session ID
+     * @param conversationId the conversation ID
+     * @param questionId the question ID
+     * @param productId the product ID
+     * @return the current sequence number, 0 if none is archived
+     */
+    @Query(
+            value =
+                    "SELECT COALESCE(MAX(sequence), 0) FROM chat_archive "
+                            + "WHERE session_id = :sessionId "
+                            + "AND conversation_id = :conversationId "
+                            + "AND question_id = :questionId "
+                            + "AND product_id = :productId",
+            nativeQuery = true)
+    Integer findArchivedCurrentSequence(
+            @Param("sessionId") String sessionId,
+            @Param("conversationId") String conversationId,
+            @Param("questionId") String questionId,
+            @Param("productId") String productId);
+
+    /**
+     * Find a page of archived conversations of a session, newest first
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @param beforeId cursor, only conversations whose first chat ID is below it
+     * @param limit page size
+     * @return the conversation cursors
+     */
+    @Query(
+            value =
+                    "SELECT conversation_id AS conversationId, MIN(id) AS firstChatId "
+                            + "FROM chat_archive "
+                            + "WHERE session_id = :sessionId AND user_id = :userId "
+                            + "GROUP BY conversation_id "
+                            + "HAVING MIN(id) < :beforeId "
+                            + "ORDER BY MIN(id) DESC "
+                            + "LIMIT :limit",
+            nativeQuery = true)
+    List<ConversationCursor> findArchivedConversationCursors(
+            @Param("sessionId") String sessionId,
+            @Param("userId") String userId,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") int limit);
+
+    /**
+     * Find archived chat summaries of conversations, in creation order
+     *
+     * @param sessionId the session ID
+     * @param userId the user ID
+     * @param conversationIds the conversation IDs
+     * @return the chat summaries
+     */
+    @Query(
+            value =
+                    "SELECT chat_id AS chatId, conversation_id AS conversationId, "
+                            + "question_id AS questionId, question, "
+                            + "product_id AS productId, answer_id AS answerId, "
+                            + "sequence, status, "
+                            + "created_at AS createAt, updated_at AS updatedAt "
+                            + "FROM chat_archive "
+                            + "WHERE session_id = :sessionId AND user_id = :userId "
+                            + "AND conversation_id IN (:conversationIds) "
+                            + "ORDER BY id ASC",
+            nativeQuery = true)
+    List<ChatSummary> findArchivedChatSummaries(
+            @Param("sessionId") String sessionId,
+            @Param("userId") String userId,
+            @Param("conversationIds") Collection<String> conversationIds);
+
+    /**
+     * Delete all archived chats by session ID
+     *
+     * @param sessionId the session ID
+     */
+    @Modifying
+    @Query(value = "DELETE FROM chat_archive WHERE session_id = :sessionId", nativeQuery = true)
+    void deleteArchivedBySessionId(@Param("sessionId") String sessionId);
+
+    /**
+     * Conversation position for cursor pagination
+     */
+    interface ConversationCursor {
+
+        String getConversationId();
+
+        Long getFirstChatId();
+    }
+
+    /**
+     * Chat columns needed to list conversations
+     */
+    interface ChatSummary {
+
+        String getChatId();
+
+        String getConversationId();
+
+        String getQuestionId();
+
+        String getQuestion();
+
+        String getProductId();
+
+        String getAnswerId();
+
+        Integer getSequence();
+
+        ChatStatus getStatus();
+
+        LocalDateTime getCreateAt();
+
+        LocalDateTime getUpdatedAt();
+    }
 }
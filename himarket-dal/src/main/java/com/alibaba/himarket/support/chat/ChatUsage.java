@@ -19,11 +19,16 @@
 
 package com.alibaba.himarket.support.chat;
 
+import java.util.Map;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class ChatUsage {
 
     private Long elapsedTime;
@@ -35,4 +40,14 @@ public class ChatUsage {
     private Integer outputTokens;
 
     private Integer totalTokens;
+
+    /**
+     * Whether the answer was served from the response cache
+     */
+    private Boolean cached;
+
+    /**
+     * Milliseconds spent in each phase of the chat, for diagnosing slow chats
+     */
+    private Map<String, Long> phaseTimings;
 }
@@ -20,11 +20,15 @@
 package com.alibaba.himarket.support.consumer;
 
 import java.util.List;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class APIGAuthConfig {
 
     private List<String> authorizationRuleIds;
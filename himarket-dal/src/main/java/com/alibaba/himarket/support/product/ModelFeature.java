@@ -39,6 +39,11 @@ public class ModelFeature {
      */
     private Integer maxTokens;
 
+    /**
+     * Token budget of the prompt context (history and current message), default if not set
+     */
+    private Integer contextTokenBudget;
+
     /**
      * Temperature for sampling (0.0 - 2.0)
      */
@@ -63,4 +68,15 @@ public class ModelFeature {
      * Enable multi modal
      */
     private Boolean enableMultiModal;
+
+    /**
+     * Seconds identical prompts are answered from the response cache, disabled if not set. Only
+     * takes effect with temperature 0, no MCP tools and no web search
+     */
+    private Integer responseCacheTtlSeconds;
+
+    /**
+     * Max responses cached for the product, default if not set
+     */
+    private Integer responseCacheMaxEntries;
 }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.converter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.alibaba.himarket.entity.Gateway;
+import com.alibaba.himarket.support.common.Encryptor;
+import com.alibaba.himarket.support.enums.GatewayType;
+import com.alibaba.himarket.support.enums.SearchEngineType;
+import com.alibaba.himarket.support.gateway.APIGConfig;
+import com.alibaba.himarket.support.gateway.ApsaraGatewayConfig;
+import com.alibaba.himarket.support.gateway.GatewayConfig;
+import com.alibaba.himarket.support.gateway.HigressConfig;
+import com.alibaba.himarket.support.portal.PortalSettingConfig;
+import com.alibaba.himarket.support.portal.SearchEngineConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link JsonConverter} writes the same column format as {@link LegacyJsonConverter}
+ * for every type with {@link com.alibaba.himarket.support.common.Encrypted} fields, reads rows the
+ * legacy converter wrote and writes rows it can still read.
+ */
+class JsonConverterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @BeforeAll
+    static void setRootKey() throws ReflectiveOperationException {
+        // Normally read from the Spring environment
+        Field rootKey = Encryptor.class.getDeclaredField("ROOT_KEY");
+        rootKey.setAccessible(true);
+        rootKey.set(null, "portalmanagement");
+    }
+
+    @Test
+    void apigConfig() throws Exception {
+        assertCompatible(
+                new APIGConfigConverter(),
+                APIGConfig.class,
+                JsonConverterTest::newApigConfig,
+                "LTAI5tAccessKey",
+                "apig-secret-key");
+    }
+
+    @Test
+    void apsaraGatewayConfig() throws Exception {
+        assertCompatible(
+                new ApsaraGatewayConfigConverter(),
+                ApsaraGatewayConfig.class,
+                JsonConverterTest::newApsaraGatewayConfig,
+                "apsara-access-key-secret",
+                "apsara-security-token");
+    }
+
+    @Test
+    void higressConfig() throws Exception {
+        assertCompatible(
+                new HigressConfigConverter(),
+                HigressConfig.class,
+                JsonConverterTest::newHigressConfig,
+                "higress-password");
+    }
+
+    @Test
+    void portalSettingConfig() throws Exception {
+        assertCompatible(
+                new PortalSettingConfigConverter(),
+                PortalSettingConfig.class,
+                JsonConverterTest::newPortalSettingConfig,
+                "search-engine-api-key");
+    }
+
+    @Test
+    void gatewayConfigWithNestedGateway() throws Exception {
+        assertCompatible(
+                new GatewayConfigConverter(),
+                GatewayConfig.class,
+                JsonConverterTest::newGatewayConfig,
+                "LTAI5tAccessKey",
+                "apig-secret-key",
+                "apsara-access-key-secret",
+                "apsara-security-token",
+                "higress-password");
+    }
+
+    /**
+     * Both converters write the same JSON, encrypted fields included, and each reads what the
+     * other wrote. Writing leaves the attribute as it was.
+     *
+     * @param current converter under test
+     * @param type    column type
+     * @param factory creates equal values of the column
+     * @param secrets plaintext of the encrypted fields of the value
+     */
+    private static <T> void assertCompatible(
+            JsonConverter<T> current, Class<T> type, Supplier<T> factory, String... secrets)
+            throws Exception {
+        LegacyJsonConverter<T> legacy = new LegacyJsonConverter<>(type, null);
+        T value = factory.get();
+
+        String legacyJson = legacy.convertToDatabaseColumn(value);
+        String json = current.convertToDatabaseColumn(value);
+
+        assertEquals(MAPPER.readTree(legacyJson), MAPPER.readTree(json), json);
+        for (String secret : secrets) {
+            assertFalse(json.contains(secret), "Plaintext in column: " + secret);
+        }
+        assertEquals(factory.get(), value, "Attribute changed by write");
+
+        assertEquals(value, current.convertToEntityAttribute(legacyJson));
+        assertEquals(value, legacy.convertToEntityAttribute(json));
+        assertEquals(value, current.convertToEntityAttribute(json));
+    }
+
+    private static APIGConfig newApigConfig() {
+        APIGConfig config = new APIGConfig();
+        config.setAccessKey("LTAI5tAccessKey");
+        config.setSecretKey("apig-secret-key");
+        config.setRegion("cn-hangzhou");
+        return config;
+    }
+
+    private static ApsaraGatewayConfig newApsaraGatewayConfig() {
+        ApsaraGatewayConfig config = new ApsaraGatewayConfig();
+        config.setRegionId("cn-hangzhou");
+        config.setAccessKeyId("apsara-access-key-id");
+        config.setAccessKeySecret("apsara-access-key-secret");
+        config.setSecurityToken("apsara-security-token");
+        config.setDomain("apsara.example.com");
+        config.setProduct("csb");
+        config.setVersion("2023-02-06");
+        config.setXAcsOrganizationId("org-1");
+        config.setXAcsRoleId("role-1");
+        return config;
+    }
+
+    private static HigressConfig newHigressConfig() {
+        HigressConfig config = new HigressConfig();
+        config.setAddress("http://higress-console:8080");
+        config.setUsername("admin");
+        config.setPassword("higress-password");
+        config.setGatewayAddress("http://higress-gateway");
+        return config;
+    }
+
+    private static PortalSettingConfig newPortalSettingConfig() {
+        SearchEngineConfig searchEngine = new SearchEngineConfig();
+        searchEngine.setEngineType(SearchEngineType.GOOGLE);
+        searchEngine.setEngineName("Google");
+        searchEngine.setApiKey("search-engine-api-key");
+        searchEngine.setExtraConfig(Map.of("cx", "017576662512468239146", "num", 10));
+
+        PortalSettingConfig config = new PortalSettingConfig();
+        config.setAutoApproveDevelopers(true);
+        config.setSearchEngineConfig(searchEngine);
+        return config;
+    }
+
+    private static GatewayConfig newGatewayConfig() {
+        Gateway gateway =
+                Gateway.builder()
+                        .gatewayId("gw-1")
+                        .gatewayName("gateway")
+                        .gatewayType(GatewayType.APIG_AI)
+                        .adminId("admin-1")
+                        .apigConfig(newApigConfig())
+                        .build();
+        // Stored as epoch milliseconds
+        gateway.setCreateAt(LocalDateTime.of(2025, 3, 1, 8, 30, 15, 123_000_000));
+
+        return GatewayConfig.builder()
+                .gatewayType(GatewayType.APIG_AI)
+                .apigConfig(newApigConfig())
+                .apsaraGatewayConfig(newApsaraGatewayConfig())
+                .higressConfig(newHigressConfig())
+                .gateway(gateway)
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest;
+
+import com.alibaba.himarket.loadtest.driver.ChatLoadDriver;
+import com.alibaba.himarket.loadtest.driver.LoadOptions;
+import com.alibaba.himarket.loadtest.driver.LoadReport;
+import com.alibaba.himarket.loadtest.mock.MockLlmOptions;
+import com.alibaba.himarket.loadtest.mock.MockLlmServer;
+import com.alibaba.himarket.loadtest.mock.MockMcpServer;
+import com.alibaba.himarket.loadtest.mock.MockMcpTool;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command line entry of the load test tools.
+ *
+ * <pre>
+ * mock-llm --port 18080 --ttfb-ms 200 --tokens-per-second 50 --tool-call-ratio 0.3
+ * mock-mcp --port 18081 --tools search,fetch --latency-ms 100
+ * drive --base-url http://localhost:8080 --token ... --session-id ... --product-id ... \
+ *     --concurrency 1,10,50
+ * </pre>
+ */
+public class LoadTestMain {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            System.exit(1);
+        }
+
+        Map<String, String> flags = parseFlags(Arrays.copyOfRange(args, 1, args.length));
+        switch (args[0]) {
+            case "mock-llm" -> runMockLlm(flags);
+            case "mock-mcp" -> runMockMcp(flags);
+            case "drive" -> System.exit(drive(flags));
+            default -> {
+                usage();
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void runMockLlm(Map<String, String> flags) throws Exception {
+        MockLlmOptions options =
+                MockLlmOptions.builder()
+                        .port(intFlag(flags, "port", 18080))
+                        .ttfbMs(intFlag(flags, "ttfb-ms", 200))
+                        .tokensPerSecond(intFlag(flags, "tokens-per-second", 50))
+                        .outputTokens(intFlag(flags, "output-tokens", 100))
+                        .toolCallRatio(doubleFlag(flags, "tool-call-ratio", 0))
+                        .toolCallsPerTurn(intFlag(flags, "tool-calls-per-turn", 1))
+                        .errorRatio(doubleFlag(flags, "error-ratio", 0))
+                        .abortRatio(doubleFlag(flags, "abort-ratio", 0))
+                        .build();
+        MockLlmServer server = new MockLlmServer(options).start();
+        awaitShutdown(server);
+    }
+
+    private static void runMockMcp(Map<String, String> flags) throws Exception {
+        long latencyMs = intFlag(flags, "latency-ms", 0);
+        String result = flags.getOrDefault("result", "ok");
+        List<MockMcpTool> tools =
+                listFlag(flags, "tools", List.of("echo")).stream()
+                        .map(
+                                name ->
+                                        MockMcpTool.builder()
+                                                .name(name)
+                                                .latencyMs(latencyMs)
+                                                .result(result)
+                                                .build())
+                        .toList();
+        MockMcpServer server = new MockMcpServer(intFlag(flags, "port", 18081), tools).start();
+        awaitShutdown(server);
+    }
+
+    private static int drive(Map<String, String> flags) throws Exception {
+        LoadOptions options =
+                LoadOptions.builder()
+                        .baseUrl(requiredFlag(flags, "base-url"))
+                        .token(requiredFlag(flags, "token"))
+                        .sessionId(requiredFlag(flags, "session-id"))
+                        .productId(requiredFlag(flags, "product-id"))
+                        .mcpProducts(listFlag(flags, "mcp-products", List.of()))
+                        .question(flags.getOrDefault("question", "Hello"))
+                        .concurrencyLevels(
+                                listFlag(flags, "concurrency", List.of("1", "10", "50")).stream()
+                                        .map(Integer::valueOf)
+                                        .toList())
+                        .requestsPerWorker(intFlag(flags, "requests-per-worker", 5))
+                        .timeoutSeconds(intFlag(flags, "timeout-seconds", 120))
+                        .sampleServerMetrics(
+                                Boolean.parseBoolean(flags.getOrDefault("sample-metrics", "true")))
+                        .metricsUrl(flags.get("metrics-url"))
+                        .build();
+
+        List<LoadReport> reports = new ChatLoadDriver(options).run();
+        reports.forEach(report -> System.out.println(report.toSummary()));
+        return reports.stream().anyMatch(report -> report.getFailedRequests() > 0) ? 2 : 0;
+    }
+
+    private static void awaitShutdown(AutoCloseable server) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    try {
+                                        server.close();
+                                    } catch (Exception ignored) {
+                                    }
+                                    latch.countDown();
+                                }));
+        latch.await();
+    }
+
+    private static Map<String, String> parseFlags(String[] args) {
+        Map<String, String> flags = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 >= args.length || args[i + 1].startsWith("--")) {
+                throw new IllegalArgumentException("Missing value of --" + name);
+            }
+            flags.put(name, args[++i]);
+        }
+        return flags;
+    }
+
+    private static String requiredFlag(Map<String, String> flags, String name) {
+        String value = flags.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required flag --" + name);
+        }
+        return value;
+    }
+
+    private static int intFlag(Map<String, String> flags, String name, int defaultValue) {
+        return flags.containsKey(name) ? Integer.parseInt(flags.get(name)) : defaultValue;
+    }
+
+    private static double doubleFlag(Map<String, String> flags, String name, double defaultValue) {
+        return flags.containsKey(name) ? Double.parseDouble(flags.get(name)) : defaultValue;
+    }
+
+    private static List<String> listFlag(
+            Map<String, String> flags, String name, List<String> defaultValue) {
+        String value = flags.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static void usage() {
+        System.err.println(
+                "Usage: LoadTestMain <mock-llm|mock-mcp|drive> [--flag value ...], see README.md");
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.driver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opens concurrent {@code POST /chats} SSE streams against a HiMarket server and measures them.
+ *
+ * <p>Each concurrency level starts that many workers at once, every worker sends its chats one
+ * after another. A chat counts as failed on a non-200 status, an error event or a stream that
+ * ends without a done event.
+ */
+@Slf4j
+public class ChatLoadDriver {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int MAX_REPORTED_ERRORS = 5;
+
+    private final LoadOptions options;
+
+    private final HttpClient httpClient;
+
+    public ChatLoadDriver(LoadOptions options) {
+        this.options = options;
+        this.httpClient =
+                HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .build();
+    }
+
+    /**
+     * Run all concurrency levels one after another
+     *
+     * @return report of each level
+     */
+    public List<LoadReport> run() throws InterruptedException {
+        List<LoadReport> reports = new ArrayList<>();
+        for (int concurrency : options.getConcurrencyLevels()) {
+            LoadReport report = runLevel(concurrency);
+            log.info("{}", report.toSummary());
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    /**
+     * Run one concurrency level
+     *
+     * @param concurrency concurrent streams
+     * @return report of the level
+     */
+    public LoadReport runLevel(int concurrency) throws InterruptedException {
+        List<ChatResult> results = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch startSignal = new CountDownLatch(1);
+
+        boolean sampling = options.isSampleServerMetrics() && options.getMetricsUrl() != null;
+        ServerMetricsSampler sampler =
+                new ServerMetricsSampler(
+                        httpClient, sampling ? URI.create(options.getMetricsUrl()) : null);
+        if (sampling) {
+            sampler.start();
+        }
+
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(
+                        () -> {
+                            try {
+                                startSignal.await();
+                                for (int j = 0; j < options.getRequestsPerWorker(); j++) {
+                                    results.add(chat());
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            }
+
+            long startTime = System.nanoTime();
+            startSignal.countDown();
+            workers.shutdown();
+            long maxWaitSeconds =
+                    (long) options.getTimeoutSeconds() * options.getRequestsPerWorker() + 60;
+            if (!workers.awaitTermination(maxWaitSeconds, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+            long wallNanos = System.nanoTime() - startTime;
+
+            return buildReport(concurrency, new ArrayList<>(results), wallNanos, sampler);
+        } finally {
+            workers.shutdownNow();
+            sampler.close();
+        }
+    }
+
+    private ChatResult chat() {
+        long startTime = System.nanoTime();
+        try {
+            HttpRequest request =
+                    HttpRequest.newBuilder(URI.create(options.getBaseUrl() + "/chats"))
+                            .timeout(Duration.ofSeconds(options.getTimeoutSeconds()))
+                            .header("Content-Type", "application/json")
+                            .header("Accept", "text/event-stream")
+                            .header("Authorization", "Bearer " + options.getToken())
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(buildBody()))
+                            .build();
+            HttpResponse<Stream<String>> response =
+                    httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() != 200) {
+                    return ChatResult.failed("HTTP " + response.statusCode());
+                }
+                return readEvents(lines.iterator(), startTime);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ChatResult.failed("Interrupted");
+        } catch (Exception e) {
+            return ChatResult.failed(e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private ChatResult readEvents(Iterator<String> lines, long startTime) throws Exception {
+        long ttfbNanos = -1;
+        int chunks = 0;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+
+            JsonNode event = MAPPER.readTree(line.substring("data:".length()).trim());
+            String type = event.path("type").asText();
+            if ("assistant".equalsIgnoreCase(type) || "thinking".equalsIgnoreCase(type)) {
+                if (ttfbNanos < 0) {
+                    ttfbNanos = System.nanoTime() - startTime;
+                }
+                chunks++;
+            } else if ("error".equalsIgnoreCase(type)) {
+                String error =
+                        event.path("error").asText("") + " " + event.path("message").asText("");
+                return ChatResult.failed(error.trim());
+            } else if ("done".equalsIgnoreCase(type)) {
+                // Usage may be missing, e.g. on a cached answer, fall back to chunk count
+                int outputTokens = event.path("usage").path("outputTokens").asInt(chunks);
+                return new ChatResult(
+                        true, ttfbNanos, System.nanoTime() - startTime, outputTokens, null);
+            }
+        }
+        return ChatResult.failed("Stream ended without done event");
+    }
+
+    private byte[] buildBody() throws Exception {
+        ObjectNode body =
+                MAPPER.createObjectNode()
+                        .put("sessionId", options.getSessionId())
+                        .put("conversationId", "conversation-" + UUID.randomUUID())
+                        .put("questionId", "question-" + UUID.randomUUID())
+                        .put("productId", options.getProductId())
+                        .put("question", options.getQuestion())
+                        .put("stream", true)
+                        .put("needMemory", false);
+        options.getMcpProducts().forEach(body.putArray("mcpProducts")::add);
+        return MAPPER.writeValueAsBytes(body);
+    }
+
+    private LoadReport buildReport(
+            int concurrency,
+            List<ChatResult> results,
+            long wallNanos,
+            ServerMetricsSampler sampler) {
+        List<Long> ttfbs = new ArrayList<>();
+        List<Long> latencies = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        long outputTokens = 0;
+        int failed = 0;
+        for (ChatResult result : results) {
+            if (!result.success()) {
+                failed++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(result.error());
+                }
+                continue;
+            }
+            if (result.ttfbNanos() >= 0) {
+                ttfbs.add(result.ttfbNanos());
+            }
+            latencies.add(result.latencyNanos());
+            outputTokens += result.outputTokens();
+        }
+
+        return LoadReport.builder()
+                .concurrency(concurrency)
+                .totalRequests(results.size())
+                .failedRequests(failed)
+                .ttfbP50Ms(percentileMillis(ttfbs, 0.50))
+                .ttfbP99Ms(percentileMillis(ttfbs, 0.99))
+                .latencyP50Ms(percentileMillis(latencies, 0.50))
+                .latencyP99Ms(percentileMillis(latencies, 0.99))
+                .tokensPerSecond(outputTokens / (wallNanos / 1e9))
+                .maxCpuUsage(sampler.getMaxCpuUsage())
+                .avgCpuUsage(sampler.getAvgCpuUsage())
+                .maxHeapBytes(sampler.getMaxHeapBytes())
+                .errors(errors)
+                .build();
+    }
+
+    private static double percentileMillis(List<Long> nanos, double percentile) {
+        if (nanos.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(nanos);
+        int index = (int) Math.ceil(percentile * nanos.size()) - 1;
+        return nanos.get(Math.max(0, index)) / 1e6;
+    }
+
+    /**
+     * Outcome of one chat
+     *
+     * @param success      whether the stream completed with a done event
+     * @param ttfbNanos    time to the first answer chunk, -1 if none arrived
+     * @param latencyNanos time to the done event
+     * @param outputTokens output tokens reported by the done event
+     * @param error        failure reason
+     */
+    private record ChatResult(
+            boolean success, long ttfbNanos, long latencyNanos, int outputTokens, String error) {
+
+        static ChatResult failed(String error) {
+            return new ChatResult(false, -1, -1, 0, error);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.driver;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Target and shape of a load run driven by {@link ChatLoadDriver}.
+ */
+@Data
+@Builder
+public class LoadOptions {
+
+    /**
+     * Base URL of the HiMarket server, e.g. http://localhost:8080
+     */
+    private String baseUrl;
+
+    /**
+     * Developer token sent as bearer token
+     */
+    private String token;
+
+    /**
+     * Chat session of the developer
+     */
+    private String sessionId;
+
+    /**
+     * Model product to chat with
+     */
+    private String productId;
+
+    /**
+     * MCP products offered as tools, may be empty
+     */
+    @Builder.Default private List<String> mcpProducts = List.of();
+
+    @Builder.Default private String question = "Tell me a short story about load testing.";
+
+    /**
+     * Concurrent streams of each step, run one after another
+     */
+    @Builder.Default private List<Integer> concurrencyLevels = List.of(1, 10, 50);
+
+    /**
+     * Chats sent one after another by each concurrent worker
+     */
+    @Builder.Default private int requestsPerWorker = 5;
+
+    /**
+     * Timeout of one chat in seconds
+     */
+    @Builder.Default private int timeoutSeconds = 120;
+
+    /**
+     * Whether to sample CPU and heap of the server from its Prometheus endpoint
+     */
+    @Builder.Default private boolean sampleServerMetrics = true;
+
+    /**
+     * Prometheus endpoint of the server, served on its management port, e.g.
+     * http://localhost:8081/actuator/prometheus. Server metrics are not sampled without it
+     */
+    private String metricsUrl;
+}
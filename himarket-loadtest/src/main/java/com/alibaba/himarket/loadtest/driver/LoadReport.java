@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.driver;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Result of one concurrency level of a load run.
+ */
+@Data
+@Builder
+public class LoadReport {
+
+    private int concurrency;
+
+    private int totalRequests;
+
+    private int failedRequests;
+
+    /**
+     * Time from sending the request to the first assistant or thinking event
+     */
+    private double ttfbP50Ms;
+
+    private double ttfbP99Ms;
+
+    /**
+     * Time from sending the request to the done event
+     */
+    private double latencyP50Ms;
+
+    private double latencyP99Ms;
+
+    /**
+     * Output tokens of all streams per second of wall time
+     */
+    private double tokensPerSecond;
+
+    /**
+     * Process CPU usage of the server in [0, 1], -1 if not sampled
+     */
+    private double maxCpuUsage;
+
+    private double avgCpuUsage;
+
+    /**
+     * Used heap of the server in bytes, -1 if not sampled
+     */
+    private long maxHeapBytes;
+
+    /**
+     * First few failure reasons
+     */
+    private List<String> errors;
+
+    public String toSummary() {
+        StringBuilder sb =
+                new StringBuilder()
+                        .append(
+                                String.format(
+                                        "concurrency=%d requests=%d failed=%d ttfb p50=%.0fms"
+                                                + " p99=%.0fms latency p50=%.0fms p99=%.0fms"
+                                                + " tokens/s=%.1f",
+                                        concurrency,
+                                        totalRequests,
+                                        failedRequests,
+                                        ttfbP50Ms,
+                                        ttfbP99Ms,
+                                        latencyP50Ms,
+                                        latencyP99Ms,
+                                        tokensPerSecond));
+        if (maxCpuUsage >= 0) {
+            sb.append(
+                    String.format(
+                            " cpu max=%.0f%% avg=%.0f%%", maxCpuUsage * 100, avgCpuUsage * 100));
+        }
+        if (maxHeapBytes >= 0) {
+            sb.append(String.format(" heap max=%dMB", maxHeapBytes / (1024 * 1024)));
+        }
+        if (errors != null && !errors.isEmpty()) {
+            sb.append(" errors=").append(errors);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.driver;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Samples CPU and heap usage of the server from its Prometheus endpoint once a second.
+ *
+ * <p>An unreachable endpoint only leaves the samples empty, the load run goes on.
+ */
+@Slf4j
+public class ServerMetricsSampler implements AutoCloseable {
+
+    private static final String CPU_METRIC = "process_cpu_usage";
+
+    private static final String MEMORY_METRIC = "jvm_memory_used_bytes";
+
+    private final HttpClient httpClient;
+
+    private final URI uri;
+
+    private final List<Double> cpuSamples = new ArrayList<>();
+
+    private final List<Long> heapSamples = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public ServerMetricsSampler(HttpClient httpClient, URI uri) {
+        this.httpClient = httpClient;
+        this.uri = uri;
+    }
+
+    public void start() {
+        scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread thread = new Thread(r, "metrics-sampler");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public synchronized double getMaxCpuUsage() {
+        return cpuSamples.stream().mapToDouble(Double::doubleValue).max().orElse(-1);
+    }
+
+    public synchronized double getAvgCpuUsage() {
+        return cpuSamples.stream().mapToDouble(Double::doubleValue).average().orElse(-1);
+    }
+
+    public synchronized long getMaxHeapBytes() {
+        return heapSamples.stream().mapToLong(Long::longValue).max().orElse(-1);
+    }
+
+    private void sample() {
+        try {
+            HttpRequest request =
+                    HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build();
+            HttpResponse<String> response =
+                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                log.debug("Metrics endpoint returned {}", response.statusCode());
+                return;
+            }
+            parse(response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Failed to sample server metrics: {}", e.getMessage());
+        }
+    }
+
+    private void parse(String exposition) {
+        Double cpu = null;
+        long heap = 0;
+        boolean heapFound = false;
+        for (String line : exposition.split("\n")) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith(CPU_METRIC + " ") || line.startsWith(CPU_METRIC + "{")) {
+                cpu = parseValue(line);
+            } else if (line.startsWith(MEMORY_METRIC + "{") && line.contains("area=\"heap\"")) {
+                // One series per heap pool
+                heap += parseValue(line).longValue();
+                heapFound = true;
+            }
+        }
+
+        synchronized (this) {
+            if (cpu != null) {
+                cpuSamples.add(cpu);
+            }
+            if (heapFound) {
+                heapSamples.add(heap);
+            }
+        }
+    }
+
+    private static Double parseValue(String line) {
+        String[] parts = line.trim().split("\\s+");
+        return Double.valueOf(parts[parts.length - 1]);
+    }
+}
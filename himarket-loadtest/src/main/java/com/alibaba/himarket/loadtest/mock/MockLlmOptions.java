@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.mock;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Behaviour of {@link MockLlmServer}.
+ */
+@Data
+@Builder
+public class MockLlmOptions {
+
+    /**
+     * Port to listen on, 0 for a random free port
+     */
+    @Builder.Default private int port = 0;
+
+    /**
+     * Delay in milliseconds before the first chunk is written
+     */
+    @Builder.Default private long ttfbMs = 200;
+
+    /**
+     * Output tokens per second of one stream, 0 to write all tokens at once
+     */
+    @Builder.Default private int tokensPerSecond = 50;
+
+    /**
+     * Output tokens of one answer, each token is written as its own chunk
+     */
+    @Builder.Default private int outputTokens = 100;
+
+    /**
+     * Probability in [0, 1] that a turn offering tools answers with tool calls instead of text
+     */
+    @Builder.Default private double toolCallRatio = 0;
+
+    /**
+     * Tool calls emitted in one assistant turn, spread over the offered tools
+     */
+    @Builder.Default private int toolCallsPerTurn = 1;
+
+    /**
+     * Probability in [0, 1] that a request fails with HTTP 500 before streaming
+     */
+    @Builder.Default private double errorRatio = 0;
+
+    /**
+     * Probability in [0, 1] that a stream is cut off halfway without a final chunk
+     */
+    @Builder.Default private double abortRatio = 0;
+}
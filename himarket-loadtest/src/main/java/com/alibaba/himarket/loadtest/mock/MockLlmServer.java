@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming chat completion endpoint standing in for a model behind the gateway.
+ *
+ * <p>Requests to a path ending with {@code /chat/completions} are answered in the OpenAI
+ * streaming format, those ending with {@code /generation} in the DashScope SSE format. The answer
+ * is made of {@link MockLlmOptions#getOutputTokens()} one-word chunks written at the configured
+ * rate after the configured time to first byte. When the request offers tools, a turn may answer
+ * with tool calls instead, and the turn after the tool results answers with text. Errors and cut
+ * off streams are injected at the configured ratios.
+ */
+@Slf4j
+public class MockLlmServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "a", "lazy", "dog", "while", "streaming"
+    };
+
+    private final MockLlmOptions options;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong toolCallTurnCount = new AtomicLong();
+
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+
+    public MockLlmServer(MockLlmOptions options) throws IOException {
+        this.options = options;
+        this.server =
+                HttpServer.create(new InetSocketAddress("127.0.0.1", options.getPort()), 1024);
+        // One thread per open stream, like a real upstream holding connections
+        this.executor =
+                Executors.newCachedThreadPool(
+                        r -> {
+                            Thread thread = new Thread(r, "mock-llm");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public MockLlmServer start() {
+        server.start();
+        log.info("Mock LLM listening on {}", getBaseUrl());
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getToolCallTurnCount() {
+        return toolCallTurnCount.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            boolean dashScope;
+            if (path.endsWith("/chat/completions")) {
+                dashScope = false;
+            } else if (path.endsWith("/generation")) {
+                dashScope = true;
+            } else {
+                sendError(exchange, 404, "Unknown path: " + path);
+                return;
+            }
+
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            requestCount.incrementAndGet();
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < options.getErrorRatio()) {
+                injectedErrorCount.incrementAndGet();
+                sendError(exchange, 500, "Injected error");
+                return;
+            }
+
+            Turn turn = planTurn(request, dashScope, random);
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            // Length 0 selects chunked encoding
+            exchange.sendResponseHeaders(200, 0);
+
+            OutputStream out = exchange.getResponseBody();
+            sleepMillis(options.getTtfbMs());
+            if (dashScope) {
+                streamDashScope(out, turn, random);
+            } else {
+                streamOpenAi(out, turn, random);
+            }
+        } catch (IOException e) {
+            // Client went away, nothing to clean up besides the exchange
+            log.debug("Mock LLM stream closed: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Turn planTurn(JsonNode request, boolean dashScope, ThreadLocalRandom random) {
+        JsonNode messages =
+                dashScope ? request.path("input").path("messages") : request.path("messages");
+        JsonNode tools =
+                dashScope ? request.path("parameters").path("tools") : request.path("tools");
+        String model = request.path("model").asText("mock-model");
+
+        int inputChars = 0;
+        String lastRole = null;
+        for (JsonNode message : messages) {
+            inputChars += message.path("content").toString().length();
+            lastRole = message.path("role").asText(null);
+        }
+
+        List<String> toolNames = new ArrayList<>();
+        for (JsonNode tool : tools) {
+            toolNames.add(tool.path("function").path("name").asText());
+        }
+
+        // Answer with text once tool results are in, so a chat never loops forever
+        boolean callTools =
+                !toolNames.isEmpty()
+                        && !"tool".equals(lastRole)
+                        && random.nextDouble() < options.getToolCallRatio();
+        if (callTools) {
+            toolCallTurnCount.incrementAndGet();
+        }
+        return new Turn(
+                "mock-" + UUID.randomUUID(),
+                model,
+                Math.max(1, inputChars / 4),
+                callTools ? toolNames : List.of());
+    }
+
+    private void streamOpenAi(OutputStream out, Turn turn, ThreadLocalRandom random)
+            throws IOException {
+        if (turn.isToolCall()) {
+            ObjectNode delta = MAPPER.createObjectNode().put("role", "assistant");
+            delta.set("tool_calls", buildToolCalls(turn, true));
+            writeData(out, openAiChunk(turn, delta, null));
+            ObjectNode finish = openAiChunk(turn, MAPPER.createObjectNode(), "tool_calls");
+            writeData(out, withUsage(finish, turn, 1));
+            writeData(out, "[DONE]");
+            return;
+        }
+
+        int tokens = options.getOutputTokens();
+        boolean abort = random.nextDouble() < options.getAbortRatio();
+        for (int i = 0; i < tokens; i++) {
+            if (abort && i == tokens / 2) {
+                injectedErrorCount.incrementAndGet();
+                return;
+            }
+            ObjectNode delta = MAPPER.createObjectNode();
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            delta.put("content", word(i));
+            writeData(out, openAiChunk(turn, delta, null));
+            pace();
+        }
+        ObjectNode finish = openAiChunk(turn, MAPPER.createObjectNode(), "stop");
+        writeData(out, withUsage(finish, turn, tokens));
+        writeData(out, "[DONE]");
+    }
+
+    private void streamDashScope(OutputStream out, Turn turn, ThreadLocalRandom random)
+            throws IOException {
+        if (turn.isToolCall()) {
+            ObjectNode message =
+                    MAPPER.createObjectNode().put("role", "assistant").put("content", "");
+            message.set("tool_calls", buildToolCalls(turn, false));
+            writeDashScopeEvent(out, 1, dashScopeChunk(turn, message, "tool_calls", 1));
+            return;
+        }
+
+        int tokens = options.getOutputTokens();
+        boolean abort = random.nextDouble() < options.getAbortRatio();
+        for (int i = 0; i < tokens; i++) {
+            if (abort && i == tokens / 2) {
+                injectedErrorCount.incrementAndGet();
+                return;
+            }
+            ObjectNode message =
+                    MAPPER.createObjectNode().put("role", "assistant").put("content", word(i));
+            writeDashScopeEvent(out, i + 1, dashScopeChunk(turn, message, "null", i + 1));
+            pace();
+        }
+        ObjectNode message = MAPPER.createObjectNode().put("role", "assistant").put("content", "");
+        writeDashScopeEvent(out, tokens + 1, dashScopeChunk(turn, message, "stop", tokens));
+    }
+
+    private ArrayNode buildToolCalls(Turn turn, boolean withIndex) {
+        ArrayNode toolCalls = MAPPER.createArrayNode();
+        for (int i = 0; i < options.getToolCallsPerTurn(); i++) {
+            String name = turn.toolNames().get(i % turn.toolNames().size());
+            ObjectNode toolCall = toolCalls.addObject();
+            if (withIndex) {
+                toolCall.put("index", i);
+            }
+            toolCall.put("id", "call_" + UUID.randomUUID().toString().replace("-", ""))
+                    .put("type", "function");
+            toolCall.putObject("function")
+                    .put("name", name)
+                    .put("arguments", "{\"text\":\"load test " + i + "\"}");
+        }
+        return toolCalls;
+    }
+
+    private ObjectNode openAiChunk(Turn turn, ObjectNode delta, String finishReason) {
+        ObjectNode chunk =
+                MAPPER.createObjectNode()
+                        .put("id", turn.id())
+                        .put("object", "chat.completion.chunk")
+                        .put("created", System.currentTimeMillis() / 1000)
+                        .put("model", turn.model());
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason == null) {
+            choice.putNull("finish_reason");
+        } else {
+            choice.put("finish_reason", finishReason);
+        }
+        return chunk;
+    }
+
+    private ObjectNode withUsage(ObjectNode chunk, Turn turn, int outputTokens) {
+        chunk.putObject("usage")
+                .put("prompt_tokens", turn.inputTokens())
+                .put("completion_tokens", outputTokens)
+                .put("total_tokens", turn.inputTokens() + outputTokens);
+        return chunk;
+    }
+
+    private ObjectNode dashScopeChunk(
+            Turn turn, ObjectNode message, String finishReason, int outputTokens) {
+        ObjectNode chunk = MAPPER.createObjectNode();
+        ObjectNode choice = chunk.putObject("output").putArray("choices").addObject();
+        choice.set("message", message);
+        choice.put("finish_reason", finishReason);
+        chunk.putObject("usage")
+                .put("input_tokens", turn.inputTokens())
+                .put("output_tokens", outputTokens)
+                .put("total_tokens", turn.inputTokens() + outputTokens);
+        chunk.put("request_id", turn.id());
+        return chunk;
+    }
+
+    private void writeData(OutputStream out, Object data) throws IOException {
+        String payload = data instanceof String s ? s : MAPPER.writeValueAsString(data);
+        out.write(("data: " + payload + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void writeDashScopeEvent(OutputStream out, int id, ObjectNode data) throws IOException {
+        String event =
+                "id:"
+                        + id
+                        + "\nevent:result\n:HTTP_STATUS/200\ndata:"
+                        + MAPPER.writeValueAsString(data)
+                        + "\n\n";
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.putObject("error").put("message", message).put("type", "mock_error");
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void pace() {
+        if (options.getTokensPerSecond() > 0) {
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1) / options.getTokensPerSecond());
+        }
+    }
+
+    private static void sleepMillis(long millis) {
+        if (millis > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private static String word(int index) {
+        return WORDS[index % WORDS.length] + " ";
+    }
+
+    /**
+     * Plan of one response
+     *
+     * @param id          response ID
+     * @param model       model name echoed back
+     * @param inputTokens estimated prompt tokens
+     * @param toolNames   tools to call, empty to answer with text
+     */
+    private record Turn(String id, String model, int inputTokens, List<String> toolNames) {
+
+        boolean isToolCall() {
+            return !toolNames.isEmpty();
+        }
+    }
+}
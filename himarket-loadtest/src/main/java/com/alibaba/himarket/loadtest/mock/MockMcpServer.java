@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MCP server with scripted tools, speaking both transports HiChat connects with.
+ *
+ * <ul>
+ *   <li>SSE: {@code GET /sse} opens the event stream and announces {@code /message} as the
+ *       endpoint, requests posted there are answered on the stream.
+ *   <li>Streamable HTTP: requests posted to {@code /mcp} are answered with a JSON body, the
+ *       session ID is issued on {@code initialize}.
+ * </ul>
+ *
+ * <p>Only the lifecycle, {@code ping}, {@code tools/list} and {@code tools/call} methods are
+ * implemented, which is what a chat needs.
+ */
+@Slf4j
+public class MockMcpServer implements AutoCloseable {
+
+    public static final String SSE_PATH = "/sse";
+
+    public static final String MESSAGE_PATH = "/message";
+
+    public static final String STREAMABLE_PATH = "/mcp";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String SESSION_HEADER = "Mcp-Session-Id";
+
+    private static final String DEFAULT_PROTOCOL_VERSION = "2024-11-05";
+
+    private final Map<String, MockMcpTool> tools = new LinkedHashMap<>();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    /**
+     * Pending events of open SSE streams, keyed by session ID
+     */
+    private final Map<String, BlockingQueue<String>> sseSessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong toolCallCount = new AtomicLong();
+
+    private volatile boolean running;
+
+    public MockMcpServer(int port, List<MockMcpTool> tools) throws IOException {
+        tools.forEach(tool -> this.tools.put(tool.getName(), tool));
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.executor =
+                Executors.newCachedThreadPool(
+                        r -> {
+                            Thread thread = new Thread(r, "mock-mcp");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        server.setExecutor(executor);
+        server.createContext(SSE_PATH, this::handleSse);
+        server.createContext(MESSAGE_PATH, this::handleMessage);
+        server.createContext(STREAMABLE_PATH, this::handleStreamable);
+    }
+
+    public MockMcpServer start() {
+        running = true;
+        server.start();
+        log.info("Mock MCP server listening on {}, tools: {}", getBaseUrl(), tools.keySet());
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort();
+    }
+
+    public long getToolCallCount() {
+        return toolCallCount.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleSse(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendStatus(exchange, 405);
+            return;
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        sseSessions.put(sessionId, queue);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+
+            OutputStream out = exchange.getResponseBody();
+            writeEvent(out, "endpoint", MESSAGE_PATH + "?sessionId=" + sessionId);
+            while (running) {
+                String data = queue.poll(15, TimeUnit.SECONDS);
+                if (data == null) {
+                    // Comment line, fails once the client is gone
+                    out.write(": keepalive\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } else {
+                    writeEvent(out, "message", data);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("SSE session {} closed: {}", sessionId, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sseSessions.remove(sessionId);
+            exchange.close();
+        }
+    }
+
+    private void handleMessage(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendStatus(exchange, 405);
+                return;
+            }
+
+            BlockingQueue<String> queue = sseSessions.get(getSessionId(exchange));
+            if (queue == null) {
+                sendStatus(exchange, 404);
+                return;
+            }
+
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            // Accept first, the answer goes to the SSE stream
+            sendStatus(exchange, 202);
+            JsonNode response = dispatch(request);
+            if (response != null) {
+                queue.offer(MAPPER.writeValueAsString(response));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStreamable(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if ("DELETE".equalsIgnoreCase(method)) {
+                sendStatus(exchange, 200);
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(method)) {
+                // No server initiated stream
+                sendStatus(exchange, 405);
+                return;
+            }
+
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            JsonNode response = dispatch(request);
+            if (response == null) {
+                sendStatus(exchange, 202);
+                return;
+            }
+
+            if ("initialize".equals(request.path("method").asText())) {
+                exchange.getResponseHeaders().set(SESSION_HEADER, UUID.randomUUID().toString());
+            }
+            byte[] body = MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handle one JSON-RPC message
+     *
+     * @param request JSON-RPC request or notification
+     * @return JSON-RPC response, null for notifications and responses
+     */
+    private JsonNode dispatch(JsonNode request) {
+        JsonNode id = request.get("id");
+        if (id == null || id.isNull() || !request.has("method")) {
+            return null;
+        }
+
+        ObjectNode response = MAPPER.createObjectNode().put("jsonrpc", "2.0");
+        response.set("id", id);
+
+        String method = request.path("method").asText();
+        JsonNode params = request.path("params");
+        switch (method) {
+            case "initialize" -> response.set("result", initialize(params));
+            case "ping" -> response.putObject("result");
+            case "tools/list" -> response.set("result", listTools());
+            case "tools/call" -> response.set("result", callTool(params));
+            default ->
+                    response.putObject("error")
+                            .put("code", -32601)
+                            .put("message", "Method not found: " + method);
+        }
+        return response;
+    }
+
+    private ObjectNode initialize(JsonNode params) {
+        ObjectNode result =
+                MAPPER.createObjectNode()
+                        .put(
+                                "protocolVersion",
+                                params.path("protocolVersion").asText(DEFAULT_PROTOCOL_VERSION));
+        result.putObject("capabilities").putObject("tools").put("listChanged", false);
+        result.putObject("serverInfo").put("name", "mock-mcp").put("version", "1.0.0");
+        return result;
+    }
+
+    private ObjectNode listTools() {
+        ObjectNode result = MAPPER.createObjectNode();
+        ArrayNode array = result.putArray("tools");
+        for (MockMcpTool tool : tools.values()) {
+            ObjectNode node =
+                    array.addObject()
+                            .put("name", tool.getName())
+                            .put("description", tool.getDescription());
+            ObjectNode schema = node.putObject("inputSchema").put("type", "object");
+            schema.putObject("properties")
+                    .putObject("text")
+                    .put("type", "string")
+                    .put("description", "Free text echoed to the tool");
+        }
+        return result;
+    }
+
+    private ObjectNode callTool(JsonNode params) {
+        toolCallCount.incrementAndGet();
+        MockMcpTool tool = tools.get(params.path("name").asText());
+
+        ObjectNode result = MAPPER.createObjectNode();
+        if (tool == null) {
+            result.putArray("content")
+                    .addObject()
+                    .put("type", "text")
+                    .put("text", "Unknown tool: " + params.path("name").asText());
+            result.put("isError", true);
+            return result;
+        }
+
+        if (tool.getLatencyMs() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tool.getLatencyMs()));
+        }
+        result.putArray("content").addObject().put("type", "text").put("text", tool.getResult());
+        result.put("isError", false);
+        return result;
+    }
+
+    private static String getSessionId(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return "";
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("sessionId=")) {
+                return pair.substring("sessionId=".length());
+            }
+        }
+        return "";
+    }
+
+    private static void writeEvent(OutputStream out, String event, String data)
+            throws IOException {
+        String payload = "event: " + event + "\ndata: " + data + "\n\n";
+        out.write(payload.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+}
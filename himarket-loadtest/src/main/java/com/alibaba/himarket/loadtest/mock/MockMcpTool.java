@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.loadtest.mock;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Tool served by {@link MockMcpServer}.
+ *
+ * <p>Every tool takes an optional {@code text} argument and answers with a fixed result after
+ * the configured latency.
+ */
+@Data
+@Builder
+public class MockMcpTool {
+
+    private String name;
+
+    @Builder.Default private String description = "Mock tool for load tests";
+
+    /**
+     * Delay in milliseconds before a call returns
+     */
+    @Builder.Default private long latencyMs = 0;
+
+    /**
+     * Text content returned by every call
+     */
+    @Builder.Default private String result = "ok";
+}
@@ -0,0 +1,412 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hichat")
+public class HiChatProperties {
+
+    /**
+     * Attachment storage
+     */
+    private AttachmentProperties attachment = new AttachmentProperties();
+
+    /**
+     * Prompt context
+     */
+    private ContextProperties context = new ContextProperties();
+
+    /**
+     * Chat result persistence
+     */
+    private PersistenceProperties persistence = new PersistenceProperties();
+
+    /**
+     * MCP servers used by chats
+     */
+    private McpProperties mcp = new McpProperties();
+
+    /**
+     * Warm-up of MCP clients when a session is created
+     */
+    private PrewarmProperties prewarm = new PrewarmProperties();
+
+    /**
+     * Event streaming to clients
+     */
+    private StreamProperties stream = new StreamProperties();
+
+    /**
+     * Admission control of concurrent chats
+     */
+    private AdmissionProperties admission = new AdmissionProperties();
+
+    /**
+     * Model clients shared across requests
+     */
+    private ModelProperties model = new ModelProperties();
+
+    /**
+     * Agent memory shared across nodes
+     */
+    private MemoryProperties memory = new MemoryProperties();
+
+    /**
+     * Response cache of deterministic products
+     */
+    private ResponseCacheProperties responseCache = new ResponseCacheProperties();
+
+    /**
+     * Chat table partitioning and cold archive configuration
+     */
+    private StorageProperties storage = new StorageProperties();
+
+    /**
+     * Per-developer cache of consumer, credential and product lookups done on every chat turn
+     */
+    private RequestContextProperties requestContext = new RequestContextProperties();
+
+    /**
+     * Compare mode, one question answered by several model products at once
+     */
+    private CompareProperties compare = new CompareProperties();
+
+    @Data
+    public static class AttachmentProperties {
+
+        /**
+         * Attachment store type, only local is supported for now
+         */
+        private String store = "local";
+
+        /**
+         * Root directory of the local attachment store, must be shared storage when running
+         * multiple replicas
+         */
+        private String localPath = System.getProperty("user.home") + "/.himarket/attachments";
+
+        /**
+         * Files larger than this are memory-mapped instead of read into heap
+         */
+        private long mmapThreshold = 256 * 1024;
+
+        /**
+         * Max bytes of Base64 encoded media content kept in memory
+         */
+        private long mediaCacheMaxBytes = 128 * 1024 * 1024;
+
+        /**
+         * Move legacy attachment data from database to the store at startup
+         */
+        private boolean migrateOnStartup = true;
+    }
+
+    @Data
+    public static class ContextProperties {
+
+        /**
+         * Token budget of the prompt context, used when the product does not set one
+         */
+        private int defaultTokenBudget = 8000;
+
+        /**
+         * Max conversations per product kept in memory as history candidates
+         */
+        private int maxHistoryConversations = 50;
+    }
+
+    @Data
+    public static class PersistenceProperties {
+
+        /**
+         * Max results written in one JDBC batch
+         */
+        private int batchSize = 50;
+
+        /**
+         * Flush interval of pending results in milliseconds
+         */
+        private long flushIntervalMs = 200;
+
+        /**
+         * Pending results above which callers wait for the writer to make room
+         */
+        private int maxPending = 10000;
+    }
+
+    @Data
+    public static class McpProperties {
+
+        /**
+         * Age in seconds after which cached tool schemas are revalidated in the background
+         */
+        private long toolSchemaRefreshSeconds = 600;
+
+        /**
+         * Max concurrent in-flight tool calls per upstream MCP endpoint, 0 for unlimited
+         */
+        private int maxInFlightCallsPerEndpoint = 64;
+
+        /**
+         * Max time in milliseconds a tool call waits for an in-flight slot
+         */
+        private long inFlightWaitMs = 10000;
+
+        /**
+         * Whether independent tool calls of one reasoning step run concurrently
+         */
+        private boolean parallelToolCalls = true;
+
+        /**
+         * Max tool calls of one chat running at the same time
+         */
+        private int maxParallelToolCallsPerChat = 4;
+
+        /**
+         * Timeout in milliseconds of a single tool call, including the wait for a chat slot
+         */
+        private long toolCallTimeoutMs = 60000;
+
+        /**
+         * Tool results with more text than this are spilled to the attachment store and replaced
+         * by a preview, 0 to keep results whole
+         */
+        private int maxToolResultChars = 16000;
+
+        /**
+         * Characters of a spilled tool result kept as preview for the model and the chat record
+         */
+        private int toolResultPreviewChars = 4000;
+
+        /**
+         * URL prefixes of MCP servers that do not authenticate developers. One transport per
+         * endpoint is shared by all developers and no developer credentials are sent
+         */
+        private List<String> sharedTransportUrls = new ArrayList<>();
+    }
+
+    @Data
+    public static class PrewarmProperties {
+
+        /**
+         * Whether to warm MCP clients of subscribed MCP products when a session is created
+         */
+        private boolean enabled = true;
+
+        /**
+         * Max MCP clients being warmed at the same time across all sessions, warm-ups over the
+         * budget are skipped
+         */
+        private int maxConcurrent = 20;
+
+        /**
+         * Max MCP servers warmed for one session
+         */
+        private int maxMcpPerSession = 10;
+    }
+
+    @Data
+    public static class StreamProperties {
+
+        /**
+         * Window in milliseconds within which consecutive text/thinking chunks are merged into
+         * one SSE frame, 0 to send every chunk as is
+         */
+        private long coalesceWindowMs = 30;
+
+        /**
+         * Max chunks merged into one SSE frame
+         */
+        private int coalesceMaxChunks = 64;
+
+        /**
+         * Number of latest events buffered per chat for clients resuming with Last-Event-ID
+         */
+        private int journalSize = 2048;
+
+        /**
+         * Seconds a chat's event buffer is kept after the chat is done
+         */
+        private long journalTtlSeconds = 300;
+
+        /**
+         * Seconds generation keeps running after the last client disconnected, waiting for a
+         * client to resume, before it is cancelled
+         */
+        private long detachedGraceSeconds = 30;
+    }
+
+    @Data
+    public static class AdmissionProperties {
+
+        /**
+         * Whether to limit concurrent chats
+         */
+        private boolean enabled = true;
+
+        /**
+         * Max concurrent chats across all users
+         */
+        private int maxConcurrent = 500;
+
+        /**
+         * Max concurrent chats of one user
+         */
+        private int maxConcurrentPerUser = 5;
+
+        /**
+         * Max concurrent chats of one model product
+         */
+        private int maxConcurrentPerProduct = 200;
+
+        /**
+         * Max requests waiting for a slot, further requests are rejected immediately
+         */
+        private int maxQueued = 200;
+
+        /**
+         * Max milliseconds a request waits for a slot before it is rejected
+         */
+        private long maxWaitMs = 3000;
+
+        /**
+         * Number of semaphore stripes that per-user and per-product limits are hashed into
+         */
+        private int stripes = 1024;
+    }
+
+    @Data
+    public static class ModelProperties {
+
+        /**
+         * Seconds a model client may stay unused before it is evicted
+         */
+        private long clientIdleSeconds = 1800;
+    }
+
+    @Data
+    public static class MemoryProperties {
+
+        /**
+         * Memory store, jdbc to share memory across nodes or local for a single node
+         */
+        private String store = "jdbc";
+
+        /**
+         * Max messages kept per session and model product
+         */
+        private int maxMessages = 60;
+
+        /**
+         * Max characters of a stored message, larger messages are kept locally only. The default
+         * fits a mediumtext column with 4-byte characters.
+         */
+        private int maxMessageChars = 4_000_000;
+    }
+
+    @Data
+    public static class ResponseCacheProperties {
+
+        /**
+         * Whether products may enable the response cache
+         */
+        private boolean enabled = true;
+
+        /**
+         * Max responses cached per product if the product sets no budget
+         */
+        private int defaultMaxEntries = 1000;
+
+        /**
+         * Characters per chunk when replaying a cached answer
+         */
+        private int replayChunkChars = 16;
+
+        /**
+         * Milliseconds between chunks when replaying a cached answer, 0 to send at once
+         */
+        private long replayIntervalMs = 10;
+    }
+
+    @Data
+    public static class StorageProperties {
+
+        /**
+         * Whether monthly partitions of the chat table are created ahead of time
+         */
+        private boolean partitionMaintenance = true;
+
+        /**
+         * Months of chat partitions kept ahead of the current month
+         */
+        private int partitionAheadMonths = 3;
+
+        /**
+         * Whether old chats are moved to the chat_archive table, MySQL only. Reads always include
+         * it
+         */
+        private boolean archiveEnabled = false;
+
+        /**
+         * Age in days after which chats are archived
+         */
+        private int archiveAfterDays = 180;
+
+        /**
+         * Chats moved per archive transaction
+         */
+        private int archiveBatchSize = 1000;
+
+        /**
+         * Max archive transactions per run, to spread the load of a large backlog
+         */
+        private int archiveMaxBatchesPerRun = 100;
+    }
+
+    @Data
+    public static class RequestContextProperties {
+
+        /**
+         * Whether request contexts are cached, lookups hit the database on every turn otherwise
+         */
+        private boolean enabled = true;
+
+        /**
+         * Minutes a cached context is kept, as a safety net for changes that publish no event
+         */
+        private long ttlMinutes = 5;
+    }
+
+    @Data
+    public static class CompareProperties {
+
+        /**
+         * Maximum number of products in one compare request, each also takes an admission slot
+         * of the user, so keep it within admission.max-concurrent-per-user
+         */
+        private int maxProducts = 4;
+    }
+}
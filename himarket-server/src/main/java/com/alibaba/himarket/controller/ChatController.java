@@ -21,18 +21,25 @@ package com.alibaba.himarket.controller;
 
 import com.alibaba.himarket.core.annotation.AdminOrDeveloperAuth;
 import com.alibaba.himarket.dto.params.chat.CreateChatParam;
+import com.alibaba.himarket.dto.params.chat.CreateCompareChatParam;
+import com.alibaba.himarket.dto.result.chat.ToolResultContentResult;
 import com.alibaba.himarket.service.hichat.service.ChatService;
+import com.alibaba.himarket.service.hichat.support.ChatStreamEvent;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/chats")
@@ -46,16 +53,43 @@ public class ChatController {
 
     @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter chat(@Valid @RequestBody CreateChatParam param) {
+        // Only session checks run on the request thread, waiting for an admission slot and
+        // preparation run on a worker, a rejection arrives as an error event
+        return toEmitter(chatService.chat(param));
+    }
+
+    @PostMapping(value = "/compare", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter compare(@Valid @RequestBody CreateCompareChatParam param) {
+        // Events of all products share one stream, tagged with their product ID
+        return toEmitter(chatService.compare(param));
+    }
+
+    @GetMapping(value = "/{chatId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter resume(
+            @PathVariable String chatId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return toEmitter(chatService.resume(chatId, lastEventId));
+    }
+
+    @GetMapping("/{chatId}/tool-results/{resultKey}")
+    public ToolResultContentResult getToolResult(
+            @PathVariable String chatId, @PathVariable String resultKey) {
+        return chatService.getToolResult(chatId, resultKey);
+    }
+
+    private SseEmitter toEmitter(Flux<ChatStreamEvent> events) {
         // Use SseEmitter for streaming
         SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
 
-        chatService
-                .chat(param)
-                .subscribeOn(Schedulers.boundedElastic())
-                .subscribe(
+        Disposable subscription =
+                events.subscribe(
                         event -> {
                             try {
-                                emitter.send(event);
+                                SseEmitter.SseEventBuilder sse = SseEmitter.event();
+                                if (event.id() != ChatStreamEvent.NO_ID) {
+                                    sse.id(String.valueOf(event.id()));
+                                }
+                                emitter.send(sse.data(event.event()));
                             } catch (Exception e) {
                                 log.error("Failed to send event", e);
                                 emitter.completeWithError(e);
@@ -64,6 +98,12 @@ public class ChatController {
                         emitter::completeWithError,
                         emitter::complete);
 
+        // Stop following the stream once the client is gone, generation is cancelled if the
+        // client does not resume in time
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+
         return emitter;
     }
 }
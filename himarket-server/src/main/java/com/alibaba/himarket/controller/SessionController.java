@@ -24,7 +24,9 @@ import com.alibaba.himarket.dto.params.chat.CreateChatSessionParam;
 import com.alibaba.himarket.dto.params.chat.UpdateChatSessionParam;
 import com.alibaba.himarket.dto.result.chat.ChatSessionResult;
 import com.alibaba.himarket.dto.result.chat.ConversationResult_V1;
+import com.alibaba.himarket.dto.result.chat.ConversationSummaryResult;
 import com.alibaba.himarket.dto.result.chat.ProductConversationResult;
+import com.alibaba.himarket.dto.result.common.CursorPageResult;
 import com.alibaba.himarket.dto.result.common.PageResult;
 import com.alibaba.himarket.service.ChatSessionService;
 import jakarta.validation.Valid;
@@ -77,4 +79,19 @@ public class SessionController {
             @PathVariable @NotBlank String sessionId) {
         return sessionService.listConversationsV2(sessionId);
     }
+
+    @GetMapping("/{sessionId}/conversations/summaries")
+    public CursorPageResult<ConversationSummaryResult> listConversationSummaries(
+            @PathVariable @NotBlank String sessionId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return sessionService.listConversationSummaries(sessionId, cursor, size);
+    }
+
+    @GetMapping("/{sessionId}/conversations/{conversationId}")
+    public List<ProductConversationResult> getConversation(
+            @PathVariable @NotBlank String sessionId,
+            @PathVariable @NotBlank String conversationId) {
+        return sessionService.getConversation(sessionId, conversationId);
+    }
 }
@@ -63,6 +63,10 @@ public class Resources {
 
     public static final String CHAT_SESSION = "ChatSession";
 
+    public static final String CHAT = "Chat";
+
+    public static final String TOOL_RESULT = "ToolResult";
+
     public static final String AGENT_SPEC = "AgentSpec";
 
     public static final String SKILL = "Skill";
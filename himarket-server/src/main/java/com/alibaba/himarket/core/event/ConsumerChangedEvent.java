@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.core.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a consumer, its credential or its subscriptions change.
+ */
+@Getter
+public class ConsumerChangedEvent extends ApplicationEvent {
+
+    private final String consumerId;
+
+    /**
+     * Owner of the consumer, null if not known to the publisher
+     */
+    private final String developerId;
+
+    public ConsumerChangedEvent(String consumerId) {
+        this(consumerId, null);
+    }
+
+    public ConsumerChangedEvent(String consumerId, String developerId) {
+        super(consumerId);
+        this.consumerId = consumerId;
+        this.developerId = developerId;
+    }
+}
@@ -22,11 +22,13 @@ package com.alibaba.himarket.core.security;
 import cn.hutool.core.util.EnumUtil;
 import com.alibaba.himarket.core.constant.CommonConstants;
 import com.alibaba.himarket.support.enums.UserType;
+import java.util.concurrent.Callable;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
@@ -47,6 +49,29 @@ public class ContextHolder {
         portalContext.remove();
     }
 
+    /**
+     * Wrap a task so that it runs with the security and portal context of the calling thread,
+     * e.g. when it is executed on a worker thread
+     *
+     * @param task task to wrap
+     * @return task restoring the captured context around its execution
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        String portalId = getPortal();
+
+        return () -> {
+            SecurityContextHolder.setContext(securityContext);
+            savePortal(portalId);
+            try {
+                return task.call();
+            } finally {
+                SecurityContextHolder.clearContext();
+                clearPortal();
+            }
+        };
+    }
+
     /**
      * Get current authenticated user ID
      *
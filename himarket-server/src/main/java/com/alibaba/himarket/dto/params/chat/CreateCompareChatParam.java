@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.alibaba.himarket.dto.params.chat;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.alibaba.himarket.support.chat.attachment.ChatAttachmentConfig;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * One question sent to several model products of a session at once
+ */
+@Data
+public class CreateCompareChatParam {
+
+    /**
+     * Session ID
+     */
+    @NotBlank(message = "SessionId cannot be empty")
+    private String sessionId;
+
+    /**
+     * Conversation ID
+     */
+    @NotBlank(message = "ConversationId cannot be empty")
+    private String conversationId;
+
+    /**
+     * Question ID, generated by the client
+     */
+    @NotBlank(message = "QuestionId cannot be empty")
+    private String questionId;
+
+    /**
+     * Product IDs to compare, each must be a product of the session
+     */
+    @NotEmpty(message = "ProductIds cannot be empty")
+    private List<String> productIds;
+
+    /**
+     * Question
+     */
+    @NotBlank(message = "Question cannot be empty")
+    private String question;
+
+    /**
+     * Multi-modal content
+     */
+    private List<ChatAttachmentConfig> attachments;
+
+    /**
+     * MCP servers to use in chat, shared by all products
+     */
+    private List<String> mcpProducts;
+
+    /**
+     * If need memory
+     */
+    private Boolean needMemory = true;
+
+    private Boolean enableWebSearch = false;
+
+    private String searchType = "";
+
+    /**
+     * Build the single product chat param of one compared product
+     *
+     * @param productId product ID
+     * @return chat param
+     */
+    public CreateChatParam toChatParam(String productId) {
+        CreateChatParam param = BeanUtil.copyProperties(this, CreateChatParam.class);
+        param.setProductId(productId);
+        return param;
+    }
+}
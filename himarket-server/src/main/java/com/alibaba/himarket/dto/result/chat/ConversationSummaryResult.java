@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.dto.result.chat;
+
+import com.alibaba.himarket.support.enums.ChatStatus;
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Conversation outline without answer contents, which are loaded per conversation
+ */
+@Data
+@Builder
+public class ConversationSummaryResult {
+
+    private String conversationId;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    private List<QuestionSummary> questions;
+
+    @Data
+    @Builder
+    public static class QuestionSummary {
+        private String questionId;
+        private String content;
+        private LocalDateTime createdAt;
+        private List<AnswerSummary> answers;
+    }
+
+    @Data
+    @Builder
+    public static class AnswerSummary {
+        private String chatId;
+        private String answerId;
+        private String productId;
+        private Integer sequence;
+        private ChatStatus status;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+    }
+}
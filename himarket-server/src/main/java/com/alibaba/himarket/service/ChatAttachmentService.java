@@ -21,6 +21,8 @@ package com.alibaba.himarket.service;
 
 import com.alibaba.himarket.dto.result.chat.ChatAttachmentDetailResult;
 import com.alibaba.himarket.dto.result.chat.ChatAttachmentResult;
+import com.alibaba.himarket.entity.ChatAttachment;
+import java.nio.ByteBuffer;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface ChatAttachmentService {
@@ -40,4 +42,13 @@ public interface ChatAttachmentService {
      * @return attachment detail result with Base64 data
      */
     ChatAttachmentDetailResult getAttachmentDetail(String attachmentId);
+
+    /**
+     * Read attachment data from the attachment store, or from the legacy data column for rows
+     * not migrated yet
+     *
+     * @param attachment attachment entity
+     * @return read-only data buffer, null if no data
+     */
+    ByteBuffer getAttachmentData(ChatAttachment attachment);
 }
@@ -23,7 +23,9 @@ import com.alibaba.himarket.dto.params.chat.CreateChatSessionParam;
 import com.alibaba.himarket.dto.params.chat.UpdateChatSessionParam;
 import com.alibaba.himarket.dto.result.chat.ChatSessionResult;
 import com.alibaba.himarket.dto.result.chat.ConversationResult_V1;
+import com.alibaba.himarket.dto.result.chat.ConversationSummaryResult;
 import com.alibaba.himarket.dto.result.chat.ProductConversationResult;
+import com.alibaba.himarket.dto.result.common.CursorPageResult;
 import com.alibaba.himarket.dto.result.common.PageResult;
 import com.alibaba.himarket.entity.ChatSession;
 import java.util.List;
@@ -95,6 +97,26 @@ public interface ChatSessionService {
      */
     List<ProductConversationResult> listConversationsV2(String sessionId);
 
+    /**
+     * List conversation outlines of a chat session, newest first, without answer contents
+     *
+     * @param sessionId session ID
+     * @param cursor    cursor from the previous page, null for the first page
+     * @param size      page size
+     * @return page of conversation summaries
+     */
+    CursorPageResult<ConversationSummaryResult> listConversationSummaries(
+            String sessionId, Long cursor, int size);
+
+    /**
+     * Get a conversation of a chat session grouped by product, with answer contents
+     *
+     * @param sessionId      session ID
+     * @param conversationId conversation ID
+     * @return List of ProductConversationResult
+     */
+    List<ProductConversationResult> getConversation(String sessionId, String conversationId);
+
     /**
      * Get a chat session for the current user
      *
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Content-addressed storage for chat attachment data.
+ *
+ * <p>Content is keyed by its SHA-256 digest, so uploading the same bytes twice stores them once.
+ * Database rows only keep the key and metadata.
+ */
+public interface AttachmentStore {
+
+    /**
+     * Store content read from the stream
+     *
+     * @param in content stream, not closed by the store
+     * @return storage key (hex encoded SHA-256 of the content)
+     * @throws IOException if content cannot be written
+     */
+    String put(InputStream in) throws IOException;
+
+    /**
+     * Read content as a read-only buffer. Large content may be memory-mapped.
+     *
+     * @param key storage key
+     * @return content buffer
+     * @throws IOException if content does not exist or cannot be read
+     */
+    ByteBuffer read(String key) throws IOException;
+
+    /**
+     * Open a stream over the content
+     *
+     * @param key storage key
+     * @return content stream, to be closed by caller
+     * @throws IOException if content does not exist or cannot be read
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Check whether content exists
+     *
+     * @param key storage key
+     * @return true if exists
+     */
+    boolean exists(String key);
+
+    /**
+     * Delete content. Content is shared by every upload of the same bytes, so callers only delete
+     * keys nothing else references.
+     *
+     * @param key storage key
+     * @return true if content existed and was deleted
+     * @throws IOException if content cannot be deleted
+     */
+    boolean delete(String key) throws IOException;
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.attachment;
+
+import cn.hutool.core.util.HexUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Attachment store on local filesystem.
+ *
+ * <p>Layout: {@code {root}/{key[0:2]}/{key[2:4]}/{key}}. Content is streamed to a temp file while
+ * the digest is computed, then moved into place atomically, so readers never see partial files.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+        prefix = "hichat.attachment",
+        name = "store",
+        havingValue = "local",
+        matchIfMissing = true)
+public class LocalAttachmentStore implements AttachmentStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+
+    private final Path root;
+
+    private final long mmapThreshold;
+
+    public LocalAttachmentStore(HiChatProperties properties) throws IOException {
+        HiChatProperties.AttachmentProperties config = properties.getAttachment();
+        this.root = Paths.get(config.getLocalPath()).toAbsolutePath().normalize();
+        this.mmapThreshold = config.getMmapThreshold();
+
+        Files.createDirectories(root.resolve("tmp"));
+        log.info("Local attachment store initialized at: {}", root);
+    }
+
+    @Override
+    public String put(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        Path tmp = Files.createTempFile(root.resolve("tmp"), "upload-", ".tmp");
+
+        try {
+            try (OutputStream out =
+                    new DigestOutputStream(
+                            Files.newOutputStream(tmp, StandardOpenOption.WRITE), digest)) {
+                in.transferTo(out);
+            }
+
+            String key = HexUtil.encodeHexStr(digest.digest());
+            Path target = resolve(key);
+            if (Files.exists(target)) {
+                // Same content already stored
+                log.debug("Attachment content already exists, key: {}", key);
+                return key;
+            }
+
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Stored concurrently by another upload
+                log.debug("Attachment content stored concurrently, key: {}", key);
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String key) throws IOException {
+        Path path = resolve(key);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= mmapThreshold) {
+                // Mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until full
+            }
+            return buffer.flip().asReadOnlyBuffer();
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key), StandardOpenOption.READ);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches() && Files.exists(resolve(key));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid attachment storage key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
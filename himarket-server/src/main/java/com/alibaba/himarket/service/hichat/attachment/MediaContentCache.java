@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.attachment;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.entity.ChatAttachment;
+import com.alibaba.himarket.repository.ChatAttachmentRepository;
+import com.alibaba.himarket.service.ChatAttachmentService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.agentscope.core.message.AudioBlock;
+import io.agentscope.core.message.Base64Source;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.ImageBlock;
+import io.agentscope.core.message.URLSource;
+import io.agentscope.core.message.VideoBlock;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Byte-weighted LRU cache of model-ready media content blocks (image, audio, video), keyed by
+ * attachment ID.
+ *
+ * <p>Attachments are immutable once uploaded, so the Base64 encoding of each attachment is done
+ * once and shared by every turn that still has it inside the history window.
+ *
+ * <p>Blocks built here can be swapped for a reference to their attachment, so that stored copies
+ * of a message hold the attachment ID instead of the Base64 data.
+ */
+@Slf4j
+@Component
+public class MediaContentCache {
+
+    /**
+     * URL of a media block referencing an attachment
+     */
+    private static final String REFERENCE_PREFIX = "attachment://";
+
+    private final ChatAttachmentService chatAttachmentService;
+
+    private final ChatAttachmentRepository chatAttachmentRepository;
+
+    private final Cache<String, MediaContent> cache;
+
+    /**
+     * Attachment ID of each block built, by identity and held only as long as the block is used
+     */
+    private final Cache<ContentBlock, String> attachmentIds =
+            Caffeine.newBuilder().weakKeys().build();
+
+    public MediaContentCache(
+            ChatAttachmentService chatAttachmentService,
+            ChatAttachmentRepository chatAttachmentRepository,
+            HiChatProperties properties) {
+        this.chatAttachmentService = chatAttachmentService;
+        this.chatAttachmentRepository = chatAttachmentRepository;
+        this.cache =
+                Caffeine.newBuilder()
+                        .maximumWeight(properties.getAttachment().getMediaCacheMaxBytes())
+                        .weigher((String key, MediaContent value) -> value.weight())
+                        .expireAfterAccess(30, TimeUnit.MINUTES)
+                        .recordStats()
+                        .build();
+    }
+
+    /**
+     * Get cached content block of a media attachment, or build and cache it
+     *
+     * @param attachment media attachment (IMAGE, AUDIO, VIDEO)
+     * @return content block, null if attachment has no data or unsupported type
+     */
+    public ContentBlock get(ChatAttachment attachment) {
+        MediaContent content = cache.get(attachment.getAttachmentId(), key -> build(attachment));
+        return content == null ? null : content.block();
+    }
+
+    /**
+     * Get cached content block of a media attachment by ID
+     *
+     * @param attachmentId attachment ID
+     * @return content block, null if attachment is gone, has no data or unsupported type
+     */
+    public ContentBlock get(String attachmentId) {
+        MediaContent content = cache.getIfPresent(attachmentId);
+        if (content != null) {
+            return content.block();
+        }
+        return chatAttachmentRepository
+                .findByAttachmentId(attachmentId)
+                .map(this::get)
+                .orElse(null);
+    }
+
+    /**
+     * Swap a block built by this cache for a block of the same type referencing its attachment
+     *
+     * @param block content block
+     * @return reference block, null if the block was not built by this cache
+     */
+    public ContentBlock toReference(ContentBlock block) {
+        String attachmentId = attachmentIds.getIfPresent(block);
+        if (attachmentId == null) {
+            return null;
+        }
+
+        URLSource source = URLSource.builder().url(REFERENCE_PREFIX + attachmentId).build();
+        if (block instanceof ImageBlock) {
+            return ImageBlock.builder().source(source).build();
+        }
+        if (block instanceof AudioBlock) {
+            return AudioBlock.builder().source(source).build();
+        }
+        return VideoBlock.builder().source(source).build();
+    }
+
+    /**
+     * Attachment ID referenced by a block from {@link #toReference}
+     *
+     * @param block content block
+     * @return attachment ID, null if the block is no reference
+     */
+    public static String referencedAttachmentId(ContentBlock block) {
+        Object source;
+        if (block instanceof ImageBlock image) {
+            source = image.getSource();
+        } else if (block instanceof AudioBlock audio) {
+            source = audio.getSource();
+        } else if (block instanceof VideoBlock video) {
+            source = video.getSource();
+        } else {
+            return null;
+        }
+
+        if (source instanceof URLSource url
+                && url.getUrl() != null
+                && url.getUrl().startsWith(REFERENCE_PREFIX)) {
+            return url.getUrl().substring(REFERENCE_PREFIX.length());
+        }
+        return null;
+    }
+
+    /**
+     * Cache statistics (hits, misses, evictions)
+     *
+     * @return cache stats
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Approximate bytes held by the cache
+     *
+     * @return weighted size in bytes
+     */
+    public long weightedSize() {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        CacheStats stats = stats();
+        if (stats.requestCount() == 0) {
+            return;
+        }
+        log.debug(
+                "Media content cache - hits: {}, misses: {}, hitRate: {}, evictions: {},"
+                        + " bytes: {}",
+                stats.hitCount(),
+                stats.missCount(),
+                String.format("%.2f", stats.hitRate()),
+                stats.evictionCount(),
+                weightedSize());
+    }
+
+    private MediaContent build(ChatAttachment attachment) {
+        ByteBuffer data = chatAttachmentService.getAttachmentData(attachment);
+        if (data == null || !data.hasRemaining()) {
+            return null;
+        }
+
+        // Encode to pure Base64 string (no data URL prefix)
+        String base64Data =
+                StandardCharsets.ISO_8859_1.decode(Base64.getEncoder().encode(data)).toString();
+
+        // Use default mime type if not specified
+        String mediaType =
+                StrUtil.isBlank(attachment.getMimeType())
+                        ? "application/octet-stream"
+                        : attachment.getMimeType();
+
+        // Create Base64Source with pure base64 data
+        Base64Source source = Base64Source.builder().data(base64Data).mediaType(mediaType).build();
+
+        ContentBlock contentBlock;
+        switch (attachment.getType()) {
+            case IMAGE:
+                contentBlock = ImageBlock.builder().source(source).build();
+                break;
+            case AUDIO:
+                contentBlock = AudioBlock.builder().source(source).build();
+                break;
+            case VIDEO:
+                contentBlock = VideoBlock.builder().source(source).build();
+                break;
+            default:
+                log.warn("Unsupported media attachment type: {}", attachment.getType());
+                return null;
+        }
+
+        attachmentIds.put(contentBlock, attachment.getAttachmentId());
+
+        // Base64 chars are Latin-1, one byte each in a compact string
+        return new MediaContent(contentBlock, base64Data.length());
+    }
+
+    private record MediaContent(ContentBlock block, int weight) {}
+}
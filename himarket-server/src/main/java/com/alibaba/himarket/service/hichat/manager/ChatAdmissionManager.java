@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.exception.BusinessException;
+import com.alibaba.himarket.core.exception.ErrorCode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control of concurrent chats.
+ *
+ * <p>A chat needs a slot of its user, a slot of its model product and a global slot. Per-user and
+ * per-product limits are enforced by fair semaphores striped by key hash, so memory stays bounded
+ * however many users there are. Requests wait in FIFO order for a slot up to a deadline; when the
+ * wait queue is full or the deadline passes they are rejected with 429.
+ */
+@Slf4j
+@Component
+public class ChatAdmissionManager {
+
+    private final HiChatProperties.AdmissionProperties config;
+
+    private final Semaphore globalPermits;
+
+    private final Semaphore[] userPermits;
+
+    private final Semaphore[] productPermits;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong admittedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ChatAdmissionManager(HiChatProperties hiChatProperties) {
+        this.config = hiChatProperties.getAdmission();
+        this.globalPermits = new Semaphore(config.getMaxConcurrent(), true);
+        this.userPermits = newStripes(config.getStripes(), config.getMaxConcurrentPerUser());
+        this.productPermits = newStripes(config.getStripes(), config.getMaxConcurrentPerProduct());
+    }
+
+    /**
+     * Admit a chat, waiting for a slot if the limits are reached
+     *
+     * @param userId    User starting the chat
+     * @param productId Model product of the chat
+     * @return admission to release when the chat ends
+     * @throws BusinessException TOO_MANY_REQUESTS if no slot is available in time
+     */
+    public Admission admit(String userId, String productId) {
+        return admitAll(userId, List.of(productId)).get(productId);
+    }
+
+    /**
+     * Admit one chat per product for the same user, all or none. Each semaphore is acquired for
+     * all of its slots at once and in a fixed order, so concurrent requests never hold part of the
+     * slots another one waits for.
+     *
+     * @param userId     User starting the chats
+     * @param productIds Distinct model products, one chat each
+     * @return admissions by product, each to release when its chat ends
+     * @throws BusinessException TOO_MANY_REQUESTS if not all slots are available in time
+     */
+    public Map<String, Admission> admitAll(String userId, List<String> productIds) {
+        Map<String, Admission> admissions = new LinkedHashMap<>();
+        if (!config.isEnabled()) {
+            productIds.forEach(productId -> admissions.put(productId, new Admission(List.of())));
+            return admissions;
+        }
+
+        // User stripe first, then product stripes by index, then global, as in a single admit
+        Map<Semaphore, Integer> needed = new LinkedHashMap<>();
+        needed.put(stripe(userPermits, userId), productIds.size());
+        productIds.stream()
+                .mapToInt(productId -> stripeIndex(productPermits, productId))
+                .sorted()
+                .forEach(i -> needed.merge(productPermits[i], 1, Integer::sum));
+        needed.put(globalPermits, productIds.size());
+
+        String products = String.join(",", productIds);
+        List<Map.Entry<Semaphore, Integer>> acquired = new ArrayList<>(needed.size());
+        try {
+            if (queued.incrementAndGet() > config.getMaxQueued()) {
+                throw reject(userId, products, "wait queue is full");
+            }
+
+            long deadline =
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs());
+            for (Map.Entry<Semaphore, Integer> entry : needed.entrySet()) {
+                // Timed acquire honors fairness, unlike the untimed tryAcquire
+                long remaining = Math.max(deadline - System.nanoTime(), 0);
+                Semaphore permits = entry.getKey();
+                if (!permits.tryAcquire(entry.getValue(), remaining, TimeUnit.NANOSECONDS)) {
+                    throw reject(userId, products, "no slot available in time");
+                }
+                acquired.add(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired.forEach(entry -> entry.getKey().release(entry.getValue()));
+            throw reject(userId, products, "interrupted");
+        } catch (BusinessException e) {
+            acquired.forEach(entry -> entry.getKey().release(entry.getValue()));
+            throw e;
+        } finally {
+            queued.decrementAndGet();
+        }
+
+        for (String productId : productIds) {
+            admissions.put(
+                    productId,
+                    new Admission(
+                            List.of(
+                                    stripe(userPermits, userId),
+                                    stripe(productPermits, productId),
+                                    globalPermits)));
+        }
+        admittedCount.addAndGet(productIds.size());
+        return admissions;
+    }
+
+    private BusinessException reject(String userId, String productId, String reason) {
+        rejectedCount.incrementAndGet();
+        log.warn("Reject chat of user: {}, product: {}, reason: {}", userId, productId, reason);
+        return new BusinessException(
+                ErrorCode.TOO_MANY_REQUESTS, "Too many concurrent chats, please retry later");
+    }
+
+    private static Semaphore[] newStripes(int stripes, int permits) {
+        Semaphore[] semaphores = new Semaphore[Math.max(stripes, 1)];
+        for (int i = 0; i < semaphores.length; i++) {
+            semaphores[i] = new Semaphore(permits, true);
+        }
+        return semaphores;
+    }
+
+    private static Semaphore stripe(Semaphore[] stripes, String key) {
+        return stripes[stripeIndex(stripes, key)];
+    }
+
+    private static int stripeIndex(Semaphore[] stripes, String key) {
+        return Math.floorMod(String.valueOf(key).hashCode(), stripes.length);
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        log.debug(
+                "Chat admission - admitted: {}, rejected: {}, running: {}, queued: {}",
+                admittedCount.get(),
+                rejectedCount.get(),
+                config.getMaxConcurrent() - globalPermits.availablePermits(),
+                globalPermits.getQueueLength());
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Slots held by an admitted chat, released once
+     */
+    public static class Admission {
+
+        private final List<Semaphore> permits;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Admission(List<Semaphore> permits) {
+            this.permits = permits;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.forEach(Semaphore::release);
+            }
+        }
+    }
+}
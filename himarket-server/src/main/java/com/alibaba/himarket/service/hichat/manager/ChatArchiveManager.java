@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.entity.Chat;
+import com.alibaba.himarket.repository.ChatRepository;
+import com.alibaba.himarket.repository.ChatRepository.ChatSummary;
+import com.alibaba.himarket.repository.ChatRepository.ConversationCursor;
+import com.alibaba.himarket.support.enums.ChatStatus;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cold archive of chats.
+ *
+ * <p>When enabled, chats older than {@code hichat.storage.archive-after-days} are moved in batches
+ * from {@code chat} to the compressed {@code chat_archive} table, which has the same columns and
+ * keeps the row IDs. The read methods here merge both tables, so listings and lookups see archived
+ * chats as if they were never moved. They do so whether or not archiving is enabled, which only
+ * switches the background move, so chats archived before it was turned off stay visible and are
+ * deleted with their session. Results still queued in the {@link ChatResultPersister} are applied
+ * to what was read.
+ *
+ * <p>Partitioning widened the unique key of {@code chat} to {@code (chat_id, created_at)}, so
+ * chat IDs are unique there only because they are generated so. The archive keeps the unique key
+ * on {@code chat_id}, and a chat whose ID is already archived under another row is reported and
+ * left in {@code chat} instead of being skipped silently.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatArchiveManager {
+
+    /**
+     * Columns copied to the archive, named so that the tables need not share column positions
+     */
+    private static final String COLUMNS =
+            "id, chat_id, session_id, user_id, conversation_id, status, product_id, question_id,"
+                    + " question, question_tokens, attachments, answer_id, answer, answer_tokens,"
+                    + " sequence, chat_usage, tool_calls, created_at, updated_at";
+
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT id FROM chat WHERE created_at < :cutoff AND id > :afterId ORDER BY id"
+                    + " LIMIT :limit";
+
+    private static final String SELECT_CONFLICTS_SQL =
+            "SELECT c.id FROM chat c JOIN chat_archive a ON a.chat_id = c.chat_id"
+                    + " WHERE c.id IN (:ids) AND a.id <> c.id";
+
+    /**
+     * Rows copied by an interrupted batch are already archived and skipped
+     */
+    private static final String COPY_SQL =
+            "INSERT INTO chat_archive ("
+                    + COLUMNS
+                    + ") SELECT "
+                    + COLUMNS
+                    + " FROM chat c WHERE c.id IN (:ids)"
+                    + " AND NOT EXISTS (SELECT 1 FROM chat_archive a WHERE a.id = c.id)";
+
+    private static final String DELETE_SQL = "DELETE FROM chat WHERE id IN (:ids)";
+
+    private static final Sort CREATION_ORDER = Sort.by(Sort.Direction.ASC, "createAt");
+
+    private final ChatRepository chatRepository;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ChatPartitionManager chatPartitionManager;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final ChatResultPersister chatResultPersister;
+
+    private final AtomicBoolean archiving = new AtomicBoolean(false);
+
+    private final AtomicLong archivedCount = new AtomicLong();
+
+    /**
+     * Move expired chats to the archive, batch by batch
+     */
+    @Scheduled(initialDelay = 5 * 60 * 1000L, fixedRate = 60 * 60 * 1000L)
+    public void archive() {
+        HiChatProperties.StorageProperties config = hiChatProperties.getStorage();
+        if (!config.isArchiveEnabled() || !archiving.compareAndSet(false, true)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        LocalDate cutoff = LocalDate.now().minusDays(Math.max(config.getArchiveAfterDays(), 1));
+        long moved = 0;
+        try {
+            // Chats left behind on a conflict are passed over by the ID cursor
+            long afterId = 0;
+            for (int i = 0; i < config.getArchiveMaxBatchesPerRun(); i++) {
+                ArchivedBatch batch =
+                        archiveBatch(cutoff.atStartOfDay(), afterId, config.getArchiveBatchSize());
+                moved += batch.moved();
+                afterId = batch.lastId();
+                if (batch.selected() < config.getArchiveBatchSize()) {
+                    // Backlog drained, months before the cutoff are empty now
+                    chatPartitionManager.dropEmptyPartitionsBefore(cutoff);
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to archive chats created before {}", cutoff, e);
+        } finally {
+            archiving.set(false);
+        }
+
+        if (moved > 0) {
+            archivedCount.addAndGet(moved);
+            log.info(
+                    "Archived {} chats created before {} in {}ms",
+                    moved,
+                    cutoff,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private ArchivedBatch archiveBatch(LocalDateTime cutoff, long afterId, int batchSize) {
+        return transactionTemplate.execute(
+                status -> {
+                    List<Long> ids =
+                            jdbcTemplate.queryForList(
+                                    SELECT_EXPIRED_SQL,
+                                    new MapSqlParameterSource()
+                                            .addValue("cutoff", cutoff)
+                                            .addValue("afterId", afterId)
+                                            .addValue("limit", Math.max(batchSize, 1)),
+                                    Long.class);
+                    if (ids.isEmpty()) {
+                        return new ArchivedBatch(0, 0, afterId);
+                    }
+                    int selected = ids.size();
+                    long lastId = ids.get(selected - 1);
+
+                    List<Long> conflicts =
+                            jdbcTemplate.queryForList(
+                                    SELECT_CONFLICTS_SQL,
+                                    new MapSqlParameterSource("ids", ids),
+                                    Long.class);
+                    if (!conflicts.isEmpty()) {
+                        log.error(
+                                "Chats {} share their chat ID with archived chats, left unarchived",
+                                conflicts);
+                        ids = new ArrayList<>(ids);
+                        ids.removeAll(conflicts);
+                        if (ids.isEmpty()) {
+                            return new ArchivedBatch(selected, 0, lastId);
+                        }
+                    }
+
+                    MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+                    jdbcTemplate.update(COPY_SQL, params);
+                    jdbcTemplate.update(DELETE_SQL, params);
+                    return new ArchivedBatch(selected, ids.size(), lastId);
+                });
+    }
+
+    public Optional<Chat> findByChatId(String chatId) {
+        Optional<Chat> chat = chatRepository.findByChatId(chatId);
+        if (chat.isPresent()) {
+            return chat.map(chatResultPersister::overlay);
+        }
+        return chatRepository.findArchivedByChatId(chatId);
+    }
+
+    public List<Chat> findAllBySessionIdAndUserId(String sessionId, String userId) {
+        List<Chat> chats =
+                chatRepository.findAllBySessionIdAndUserId(sessionId, userId, CREATION_ORDER);
+        return merge(chatRepository.findArchivedBySessionIdAndUserId(sessionId, userId), chats);
+    }
+
+    public List<Chat> findAllByConversation(
+            String sessionId, String userId, String conversationId) {
+        List<Chat> chats =
+                chatRepository.findAllBySessionIdAndUserIdAndConversationId(
+                        sessionId, userId, conversationId, CREATION_ORDER);
+        return merge(
+                chatRepository.findArchivedBySessionIdAndUserIdAndConversationId(
+                        sessionId, userId, conversationId),
+                chats);
+    }
+
+    /**
+     * Find a page of conversations, newest first. A conversation spanning both tables is keyed
+     * by its first chat, which is the archived one.
+     */
+    public List<ConversationCursor> findConversationCursors(
+            String sessionId, String userId, long beforeId, int limit) {
+        List<ConversationCursor> cursors =
+                chatRepository.findConversationCursors(
+                        sessionId, userId, beforeId, PageRequest.of(0, limit));
+        List<ConversationCursor> archived =
+                chatRepository.findArchivedConversationCursors(sessionId, userId, beforeId, limit);
+        Map<String, ConversationCursor> merged = new LinkedHashMap<>();
+        Stream.concat(archived.stream(), cursors.stream())
+                .forEach(
+                        cursor ->
+                                merged.merge(
+                                        cursor.getConversationId(),
+                                        cursor,
+                                        (a, b) ->
+                                                a.getFirstChatId() <= b.getFirstChatId() ? a : b));
+
+        return merged.values().stream()
+                .sorted(Comparator.comparing(ConversationCursor::getFirstChatId).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Find chat summaries of conversations in creation order, archived chats first
+     */
+    public List<ChatSummary> findChatSummaries(
+            String sessionId, String userId, Collection<String> conversationIds) {
+        List<ChatSummary> summaries =
+                chatRepository.findChatSummaries(sessionId, userId, conversationIds);
+        List<ChatSummary> merged =
+                new ArrayList<>(
+                        chatRepository.findArchivedChatSummaries(
+                                sessionId, userId, conversationIds));
+        merged.addAll(chatResultPersister.overlaySummaries(summaries));
+        return merged;
+    }
+
+    public void deleteBySessionId(String sessionId) {
+        chatRepository.deleteAllBySessionId(sessionId);
+        chatRepository.deleteArchivedBySessionId(sessionId);
+    }
+
+    public long getArchivedCount() {
+        return archivedCount.get();
+    }
+
+    /**
+     * Find chats to build the history of a session from, in creation order. Chats whose result
+     * is still queued are INIT in the database and read with the result. Archived chats are all
+     * final, only successful ones are read.
+     *
+     * @param sessionId session ID
+     * @return chats of the session
+     */
+    public List<Chat> findHistoryChats(String sessionId) {
+        List<Chat> chats =
+                chatRepository.findBySessionIdAndStatusIn(
+                        sessionId, List.of(ChatStatus.SUCCESS, ChatStatus.INIT), CREATION_ORDER);
+        return merge(
+                chatRepository.findArchivedBySessionIdAndStatus(
+                        sessionId, ChatStatus.SUCCESS.name()),
+                chats);
+    }
+
+    /**
+     * Find the current sequence of a question, archived tries included
+     *
+     * @return current sequence, 0 if the question has no tries yet
+     */
+    public int findCurrentSequence(
+            String sessionId, String conversationId, String questionId, String productId) {
+        Integer current =
+                chatRepository.findCurrentSequence(
+                        sessionId, conversationId, questionId, productId);
+        Integer archived =
+                chatRepository.findArchivedCurrentSequence(
+                        sessionId, conversationId, questionId, productId);
+        return Math.max(current == null ? 0 : current, archived == null ? 0 : archived);
+    }
+
+    /**
+     * Archived chats are older than live ones, sort anyway for chats not yet moved
+     */
+    private List<Chat> merge(List<Chat> archived, List<Chat> chats) {
+        chats = chatResultPersister.overlay(chats);
+        if (CollUtil.isEmpty(archived)) {
+            return chats;
+        }
+
+        List<Chat> merged = new ArrayList<>(archived);
+        merged.addAll(chats);
+        merged.sort(
+                Comparator.comparing(
+                        Chat::getCreateAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return merged;
+    }
+
+    /**
+     * Outcome of a batch: expired chats selected, chats moved and the last ID selected
+     */
+    private record ArchivedBatch(int selected, int moved, long lastId) {}
+}
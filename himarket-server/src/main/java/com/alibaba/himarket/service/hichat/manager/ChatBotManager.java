@@ -21,29 +21,33 @@ package com.alibaba.himarket.service.hichat.manager;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.crypto.SecureUtil;
+import com.alibaba.himarket.config.HiChatProperties;
 import com.alibaba.himarket.core.event.McpClientRemovedEvent;
 import com.alibaba.himarket.core.utils.CacheUtil;
 import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.service.hichat.memory.ChatMemoryStore;
+import com.alibaba.himarket.service.hichat.memory.SessionMemory;
 import com.alibaba.himarket.service.hichat.support.ChatBot;
 import com.alibaba.himarket.service.hichat.support.LlmChatRequest;
 import com.alibaba.himarket.service.hichat.support.ToolMeta;
 import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
 import com.github.benmanes.caffeine.cache.Cache;
 import io.agentscope.core.ReActAgent;
-import io.agentscope.core.memory.InMemoryMemory;
-import io.agentscope.core.memory.Memory;
 import io.agentscope.core.message.Msg;
 import io.agentscope.core.model.Model;
 import io.agentscope.core.tool.ToolGroup;
 import io.agentscope.core.tool.Toolkit;
+import io.agentscope.core.tool.ToolkitConfig;
 import io.agentscope.core.tool.mcp.McpClientWrapper;
 import io.agentscope.core.tool.mcp.McpTool;
 import io.modelcontextprotocol.spec.McpSchema;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -59,6 +63,10 @@ import reactor.core.publisher.Mono;
 public class ChatBotManager {
 
     private final ToolManager toolManager;
+    private final McpToolSchemaCache toolSchemaCache;
+    private final ChatMemoryStore chatMemoryStore;
+    private final HiChatProperties hiChatProperties;
+    private final ToolResultSpiller toolResultSpiller;
     private final Cache<String, ChatBot> chatBotCache = CacheUtil.newLRUCache(10 * 60);
 
     /**
@@ -75,17 +83,18 @@ public class ChatBotManager {
     /**
      * Get existing ChatBot or create a new one based on request
      *
-     * @param request chat request containing session and configuration info
-     * @param model   LLM model to be used
-     * @return ChatBot instance or null if creation fails
+     * @param request       chat request containing session and configuration info
+     * @param modelSupplier supplies the LLM model, only called when a new ChatBot is created
+     * @return Mono of ChatBot instance, empty if creation fails
      */
-    public ChatBot getOrCreateChatBot(LlmChatRequest request, Model model) {
+    public Mono<ChatBot> getOrCreateChatBot(
+            LlmChatRequest request, Supplier<Model> modelSupplier) {
         String sessionId = request.getSessionId();
         String productId = request.getProduct().getProductId();
 
         if (StrUtil.isBlank(sessionId) || StrUtil.isBlank(productId)) {
             log.error("Invalid request: sessionId and productId required");
-            return null;
+            return Mono.empty();
         }
 
         String cacheKey = buildCacheKey(request);
@@ -95,7 +104,7 @@ public class ChatBotManager {
         if (cachedBot != null) {
             if (cachedBot.isValid()) {
                 log.debug("Reused ChatBot from cache, degraded: {}", cachedBot.isDegraded());
-                return cachedBot;
+                return Mono.just(cachedBot);
             } else {
                 // Invalid (degraded TTL exceeded), remove from cache and create a new one
                 chatBotCache.invalidate(cacheKey);
@@ -104,39 +113,40 @@ public class ChatBotManager {
         }
 
         // Create a new ChatBot
-        try {
-            ChatBot chatBot = createChatBot(request, model);
-            if (chatBot != null) {
-                chatBotCache.put(cacheKey, chatBot);
-
-                // Register mapping relationship
-                int mcpCount = registerToolDependencies(cacheKey, request.getMcpConfigs());
-
-                log.info(
-                        "Created new ChatBot for session: {}, degraded: {}, MCPs: {}",
-                        sessionId,
-                        chatBot.isDegraded(),
-                        mcpCount);
-            }
-            return chatBot;
-        } catch (Exception e) {
-            log.error(
-                    "Failed to create ChatBot, sessionId: {}, productId: {}",
-                    sessionId,
-                    productId,
-                    e);
-            return null;
-        }
+        return createChatBot(request, modelSupplier)
+                .doOnNext(
+                        chatBot -> {
+                            chatBotCache.put(cacheKey, chatBot);
+
+                            // Register mapping relationship
+                            int mcpCount =
+                                    registerToolDependencies(cacheKey, request.getMcpConfigs());
+
+                            log.info(
+                                    "Created new ChatBot for session: {}, degraded: {}, MCPs: {}",
+                                    sessionId,
+                                    chatBot.isDegraded(),
+                                    mcpCount);
+                        })
+                .onErrorResume(
+                        e -> {
+                            log.error(
+                                    "Failed to create ChatBot, sessionId: {}, productId: {}",
+                                    sessionId,
+                                    productId,
+                                    e);
+                            return Mono.empty();
+                        });
     }
 
     /**
      * Create a new ChatBot instance with required components
      *
-     * @param request chat request containing configuration
-     * @param model   LLM model to be used
-     * @return configured ChatBot instance
+     * @param request       chat request containing configuration
+     * @param modelSupplier supplies the LLM model to be used
+     * @return Mono of configured ChatBot instance
      */
-    private ChatBot createChatBot(LlmChatRequest request, Model model) {
+    private Mono<ChatBot> createChatBot(LlmChatRequest request, Supplier<Model> modelSupplier) {
         ProductResult product = request.getProduct();
         long startTime = System.currentTimeMillis();
 
@@ -144,113 +154,137 @@ public class ChatBotManager {
         List<MCPTransportConfig> mcpConfigs = request.getMcpConfigs();
         int expectedMcpCount = CollUtil.isEmpty(mcpConfigs) ? 0 : mcpConfigs.size();
 
-        List<McpClientWrapper> mcpClients = loadMcpClients(request);
-        Toolkit toolkit = new Toolkit();
-        long actualSuccessCount = registerMcpTools(toolkit, mcpClients);
-
-        // Build tool metadata mapping
-        Map<String, ToolMeta> toolMetas = buildToolMetas(toolkit);
-
-        // Initialize memory
-        Memory memory = createMemory(request.getHistoryMessages());
-        String systemPrompt = buildSystemPrompt(product.getName());
-
-        // Build agent for react chat
-        ReActAgent agent =
-                ReActAgent.builder()
-                        .name(product.getName())
-                        .sysPrompt(systemPrompt)
-                        .model(model)
-                        .toolkit(toolkit)
-                        .memory(memory)
-                        .maxIters(10)
-                        .build();
-
-        // Determine if ChatBot is in degraded mode
-        boolean degraded = actualSuccessCount < expectedMcpCount;
-
-        long totalTime = System.currentTimeMillis() - startTime;
-        log.info(
-                "ChatBot created successfully for session: {}, MCP: {}/{}, degraded: {}, total"
-                        + " time: {}ms",
-                request.getSessionId(),
-                actualSuccessCount,
-                expectedMcpCount,
-                degraded,
-                totalTime);
-
-        return ChatBot.builder().agent(agent).toolMetas(toolMetas).degraded(degraded).build();
+        Toolkit toolkit = newToolkit();
+        return registerMcpTools(toolkit, request.getSessionId(), mcpConfigs)
+                .map(
+                        actualSuccessCount -> {
+                            // Build tool metadata mapping
+                            Map<String, ToolMeta> toolMetas = buildToolMetas(toolkit);
+
+                            // Initialize memory
+                            SessionMemory memory = createMemory(request);
+                            String systemPrompt = buildSystemPrompt(product.getName());
+
+                            // Build agent for react chat
+                            ReActAgent agent =
+                                    ReActAgent.builder()
+                                            .name(product.getName())
+                                            .sysPrompt(systemPrompt)
+                                            .model(modelSupplier.get())
+                                            .toolkit(toolkit)
+                                            .memory(memory)
+                                            .maxIters(10)
+                                            .build();
+
+                            // Determine if ChatBot is in degraded mode
+                            boolean degraded = actualSuccessCount < expectedMcpCount;
+
+                            long totalTime = System.currentTimeMillis() - startTime;
+                            log.info(
+                                    "ChatBot created successfully for session: {}, MCP: {}/{},"
+                                            + " degraded: {}, total time: {}ms",
+                                    request.getSessionId(),
+                                    actualSuccessCount,
+                                    expectedMcpCount,
+                                    degraded,
+                                    totalTime);
+
+                            return ChatBot.builder()
+                                    .agent(agent)
+                                    .toolMetas(toolMetas)
+                                    .memory(memory)
+                                    .degraded(degraded)
+                                    .contextTokenBudget(request.getContextTokenBudget())
+                                    .build();
+                        });
     }
 
     /**
-     * Load MCP clients from configuration
-     *
-     * @param request chat request containing MCP configs
-     * @return list of MCP client wrappers
+     * Create toolkit, running independent tool calls of one reasoning step concurrently if enabled
      */
-    private List<McpClientWrapper> loadMcpClients(LlmChatRequest request) {
-        List<MCPTransportConfig> mcpConfigs = request.getMcpConfigs();
-        if (CollUtil.isEmpty(mcpConfigs)) {
-            log.debug("No MCP configs found for chat: {}", request.getChatId());
-            return List.of();
-        }
-
-        List<McpClientWrapper> clients = toolManager.getOrCreateClients(mcpConfigs);
-        if (clients.isEmpty()) {
-            log.warn("No MCP clients available for chat: {}", request.getChatId());
-        }
-        return clients;
+    private Toolkit newToolkit() {
+        boolean parallel = hiChatProperties.getMcp().isParallelToolCalls();
+        return new Toolkit(ToolkitConfig.builder().parallel(parallel).build());
     }
 
     /**
-     * Register MCP tools to toolkit
+     * Connect MCP servers and register their tools to toolkit
+     *
+     * <p>Tool schemas come from {@link McpToolSchemaCache}, so tools/list is only called for
+     * servers whose schemas are not known yet.
      *
-     * @param toolkit toolkit to register tools
-     * @param clients MCP clients containing tools
-     * @return number of MCP clients that successfully registered tools
+     * @param toolkit    toolkit to register tools
+     * @param sessionId  chat session the tools are called for
+     * @param mcpConfigs MCP transport configurations
+     * @return Mono of number of MCP servers that successfully registered tools
      */
-    private long registerMcpTools(Toolkit toolkit, List<McpClientWrapper> clients) {
-        if (clients.isEmpty()) {
-            return 0;
+    private Mono<Long> registerMcpTools(
+            Toolkit toolkit, String sessionId, List<MCPTransportConfig> mcpConfigs) {
+        if (CollUtil.isEmpty(mcpConfigs)) {
+            return Mono.just(0L);
         }
 
         long startTime = System.currentTimeMillis();
 
-        // Process all MCP clients in parallel (max 20 concurrent)
-        Long result =
-                Flux.fromIterable(clients)
-                        .flatMap(
-                                client -> {
-                                    // Try to list and register tools from this client
-                                    return client.listTools()
-                                            .flatMapIterable(tools -> tools)
-                                            .doOnNext(tool -> registerTool(toolkit, client, tool))
-                                            // Success: count this client
-                                            .then(Mono.just(1))
-                                            .doOnError(
-                                                    error ->
-                                                            log.error(
-                                                                    "Failed to list tools from MCP"
+        // Tool call slots shared by all MCP servers of the ChatBot
+        HiChatProperties.McpProperties mcpConfig = hiChatProperties.getMcp();
+        McpPermits toolCallPermits =
+                new McpPermits(Math.max(mcpConfig.getMaxParallelToolCallsPerChat(), 1));
+        Duration toolCallTimeout = Duration.ofMillis(mcpConfig.getToolCallTimeoutMs());
+
+        // Process all MCP servers in parallel (max 20 concurrent)
+        return Flux.fromIterable(mcpConfigs)
+                .flatMap(
+                        config ->
+                                toolManager
+                                        .getOrCreateClientAsync(config)
+                                        .map(
+                                                client ->
+                                                        new ChatScopedMcpClientWrapper(
+                                                                client,
+                                                                sessionId,
+                                                                toolCallPermits,
+                                                                toolCallTimeout,
+                                                                toolResultSpiller))
+                                        .flatMap(
+                                                client ->
+                                                        toolSchemaCache
+                                                                .getTools(config, client)
+                                                                // Toolkit is not thread-safe
+                                                                .doOnNext(
+                                                                        tools ->
+                                                                                registerTools(
+                                                                                        toolkit,
+                                                                                        client,
+                                                                                        tools)))
+                                        // Success: count this server
+                                        .map(tools -> 1)
+                                        .doOnError(
+                                                error ->
+                                                        log.error(
+                                                                "Failed to list tools from MCP"
                                                                         + " server: {}, error: {}",
-                                                                    client.getName(),
-                                                                    error.getMessage()))
-                                            .onErrorResume(error -> Mono.empty());
-                                },
-                                20)
-                        .count()
-                        .defaultIfEmpty(0L)
-                        .block();
-
-        long successCount = result != null ? result : 0;
-        long totalTime = System.currentTimeMillis() - startTime;
-
-        log.info(
-                "MCP tools registered: {}/{} servers succeeded, total time: {}ms",
-                successCount,
-                clients.size(),
-                totalTime);
-
-        return successCount;
+                                                                config.getMcpServerName(),
+                                                                error.getMessage()))
+                                        .onErrorResume(error -> Mono.empty()),
+                        20)
+                .count()
+                .defaultIfEmpty(0L)
+                .doOnNext(
+                        successCount ->
+                                log.info(
+                                        "MCP tools registered: {}/{} servers succeeded, total"
+                                                + " time: {}ms",
+                                        successCount,
+                                        mcpConfigs.size(),
+                                        System.currentTimeMillis() - startTime));
+    }
+
+    private void registerTools(
+            Toolkit toolkit, McpClientWrapper client, List<McpSchema.Tool> tools) {
+        synchronized (toolkit) {
+            tools.forEach(tool -> registerTool(toolkit, client, tool));
+        }
     }
 
     /**
@@ -323,33 +357,20 @@ public class ChatBotManager {
     }
 
     /**
-     * Create memory with history messages
+     * Create memory backed by the shared memory store
      *
-     * @param historyMessages list of historical messages
-     * @return memory instance with loaded messages
+     * @param request chat request, its history messages (already fitted into the token budget)
+     *                seed the memory if the store has none yet
+     * @return memory instance, loaded before each turn
      */
-    private Memory createMemory(List<Msg> historyMessages) {
-        Memory memory = new InMemoryMemory();
-
-        if (CollUtil.isNotEmpty(historyMessages)) {
-            // Limit initial memory to 20 messages
-            int maxInitMessages = 20;
-            List<Msg> messagesToLoad = historyMessages;
-
-            if (historyMessages.size() > maxInitMessages) {
-                int startIndex = historyMessages.size() - maxInitMessages;
-                messagesToLoad = historyMessages.subList(startIndex, historyMessages.size());
-                log.info(
-                        "Truncated history from {} to {} messages for initialization",
-                        historyMessages.size(),
-                        maxInitMessages);
-            }
-
-            messagesToLoad.forEach(memory::addMessage);
-            log.debug("Initialized memory with {} messages", messagesToLoad.size());
-        }
-
-        return memory;
+    private SessionMemory createMemory(LlmChatRequest request) {
+        List<Msg> historyMessages = request.getHistoryMessages();
+        return new SessionMemory(
+                chatMemoryStore,
+                request.getSessionId(),
+                request.getProduct().getProductId(),
+                hiChatProperties.getMemory().getMaxMessages(),
+                CollUtil.isEmpty(historyMessages) ? null : List.copyOf(historyMessages));
     }
 
     /**
@@ -358,7 +379,7 @@ public class ChatBotManager {
      * @param productName name of the product
      * @return formatted system prompt
      */
-    private String buildSystemPrompt(String productName) {
+    public String buildSystemPrompt(String productName) {
         return String.format(
                 "You are a helpful AI assistant powered by %s. "
                         + "You can use various tools to help answer user questions. "
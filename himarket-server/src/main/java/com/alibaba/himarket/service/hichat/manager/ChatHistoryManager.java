@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.event.ChatSessionDeletingEvent;
+import com.alibaba.himarket.core.utils.CacheUtil;
+import com.alibaba.himarket.entity.Chat;
+import com.alibaba.himarket.repository.ChatRepository;
+import com.alibaba.himarket.support.enums.ChatStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-memory conversation history per chat session.
+ *
+ * <p>A session is seeded from the database once, on first access, and then kept up to date by
+ * {@link #append(Chat)} whenever a chat completes successfully. Only the latest chat of each
+ * conversation is retained, and only the most recent conversations per product.
+ *
+ * <p>Chats of a session may complete on other nodes, so each turn reads the latest completion
+ * time of the session and reloads the cached history if it has missed a later completion. A warm
+ * session costs that single aggregate read instead of the whole history.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatHistoryManager {
+
+    private final ChatRepository chatRepository;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final ChatArchiveManager chatArchiveManager;
+
+    // Session history cache (30 minutes = 1800 seconds without access)
+    private final Cache<String, SessionHistory> historyCache = CacheUtil.newLRUCache(30 * 60);
+
+    /**
+     * Get latest chat of each conversation in the session, ordered from oldest to newest
+     *
+     * @param sessionId             session ID
+     * @param productId             product ID, only chats of this product are returned
+     * @param excludeConversationId conversation to exclude (usually the current one)
+     * @return history chats, oldest first
+     */
+    public List<Chat> getHistory(
+            String sessionId, String productId, String excludeConversationId) {
+        LocalDateTime latestUpdate =
+                chatRepository.findLatestUpdatedAt(sessionId, ChatStatus.SUCCESS);
+        SessionHistory history =
+                historyCache
+                        .asMap()
+                        .compute(
+                                sessionId,
+                                (key, cached) ->
+                                        cached != null && cached.isUpToDate(latestUpdate)
+                                                ? cached
+                                                : loadHistory(key, latestUpdate));
+        return history.list(productId, excludeConversationId);
+    }
+
+    /**
+     * Append a completed chat to the session history if the session is already loaded.
+     * Sessions not loaded yet will pick up the chat when seeded, from the database or from the
+     * results still queued for writing.
+     *
+     * @param chat completed chat
+     */
+    public void append(Chat chat) {
+        if (!isValidHistory(chat)) {
+            return;
+        }
+
+        historyCache
+                .asMap()
+                .computeIfPresent(
+                        chat.getSessionId(),
+                        (key, history) -> {
+                            history.add(snapshot(chat));
+                            // Not earlier than the update time the result is written with
+                            history.advanceTo(LocalDateTime.now());
+                            return history;
+                        });
+    }
+
+    /**
+     * Drop cached history of a deleted session
+     *
+     * @param event session deletion event
+     */
+    @EventListener
+    public void onSessionDeletion(ChatSessionDeletingEvent event) {
+        historyCache.invalidate(event.getSessionId());
+        log.debug("Invalidated chat history for session: {}", event.getSessionId());
+    }
+
+    /**
+     * Seed session history from database, archived chats included
+     *
+     * @param sessionId    session ID
+     * @param latestUpdate latest completion time of the session read before loading
+     * @return session history
+     */
+    private SessionHistory loadHistory(String sessionId, LocalDateTime latestUpdate) {
+        List<Chat> chats = chatArchiveManager.findHistoryChats(sessionId);
+
+        // One more than the history window, because the conversation of the current request is
+        // excluded when building history
+        SessionHistory history =
+                new SessionHistory(
+                        hiChatProperties.getContext().getMaxHistoryConversations() + 1);
+        history.advanceTo(latestUpdate);
+        if (CollUtil.isNotEmpty(chats)) {
+            chats.stream().filter(this::isValidHistory).map(this::snapshot).forEach(history::add);
+        }
+
+        log.debug("Loaded chat history for session: {}, chats: {}", sessionId, chats.size());
+        return history;
+    }
+
+    private boolean isValidHistory(Chat chat) {
+        // Must have both question and answer
+        return chat != null
+                && chat.getStatus() == ChatStatus.SUCCESS
+                && StrUtil.isNotBlank(chat.getSessionId())
+                && StrUtil.isNotBlank(chat.getConversationId())
+                && StrUtil.isNotBlank(chat.getQuestion())
+                && StrUtil.isNotBlank(chat.getAnswer());
+    }
+
+    /**
+     * Copy only the fields needed to rebuild model messages, leaving usage and tool calls behind
+     */
+    private Chat snapshot(Chat chat) {
+        Chat copy =
+                Chat.builder()
+                        .chatId(chat.getChatId())
+                        .sessionId(chat.getSessionId())
+                        .conversationId(chat.getConversationId())
+                        .productId(chat.getProductId())
+                        .questionId(chat.getQuestionId())
+                        .question(chat.getQuestion())
+                        .questionTokens(chat.getQuestionTokens())
+                        .attachments(chat.getAttachments())
+                        .answer(chat.getAnswer())
+                        .answerTokens(chat.getAnswerTokens())
+                        .status(chat.getStatus())
+                        .build();
+        copy.setCreateAt(chat.getCreateAt());
+        return copy;
+    }
+
+    /**
+     * Latest chat of each conversation, grouped by product. Conversations are kept in the order
+     * their latest chat arrived, and the oldest ones are dropped once the bound is reached.
+     */
+    private static class SessionHistory {
+
+        private final Map<String, LinkedHashMap<String, Chat>> productConversations =
+                new HashMap<>();
+
+        private final int maxConversationsPerProduct;
+
+        /**
+         * Latest completion time of the session known to this history
+         */
+        private LocalDateTime version;
+
+        SessionHistory(int maxConversationsPerProduct) {
+            this.maxConversationsPerProduct = maxConversationsPerProduct;
+        }
+
+        synchronized void advanceTo(LocalDateTime time) {
+            if (time != null && (version == null || time.isAfter(version))) {
+                version = time;
+            }
+        }
+
+        synchronized boolean isUpToDate(LocalDateTime latestUpdate) {
+            return latestUpdate == null || (version != null && !latestUpdate.isAfter(version));
+        }
+
+        synchronized void add(Chat chat) {
+            LinkedHashMap<String, Chat> conversations =
+                    productConversations.computeIfAbsent(
+                            StrUtil.nullToEmpty(chat.getProductId()), k -> new LinkedHashMap<>());
+
+            // Re-insert to move the conversation to the tail
+            conversations.remove(chat.getConversationId());
+            conversations.put(chat.getConversationId(), chat);
+
+            Iterator<String> iterator = conversations.keySet().iterator();
+            while (conversations.size() > maxConversationsPerProduct && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        synchronized List<Chat> list(String productId, String excludeConversationId) {
+            LinkedHashMap<String, Chat> conversations =
+                    productConversations.get(StrUtil.nullToEmpty(productId));
+            if (conversations == null) {
+                return new ArrayList<>();
+            }
+
+            List<Chat> chats = new ArrayList<>(conversations.size());
+            for (Chat chat : conversations.values()) {
+                if (!StrUtil.equals(chat.getConversationId(), excludeConversationId)) {
+                    chats.add(chat);
+                }
+            }
+            return chats;
+        }
+    }
+}
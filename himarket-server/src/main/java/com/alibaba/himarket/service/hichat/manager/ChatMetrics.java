@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.dto.result.model.ModelConfigResult;
+import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.service.hichat.support.ChatPhaseTimings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer timers and counters of HiChat.
+ *
+ * <p>Chat phases are timed under {@code hichat.chat.phase}, tagged by phase, product and
+ * protocol. MCP client initialization, tool listing and tool calls are timed under {@code
+ * hichat.mcp.phase}, tagged by phase and MCP server. Timers publish percentile histograms.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatMetrics {
+
+    public static final String MCP_INIT = "init";
+
+    public static final String MCP_LIST_TOOLS = "listTools";
+
+    public static final String MCP_TOOL_CALL = "toolCall";
+
+    /**
+     * Enqueueing the chat result for persistence
+     */
+    public static final String PERSIST = "persist";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Record all phase timings of a completed chat
+     *
+     * @param product model product of the chat
+     * @param timings phase timings of the chat
+     */
+    public void recordChat(ProductResult product, ChatPhaseTimings timings) {
+        String productId = product == null ? null : product.getProductId();
+        String protocol = getProtocol(product);
+
+        timings.getPhases()
+                .forEach((phase, millis) -> recordChatPhase(phase, productId, protocol, millis));
+        timings.getToolTimings()
+                .forEach(tool -> recordMcp(MCP_TOOL_CALL, tool.mcpServerName(), tool.millis()));
+    }
+
+    public void recordChatPhase(String phase, String productId, String protocol, long millis) {
+        Timer.builder("hichat.chat.phase")
+                .description("Time spent in each phase of a chat")
+                .tags(
+                        "phase",
+                        phase,
+                        "product",
+                        StrUtil.blankToDefault(productId, UNKNOWN),
+                        "protocol",
+                        StrUtil.blankToDefault(protocol, UNKNOWN))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordMcp(String phase, String mcpServerName, long millis) {
+        Timer.builder("hichat.mcp.phase")
+                .description("Time spent in MCP client initialization, tool listing and calls")
+                .tags("phase", phase, "mcp_server", StrUtil.blankToDefault(mcpServerName, UNKNOWN))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordResponseCache(String productId, boolean hit) {
+        Counter.builder("hichat.response.cache.requests")
+                .description("Response cache lookups")
+                .tags(
+                        "product",
+                        StrUtil.blankToDefault(productId, UNKNOWN),
+                        "result",
+                        hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordPersistFlush(int batchSize, long millis) {
+        Timer.builder("hichat.persist.flush")
+                .description("Time spent writing a batch of chat results")
+                .register(meterRegistry)
+                .record(millis, TimeUnit.MILLISECONDS);
+        Counter.builder("hichat.persist.batch.results")
+                .description("Chat results written in batches")
+                .register(meterRegistry)
+                .increment(batchSize);
+    }
+
+    /**
+     * First AI protocol of the product's model API
+     */
+    public static String getProtocol(ProductResult product) {
+        List<String> protocols =
+                Optional.ofNullable(product)
+                        .map(ProductResult::getModelConfig)
+                        .map(ModelConfigResult::getModelAPIConfig)
+                        .map(ModelConfigResult.ModelAPIConfig::getAiProtocols)
+                        .orElse(null);
+        return CollUtil.isEmpty(protocols) ? UNKNOWN : protocols.get(0);
+    }
+}
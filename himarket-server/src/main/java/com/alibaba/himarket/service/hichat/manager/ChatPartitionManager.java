@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the monthly range partitions of the chat table.
+ *
+ * <p>The table is partitioned by {@code created_at} into {@code p_history}, one {@code pYYYYMM}
+ * partition per month and the catch-all {@code p_future}. Months are split off {@code p_future}
+ * ahead of time, while it is still empty, so the split does not move rows. Emptied months are
+ * dropped once archived. Databases without partitioning (e.g. H2) are left alone.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatPartitionManager {
+
+    private static final String PARTITIONS_SQL =
+            "SELECT PARTITION_NAME FROM INFORMATION_SCHEMA.PARTITIONS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat' "
+                    + "AND PARTITION_NAME IS NOT NULL";
+
+    private static final String FUTURE_PARTITION = "p_future";
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("^p\\d{6}$");
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final HiChatProperties hiChatProperties;
+
+    /**
+     * Create the monthly partitions up to the configured months ahead
+     */
+    @Scheduled(initialDelay = 60_000, fixedRate = 6 * 60 * 60 * 1000L)
+    public void ensurePartitions() {
+        HiChatProperties.StorageProperties config = hiChatProperties.getStorage();
+        if (!config.isPartitionMaintenance()) {
+            return;
+        }
+
+        List<YearMonth> months = findMonthlyPartitions();
+        if (months == null) {
+            return;
+        }
+
+        int aheadMonths = Math.max(config.getPartitionAheadMonths(), 0);
+        YearMonth target = YearMonth.now().plusMonths(aheadMonths);
+        YearMonth next =
+                months.stream()
+                        .max(Comparator.naturalOrder())
+                        .map(last -> last.plusMonths(1))
+                        .orElse(YearMonth.now());
+        if (next.isAfter(target)) {
+            return;
+        }
+
+        StringBuilder partitions = new StringBuilder();
+        for (YearMonth month = next; !month.isAfter(target); month = month.plusMonths(1)) {
+            partitions
+                    .append("PARTITION ")
+                    .append(partitionName(month))
+                    .append(" VALUES LESS THAN ('")
+                    .append(month.plusMonths(1).atDay(1))
+                    .append("'), ");
+        }
+
+        String sql =
+                "ALTER TABLE chat REORGANIZE PARTITION "
+                        + FUTURE_PARTITION
+                        + " INTO ("
+                        + partitions
+                        + "PARTITION "
+                        + FUTURE_PARTITION
+                        + " VALUES LESS THAN (MAXVALUE))";
+        try {
+            jdbcTemplate.execute(sql);
+            log.info("Created chat partitions from {} to {}", next, target);
+        } catch (DataAccessException e) {
+            // Another node may have created them concurrently
+            log.warn("Failed to create chat partitions from {} to {}", next, target, e);
+        }
+    }
+
+    /**
+     * Drop monthly partitions that end before the cutoff and hold no rows, i.e. fully archived
+     *
+     * @param cutoff archive cutoff date
+     */
+    public void dropEmptyPartitionsBefore(LocalDate cutoff) {
+        List<YearMonth> months = findMonthlyPartitions();
+        if (months == null) {
+            return;
+        }
+
+        for (YearMonth month : months) {
+            if (month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                continue;
+            }
+
+            String name = partitionName(month);
+            try {
+                Integer count =
+                        jdbcTemplate.queryForObject(
+                                "SELECT COUNT(*) FROM chat PARTITION (" + name + ")",
+                                Integer.class);
+                if (count != null && count == 0) {
+                    jdbcTemplate.execute("ALTER TABLE chat DROP PARTITION " + name);
+                    log.info("Dropped archived chat partition: {}", name);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to drop chat partition: {}", name, e);
+            }
+        }
+    }
+
+    /**
+     * Monthly partitions of the chat table, null if the table is not partitioned
+     */
+    private List<YearMonth> findMonthlyPartitions() {
+        List<String> names;
+        try {
+            names = jdbcTemplate.queryForList(PARTITIONS_SQL, String.class);
+        } catch (DataAccessException e) {
+            log.debug("Chat partitions unavailable, skipping maintenance: {}", e.getMessage());
+            return null;
+        }
+
+        if (!names.contains(FUTURE_PARTITION)) {
+            log.debug("Chat table is not partitioned, skipping maintenance");
+            return null;
+        }
+
+        return names.stream()
+                .filter(name -> MONTHLY_PARTITION.matcher(name).matches())
+                .map(name -> YearMonth.parse(name.substring(1), MONTH_FORMAT))
+                .collect(Collectors.toList());
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "p" + month.format(MONTH_FORMAT);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.event.ChatSessionCreatedEvent;
+import com.alibaba.himarket.core.security.ContextHolder;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Speculative warm-up of MCP clients when a chat session is created.
+ *
+ * <p>Clients of the developer's subscribed MCP products are connected and their tool schemas
+ * loaded in the background, so the first message of the session does not pay for the MCP
+ * handshake. Warm-ups share a global budget, those over it are skipped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatPrewarmer {
+
+    private final ContextHolder contextHolder;
+
+    private final ChatRequestContextResolver requestContextResolver;
+
+    private final ToolManager toolManager;
+
+    private final McpToolSchemaCache toolSchemaCache;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final AtomicLong warmedCount = new AtomicLong();
+
+    private final AtomicLong alreadyWarmCount = new AtomicLong();
+
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Global warm-up budget, one permit per MCP client being warmed
+     */
+    private Semaphore budget;
+
+    @PostConstruct
+    public void init() {
+        budget = new Semaphore(hiChatProperties.getPrewarm().getMaxConcurrent());
+    }
+
+    /**
+     * Warm MCP clients of subscribed MCP products for a newly created session
+     *
+     * @param event session created event
+     */
+    @EventListener
+    public void onSessionCreated(ChatSessionCreatedEvent event) {
+        HiChatProperties.PrewarmProperties config = hiChatProperties.getPrewarm();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        // Resolve on a worker thread with the request context of the session creator
+        Callable<List<MCPTransportConfig>> resolve =
+                contextHolder.wrap(this::resolveSubscribedMcpConfigs);
+
+        Mono.fromCallable(resolve)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable)
+                .take(config.getMaxMcpPerSession())
+                .flatMap(this::warm)
+                .subscribe(
+                        null,
+                        e ->
+                                log.warn(
+                                        "Failed to warm up session: {}, error: {}",
+                                        event.getSessionId(),
+                                        e.getMessage()));
+    }
+
+    private List<MCPTransportConfig> resolveSubscribedMcpConfigs() {
+        // Also warms the request context the first chat of the session reads
+        Set<String> productIds = requestContextResolver.getSubscribedProductIds(true);
+        return requestContextResolver.resolveMcpConfigs(
+                productIds, requestContextResolver.getCredentialContext());
+    }
+
+    private Mono<Void> warm(MCPTransportConfig config) {
+        if (!budget.tryAcquire()) {
+            skippedCount.incrementAndGet();
+            log.debug("Warm-up budget exhausted, skip MCP server: {}", config.getMcpServerName());
+            return Mono.empty();
+        }
+
+        return Mono.when(
+                        // Seed tool schemas from persisted config
+                        toolSchemaCache.getCachedTools(config).onErrorResume(e -> Mono.empty()),
+                        toolManager
+                                .warmClient(config)
+                                .doOnNext(
+                                        created ->
+                                                (created ? warmedCount : alreadyWarmCount)
+                                                        .incrementAndGet())
+                                .switchIfEmpty(
+                                        Mono.fromRunnable(failedCount::incrementAndGet)))
+                .doFinally(signal -> budget.release());
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        log.debug(
+                "Chat prewarm - warmed: {}, alreadyWarm: {}, skipped: {}, failed: {}, client"
+                        + " hits: {}, client misses: {}",
+                warmedCount.get(),
+                alreadyWarmCount.get(),
+                skippedCount.get(),
+                failedCount.get(),
+                toolManager.getClientHits(),
+                toolManager.getClientMisses());
+    }
+
+    public long getWarmedCount() {
+        return warmedCount.get();
+    }
+
+    public long getAlreadyWarmCount() {
+        return alreadyWarmCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.event.ConsumerChangedEvent;
+import com.alibaba.himarket.core.event.DeveloperDeletingEvent;
+import com.alibaba.himarket.core.event.ProductChangedEvent;
+import com.alibaba.himarket.core.event.ProductDeletingEvent;
+import com.alibaba.himarket.core.exception.BusinessException;
+import com.alibaba.himarket.core.security.ContextHolder;
+import com.alibaba.himarket.core.utils.CacheUtil;
+import com.alibaba.himarket.dto.result.consumer.CredentialContext;
+import com.alibaba.himarket.dto.result.product.ProductRefResult;
+import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.dto.result.product.SubscriptionResult;
+import com.alibaba.himarket.service.ConsumerService;
+import com.alibaba.himarket.service.ProductService;
+import com.alibaba.himarket.service.hichat.support.ChatRequestContext;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import com.alibaba.himarket.support.enums.SubscriptionStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Resolves the {@link ChatRequestContext} of a chat turn from per-developer and per-product caches.
+ *
+ * <p>The primary consumer, credential and subscriptions of a developer, the visible product with
+ * its gateway, and the credential-free transport config of each MCP product are loaded once and
+ * reused by later turns. Entries are dropped when consumer or product change events are committed,
+ * and expire after {@code hichat.request-context.ttl-minutes} so changes made on other nodes or
+ * without an event are picked up as well.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatRequestContextResolver {
+
+    private final ConsumerService consumerService;
+
+    private final ProductService productService;
+
+    private final McpConfigResolver mcpConfigResolver;
+
+    private final ContextHolder contextHolder;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Developer ID -> primary consumer, credential and subscriptions
+     */
+    private Cache<String, DeveloperContext> developerCache;
+
+    /**
+     * Portal (or admin) and product ID -> product visible there, with its gateway
+     */
+    private Cache<String, ProductContext> productCache;
+
+    /**
+     * MCP product ID -> transport config without credential, empty if the product has none
+     */
+    private Cache<String, Optional<MCPTransportConfig>> mcpConfigCache;
+
+    @PostConstruct
+    public void init() {
+        long ttlMinutes = hiChatProperties.getRequestContext().getTtlMinutes();
+        developerCache = CacheUtil.newCache(ttlMinutes);
+        productCache = CacheUtil.newCache(ttlMinutes);
+        mcpConfigCache = CacheUtil.newCache(ttlMinutes);
+    }
+
+    /**
+     * Resolve everything a chat turn needs of the current developer and the requested products
+     *
+     * @param productId     model product ID
+     * @param mcpProductIds MCP product IDs, may be empty
+     * @return request context
+     */
+    public ChatRequestContext resolve(String productId, Collection<String> mcpProductIds) {
+        return resolve(resolveDeveloperContext(), productId, mcpProductIds);
+    }
+
+    /**
+     * Resolve the request contexts of several model products sharing one MCP selection, as in
+     * compare mode. The developer is looked up once, MCP configs are built per product since each
+     * chat connects its own MCP clients.
+     *
+     * @param productIds    model product IDs
+     * @param mcpProductIds MCP product IDs, may be empty
+     * @return request context by product ID, in the given order
+     */
+    public Map<String, ChatRequestContext> resolveAll(
+            Collection<String> productIds, Collection<String> mcpProductIds) {
+        DeveloperContext developer = resolveDeveloperContext();
+        Map<String, ChatRequestContext> contexts = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            contexts.put(productId, resolve(developer, productId, mcpProductIds));
+        }
+        return contexts;
+    }
+
+    private ChatRequestContext resolve(
+            DeveloperContext developer, String productId, Collection<String> mcpProductIds) {
+        ProductContext product = getProductContext(productId);
+
+        return ChatRequestContext.builder()
+                .product(product.product())
+                .gatewayId(product.gatewayId())
+                .consumerId(developer.consumerId())
+                .credentialContext(developer.credentialContext())
+                .subscribedProductIds(developer.subscriptions().keySet())
+                .mcpConfigs(resolveMcpConfigs(mcpProductIds, developer.credentialContext()))
+                .build();
+    }
+
+    private DeveloperContext resolveDeveloperContext() {
+        try {
+            return getDeveloperContext();
+        } catch (BusinessException e) {
+            // Developers without consumer chat without credential, as before
+            log.debug("No consumer found for developer: {}", contextHolder.getUser());
+            return DeveloperContext.EMPTY;
+        }
+    }
+
+    /**
+     * Get product IDs subscribed by the primary consumer of the current developer
+     *
+     * @param approvedOnly whether to keep approved subscriptions only
+     * @return subscribed product IDs
+     * @throws BusinessException if the developer has no consumer
+     */
+    public Set<String> getSubscribedProductIds(boolean approvedOnly) {
+        Map<String, String> subscriptions = getDeveloperContext().subscriptions();
+        if (!approvedOnly) {
+            return subscriptions.keySet();
+        }
+        return subscriptions.entrySet().stream()
+                .filter(e -> SubscriptionStatus.APPROVED.name().equals(e.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Get the credential of the current developer, empty if the developer has no consumer
+     *
+     * @return credential context, shared and must not be modified
+     */
+    public CredentialContext getCredentialContext() {
+        try {
+            return getDeveloperContext().credentialContext();
+        } catch (BusinessException e) {
+            return DeveloperContext.EMPTY.credentialContext();
+        }
+    }
+
+    /**
+     * Build transport configs of MCP products with the given credential
+     *
+     * @param mcpProductIds     MCP product IDs
+     * @param credentialContext credential applied to every MCP server
+     * @return transport configs, products without usable MCP config are skipped
+     */
+    public List<MCPTransportConfig> resolveMcpConfigs(
+            Collection<String> mcpProductIds, CredentialContext credentialContext) {
+        if (CollUtil.isEmpty(mcpProductIds)) {
+            return CollUtil.empty(List.class);
+        }
+        if (!isEnabled()) {
+            return mcpConfigResolver.resolve(mcpProductIds, credentialContext);
+        }
+
+        Map<String, Optional<MCPTransportConfig>> templates =
+                new LinkedHashMap<>(mcpConfigCache.getAllPresent(mcpProductIds));
+        List<String> missing =
+                mcpProductIds.stream().filter(id -> !templates.containsKey(id)).toList();
+        hitCount.addAndGet(templates.size());
+
+        if (!missing.isEmpty()) {
+            missCount.addAndGet(missing.size());
+            // Resolved once without credential, the credential of each turn is applied below
+            Map<String, MCPTransportConfig> loaded =
+                    mcpConfigResolver.resolve(missing, CredentialContext.builder().build()).stream()
+                            .collect(
+                                    Collectors.toMap(
+                                            MCPTransportConfig::getProductId,
+                                            Function.identity(),
+                                            (a, b) -> a));
+            missing.forEach(
+                    productId -> {
+                        Optional<MCPTransportConfig> template =
+                                Optional.ofNullable(loaded.get(productId));
+                        mcpConfigCache.put(productId, template);
+                        templates.put(productId, template);
+                    });
+        }
+
+        List<MCPTransportConfig> configs = new ArrayList<>();
+        for (String productId : mcpProductIds) {
+            templates
+                    .getOrDefault(productId, Optional.empty())
+                    .map(template -> withCredential(template, credentialContext))
+                    .ifPresent(configs::add);
+        }
+        return configs;
+    }
+
+    private DeveloperContext getDeveloperContext() {
+        return get(developerCache, contextHolder.getUser(), this::loadDeveloperContext);
+    }
+
+    private ProductContext getProductContext(String productId) {
+        // Product visibility depends on the portal of the caller
+        String scope = contextHolder.isAdministrator() ? "admin" : contextHolder.getPortal();
+        return get(productCache, scope + ":" + productId, key -> loadProductContext(productId));
+    }
+
+    private DeveloperContext loadDeveloperContext(String developerId) {
+        String consumerId = consumerService.getPrimaryConsumer(developerId).getConsumerId();
+        Map<String, String> subscriptions =
+                consumerService.listConsumerSubscriptions(consumerId).stream()
+                        .collect(
+                                Collectors.toMap(
+                                        SubscriptionResult::getProductId,
+                                        s -> StrUtil.nullToEmpty(s.getStatus()),
+                                        (a, b) -> a));
+        CredentialContext credentialContext = consumerService.getDefaultCredential(developerId);
+        return new DeveloperContext(consumerId, credentialContext, subscriptions);
+    }
+
+    private ProductContext loadProductContext(String productId) {
+        ProductResult product = productService.getProduct(productId);
+        ProductRefResult productRef = productService.getProductRef(productId);
+        return new ProductContext(product, productRef == null ? null : productRef.getGatewayId());
+    }
+
+    private <V> V get(Cache<String, V> cache, String key, Function<String, V> loader) {
+        if (!isEnabled()) {
+            return loader.apply(key);
+        }
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            hitCount.incrementAndGet();
+            return value;
+        }
+        missCount.incrementAndGet();
+        return cache.get(key, loader);
+    }
+
+    private MCPTransportConfig withCredential(
+            MCPTransportConfig template, CredentialContext credentialContext) {
+        return MCPTransportConfig.builder()
+                .mcpServerName(template.getMcpServerName())
+                .productId(template.getProductId())
+                .description(template.getDescription())
+                .transportMode(template.getTransportMode())
+                .url(template.getUrl())
+                .headers(credentialContext.copyHeaders())
+                .queryParams(credentialContext.copyQueryParams())
+                .build();
+    }
+
+    private boolean isEnabled() {
+        return hiChatProperties.getRequestContext().isEnabled();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onConsumerChanged(ConsumerChangedEvent event) {
+        if (StrUtil.isNotBlank(event.getDeveloperId())) {
+            developerCache.invalidate(event.getDeveloperId());
+        }
+        developerCache
+                .asMap()
+                .values()
+                .removeIf(context -> StrUtil.equals(context.consumerId(), event.getConsumerId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDeveloperDeletion(DeveloperDeletingEvent event) {
+        developerCache.invalidate(event.getDeveloperId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidateProduct(event.getProductId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductDeletion(ProductDeletingEvent event) {
+        invalidateProduct(event.getProductId());
+    }
+
+    private void invalidateProduct(String productId) {
+        String suffix = ":" + productId;
+        productCache.asMap().keySet().removeIf(key -> key.endsWith(suffix));
+        mcpConfigCache.invalidate(productId);
+        log.debug("Request context of product {} invalidated", productId);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        log.debug(
+                "Chat request context - developers: {}, products: {}, mcp configs: {}, hits: {},"
+                        + " misses: {}",
+                developerCache.estimatedSize(),
+                productCache.estimatedSize(),
+                mcpConfigCache.estimatedSize(),
+                hitCount.get(),
+                missCount.get());
+    }
+
+    /**
+     * Cached state of a developer
+     *
+     * @param consumerId        primary consumer ID, null for the empty context
+     * @param credentialContext default credential of the primary consumer
+     * @param subscriptions     subscribed product ID -> subscription status
+     */
+    private record DeveloperContext(
+            String consumerId,
+            CredentialContext credentialContext,
+            Map<String, String> subscriptions) {
+
+        static final DeveloperContext EMPTY =
+                new DeveloperContext(null, CredentialContext.builder().build(), Map.of());
+    }
+
+    /**
+     * Cached product visible to a portal
+     *
+     * @param product   product with its config
+     * @param gatewayId gateway the product is linked to, null if not linked
+     */
+    private record ProductContext(ProductResult product, String gatewayId) {}
+}
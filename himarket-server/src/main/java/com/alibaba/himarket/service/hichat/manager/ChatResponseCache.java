@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.service.hichat.memory.ChatMemoryStore;
+import com.alibaba.himarket.service.hichat.support.ChatEvent;
+import com.alibaba.himarket.service.hichat.support.InvokeModelParam;
+import com.alibaba.himarket.support.chat.ChatUsage;
+import com.alibaba.himarket.support.product.ModelFeature;
+import com.alibaba.himarket.support.product.ProductFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Exact-match cache of LLM responses for deterministic product configurations.
+ *
+ * <p>A product opts in by setting a response cache TTL in its model feature. Only requests whose
+ * answer depends on the prompt alone are cached: temperature 0, no MCP tools, no web search and a
+ * text-only user message. The key hashes the product, model, system prompt, the agent memory the
+ * model would answer from and user message. Hits replay the stored answer in small chunks instead
+ * of calling the model. Each product has its own cache with its TTL and size budget.
+ *
+ * <p>The memory is read from the {@link ChatMemoryStore}, or is the history that seeds an empty
+ * store. Turns save their memory before DONE is sent, so a client that waits for DONE is keyed
+ * with its previous turn. A request sent before that is keyed without it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatResponseCache {
+
+    private final HiChatProperties hiChatProperties;
+
+    private final ChatMemoryStore chatMemoryStore;
+
+    private final ChatMetrics chatMetrics;
+
+    private final Map<String, ProductCache> productCaches = new ConcurrentHashMap<>();
+
+    /**
+     * Build the cache key of the request
+     *
+     * @param param        model invocation parameters
+     * @param systemPrompt system prompt of the agent
+     * @return cache key, null if the response must not be cached. Reads the memory store, so it
+     *     blocks
+     */
+    public String buildKey(InvokeModelParam param, String systemPrompt) {
+        ModelFeature feature = getModelFeature(param.getProduct());
+        if (!isCacheable(param, feature)) {
+            return null;
+        }
+
+        List<Msg> memory;
+        try {
+            memory = loadMemory(param);
+        } catch (Exception e) {
+            log.warn("Failed to load memory of session: {}, not cached", param.getSessionId(), e);
+            return null;
+        }
+
+        Map<String, Object> parts = new LinkedHashMap<>();
+        parts.put("productId", param.getProduct().getProductId());
+        parts.put("model", feature.getModel());
+        parts.put("maxTokens", feature.getMaxTokens());
+        parts.put("enableThinking", feature.getEnableThinking());
+        parts.put("systemPrompt", systemPrompt);
+        parts.put("memory", toText(memory));
+        parts.put("question", param.getUserMessage().getTextContent());
+        return SecureUtil.sha256(JSONUtil.toJsonStr(parts));
+    }
+
+    /**
+     * Get the cached response of the key, counting a hit or miss for the product
+     */
+    public CachedResponse get(InvokeModelParam param, String key) {
+        ProductCache cache = getProductCache(param.getProduct());
+        CachedResponse response = cache.responses.getIfPresent(key);
+        (response == null ? cache.misses : cache.hits).incrementAndGet();
+        chatMetrics.recordResponseCache(param.getProduct().getProductId(), response != null);
+        return response;
+    }
+
+    public void put(InvokeModelParam param, String key, CachedResponse response) {
+        getProductCache(param.getProduct()).responses.put(key, response);
+    }
+
+    /**
+     * Replay the cached answer in chunks, paced like a streamed answer
+     */
+    public Flux<ChatEvent> replay(String chatId, CachedResponse response) {
+        HiChatProperties.ResponseCacheProperties config = hiChatProperties.getResponseCache();
+        int chunkChars = Math.max(config.getReplayChunkChars(), 1);
+
+        Flux<ChatEvent> events =
+                Flux.fromIterable(response.segments())
+                        .concatMap(
+                                segment ->
+                                        Flux.fromArray(StrUtil.cut(segment.text(), chunkChars))
+                                                .map(text -> segment.toEvent(chatId, text)));
+
+        long intervalMs = config.getReplayIntervalMs();
+        return intervalMs > 0 ? events.delayElements(Duration.ofMillis(intervalMs)) : events;
+    }
+
+    /**
+     * Append a turn answered from the cache to the agent memory, so later turns see it
+     *
+     * @return completes once the turn is saved, or failed to save
+     */
+    public Mono<Void> remember(InvokeModelParam param, String answer) {
+        List<Msg> messages =
+                List.of(
+                        param.getUserMessage(),
+                        Msg.builder().role(MsgRole.ASSISTANT).textContent(answer).build());
+
+        return Mono.<Void>fromRunnable(
+                        () ->
+                                chatMemoryStore.append(
+                                        param.getSessionId(),
+                                        param.getProduct().getProductId(),
+                                        messages))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(
+                        e -> {
+                            log.warn(
+                                    "Failed to save cached answer to memory of session: {}",
+                                    param.getSessionId(),
+                                    e);
+                            return Mono.empty();
+                        });
+    }
+
+    public Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    private boolean isCacheable(InvokeModelParam param, ModelFeature feature) {
+        if (!hiChatProperties.getResponseCache().isEnabled()
+                || feature == null
+                || feature.getResponseCacheTtlSeconds() == null
+                || feature.getResponseCacheTtlSeconds() <= 0) {
+            return false;
+        }
+
+        // Sampling, tools and search make answers differ for the same prompt
+        if (feature.getTemperature() == null
+                || feature.getTemperature() != 0
+                || BooleanUtil.isTrue(feature.getWebSearch())
+                || BooleanUtil.isTrue(param.getEnableWebSearch())
+                || CollUtil.isNotEmpty(param.getMcpConfigs())) {
+            return false;
+        }
+
+        Msg userMessage = param.getUserMessage();
+        return userMessage != null
+                && StrUtil.isNotBlank(userMessage.getTextContent())
+                && isTextOnly(userMessage);
+    }
+
+    private boolean isTextOnly(Msg msg) {
+        List<ContentBlock> content = msg.getContent();
+        return content == null || content.stream().allMatch(TextBlock.class::isInstance);
+    }
+
+    /**
+     * Messages the agent would answer from, its memory or the history that seeds an empty one
+     */
+    private List<Msg> loadMemory(InvokeModelParam param) {
+        List<Msg> memory =
+                chatMemoryStore.load(param.getSessionId(), param.getProduct().getProductId());
+        return CollUtil.isEmpty(memory) ? param.getHistoryMessages() : memory;
+    }
+
+    private List<String> toText(List<Msg> messages) {
+        if (CollUtil.isEmpty(messages)) {
+            return List.of();
+        }
+        return messages.stream().map(msg -> msg.getRole() + ":" + msg.getTextContent()).toList();
+    }
+
+    private ModelFeature getModelFeature(ProductResult product) {
+        return Optional.ofNullable(product)
+                .map(ProductResult::getFeature)
+                .map(ProductFeature::getModelFeature)
+                .orElse(null);
+    }
+
+    /**
+     * Cache of the product, rebuilt when its TTL or size budget changes
+     */
+    private ProductCache getProductCache(ProductResult product) {
+        ModelFeature feature = getModelFeature(product);
+        int ttlSeconds = feature.getResponseCacheTtlSeconds();
+        int maxEntries =
+                Optional.ofNullable(feature.getResponseCacheMaxEntries())
+                        .orElse(hiChatProperties.getResponseCache().getDefaultMaxEntries());
+
+        return productCaches.compute(
+                product.getProductId(),
+                (productId, current) ->
+                        current != null
+                                        && current.ttlSeconds == ttlSeconds
+                                        && current.maxEntries == maxEntries
+                                ? current
+                                : new ProductCache(ttlSeconds, maxEntries, current));
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        getStats()
+                .forEach(
+                        (productId, stats) ->
+                                log.debug(
+                                        "Response cache of product: {} - size: {}, hits: {},"
+                                                + " misses: {}, hit rate: {}",
+                                        productId,
+                                        stats.size(),
+                                        stats.hits(),
+                                        stats.misses(),
+                                        String.format("%.2f", stats.hitRate())));
+    }
+
+    /**
+     * Hit and miss counts per product
+     */
+    public Map<String, CacheStats> getStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        productCaches.forEach(
+                (productId, cache) ->
+                        stats.put(
+                                productId,
+                                new CacheStats(
+                                        cache.responses.estimatedSize(),
+                                        cache.hits.get(),
+                                        cache.misses.get())));
+        return stats;
+    }
+
+    private static class ProductCache {
+
+        private final int ttlSeconds;
+
+        private final int maxEntries;
+
+        private final Cache<String, CachedResponse> responses;
+
+        private final AtomicLong hits;
+
+        private final AtomicLong misses;
+
+        ProductCache(int ttlSeconds, int maxEntries, ProductCache previous) {
+            this.ttlSeconds = ttlSeconds;
+            this.maxEntries = maxEntries;
+            this.responses =
+                    Caffeine.newBuilder()
+                            .maximumSize(maxEntries)
+                            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                            .build();
+
+            // Keep counting across configuration changes
+            this.hits = previous == null ? new AtomicLong() : previous.hits;
+            this.misses = previous == null ? new AtomicLong() : previous.misses;
+        }
+    }
+
+    /**
+     * Records the answer of a streamed chat for caching
+     */
+    public static class Recorder {
+
+        private final List<Segment> segments = new ArrayList<>();
+
+        private StringBuilder current;
+
+        private ChatEvent.EventType currentType;
+
+        private boolean cacheable = true;
+
+        public synchronized void record(ChatEvent event) {
+            switch (event.getType()) {
+                case ASSISTANT, THINKING -> {
+                    if (event.getType() != currentType) {
+                        flushSegment();
+                        currentType = event.getType();
+                        current = new StringBuilder();
+                    }
+                    current.append(Objects.toString(event.getContent(), ""));
+                }
+                // Answers involving tools or errors are not reproducible
+                case TOOL_CALL, TOOL_RESULT, ERROR -> cacheable = false;
+                default -> {}
+            }
+        }
+
+        /**
+         * Recorded response, null if it must not be cached
+         */
+        public synchronized CachedResponse finish() {
+            flushSegment();
+            return cacheable && !segments.isEmpty() ? new CachedResponse(segments) : null;
+        }
+
+        private void flushSegment() {
+            if (current != null && !current.isEmpty()) {
+                segments.add(new Segment(currentType, current.toString()));
+            }
+            current = null;
+            currentType = null;
+        }
+    }
+
+    public record CachedResponse(List<Segment> segments) {
+
+        /**
+         * Zero-token usage, the model was not called
+         */
+        public ChatUsage usage() {
+            return ChatUsage.builder()
+                    .inputTokens(0)
+                    .outputTokens(0)
+                    .totalTokens(0)
+                    .cached(true)
+                    .build();
+        }
+    }
+
+    public record Segment(ChatEvent.EventType type, String text) {
+
+        ChatEvent toEvent(String chatId, String chunk) {
+            return type == ChatEvent.EventType.THINKING
+                    ? ChatEvent.thinking(chatId, chunk)
+                    : ChatEvent.text(chatId, chunk);
+        }
+    }
+
+    public record CacheStats(long size, long hits, long misses) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.converter.ChatUsageConverter;
+import com.alibaba.himarket.converter.ListToolCallInfoConverter;
+import com.alibaba.himarket.entity.Chat;
+import com.alibaba.himarket.repository.ChatRepository.ChatSummary;
+import com.alibaba.himarket.support.chat.ChatUsage;
+import com.alibaba.himarket.support.chat.ToolCallInfo;
+import com.alibaba.himarket.support.enums.ChatStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind persistence of chat results.
+ *
+ * <p>Completed results are queued (coalesced by chat ID) and written by a single background
+ * thread as JDBC batch updates, flushed when the batch is full or the flush interval elapses. The
+ * queue is drained on shutdown. Stream completion only enqueues with {@link #offer(Chat)} and
+ * never waits on the database. When the queue is full, {@link #submit(Chat)} blocks the caller
+ * until the writer has made room, it must be called off the event loop.
+ *
+ * <p>Until a result is written, readers of the {@code chat} table see the row as it was created.
+ * The {@code overlay} methods apply queued and in-flight results to what was read, so listings and
+ * history seeded during the flush window show the latest answer and status.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatResultPersister {
+
+    private static final String UPDATE_SQL =
+            "UPDATE chat SET answer = :answer, status = :status, chat_usage = :chatUsage, "
+                    + "tool_calls = :toolCalls, question_tokens = :questionTokens, "
+                    + "answer_tokens = :answerTokens, updated_at = :updatedAt "
+                    + "WHERE chat_id = :chatId";
+
+    /**
+     * Same converters as the entity mapping, so JSON columns are written identically
+     */
+    private static final ChatUsageConverter USAGE_CONVERTER = new ChatUsageConverter() {};
+
+    private static final ListToolCallInfoConverter TOOL_CALLS_CONVERTER =
+            new ListToolCallInfoConverter() {};
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final ChatMetrics chatMetrics;
+
+    /**
+     * Pending results keyed by chat ID, guarded by itself
+     */
+    private final Map<String, PendingResult> pending = new LinkedHashMap<>();
+
+    /**
+     * Results drained and being written, still visible to readers, guarded by {@link #pending}
+     */
+    private final Map<String, PendingResult> writing = new HashMap<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private final AtomicLong persistedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        long interval = hiChatProperties.getPersistence().getFlushIntervalMs();
+        executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread thread = new Thread(r, "ChatResultPersister");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        executor.scheduleWithFixedDelay(
+                this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue the result fields of a completed chat for persistence, without waiting
+     *
+     * @param chat chat with answer, status, usage and tool calls filled
+     * @return false if the queue is full, the caller should {@link #submit(Chat)} off the event
+     *     loop
+     */
+    public boolean offer(Chat chat) {
+        PendingResult result = toPendingResult(chat);
+        int size;
+        synchronized (pending) {
+            // Replacing a queued result of the same chat does not grow the queue
+            if (pending.size() >= getMaxPending() && !pending.containsKey(result.chatId())) {
+                scheduleFlush();
+                return false;
+            }
+            pending.put(result.chatId(), result);
+            size = pending.size();
+        }
+
+        if (size >= hiChatProperties.getPersistence().getBatchSize()) {
+            scheduleFlush();
+        }
+        return true;
+    }
+
+    /**
+     * Queue the result fields of a completed chat for persistence, waiting for room if the queue is
+     * full. Blocks on the database, never call it on an event loop thread.
+     *
+     * @param chat chat with answer, status, usage and tool calls filled
+     */
+    public void submit(Chat chat) {
+        PendingResult result = toPendingResult(chat);
+        long waitMs = hiChatProperties.getPersistence().getFlushIntervalMs();
+        boolean waited = false;
+        int size;
+        synchronized (pending) {
+            while (pending.size() >= getMaxPending()
+                    && !pending.containsKey(result.chatId())
+                    && !executor.isShutdown()) {
+                if (!waited) {
+                    log.warn("Chat result queue full: {}, waiting for flush", pending.size());
+                    scheduleFlush();
+                    waited = true;
+                }
+                try {
+                    // Woken by the writer after each batch, the timeout guards against shutdown
+                    pending.wait(waitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            pending.put(result.chatId(), result);
+            size = pending.size();
+        }
+
+        if (executor.isShutdown()) {
+            // Writer is gone, write on the caller thread
+            flush();
+        } else if (size >= hiChatProperties.getPersistence().getBatchSize()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Apply the queued or in-flight result of a chat, if any, to a chat read from the database.
+     * The result is applied to a copy, so a managed entity is never dirtied.
+     *
+     * @param chat chat read from the database
+     * @return the chat, or a copy with the pending result
+     */
+    public Chat overlay(Chat chat) {
+        PendingResult result = chat == null ? null : findPending(chat.getChatId());
+        if (result == null) {
+            return chat;
+        }
+
+        Chat copy = BeanUtil.copyProperties(chat, Chat.class);
+        copy.setAnswer(result.answer());
+        copy.setStatus(result.status());
+        copy.setChatUsage(result.usage());
+        copy.setToolCalls(result.toolCalls());
+        copy.setQuestionTokens(result.questionTokens());
+        copy.setAnswerTokens(result.answerTokens());
+        copy.setUpdatedAt(result.updatedAt());
+        return copy;
+    }
+
+    /**
+     * Apply queued or in-flight results to chats read from the database
+     *
+     * @param chats chats read from the database
+     * @return chats with the latest results
+     */
+    public List<Chat> overlay(List<Chat> chats) {
+        if (CollUtil.isEmpty(chats) || !hasPending()) {
+            return chats;
+        }
+        return chats.stream().map(this::overlay).collect(Collectors.toList());
+    }
+
+    /**
+     * Apply queued or in-flight results to chat summaries read from the database
+     *
+     * @param summaries summaries read from the database
+     * @return summaries with the latest status and update time
+     */
+    public List<ChatSummary> overlaySummaries(List<ChatSummary> summaries) {
+        if (CollUtil.isEmpty(summaries) || !hasPending()) {
+            return summaries;
+        }
+
+        List<ChatSummary> result = new ArrayList<>(summaries.size());
+        for (ChatSummary summary : summaries) {
+            PendingResult queued = findPending(summary.getChatId());
+            result.add(queued == null ? summary : new PendingSummary(summary, queued));
+        }
+        return result;
+    }
+
+    /**
+     * Number of results waiting to be written
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getPersistedCount() {
+        return persistedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private PendingResult toPendingResult(Chat chat) {
+        return new PendingResult(
+                chat.getChatId(),
+                chat.getAnswer(),
+                chat.getStatus(),
+                chat.getChatUsage(),
+                chat.getToolCalls(),
+                chat.getQuestionTokens(),
+                chat.getAnswerTokens(),
+                LocalDateTime.now());
+    }
+
+    private PendingResult findPending(String chatId) {
+        synchronized (pending) {
+            PendingResult result = pending.get(chatId);
+            return result != null ? result : writing.get(chatId);
+        }
+    }
+
+    private boolean hasPending() {
+        synchronized (pending) {
+            return !pending.isEmpty() || !writing.isEmpty();
+        }
+    }
+
+    private int getMaxPending() {
+        return Math.max(hiChatProperties.getPersistence().getMaxPending(), 1);
+    }
+
+    private void scheduleFlush() {
+        if (!executor.isShutdown()) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Chat result persister did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Drain whatever is left
+        flush();
+        log.info(
+                "Chat result persister stopped, persisted: {}, failed: {}",
+                persistedCount.get(),
+                failedCount.get());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Unexpected error while flushing chat results", e);
+        }
+    }
+
+    /**
+     * Write all pending results in batches
+     */
+    private void flush() {
+        // Only one flush at a time, others will be picked up by the running one
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            List<PendingResult> batch;
+            while (!(batch = drain(hiChatProperties.getPersistence().getBatchSize())).isEmpty()) {
+                try {
+                    write(batch);
+                } finally {
+                    release(batch);
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private List<PendingResult> drain(int max) {
+        synchronized (pending) {
+            List<PendingResult> batch = new ArrayList<>(Math.min(max, pending.size()));
+            Iterator<PendingResult> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < max) {
+                PendingResult result = iterator.next();
+                batch.add(result);
+                writing.put(result.chatId(), result);
+                iterator.remove();
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Drop written results from the read overlay and wake submitters waiting for room
+     */
+    private void release(List<PendingResult> batch) {
+        synchronized (pending) {
+            batch.forEach(result -> writing.remove(result.chatId(), result));
+            pending.notifyAll();
+        }
+    }
+
+    private void write(List<PendingResult> batch) {
+        long startTime = System.currentTimeMillis();
+        SqlParameterSource[] params =
+                batch.stream().map(this::toParams).toArray(SqlParameterSource[]::new);
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, params);
+            persistedCount.addAndGet(batch.size());
+            log.debug(
+                    "Persisted {} chat results in {}ms",
+                    batch.size(),
+                    System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error(
+                    "Batch update of {} chat results failed, retrying one by one",
+                    batch.size(),
+                    e);
+
+            // Isolate the bad rows so one failure does not lose the whole batch
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    jdbcTemplate.update(UPDATE_SQL, params[i]);
+                    persistedCount.incrementAndGet();
+                } catch (Exception ex) {
+                    failedCount.incrementAndGet();
+                    log.error("Failed to persist chat result: {}", batch.get(i).chatId(), ex);
+                }
+            }
+        }
+        chatMetrics.recordPersistFlush(batch.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private SqlParameterSource toParams(PendingResult result) {
+        return new MapSqlParameterSource()
+                .addValue("chatId", result.chatId())
+                .addValue("answer", result.answer())
+                .addValue("status", result.status() == null ? null : result.status().name())
+                .addValue("chatUsage", USAGE_CONVERTER.convertToDatabaseColumn(result.usage()))
+                .addValue(
+                        "toolCalls",
+                        CollUtil.isEmpty(result.toolCalls())
+                                ? null
+                                : TOOL_CALLS_CONVERTER.convertToDatabaseColumn(
+                                        result.toolCalls()))
+                .addValue("questionTokens", result.questionTokens())
+                .addValue("answerTokens", result.answerTokens())
+                .addValue("updatedAt", Timestamp.valueOf(result.updatedAt()));
+    }
+
+    private record PendingResult(
+            String chatId,
+            String answer,
+            ChatStatus status,
+            ChatUsage usage,
+            List<ToolCallInfo> toolCalls,
+            Integer questionTokens,
+            Integer answerTokens,
+            LocalDateTime updatedAt) {}
+
+    /**
+     * Summary read from the database with the status of its pending result
+     */
+    private record PendingSummary(ChatSummary summary, PendingResult result)
+            implements ChatSummary {
+
+        @Override
+        public String getChatId() {
+            return summary.getChatId();
+        }
+
+        @Override
+        public String getConversationId() {
+            return summary.getConversationId();
+        }
+
+        @Override
+        public String getQuestionId() {
+            return summary.getQuestionId();
+        }
+
+        @Override
+        public String getQuestion() {
+            return summary.getQuestion();
+        }
+
+        @Override
+        public String getProductId() {
+            return summary.getProductId();
+        }
+
+        @Override
+        public String getAnswerId() {
+            return summary.getAnswerId();
+        }
+
+        @Override
+        public Integer getSequence() {
+            return summary.getSequence();
+        }
+
+        @Override
+        public ChatStatus getStatus() {
+            return result.status();
+        }
+
+        @Override
+        public LocalDateTime getCreateAt() {
+            return summary.getCreateAt();
+        }
+
+        @Override
+        public LocalDateTime getUpdatedAt() {
+            return result.updatedAt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import io.agentscope.core.tool.mcp.McpClientWrapper;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * MCP client view of a single ChatBot, capping how many of its tool calls run at once and how
+ * long each may take.
+ *
+ * <p>The permits are shared by all MCP servers of the ChatBot, so independent tool calls of one
+ * reasoning step run concurrently up to the cap. A call that does not finish within the timeout,
+ * including its wait for a permit, returns an error result to the model instead of failing the
+ * chat. Oversized results are replaced by a preview through {@link ToolResultSpiller}. The
+ * underlying client is shared and owned by {@link ToolManager}, so it is never closed here.
+ */
+@Slf4j
+public class ChatScopedMcpClientWrapper extends McpClientWrapper {
+
+    private final McpClientWrapper delegate;
+
+    private final String sessionId;
+
+    private final McpPermits permits;
+
+    private final Duration callTimeout;
+
+    private final ToolResultSpiller spiller;
+
+    public ChatScopedMcpClientWrapper(
+            McpClientWrapper delegate,
+            String sessionId,
+            McpPermits permits,
+            Duration callTimeout,
+            ToolResultSpiller spiller) {
+        super(delegate.getName());
+        this.delegate = delegate;
+        this.sessionId = sessionId;
+        this.permits = permits;
+        this.callTimeout = callTimeout;
+        this.spiller = spiller;
+    }
+
+    @Override
+    public Mono<Void> initialize() {
+        return delegate.initialize();
+    }
+
+    @Override
+    public Mono<List<McpSchema.Tool>> listTools() {
+        return delegate.listTools();
+    }
+
+    @Override
+    public Mono<McpSchema.CallToolResult> callTool(String toolName, Map<String, Object> arguments) {
+        // The wait for a permit is bounded by the call timeout
+        return permits.withPermit(() -> delegate.callTool(toolName, arguments), null, null)
+                .timeout(callTimeout)
+                .onErrorResume(
+                        TimeoutException.class,
+                        e -> {
+                            log.warn(
+                                    "Tool call timed out after {}ms, MCP server: {}, tool: {}",
+                                    callTimeout.toMillis(),
+                                    getName(),
+                                    toolName);
+                            return Mono.just(timeoutResult(toolName));
+                        })
+                // Oversized results never reach the agent memory
+                .flatMap(result -> spiller.spill(sessionId, getName(), toolName, result));
+    }
+
+    private McpSchema.CallToolResult timeoutResult(String toolName) {
+        String message =
+                String.format(
+                        "Tool %s of MCP server %s did not respond within %dms",
+                        toolName,
+                        getName(),
+                        callTimeout.toMillis());
+        return new McpSchema.CallToolResult(List.of(new McpSchema.TextContent(message)), true);
+    }
+
+    @Override
+    public void close() {
+        // Shared client, closed by ToolManager on eviction
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.service.hichat.support.ChatEvent;
+import com.alibaba.himarket.service.hichat.support.ChatStreamEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory journal of chat event streams, decoupling LLM generation from the HTTP connection.
+ *
+ * <p>Each chat gets a bounded ring buffer of its latest events. Generation writes into the buffer
+ * regardless of whether a client is connected, and a client that reconnects with Last-Event-ID
+ * gets the remaining events replayed. Generation left without any client for longer than a grace
+ * period is cancelled. Streams are kept for a while after DONE and then evicted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatStreamJournal {
+
+    /**
+     * Streams that never complete are evicted after this age, matching the SSE emitter timeout
+     */
+    private static final long MAX_STREAM_AGE_MILLIS = 30 * 60 * 1000L;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final Map<String, ChatStream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Open a new stream for the chat, replacing any previous one
+     *
+     * @param chatId Chat ID
+     * @param userId Owner of the chat
+     * @return the opened stream
+     */
+    public ChatStream open(String chatId, String userId) {
+        HiChatProperties.StreamProperties config = hiChatProperties.getStream();
+        ChatStream stream =
+                new ChatStream(
+                        chatId,
+                        userId,
+                        config.getJournalSize(),
+                        Duration.ofSeconds(config.getDetachedGraceSeconds()));
+        ChatStream previous = streams.put(chatId, stream);
+        if (previous != null) {
+            previous.cancel();
+        }
+        return stream;
+    }
+
+    public Optional<ChatStream> find(String chatId) {
+        return Optional.ofNullable(streams.get(chatId));
+    }
+
+    public int size() {
+        return streams.size();
+    }
+
+    @Scheduled(fixedRate = 30_000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        long ttlMillis = hiChatProperties.getStream().getJournalTtlSeconds() * 1000L;
+
+        streams.values()
+                .removeIf(
+                        stream -> {
+                            if (stream.isCompletedBefore(now - ttlMillis)) {
+                                return true;
+                            }
+                            if (stream.getCreatedAt() < now - MAX_STREAM_AGE_MILLIS) {
+                                log.warn(
+                                        "Evict chat stream that did not complete in time, chatId:"
+                                                + " {}",
+                                        stream.getChatId());
+                                stream.cancel();
+                                return true;
+                            }
+                            return false;
+                        });
+    }
+
+    /**
+     * Event stream of a single chat, backed by a ring buffer of its latest events
+     */
+    public static class ChatStream {
+
+        @Getter private final String chatId;
+
+        @Getter private final String userId;
+
+        @Getter private final long createdAt = System.currentTimeMillis();
+
+        private final ChatStreamEvent[] ring;
+
+        private final Duration detachedGrace;
+
+        private final List<FluxSink<ChatStreamEvent>> listeners = new ArrayList<>();
+
+        /**
+         * ID of the last appended event, 0 if none
+         */
+        private long lastId;
+
+        private boolean completed;
+
+        private long completedAt;
+
+        /**
+         * When the last client disconnected
+         */
+        private long detachedAt;
+
+        private volatile Disposable generation;
+
+        ChatStream(String chatId, String userId, int capacity, Duration detachedGrace) {
+            this.chatId = chatId;
+            this.userId = userId;
+            this.ring = new ChatStreamEvent[Math.max(capacity, 1)];
+            this.detachedGrace = detachedGrace;
+        }
+
+        /**
+         * Attach the generation feeding this stream, so that it can be cancelled
+         */
+        public void attach(Disposable generation) {
+            this.generation = generation;
+        }
+
+        public void append(ChatEvent event) {
+            ChatStreamEvent streamEvent;
+            List<FluxSink<ChatStreamEvent>> targets;
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                streamEvent = new ChatStreamEvent(++lastId, event);
+                ring[slot(lastId)] = streamEvent;
+                targets = List.copyOf(listeners);
+            }
+            // Emit outside the lock, a subscriber registered later replays this event instead
+            targets.forEach(sink -> sink.next(streamEvent));
+        }
+
+        public void complete() {
+            List<FluxSink<ChatStreamEvent>> targets;
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+                completedAt = System.currentTimeMillis();
+                targets = List.copyOf(listeners);
+                listeners.clear();
+            }
+            targets.forEach(FluxSink::complete);
+        }
+
+        /**
+         * Stop generation and complete the stream
+         */
+        public void cancel() {
+            Disposable current = generation;
+            if (current != null) {
+                current.dispose();
+            }
+            complete();
+        }
+
+        /**
+         * Subscribe to the events after the given ID. Buffered events are replayed first, then
+         * live events follow until the stream completes.
+         *
+         * @param afterId ID of the last event the client received, 0 for all
+         */
+        public Flux<ChatStreamEvent> subscribe(long afterId) {
+            return Flux.create(
+                    sink -> {
+                        synchronized (this) {
+                            long oldestId = Math.max(1, lastId - ring.length + 1);
+                            if (afterId + 1 < oldestId) {
+                                // Events the client has not seen are no longer buffered
+                                sink.next(
+                                        new ChatStreamEvent(
+                                                lastId,
+                                                ChatEvent.error(
+                                                        chatId,
+                                                        "STREAM_EXPIRED",
+                                                        "Missed events are no longer available")));
+                                sink.complete();
+                                return;
+                            }
+                            for (long id = Math.max(afterId, 0) + 1; id <= lastId; id++) {
+                                sink.next(ring[slot(id)]);
+                            }
+                            if (completed) {
+                                sink.complete();
+                                return;
+                            }
+                            listeners.add(sink);
+                        }
+                        sink.onDispose(() -> removeListener(sink));
+                    },
+                    FluxSink.OverflowStrategy.BUFFER);
+        }
+
+        public synchronized boolean hasListeners() {
+            return !listeners.isEmpty();
+        }
+
+        public synchronized boolean isCompleted() {
+            return completed;
+        }
+
+        synchronized boolean isCompletedBefore(long timestamp) {
+            return completed && completedAt < timestamp;
+        }
+
+        private synchronized void removeListener(FluxSink<ChatStreamEvent> sink) {
+            if (!listeners.remove(sink) || !listeners.isEmpty() || completed) {
+                return;
+            }
+
+            // Give the client a chance to resume before the abandoned generation is cancelled
+            detachedAt = System.currentTimeMillis();
+            Mono.delay(detachedGrace).subscribe(ignored -> cancelIfDetached());
+        }
+
+        private void cancelIfDetached() {
+            synchronized (this) {
+                long detachedMillis = System.currentTimeMillis() - detachedAt;
+                if (completed
+                        || !listeners.isEmpty()
+                        || detachedMillis < detachedGrace.toMillis()) {
+                    return;
+                }
+            }
+            log.info("Cancel chat generation without any client, chatId: {}", chatId);
+            cancel();
+        }
+
+        private int slot(long id) {
+            return (int) (id % ring.length);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import com.alibaba.himarket.service.hichat.attachment.MediaContentCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.function.ToDoubleFunction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the counters HiChat components already keep as Micrometer meters
+ */
+@Component
+@RequiredArgsConstructor
+public class HiChatMeterBinder implements MeterBinder {
+
+    private final ChatResultPersister chatResultPersister;
+
+    private final MediaContentCache mediaContentCache;
+
+    private final ToolManager toolManager;
+
+    private final ChatPrewarmer chatPrewarmer;
+
+    private final ChatAdmissionManager chatAdmissionManager;
+
+    private final ChatStreamJournal chatStreamJournal;
+
+    private final ModelClientRegistry modelClientRegistry;
+
+    private final ToolResultSpiller toolResultSpiller;
+
+    private final ChatArchiveManager chatArchiveManager;
+
+    private final ChatRequestContextResolver requestContextResolver;
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        // Write-behind persistence
+        Gauge.builder(
+                        "hichat.persist.queue.depth",
+                        chatResultPersister,
+                        ChatResultPersister::getQueueDepth)
+                .description("Chat results waiting to be persisted")
+                .register(registry);
+        counter(
+                registry,
+                "hichat.persist.results",
+                "persisted",
+                chatResultPersister,
+                ChatResultPersister::getPersistedCount);
+        counter(
+                registry,
+                "hichat.persist.results",
+                "failed",
+                chatResultPersister,
+                ChatResultPersister::getFailedCount);
+
+        // Media content cache
+        counter(
+                registry,
+                "hichat.media.cache.requests",
+                "hit",
+                mediaContentCache,
+                c -> c.stats().hitCount());
+        counter(
+                registry,
+                "hichat.media.cache.requests",
+                "miss",
+                mediaContentCache,
+                c -> c.stats().missCount());
+        Gauge.builder(
+                        "hichat.media.cache.bytes",
+                        mediaContentCache,
+                        MediaContentCache::weightedSize)
+                .description("Bytes held by the media content cache")
+                .register(registry);
+
+        // MCP clients
+        counter(
+                registry,
+                "hichat.mcp.client.requests",
+                "hit",
+                toolManager,
+                ToolManager::getClientHits);
+        counter(
+                registry,
+                "hichat.mcp.client.requests",
+                "miss",
+                toolManager,
+                ToolManager::getClientMisses);
+
+        counter(
+                registry,
+                "hichat.mcp.tool.results.spilled",
+                null,
+                toolResultSpiller,
+                ToolResultSpiller::getSpilledCount);
+        counter(
+                registry,
+                "hichat.mcp.tool.results.spilled.chars",
+                null,
+                toolResultSpiller,
+                ToolResultSpiller::getSpilledChars);
+
+        // Prewarm
+        counter(registry, "hichat.prewarm", "warmed", chatPrewarmer, ChatPrewarmer::getWarmedCount);
+        counter(
+                registry,
+                "hichat.prewarm",
+                "alreadyWarm",
+                chatPrewarmer,
+                ChatPrewarmer::getAlreadyWarmCount);
+        counter(
+                registry,
+                "hichat.prewarm",
+                "skipped",
+                chatPrewarmer,
+                ChatPrewarmer::getSkippedCount);
+        counter(registry, "hichat.prewarm", "failed", chatPrewarmer, ChatPrewarmer::getFailedCount);
+
+        // Admission control
+        counter(
+                registry,
+                "hichat.admission",
+                "admitted",
+                chatAdmissionManager,
+                ChatAdmissionManager::getAdmittedCount);
+        counter(
+                registry,
+                "hichat.admission",
+                "rejected",
+                chatAdmissionManager,
+                ChatAdmissionManager::getRejectedCount);
+        Gauge.builder(
+                        "hichat.admission.queued",
+                        chatAdmissionManager,
+                        ChatAdmissionManager::getQueued)
+                .description("Chats waiting for a slot")
+                .register(registry);
+
+        // Chat streams
+        Gauge.builder("hichat.stream.journal.size", chatStreamJournal, ChatStreamJournal::size)
+                .description("Chat streams held for resumption")
+                .register(registry);
+
+        // Model clients
+        Gauge.builder("hichat.model.clients", modelClientRegistry, ModelClientRegistry::getSize)
+                .description("Model clients held by the registry")
+                .register(registry);
+        counter(
+                registry,
+                "hichat.model.client.requests",
+                "hit",
+                modelClientRegistry,
+                ModelClientRegistry::getHitCount);
+        counter(
+                registry,
+                "hichat.model.client.requests",
+                "miss",
+                modelClientRegistry,
+                ModelClientRegistry::getMissCount);
+        counter(
+                registry,
+                "hichat.model.client.evictions",
+                null,
+                modelClientRegistry,
+                ModelClientRegistry::getEvictionCount);
+
+        // Request context
+        counter(
+                registry,
+                "hichat.request.context.requests",
+                "hit",
+                requestContextResolver,
+                ChatRequestContextResolver::getHitCount);
+        counter(
+                registry,
+                "hichat.request.context.requests",
+                "miss",
+                requestContextResolver,
+                ChatRequestContextResolver::getMissCount);
+
+        // Cold archive
+        counter(
+                registry,
+                "hichat.chat.archived",
+                null,
+                chatArchiveManager,
+                ChatArchiveManager::getArchivedCount);
+    }
+
+    private static <T> void counter(
+            MeterRegistry registry,
+            String name,
+            String result,
+            T source,
+            ToDoubleFunction<T> count) {
+        FunctionCounter.Builder<T> builder = FunctionCounter.builder(name, source, count);
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(registry);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import io.agentscope.core.tool.mcp.McpClientWrapper;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * MCP client wrapper that caps concurrent in-flight tool calls of an upstream.
+ *
+ * <p>The permits are shared by all clients of the same upstream endpoint. A call without a free
+ * permit waits without blocking, in arrival order, until one frees up or the wait times out.
+ */
+@Slf4j
+public class LimitedMcpClientWrapper extends McpClientWrapper {
+
+    private final McpClientWrapper delegate;
+
+    private final McpPermits permits;
+
+    private final Duration maxWait;
+
+    public LimitedMcpClientWrapper(
+            McpClientWrapper delegate, McpPermits permits, Duration maxWait) {
+        super(delegate.getName());
+        this.delegate = delegate;
+        this.permits = permits;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public Mono<Void> initialize() {
+        return delegate.initialize();
+    }
+
+    @Override
+    public Mono<List<McpSchema.Tool>> listTools() {
+        return delegate.listTools();
+    }
+
+    @Override
+    public Mono<McpSchema.CallToolResult> callTool(String toolName, Map<String, Object> arguments) {
+        return permits.withPermit(
+                () -> delegate.callTool(toolName, arguments),
+                maxWait,
+                () -> new UpstreamBusyException(getName()));
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } catch (Exception e) {
+            log.warn("Failed to close MCP client: {}", getName(), e);
+        }
+    }
+
+    /**
+     * Number of free in-flight slots of the upstream
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    static class UpstreamBusyException extends RuntimeException {
+
+        UpstreamBusyException(String serverName) {
+            super("Too many in-flight tool calls to MCP server: " + serverName);
+        }
+    }
+}
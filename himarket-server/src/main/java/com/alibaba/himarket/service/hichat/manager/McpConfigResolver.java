@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.dto.result.consumer.CredentialContext;
+import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.entity.McpServerEndpoint;
+import com.alibaba.himarket.entity.McpServerMeta;
+import com.alibaba.himarket.repository.McpServerEndpointRepository;
+import com.alibaba.himarket.repository.McpServerMetaRepository;
+import com.alibaba.himarket.service.ProductService;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import com.alibaba.himarket.support.enums.MCPTransportMode;
+import com.alibaba.himarket.support.enums.McpEndpointStatus;
+import com.alibaba.himarket.support.enums.McpProtocolType;
+import com.alibaba.himarket.support.enums.ProductType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves MCP products to transport configs used by chats.
+ */
+@Component
+@RequiredArgsConstructor
+public class McpConfigResolver {
+
+    private final ProductService productService;
+
+    private final McpServerMetaRepository mcpServerMetaRepository;
+
+    private final McpServerEndpointRepository mcpServerEndpointRepository;
+
+    /**
+     * Build transport configs of MCP products with the given credential
+     *
+     * @param mcpProductIds     MCP product IDs
+     * @param credentialContext credential applied to every MCP server
+     * @return transport configs, products without usable MCP config are skipped
+     */
+    public List<MCPTransportConfig> resolve(
+            Collection<String> mcpProductIds, CredentialContext credentialContext) {
+        if (CollUtil.isEmpty(mcpProductIds)) {
+            return CollUtil.empty(List.class);
+        }
+
+        Map<String, ProductResult> productMap =
+                productService.getProducts(new ArrayList<>(mcpProductIds));
+
+        // 批量查 meta 和公共 endpoint，避免 N+1
+        List<String> productIds = new ArrayList<>(productMap.keySet());
+        Map<String, McpServerMeta> metaByProductId =
+                mcpServerMetaRepository.findByProductIdIn(productIds).stream()
+                        .collect(
+                                Collectors.toMap(McpServerMeta::getProductId, m -> m, (a, b) -> a));
+        List<String> mcpServerIds =
+                metaByProductId.values().stream()
+                        .map(McpServerMeta::getMcpServerId)
+                        .collect(Collectors.toList());
+        Map<String, McpServerEndpoint> endpointByMcpServerId =
+                mcpServerIds.isEmpty()
+                        ? Collections.emptyMap()
+                        : mcpServerEndpointRepository
+                                .findByMcpServerIdInAndUserIdInAndStatus(
+                                        mcpServerIds,
+                                        List.of(McpEndpointStatus.PUBLIC_USER_ID),
+                                        McpEndpointStatus.ACTIVE.name())
+                                .stream()
+                                .collect(
+                                        Collectors.toMap(
+                                                McpServerEndpoint::getMcpServerId,
+                                                ep -> ep,
+                                                (a, b) -> a));
+
+        return productMap.values().stream()
+                .filter(
+                        product ->
+                                product.getType() == ProductType.MCP_SERVER
+                                        || product.getMcpConfig() != null)
+                .map(
+                        product -> {
+                            // 优先从 endpoint 热数据构建（沙箱/自定义 MCP）
+                            McpServerMeta meta = metaByProductId.get(product.getProductId());
+                            if (meta != null) {
+                                McpServerEndpoint ep =
+                                        endpointByMcpServerId.get(meta.getMcpServerId());
+                                if (ep != null && StrUtil.isNotBlank(ep.getEndpointUrl())) {
+                                    String protocol =
+                                            StrUtil.blankToDefault(ep.getProtocol(), "sse");
+                                    MCPTransportMode mode =
+                                            McpProtocolType.resolveTransportMode(protocol);
+                                    MCPTransportConfig config =
+                                            MCPTransportConfig.builder()
+                                                    .mcpServerName(meta.getMcpName())
+                                                    .productId(product.getProductId())
+                                                    .transportMode(mode)
+                                                    .url(ep.getEndpointUrl())
+                                                    .headers(credentialContext.copyHeaders())
+                                                    .queryParams(
+                                                            credentialContext.copyQueryParams())
+                                                    .build();
+                                    return config;
+                                }
+                            }
+
+                            // fallback：从冷数据 mcpConfig 构建（网关导入的 MCP）
+                            if (product.getMcpConfig() == null) {
+                                return null;
+                            }
+                            MCPTransportConfig transportConfig =
+                                    product.getMcpConfig().toTransportConfig();
+                            if (transportConfig == null) {
+                                return null;
+                            }
+                            transportConfig.setProductId(product.getProductId());
+                            transportConfig.setHeaders(credentialContext.copyHeaders());
+                            transportConfig.setQueryParams(credentialContext.copyQueryParams());
+                            return transportConfig;
+                        })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+}
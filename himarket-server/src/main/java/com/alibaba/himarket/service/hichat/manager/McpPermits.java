@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Permits for MCP tool calls, waited for without blocking a thread.
+ *
+ * <p>Waiters are served first come, first served: a released permit is handed to the longest
+ * waiting call, and a new call only takes a free permit when nobody is waiting. A waiting call
+ * holds no timer unless its wait is bounded.
+ */
+public final class McpPermits {
+
+    private final Object lock = new Object();
+
+    private final ArrayDeque<Waiter<?>> waiters = new ArrayDeque<>();
+
+    private int available;
+
+    public McpPermits(int permits) {
+        this.available = permits;
+    }
+
+    /**
+     * Number of free permits
+     */
+    public int availablePermits() {
+        synchronized (lock) {
+            return available;
+        }
+    }
+
+    /**
+     * Subscribe to the call once a permit is free and release it when the call terminates
+     *
+     * @param call the call to run under the permit
+     * @param maxWait how long to wait for a permit, null to wait until cancelled
+     * @param busy error to signal when no permit frees up within maxWait
+     */
+    <T> Mono<T> withPermit(
+            Supplier<Mono<T>> call, Duration maxWait, Supplier<? extends RuntimeException> busy) {
+        return Mono.create(
+                sink -> {
+                    Waiter<T> waiter = new Waiter<>(sink, call);
+                    sink.onCancel(waiter::cancel);
+
+                    boolean acquired;
+                    synchronized (lock) {
+                        // Free permits only exist while nobody waits
+                        acquired = available > 0;
+                        if (acquired) {
+                            available--;
+                        } else {
+                            waiters.add(waiter);
+                        }
+                    }
+
+                    if (acquired) {
+                        waiter.start();
+                    } else if (maxWait != null) {
+                        waiter.expireAfter(maxWait, busy);
+                    }
+                });
+    }
+
+    /**
+     * Hand the permit to the longest waiting call, or free it if nobody waits
+     */
+    private void release() {
+        while (true) {
+            Waiter<?> next;
+            synchronized (lock) {
+                next = waiters.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            if (next.start()) {
+                return;
+            }
+            // Cancelled or expired while being handed the permit, pass it on
+        }
+    }
+
+    private final class Waiter<T> {
+
+        private final MonoSink<T> sink;
+
+        private final Supplier<Mono<T>> call;
+
+        /**
+         * Set once the waiter is started, cancelled or expired, whichever comes first
+         */
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private final Disposable.Swap running = Disposables.swap();
+
+        private volatile Disposable expiry;
+
+        Waiter(MonoSink<T> sink, Supplier<Mono<T>> call) {
+            this.sink = sink;
+            this.call = call;
+        }
+
+        /**
+         * Run the call under a permit held for it
+         *
+         * @return false if the waiter is already settled, the permit is not taken
+         */
+        boolean start() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+            Disposable timer = expiry;
+            if (timer != null) {
+                timer.dispose();
+            }
+
+            // A cancel from here on disposes the call, which releases the permit
+            running.update(
+                    Mono.defer(call)
+                            .doFinally(signal -> release())
+                            .subscribe(sink::success, sink::error, () -> sink.success()));
+            return true;
+        }
+
+        void expireAfter(Duration maxWait, Supplier<? extends RuntimeException> busy) {
+            expiry =
+                    Schedulers.parallel()
+                            .schedule(
+                                    () -> {
+                                        if (leaveQueue()) {
+                                            sink.error(busy.get());
+                                        }
+                                    },
+                                    maxWait.toMillis(),
+                                    TimeUnit.MILLISECONDS);
+            if (settled.get()) {
+                expiry.dispose();
+            }
+        }
+
+        void cancel() {
+            leaveQueue();
+            Disposable timer = expiry;
+            if (timer != null) {
+                timer.dispose();
+            }
+            running.dispose();
+        }
+
+        private boolean leaveQueue() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+            synchronized (lock) {
+                waiters.remove(this);
+            }
+            return true;
+        }
+    }
+}
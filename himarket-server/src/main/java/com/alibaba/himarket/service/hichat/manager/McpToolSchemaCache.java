@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.event.ProductChangedEvent;
+import com.alibaba.himarket.core.event.ProductDeletingEvent;
+import com.alibaba.himarket.core.utils.CacheUtil;
+import com.alibaba.himarket.entity.McpServerMeta;
+import com.alibaba.himarket.repository.McpServerMetaRepository;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.agentscope.core.tool.mcp.McpClientWrapper;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Tool schema cache for MCP servers.
+ *
+ * <p>Schemas are keyed by endpoint (transport mode and URL), not by credentials, so all
+ * developers share one entry per MCP server. Entries are seeded from {@link
+ * McpServerMeta#getToolsConfig()} and written back when a live {@code tools/list} differs. Stale
+ * entries are served immediately and revalidated in the background. A change to a product drops
+ * the entries of the endpoints it was used with, so they are seeded again from its server meta.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McpToolSchemaCache {
+
+    private static final TypeReference<List<McpSchema.Tool>> TOOLS_TYPE =
+            new TypeReference<>() {};
+
+    private final McpServerMetaRepository mcpServerMetaRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final ChatMetrics chatMetrics;
+
+    // Evicted after 1 day without access, endpoints are few and schemas small
+    private final Cache<String, ToolSchemas> schemaCache = CacheUtil.newLRUCache(24 * 60 * 60);
+
+    /**
+     * Endpoints being refreshed in the background
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Endpoints cached for each product
+     */
+    private final Map<String, Set<String>> productEndpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Get tool schemas of an MCP server, listing them from the client only on cache miss
+     *
+     * @param config MCP transport configuration
+     * @param client connected client of the MCP server, used on miss and for revalidation
+     * @return Mono of tool schemas
+     */
+    public Mono<List<McpSchema.Tool>> getTools(
+            MCPTransportConfig config, McpClientWrapper client) {
+        String endpointKey = buildEndpointKey(config);
+
+        return getCachedTools(config)
+                .doOnNext(
+                        schemas -> {
+                            if (schemas.isStale(getRefreshIntervalMillis())) {
+                                refreshInBackground(config, endpointKey, client);
+                            }
+                        })
+                .map(ToolSchemas::tools)
+                .switchIfEmpty(
+                        Mono.defer(
+                                () ->
+                                        listTools(config, client)
+                                                .doOnNext(tools -> put(config, tools))));
+    }
+
+    private Mono<List<McpSchema.Tool>> listTools(
+            MCPTransportConfig config, McpClientWrapper client) {
+        return Mono.defer(
+                () -> {
+                    long startTime = System.currentTimeMillis();
+                    return client.listTools()
+                            .doOnNext(
+                                    tools ->
+                                            chatMetrics.recordMcp(
+                                                    ChatMetrics.MCP_LIST_TOOLS,
+                                                    config.getMcpServerName(),
+                                                    System.currentTimeMillis() - startTime));
+                });
+    }
+
+    /**
+     * Get cached tool schemas without connecting to the MCP server
+     *
+     * @param config MCP transport configuration
+     * @return Mono of cached schemas, empty if unknown
+     */
+    public Mono<ToolSchemas> getCachedTools(MCPTransportConfig config) {
+        String endpointKey = buildEndpointKey(config);
+
+        ToolSchemas cached = schemaCache.getIfPresent(endpointKey);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        track(config, endpointKey);
+
+        // Seed from persisted tools config (blocking repository read)
+        return Mono.fromCallable(() -> loadFromMeta(config).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(schemas -> schemaCache.put(endpointKey, schemas));
+    }
+
+    /**
+     * Store live tool schemas, persisting them to the server meta if they changed
+     *
+     * @param config MCP transport configuration
+     * @param tools  tool schemas from tools/list
+     */
+    public void put(MCPTransportConfig config, List<McpSchema.Tool> tools) {
+        if (tools == null) {
+            return;
+        }
+
+        String endpointKey = buildEndpointKey(config);
+        track(config, endpointKey);
+        ToolSchemas previous = schemaCache.getIfPresent(endpointKey);
+        schemaCache.put(endpointKey, new ToolSchemas(tools, System.currentTimeMillis()));
+
+        if (previous == null || !previous.tools().equals(tools)) {
+            Mono.fromRunnable(() -> saveToMeta(config, tools))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe(
+                            null,
+                            e ->
+                                    log.warn(
+                                            "Failed to persist tools config of MCP server: {}",
+                                            config.getMcpServerName(),
+                                            e));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidateProduct(event.getProductId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductDeletion(ProductDeletingEvent event) {
+        invalidateProduct(event.getProductId());
+    }
+
+    /**
+     * Drop cached schemas of the endpoints of a product, next access seeds them again
+     */
+    private void invalidateProduct(String productId) {
+        Set<String> endpointKeys = productEndpoints.remove(StrUtil.nullToEmpty(productId));
+        if (endpointKeys == null) {
+            return;
+        }
+        schemaCache.invalidateAll(endpointKeys);
+        log.debug("Tool schemas of product {} invalidated, endpoints: {}", productId, endpointKeys);
+    }
+
+    private void track(MCPTransportConfig config, String endpointKey) {
+        productEndpoints
+                .computeIfAbsent(
+                        StrUtil.nullToEmpty(config.getProductId()),
+                        key -> ConcurrentHashMap.newKeySet())
+                .add(endpointKey);
+    }
+
+    private void refreshInBackground(
+            MCPTransportConfig config, String endpointKey, McpClientWrapper client) {
+        if (!refreshing.add(endpointKey)) {
+            return;
+        }
+
+        log.debug("Refreshing tool schemas of MCP server: {}", config.getMcpServerName());
+        listTools(config, client)
+                .doFinally(signal -> refreshing.remove(endpointKey))
+                .subscribe(
+                        tools -> put(config, tools),
+                        e ->
+                                log.warn(
+                                        "Failed to refresh tool schemas of MCP server: {}, error:"
+                                                + " {}",
+                                        config.getMcpServerName(),
+                                        e.getMessage()));
+    }
+
+    private Optional<ToolSchemas> loadFromMeta(MCPTransportConfig config) {
+        return findMeta(config)
+                .map(McpServerMeta::getToolsConfig)
+                .filter(StrUtil::isNotBlank)
+                .map(
+                        toolsConfig -> {
+                            try {
+                                List<McpSchema.Tool> tools =
+                                        objectMapper.readValue(toolsConfig, TOOLS_TYPE);
+                                // Gateway imported configs may not carry input schemas
+                                boolean complete =
+                                        CollUtil.isNotEmpty(tools)
+                                                && tools.stream()
+                                                        .allMatch(
+                                                                t ->
+                                                                        StrUtil.isNotBlank(
+                                                                                        t.name())
+                                                                                && t.inputSchema()
+                                                                                        != null);
+                                // Timestamp 0 marks it stale, so it is revalidated on first use
+                                return complete ? new ToolSchemas(tools, 0) : null;
+                            } catch (Exception e) {
+                                log.debug(
+                                        "Tools config of MCP server {} is not a tool list: {}",
+                                        config.getMcpServerName(),
+                                        e.getMessage());
+                                return null;
+                            }
+                        });
+    }
+
+    private void saveToMeta(MCPTransportConfig config, List<McpSchema.Tool> tools) {
+        findMeta(config)
+                .ifPresent(
+                        meta -> {
+                            try {
+                                String toolsConfig = objectMapper.writeValueAsString(tools);
+                                if (!StrUtil.equals(toolsConfig, meta.getToolsConfig())) {
+                                    meta.setToolsConfig(toolsConfig);
+                                    mcpServerMetaRepository.save(meta);
+                                    log.info(
+                                            "Tools config of MCP server {} updated, tools: {}",
+                                            meta.getMcpName(),
+                                            tools.size());
+                                }
+                            } catch (Exception e) {
+                                log.warn(
+                                        "Failed to save tools config of MCP server: {}",
+                                        meta.getMcpName(),
+                                        e);
+                            }
+                        });
+    }
+
+    private Optional<McpServerMeta> findMeta(MCPTransportConfig config) {
+        if (StrUtil.isBlank(config.getProductId())) {
+            return Optional.empty();
+        }
+        return mcpServerMetaRepository.findByProductIdAndMcpName(
+                config.getProductId(), config.getMcpServerName());
+    }
+
+    private long getRefreshIntervalMillis() {
+        return hiChatProperties.getMcp().getToolSchemaRefreshSeconds() * 1000L;
+    }
+
+    private String buildEndpointKey(MCPTransportConfig config) {
+        return config.getTransportMode() + ":" + config.getUrl();
+    }
+
+    /**
+     * Cached tool schemas of one endpoint
+     *
+     * @param tools     tool schemas
+     * @param fetchedAt time of the last live tools/list, 0 if seeded from persisted config
+     */
+    public record ToolSchemas(List<McpSchema.Tool> tools, long fetchedAt) {
+
+        boolean isStale(long refreshIntervalMillis) {
+            return System.currentTimeMillis() - fetchedAt > refreshIntervalMillis;
+        }
+    }
+}
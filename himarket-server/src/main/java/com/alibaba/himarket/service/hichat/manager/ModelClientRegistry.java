@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.utils.CacheUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.agentscope.core.model.Model;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of model clients shared across requests.
+ *
+ * <p>Models are keyed by a fingerprint of everything that shapes their requests (endpoint, model,
+ * credentials and options), so turns with the same configuration reuse one connection-pooled
+ * client instead of building a new one per message. Clients idle for longer than the configured
+ * time are evicted.
+ */
+@Slf4j
+@Component
+public class ModelClientRegistry {
+
+    private final Cache<String, Model> models;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public ModelClientRegistry(HiChatProperties hiChatProperties) {
+        this.models =
+                CacheUtil.newLRUCache(
+                        hiChatProperties.getModel().getClientIdleSeconds(),
+                        (key, model, cause) -> {
+                            if (cause.wasEvicted()) {
+                                evictionCount.incrementAndGet();
+                            }
+                        });
+    }
+
+    /**
+     * Get the model client of the fingerprint, creating it if absent
+     *
+     * @param fingerprint fingerprint of the model configuration
+     * @param factory     creates the model client on miss
+     * @return shared model client
+     */
+    public Model getOrCreate(String fingerprint, Supplier<Model> factory) {
+        Model model = models.getIfPresent(fingerprint);
+        if (model != null) {
+            hitCount.incrementAndGet();
+            return model;
+        }
+
+        return models.get(
+                fingerprint,
+                key -> {
+                    missCount.incrementAndGet();
+                    return factory.get();
+                });
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        log.debug(
+                "Model clients - size: {}, hits: {}, misses: {}, evictions: {}",
+                models.estimatedSize(),
+                hitCount.get(),
+                missCount.get(),
+                evictionCount.get());
+    }
+
+    public long getSize() {
+        return models.estimatedSize();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+}
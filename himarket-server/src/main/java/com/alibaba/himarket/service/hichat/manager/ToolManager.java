@@ -18,12 +18,12 @@
  */
 package com.alibaba.himarket.service.hichat.manager;
 
-import static reactor.core.scheduler.Schedulers.boundedElastic;
-
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.crypto.SecureUtil;
 import cn.hutool.extra.spring.SpringUtil;
+import com.alibaba.himarket.config.HiChatProperties;
 import com.alibaba.himarket.core.event.McpClientRemovedEvent;
 import com.alibaba.himarket.core.utils.CacheUtil;
 import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
@@ -33,6 +33,8 @@ import io.agentscope.core.tool.mcp.McpClientBuilder;
 import io.agentscope.core.tool.mcp.McpClientWrapper;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -51,131 +53,213 @@ public class ToolManager {
     private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
     private static final Duration INITIALIZE_TIMEOUT = Duration.ofSeconds(30);
 
+    private final HiChatProperties hiChatProperties;
+
+    private final ChatMetrics chatMetrics;
+
     // MCP client cache with removal listener (10 minutes = 600 seconds)
     private final Cache<String, McpClientWrapper> clientCache =
             CacheUtil.newLRUCache(10 * 60, this::onClientRemoved);
 
     /**
-     * Get existing client or create new one for MCP config
+     * In-flight client creations keyed by cache key, so concurrent requests for the same MCP
+     * server share one connection attempt
+     */
+    private final Map<String, Mono<McpClientWrapper>> pendingClients = new ConcurrentHashMap<>();
+
+    private final AtomicLong clientHits = new AtomicLong();
+
+    private final AtomicLong clientMisses = new AtomicLong();
+
+    /**
+     * In-flight tool call permits per upstream endpoint, shared by all clients of the endpoint
+     */
+    private final Map<String, McpPermits> endpointPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Get existing client or create new one for MCP config (blocking, for management APIs)
      *
      * @param config MCP transport configuration
      * @return MCP client wrapper, null if creation fails
      */
     public McpClientWrapper getOrCreateClient(MCPTransportConfig config) {
-        String cacheKey = buildCacheKey(config);
-
-        return clientCache
-                .asMap()
-                .computeIfAbsent(
-                        cacheKey,
-                        key -> {
-                            try {
-                                McpClientWrapper client = createClient(config);
-                                if (client != null) {
-                                    return client;
-                                }
-                                log.error("Create MCP client failed for: {}", config.getUrl());
-                            } catch (Exception e) {
-                                log.error("Create MCP client error for: {}", config.getUrl(), e);
-                            }
-                            return null;
-                        });
+        return getOrCreateClientAsync(config).block();
     }
 
     /**
      * Get or create multiple MCP clients in parallel
      *
      * @param configs List of MCP transport configurations
-     * @return List of created MCP client wrappers
+     * @return Mono of created MCP client wrappers, failed ones are skipped
      */
-    public List<McpClientWrapper> getOrCreateClients(List<MCPTransportConfig> configs) {
+    public Mono<List<McpClientWrapper>> getOrCreateClients(List<MCPTransportConfig> configs) {
         if (CollUtil.isEmpty(configs)) {
-            return CollUtil.empty(List.class);
+            return Mono.just(List.of());
         }
 
-        long startTime = System.currentTimeMillis();
-
-        List<McpClientWrapper> result =
-                Flux.fromIterable(configs)
-                        .flatMap(this::getClient, 20)
-                        .collectList()
-                        .onErrorReturn(Collections.emptyList())
-                        .block();
-
-        long totalTime = System.currentTimeMillis() - startTime;
-        log.info(
-                "MCP clients initialized: {}/{} succeeded, total time: {}ms",
-                result.size(),
-                configs.size(),
-                totalTime);
-
-        return result;
+        return Mono.defer(
+                () -> {
+                    long startTime = System.currentTimeMillis();
+                    return Flux.fromIterable(configs)
+                            .flatMap(this::getOrCreateClientAsync, 20)
+                            .collectList()
+                            .onErrorReturn(Collections.emptyList())
+                            .doOnNext(
+                                    result ->
+                                            log.info(
+                                                    "MCP clients initialized: {}/{} succeeded,"
+                                                            + " total time: {}ms",
+                                                    result.size(),
+                                                    configs.size(),
+                                                    System.currentTimeMillis() - startTime));
+                });
     }
 
     /**
      * Get cached client or create new one reactively
      *
-     * <p>Uses computeIfAbsent to ensure atomic creation and prevent race conditions
-     * where multiple threads might create duplicate clients for the same key.
+     * <p>Concurrent creations for the same key share one in-flight Mono, the created client is
+     * put into the cache once initialized.
      *
      * @param config MCP transport configuration
-     * @return Mono of MCP client wrapper
+     * @return Mono of MCP client wrapper, empty if creation fails
      */
-    private Mono<McpClientWrapper> getClient(MCPTransportConfig config) {
+    public Mono<McpClientWrapper> getOrCreateClientAsync(MCPTransportConfig config) {
         String cacheKey = buildCacheKey(config);
         String serverName = config.getMcpServerName();
 
-        // Use computeIfAbsent for atomic check-and-create to prevent race conditions
-        return Mono.fromCallable(
-                        () ->
-                                clientCache
-                                        .asMap()
-                                        .computeIfAbsent(
-                                                cacheKey,
-                                                key -> {
-                                                    try {
-                                                        return createClient(config);
-                                                    } catch (Exception e) {
-                                                        log.error(
-                                                                "Failed to create MCP client for"
-                                                                        + " server: {}, error: {}",
-                                                                serverName,
-                                                                e.getMessage());
-                                                        return null;
-                                                    }
-                                                }))
-                .subscribeOn(boundedElastic())
-                .flatMap(
-                        client -> {
-                            if (client != null) {
-                                log.debug("MCP client ready for server: {}", serverName);
-                                return Mono.just(client);
-                            } else {
-                                log.warn(
-                                        "MCP client creation returned null for server: {}",
-                                        serverName);
-                                return Mono.empty();
-                            }
-                        });
+        return Mono.defer(
+                () -> {
+                    McpClientWrapper cached = clientCache.getIfPresent(cacheKey);
+                    if (cached != null) {
+                        clientHits.incrementAndGet();
+                        log.debug("MCP client ready for server: {}", serverName);
+                        return Mono.just(cached);
+                    }
+
+                    clientMisses.incrementAndGet();
+                    return loadClient(cacheKey, config);
+                });
     }
 
     /**
-     * Create new MCP client with config
+     * Create the client of an MCP server ahead of use, without counting a cache lookup
+     *
+     * @param config MCP transport configuration
+     * @return Mono of true if a client was created, false if it was already cached
+     */
+    public Mono<Boolean> warmClient(MCPTransportConfig config) {
+        String cacheKey = buildCacheKey(config);
+
+        return Mono.defer(
+                () -> {
+                    if (clientCache.getIfPresent(cacheKey) != null) {
+                        return Mono.just(false);
+                    }
+                    return loadClient(cacheKey, config).map(client -> true);
+                });
+    }
+
+    /**
+     * Number of client lookups served from cache
+     */
+    public long getClientHits() {
+        return clientHits.get();
+    }
+
+    /**
+     * Number of client lookups that had to connect
+     */
+    public long getClientMisses() {
+        return clientMisses.get();
+    }
+
+    private Mono<McpClientWrapper> loadClient(String cacheKey, MCPTransportConfig config) {
+        // Concurrent creations for the same key share one in-flight Mono
+        return pendingClients.computeIfAbsent(
+                cacheKey,
+                key ->
+                        createClientAsync(config)
+                                .doOnNext(client -> clientCache.put(key, client))
+                                .doFinally(signal -> pendingClients.remove(key))
+                                .cache());
+    }
+
+    /**
+     * Create new MCP client with config (blocking, for management APIs)
      *
      * @param config MCP transport configuration
      * @return MCP client wrapper, null if creation fails
      */
     public McpClientWrapper createClient(MCPTransportConfig config) {
+        return createClientAsync(config).block();
+    }
+
+    /**
+     * Create and initialize a new MCP client without blocking
+     *
+     * @param config MCP transport configuration
+     * @return Mono of MCP client wrapper, empty if creation fails
+     */
+    public Mono<McpClientWrapper> createClientAsync(MCPTransportConfig config) {
         String serverName = config.getMcpServerName();
-        long startTime = System.currentTimeMillis();
 
-        log.info(
-                "Creating MCP client for server: {}, transport: {}, url: {}",
-                serverName,
-                config.getTransportMode(),
-                config.getUrl());
+        return Mono.defer(
+                () -> {
+                    long startTime = System.currentTimeMillis();
+                    log.info(
+                            "Creating MCP client for server: {}, transport: {}, url: {}",
+                            serverName,
+                            config.getTransportMode(),
+                            config.getUrl());
+
+                    return Mono.fromCallable(() -> newClientBuilder(config))
+                            .flatMap(McpClientBuilder::buildAsync)
+                            .flatMap(
+                                    client ->
+                                            client.initialize()
+                                                    .timeout(INITIALIZE_TIMEOUT)
+                                                    .thenReturn(limitInFlightCalls(config, client))
+                                                    // Clean up failed client
+                                                    .onErrorResume(
+                                                            e -> {
+                                                                closeQuietly(client);
+                                                                return Mono.error(e);
+                                                            }))
+                            .doOnNext(
+                                    client -> {
+                                        long elapsed = System.currentTimeMillis() - startTime;
+                                        chatMetrics.recordMcp(
+                                                ChatMetrics.MCP_INIT, serverName, elapsed);
+                                        log.info(
+                                                "MCP client created for server: {}, total time:"
+                                                        + " {}ms",
+                                                serverName,
+                                                elapsed);
+                                    })
+                            .switchIfEmpty(
+                                    Mono.fromRunnable(
+                                            () ->
+                                                    log.error(
+                                                            "Failed to build MCP client for"
+                                                                    + " server: {}",
+                                                            serverName)))
+                            .onErrorResume(
+                                    e -> {
+                                        log.error(
+                                                "Failed to create MCP client for server: {}, time:"
+                                                        + " {}ms, error: {}",
+                                                serverName,
+                                                System.currentTimeMillis() - startTime,
+                                                e.getMessage());
+                                        return Mono.empty();
+                                    });
+                });
+    }
 
-        McpClientBuilder builder = McpClientBuilder.create(serverName).timeout(REQUEST_TIMEOUT);
+    private McpClientBuilder newClientBuilder(MCPTransportConfig config) {
+        McpClientBuilder builder =
+                McpClientBuilder.create(config.getMcpServerName()).timeout(REQUEST_TIMEOUT);
         switch (config.getTransportMode()) {
             case SSE:
                 builder.sseTransport(config.getUrl());
@@ -188,6 +272,11 @@ public class ToolManager {
                         "Unsupported transport: " + config.getTransportMode());
         }
 
+        // Shared transports serve every developer, never bind one developer's credentials
+        if (isSharedTransport(config)) {
+            return builder;
+        }
+
         // Apply authentication headers and query parameters
         if (MapUtil.isNotEmpty(config.getHeaders())) {
             builder.headers(config.getHeaders());
@@ -195,41 +284,51 @@ public class ToolManager {
         if (MapUtil.isNotEmpty(config.getQueryParams())) {
             builder.queryParams(config.getQueryParams());
         }
+        return builder;
+    }
 
-        McpClientWrapper clientWrapper = null;
-        try {
-            // Build and initialize client
-            clientWrapper = builder.buildAsync().block();
-
-            if (clientWrapper == null) {
-                log.error("Failed to build MCP client for server: {}", serverName);
-                return null;
-            }
-
-            clientWrapper.initialize().timeout(INITIALIZE_TIMEOUT).block();
+    /**
+     * Cap concurrent tool calls of the client by the permits of its upstream endpoint
+     *
+     * @param config MCP transport configuration
+     * @param client initialized MCP client
+     * @return limited client, or the client itself if no cap is configured
+     */
+    private McpClientWrapper limitInFlightCalls(
+            MCPTransportConfig config, McpClientWrapper client) {
+        HiChatProperties.McpProperties mcpConfig = hiChatProperties.getMcp();
+        int maxInFlight = mcpConfig.getMaxInFlightCallsPerEndpoint();
+        if (maxInFlight <= 0) {
+            return client;
+        }
 
-            long totalTime = System.currentTimeMillis() - startTime;
-            log.info("MCP client created for server: {}, total time: {}ms", serverName, totalTime);
+        McpPermits permits =
+                endpointPermits.computeIfAbsent(
+                        config.getUrl(), url -> new McpPermits(maxInFlight));
+        return new LimitedMcpClientWrapper(
+                client, permits, Duration.ofMillis(mcpConfig.getInFlightWaitMs()));
+    }
 
-            return clientWrapper;
+    /**
+     * Whether the MCP server does not authenticate developers, so one transport per endpoint is
+     * shared by all of them
+     *
+     * @param config MCP transport configuration
+     * @return true if the endpoint is configured for shared transport
+     */
+    public boolean isSharedTransport(MCPTransportConfig config) {
+        List<String> sharedUrls = hiChatProperties.getMcp().getSharedTransportUrls();
+        return StrUtil.isNotBlank(config.getUrl())
+                && CollUtil.isNotEmpty(sharedUrls)
+                && sharedUrls.stream()
+                        .anyMatch(prefix -> StrUtil.startWith(config.getUrl(), prefix));
+    }
 
+    private void closeQuietly(McpClientWrapper client) {
+        try {
+            client.close();
         } catch (Exception e) {
-            long totalTime = System.currentTimeMillis() - startTime;
-            log.error(
-                    "Failed to create MCP client for server: {}, time: {}ms, error: {}",
-                    serverName,
-                    totalTime,
-                    e.getMessage());
-
-            // Clean up failed client
-            if (clientWrapper != null) {
-                try {
-                    clientWrapper.close();
-                } catch (Exception closeException) {
-                    log.warn("Failed to close MCP client for server: {}", serverName);
-                }
-            }
-            return null;
+            log.warn("Failed to close MCP client for server: {}", client.getName());
         }
     }
 
@@ -246,6 +345,12 @@ public class ToolManager {
         // MCP Server URL
         sb.append("url:").append(config.getUrl()).append("|");
 
+        // Shared transports are keyed by endpoint only
+        if (isSharedTransport(config)) {
+            sb.append("shared");
+            return "tool:" + SecureUtil.md5(sb.toString());
+        }
+
         // Credentials (Headers + Query Params)
         sb.append("cred:");
 
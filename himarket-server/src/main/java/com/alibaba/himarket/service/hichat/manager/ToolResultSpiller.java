@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.constant.Resources;
+import com.alibaba.himarket.core.exception.BusinessException;
+import com.alibaba.himarket.core.exception.ErrorCode;
+import com.alibaba.himarket.service.hichat.attachment.AttachmentStore;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Size policy for MCP tool results.
+ *
+ * <p>Results whose text exceeds {@code hichat.mcp.max-tool-result-chars} are written whole to the
+ * {@link AttachmentStore} and replaced by a preview ending with a {@value #REF_PREFIX} reference
+ * to the stored content. Agent memory, prompts and the persisted tool calls only ever hold the
+ * preview; the UI fetches the full result on demand.
+ *
+ * <p>Spilled results are recorded per session in {@code chat_tool_result} and deleted with the
+ * session. The store shares content between identical uploads, so a result is only deleted once
+ * no other session spilled it and no attachment has the same content.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ToolResultSpiller {
+
+    /**
+     * Prefix of the reference to a spilled result, followed by its storage key
+     */
+    public static final String REF_PREFIX = "tool-result:";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_tool_result (session_id, result_key) VALUES (:sessionId, :resultKey)";
+
+    private static final String SELECT_SESSION_KEYS_SQL =
+            "SELECT DISTINCT result_key FROM chat_tool_result WHERE session_id = :sessionId";
+
+    private static final String DELETE_SESSION_SQL =
+            "DELETE FROM chat_tool_result WHERE session_id = :sessionId";
+
+    private static final String COUNT_REFERENCES_SQL =
+            "SELECT (SELECT COUNT(*) FROM chat_tool_result WHERE result_key = :resultKey)"
+                    + " + (SELECT COUNT(*) FROM chat_attachment WHERE storage_key = :resultKey)";
+
+    private final AttachmentStore attachmentStore;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    private final AtomicLong spilledChars = new AtomicLong();
+
+    /**
+     * Replace an oversized tool result by its preview, spilling the full text
+     *
+     * @param sessionId     chat session the result belongs to
+     * @param mcpServerName MCP server of the tool
+     * @param toolName      tool name
+     * @param result        tool result
+     * @return Mono of the result to hand to the agent
+     */
+    public Mono<McpSchema.CallToolResult> spill(
+            String sessionId,
+            String mcpServerName,
+            String toolName,
+            McpSchema.CallToolResult result) {
+        int maxChars = hiChatProperties.getMcp().getMaxToolResultChars();
+        if (maxChars <= 0 || result == null || CollUtil.isEmpty(result.content())) {
+            return Mono.justOrEmpty(result);
+        }
+
+        String text =
+                result.content().stream()
+                        .filter(McpSchema.TextContent.class::isInstance)
+                        .map(content -> ((McpSchema.TextContent) content).text())
+                        .collect(Collectors.joining("\n"));
+        if (text.length() <= maxChars) {
+            return Mono.just(result);
+        }
+
+        // Store write is blocking
+        return Mono.fromCallable(() -> toPreview(result, text, store(sessionId, text)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(
+                        preview ->
+                                log.debug(
+                                        "Spilled tool result, MCP server: {}, tool: {}, chars: {}",
+                                        mcpServerName,
+                                        toolName,
+                                        text.length()))
+                .onErrorResume(
+                        e -> {
+                            log.error(
+                                    "Failed to spill tool result, MCP server: {}, tool: {}",
+                                    mcpServerName,
+                                    toolName,
+                                    e);
+                            // Still bound the result, the full text is lost
+                            return Mono.just(toPreview(result, text, null));
+                        });
+    }
+
+    /**
+     * Read the full text of a spilled tool result
+     *
+     * @param resultKey storage key from the result reference
+     * @return full result text
+     */
+    public String read(String resultKey) {
+        if (!attachmentStore.exists(resultKey)) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, Resources.TOOL_RESULT, resultKey);
+        }
+
+        try (InputStream in = attachmentStore.open(resultKey)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to read spilled tool result: {}", resultKey, e);
+            throw new BusinessException(ErrorCode.NOT_FOUND, Resources.TOOL_RESULT, resultKey);
+        }
+    }
+
+    /**
+     * Delete the results spilled by a session that nothing else references
+     *
+     * @param sessionId deleted session
+     */
+    public void deleteBySessionId(String sessionId) {
+        Map<String, String> params = Map.of("sessionId", sessionId);
+        List<String> keys =
+                jdbcTemplate.queryForList(SELECT_SESSION_KEYS_SQL, params, String.class);
+        jdbcTemplate.update(DELETE_SESSION_SQL, params);
+
+        int deleted = 0;
+        for (String key : keys) {
+            Long references =
+                    jdbcTemplate.queryForObject(
+                            COUNT_REFERENCES_SQL, Map.of("resultKey", key), Long.class);
+            if (references != null && references > 0) {
+                continue;
+            }
+            try {
+                if (attachmentStore.delete(key)) {
+                    deleted++;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Failed to delete spilled tool result: {}", key, e);
+            }
+        }
+        log.debug("Deleted {} spilled tool results of session: {}", deleted, sessionId);
+    }
+
+    private String store(String sessionId, String text) throws IOException {
+        String key =
+                attachmentStore.put(
+                        new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        jdbcTemplate.update(INSERT_SQL, Map.of("sessionId", sessionId, "resultKey", key));
+        spilledCount.incrementAndGet();
+        spilledChars.addAndGet(text.length());
+        return key;
+    }
+
+    private McpSchema.CallToolResult toPreview(
+            McpSchema.CallToolResult result, String text, String resultKey) {
+        int previewChars = Math.max(hiChatProperties.getMcp().getToolResultPreviewChars(), 0);
+        String preview =
+                StrUtil.sub(text, 0, previewChars)
+                        + String.format(
+                                "\n\n[Truncated: showing %d of %d characters. %s]",
+                                Math.min(previewChars, text.length()),
+                                text.length(),
+                                resultKey == null
+                                        ? "Full result unavailable"
+                                        : "Full result: " + REF_PREFIX + resultKey);
+
+        // Text is replaced by the preview, other content (images, resources) is kept
+        List<McpSchema.Content> content = new ArrayList<>();
+        content.add(new McpSchema.TextContent(preview));
+        result.content().stream()
+                .filter(c -> !(c instanceof McpSchema.TextContent))
+                .forEach(content::add);
+        return new McpSchema.CallToolResult(content, result.isError());
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    public long getSpilledChars() {
+        return spilledChars.get();
+    }
+
+    @Scheduled(fixedRate = 300_000)
+    public void logStats() {
+        log.debug(
+                "Tool result spill stats - spilled: {}, chars: {}",
+                spilledCount.get(),
+                spilledChars.get());
+    }
+}
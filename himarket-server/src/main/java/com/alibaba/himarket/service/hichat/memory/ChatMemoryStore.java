@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.memory;
+
+import io.agentscope.core.message.Msg;
+import java.util.List;
+
+/**
+ * Shared store of agent memory, keyed by chat session and model product.
+ *
+ * <p>Agents load their memory from the store before each turn and append the messages of the
+ * turn afterwards, so any node can serve any session.
+ */
+public interface ChatMemoryStore {
+
+    /**
+     * Load the latest messages of the memory
+     *
+     * @param sessionId session ID
+     * @param productId model product ID
+     * @return messages, oldest first, empty if none
+     */
+    List<Msg> load(String sessionId, String productId);
+
+    /**
+     * Append messages to the memory, older messages over the size limit are dropped
+     *
+     * @param sessionId session ID
+     * @param productId model product ID
+     * @param messages  messages to append, oldest first
+     */
+    void append(String sessionId, String productId, List<Msg> messages);
+
+    /**
+     * Delete all memories of the session
+     *
+     * @param sessionId session ID
+     */
+    void deleteSession(String sessionId);
+}
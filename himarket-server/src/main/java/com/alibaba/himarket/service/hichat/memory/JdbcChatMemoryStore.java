@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.memory;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.event.ChatSessionDeletingEvent;
+import com.alibaba.himarket.service.hichat.attachment.MediaContentCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.Msg;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Memory store over the application datasource, shared by all nodes. Each message is a row of
+ * {@code chat_memory}, and only the latest messages of each memory are kept.
+ *
+ * <p>Media blocks of attachments are stored as references to the attachment and rebuilt through
+ * the {@link MediaContentCache} on load. Messages still too large for a row are not stored.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "hichat.memory.store", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JdbcChatMemoryStore implements ChatMemoryStore {
+
+    private static final String SELECT_SQL =
+            "SELECT message FROM chat_memory WHERE session_id = :sessionId AND product_id ="
+                    + " :productId ORDER BY id DESC LIMIT :limit";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_memory (session_id, product_id, message) "
+                    + "VALUES (:sessionId, :productId, :message)";
+
+    /**
+     * Delete all but the latest messages, the derived table works around MySQL not allowing a
+     * subquery on the table being deleted from
+     */
+    private static final String TRIM_SQL =
+            "DELETE FROM chat_memory WHERE session_id = :sessionId AND product_id = :productId"
+                    + " AND id <= (SELECT id FROM (SELECT id FROM chat_memory"
+                    + " WHERE session_id = :sessionId AND product_id = :productId"
+                    + " ORDER BY id DESC LIMIT 1 OFFSET :keep) t)";
+
+    private static final String DELETE_SESSION_SQL =
+            "DELETE FROM chat_memory WHERE session_id = :sessionId";
+
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final HiChatProperties hiChatProperties;
+
+    private final MediaContentCache mediaContentCache;
+
+    @Override
+    public List<Msg> load(String sessionId, String productId) {
+        List<String> rows =
+                jdbcTemplate.queryForList(
+                        SELECT_SQL,
+                        Map.of(
+                                "sessionId",
+                                sessionId,
+                                "productId",
+                                productId,
+                                "limit",
+                                hiChatProperties.getMemory().getMaxMessages()),
+                        String.class);
+
+        List<Msg> messages = new ArrayList<>(rows.size());
+        for (String row : rows) {
+            try {
+                messages.add(read(row, sessionId));
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                log.warn("Skip unreadable memory message of session: {}", sessionId, e);
+            }
+        }
+
+        // Rows are read newest first
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @Override
+    public void append(String sessionId, String productId, List<Msg> messages) {
+        int maxChars = hiChatProperties.getMemory().getMaxMessageChars();
+        List<SqlParameterSource> batch = new ArrayList<>(messages.size());
+        for (Msg message : messages) {
+            String json;
+            try {
+                json = write(message);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                log.warn("Skip unwritable memory message of session: {}", sessionId, e);
+                continue;
+            }
+            if (json.length() > maxChars) {
+                log.warn(
+                        "Skip memory message of session: {}, {} chars exceed the limit of {}",
+                        sessionId,
+                        json.length(),
+                        maxChars);
+                continue;
+            }
+
+            batch.add(
+                    new MapSqlParameterSource()
+                            .addValue("sessionId", sessionId)
+                            .addValue("productId", productId)
+                            .addValue("message", json));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch.toArray(new SqlParameterSource[0]));
+        jdbcTemplate.update(
+                TRIM_SQL,
+                Map.of(
+                        "sessionId",
+                        sessionId,
+                        "productId",
+                        productId,
+                        "keep",
+                        hiChatProperties.getMemory().getMaxMessages()));
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        jdbcTemplate.update(DELETE_SESSION_SQL, Map.of("sessionId", sessionId));
+    }
+
+    /**
+     * Serialize a message with its media blocks swapped for attachment references
+     */
+    private String write(Msg message) throws JsonProcessingException {
+        JsonNode tree = MAPPER.valueToTree(message);
+        List<ContentBlock> blocks = message.getContent();
+        if (blocks != null
+                && tree.get("content") instanceof ArrayNode content
+                && content.size() == blocks.size()) {
+            for (int i = 0; i < blocks.size(); i++) {
+                ContentBlock reference = mediaContentCache.toReference(blocks.get(i));
+                if (reference != null) {
+                    content.set(i, MAPPER.valueToTree(reference));
+                }
+            }
+        }
+        return MAPPER.writeValueAsString(tree);
+    }
+
+    /**
+     * Deserialize a message, rebuilding the media blocks of referenced attachments. References to
+     * attachments gone since are dropped.
+     */
+    private Msg read(String row, String sessionId) throws JsonProcessingException {
+        JsonNode tree = MAPPER.readTree(row);
+        if (tree.get("content") instanceof ArrayNode content) {
+            for (int i = content.size() - 1; i >= 0; i--) {
+                JsonNode block = content.get(i);
+                // Only media blocks have a source
+                if (!block.has("source")) {
+                    continue;
+                }
+                String attachmentId =
+                        MediaContentCache.referencedAttachmentId(
+                                MAPPER.treeToValue(block, ContentBlock.class));
+                if (attachmentId == null) {
+                    continue;
+                }
+
+                ContentBlock media = mediaContentCache.get(attachmentId);
+                if (media == null) {
+                    log.warn(
+                            "Drop missing attachment: {} from memory of session: {}",
+                            attachmentId,
+                            sessionId);
+                    content.remove(i);
+                } else {
+                    content.set(i, MAPPER.valueToTree(media));
+                }
+            }
+        }
+        return MAPPER.treeToValue(tree, Msg.class);
+    }
+
+    @EventListener
+    public void onSessionDeletion(ChatSessionDeletingEvent event) {
+        deleteSession(event.getSessionId());
+        log.debug("Deleted chat memory for session: {}", event.getSessionId());
+    }
+}
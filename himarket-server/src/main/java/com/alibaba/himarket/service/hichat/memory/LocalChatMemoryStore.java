@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.memory;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.event.ChatSessionDeletingEvent;
+import com.alibaba.himarket.core.utils.CacheUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.agentscope.core.message.Msg;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process memory store, for single-node deployments and tests. Memories are not shared
+ * between nodes.
+ */
+@Component
+@ConditionalOnProperty(name = "hichat.memory.store", havingValue = "local")
+@RequiredArgsConstructor
+public class LocalChatMemoryStore implements ChatMemoryStore {
+
+    private final HiChatProperties hiChatProperties;
+
+    // Memories (30 minutes = 1800 seconds without access)
+    private final Cache<String, LinkedList<Msg>> memories = CacheUtil.newLRUCache(30 * 60);
+
+    @Override
+    public List<Msg> load(String sessionId, String productId) {
+        LinkedList<Msg> messages = memories.getIfPresent(buildKey(sessionId, productId));
+        if (messages == null) {
+            return new ArrayList<>();
+        }
+        synchronized (messages) {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    @Override
+    public void append(String sessionId, String productId, List<Msg> messages) {
+        int maxMessages = hiChatProperties.getMemory().getMaxMessages();
+        LinkedList<Msg> memory =
+                memories.get(buildKey(sessionId, productId), key -> new LinkedList<>());
+        synchronized (memory) {
+            memory.addAll(messages);
+            while (memory.size() > maxMessages) {
+                memory.removeFirst();
+            }
+        }
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        String prefix = sessionId + ":";
+        memories.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    @EventListener
+    public void onSessionDeletion(ChatSessionDeletingEvent event) {
+        deleteSession(event.getSessionId());
+    }
+
+    private String buildKey(String sessionId, String productId) {
+        return sessionId + ":" + productId;
+    }
+}
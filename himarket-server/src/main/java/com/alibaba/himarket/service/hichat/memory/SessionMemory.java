@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.memory;
+
+import io.agentscope.core.memory.InMemoryMemory;
+import io.agentscope.core.message.Msg;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Agent memory backed by a {@link ChatMemoryStore}.
+ *
+ * <p>Messages are held locally while the agent runs a turn. Before a turn the local copy is
+ * replaced by the shared one, and after the turn the messages added by the agent are appended to
+ * the store. The first load seeds an empty store with the conversation history.
+ *
+ * <p>Appends and loads are serialized, so a turn reloading while the previous turn is still being
+ * appended waits for it. While the store is unavailable the unsaved messages are kept locally, at
+ * most as many as the store keeps, and dropped after a few failed appends so that a batch the
+ * store rejects does not block reloads for good.
+ */
+@Slf4j
+public class SessionMemory extends InMemoryMemory {
+
+    /**
+     * Failed appends after which unsaved messages are dropped
+     */
+    static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final ChatMemoryStore store;
+
+    private final String sessionId;
+
+    private final String productId;
+
+    /**
+     * Max messages of the memory in the store, unsaved messages beyond it are dropped oldest first
+     */
+    private final int maxMessages;
+
+    /**
+     * Serializes appends and loads of the store, never held with the memory itself locked
+     */
+    private final Object storeLock = new Object();
+
+    /**
+     * Messages added locally and not yet appended to the store
+     */
+    private final List<Msg> pending = new ArrayList<>();
+
+    /**
+     * History used to seed an empty store, dropped after the first load
+     */
+    private List<Msg> seed;
+
+    private boolean loading;
+
+    /**
+     * Failed appends of the unsaved messages so far
+     */
+    private int failedFlushes;
+
+    public SessionMemory(
+            ChatMemoryStore store,
+            String sessionId,
+            String productId,
+            int maxMessages,
+            List<Msg> seed) {
+        this.store = store;
+        this.sessionId = sessionId;
+        this.productId = productId;
+        this.maxMessages = Math.max(maxMessages, 1);
+        this.seed = seed;
+    }
+
+    @Override
+    public synchronized void addMessage(Msg message) {
+        super.addMessage(message);
+        if (!loading) {
+            pending.add(message);
+        }
+    }
+
+    /**
+     * Replace local messages with the shared ones. Local messages are kept if the store is
+     * unavailable.
+     */
+    public void reload() {
+        synchronized (storeLock) {
+            if (!flush()) {
+                // The store misses the unsaved messages, loading it would drop them locally too
+                return;
+            }
+
+            List<Msg> messages;
+            try {
+                messages = store.load(sessionId, productId);
+            } catch (Exception e) {
+                log.warn(
+                        "Failed to load memory of session: {}, keep local messages",
+                        sessionId,
+                        e);
+                return;
+            }
+            replace(messages);
+        }
+    }
+
+    private synchronized void replace(List<Msg> messages) {
+        boolean seeding = messages.isEmpty() && seed != null;
+        if (seeding) {
+            messages = seed;
+        }
+        seed = null;
+
+        loading = true;
+        try {
+            clear();
+            messages.forEach(this::addMessage);
+        } finally {
+            loading = false;
+        }
+
+        if (seeding) {
+            pending.addAll(messages);
+        }
+    }
+
+    /**
+     * Append messages added since the last flush to the store, they are retried on the next
+     * flush if the store is unavailable, at most {@link #MAX_FLUSH_ATTEMPTS} times
+     *
+     * @return whether no unsaved messages are left, saved or dropped
+     */
+    public boolean flush() {
+        synchronized (storeLock) {
+            List<Msg> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            try {
+                store.append(sessionId, productId, batch);
+                failedFlushes = 0;
+                return true;
+            } catch (Exception e) {
+                log.warn("Failed to save memory of session: {}", sessionId, e);
+                if (++failedFlushes >= MAX_FLUSH_ATTEMPTS) {
+                    failedFlushes = 0;
+                    log.error(
+                            "Dropped {} memory messages of session: {} after {} failed saves",
+                            batch.size(),
+                            sessionId,
+                            MAX_FLUSH_ATTEMPTS);
+                    return true;
+                }
+                synchronized (this) {
+                    pending.addAll(0, batch);
+                    // The store keeps only the latest messages, older unsaved ones are dropped
+                    int dropped = pending.size() - maxMessages;
+                    if (dropped > 0) {
+                        pending.subList(0, dropped).clear();
+                        log.warn(
+                                "Dropped {} unsaved memory messages of session: {}",
+                                dropped,
+                                sessionId);
+                    }
+                }
+                return false;
+            }
+        }
+    }
+}
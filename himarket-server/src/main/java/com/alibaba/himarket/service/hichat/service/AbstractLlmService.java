@@ -21,6 +21,8 @@ package com.alibaba.himarket.service.hichat.service;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
 import com.alibaba.himarket.core.exception.ChatError;
 import com.alibaba.himarket.core.utils.CacheUtil;
 import com.alibaba.himarket.dto.result.chat.LlmInvokeResult;
@@ -29,6 +31,9 @@ import com.alibaba.himarket.dto.result.model.ModelConfigResult;
 import com.alibaba.himarket.dto.result.product.ProductResult;
 import com.alibaba.himarket.service.GatewayService;
 import com.alibaba.himarket.service.hichat.manager.ChatBotManager;
+import com.alibaba.himarket.service.hichat.manager.ChatResponseCache;
+import com.alibaba.himarket.service.hichat.manager.ChatResponseCache.CachedResponse;
+import com.alibaba.himarket.service.hichat.manager.ModelClientRegistry;
 import com.alibaba.himarket.service.hichat.support.*;
 import com.alibaba.himarket.support.product.ModelFeature;
 import com.alibaba.himarket.support.product.ProductFeature;
@@ -38,9 +43,12 @@ import java.net.URI;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -50,6 +58,10 @@ public abstract class AbstractLlmService implements LlmService {
 
     protected final ChatBotManager chatBotManager;
 
+    protected final ModelClientRegistry modelClientRegistry;
+
+    protected final ChatResponseCache responseCache;
+
     private final Cache<String, List<URI>> gatewayUriCache = CacheUtil.newCache(5 * 60);
 
     @Override
@@ -58,59 +70,157 @@ public abstract class AbstractLlmService implements LlmService {
 
         // Create context to collect answer and usage
         ChatContext chatContext = new ChatContext(param.getChatId());
+        chatContext.setTimings(param.getTimings());
+
+        // Deterministic products answer identical prompts from the response cache
+        String cacheKey =
+                responseCache.buildKey(
+                        param, chatBotManager.buildSystemPrompt(param.getProduct().getName()));
+        if (cacheKey != null) {
+            CachedResponse cached = responseCache.get(param, cacheKey);
+            if (cached != null) {
+                return replayChat(cached, param, chatContext, resultHandler);
+            }
+        }
+
+        return Mono.fromCallable(() -> composeRequest(param))
+                // Gateway URIs are fetched from the gateway on cache miss
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(request -> getOrCreateChatBot(request, param))
+                .switchIfEmpty(
+                        Mono.error(() -> new IllegalStateException("Failed to create ChatBot")))
+                .map(
+                        chatBot ->
+                                streamChat(chatBot, param, chatContext, resultHandler, cacheKey))
+                .onErrorResume(
+                        e -> Mono.just(failedChat(e, param, chatContext, resultHandler)))
+                .flatMapMany(Function.identity());
+    }
+
+    private Mono<ChatBot> getOrCreateChatBot(LlmChatRequest request, InvokeModelParam param) {
+        long start = System.currentTimeMillis();
+        return chatBotManager
+                .getOrCreateChatBot(request, () -> getOrCreateChatModel(request))
+                .doOnNext(
+                        chatBot ->
+                                param.getTimings()
+                                        .record(
+                                                ChatPhaseTimings.CHATBOT,
+                                                System.currentTimeMillis() - start));
+    }
+
+    private Flux<ChatEvent> streamChat(
+            ChatBot chatBot,
+            InvokeModelParam param,
+            ChatContext chatContext,
+            Consumer<LlmInvokeResult> resultHandler,
+            String cacheKey) {
+        chatContext.setToolMetas(chatBot.getToolMetas());
+
+        ChatFormatter formatter = new ChatFormatter();
+        ChatResponseCache.Recorder recorder = cacheKey == null ? null : responseCache.newRecorder();
 
-        try {
-            LlmChatRequest request = composeRequest(param);
-
-            Model chatModel = newChatModel(request);
-            ChatBot chatBot = chatBotManager.getOrCreateChatBot(request, chatModel);
-            chatContext.setToolMetas(chatBot.getToolMetas());
-
-            ChatFormatter formatter = new ChatFormatter();
-
-            // Start estimate time and collect answer
-            chatContext.start();
-            return Flux.concat(
-                            // Emit START event
-                            Flux.just(ChatEvent.start(param.getChatId())),
-
-                            // Stream chat events with error handling
-                            applyErrorHandling(
-                                    chatBot.chat(param.getUserMessage())
-                                            .flatMap(event -> formatter.format(event, chatContext))
-                                            // Collect answer content
-                                            .doOnNext(chatContext::collect),
-                                    param.getChatId(),
-                                    chatContext))
-                    // Always emit DONE at the end
-                    .concatWith(
-                            Flux.defer(
-                                    () -> {
-                                        chatContext.stop();
-                                        return Flux.just(
-                                                ChatEvent.done(
-                                                        param.getChatId(), chatContext.getUsage()));
-                                    }))
-                    // Unified result handling for all completion scenarios
-                    .doFinally(signal -> resultHandler.accept(chatContext.toResult()));
-
-        } catch (Exception e) {
-            log.error("Failed to process chat request for chatId: {}", param.getChatId(), e);
-            ChatError chatError = ChatError.from(e);
-            chatContext.fail();
-            chatContext.appendAnswer("[Sorry, something went wrong: " + e.getMessage() + "]");
-            resultHandler.accept(chatContext.toResult());
-
-            return Flux.just(
-                    ChatEvent.start(param.getChatId()),
-                    ChatEvent.error(
-                            param.getChatId(),
-                            chatError.name(),
-                            StrUtil.blankToDefault(e.getMessage(), chatError.getDescription())),
-                    ChatEvent.done(param.getChatId(), null));
+        // Start estimate time and collect answer
+        chatContext.start();
+        return Flux.concat(
+                        // Emit START event
+                        Flux.just(ChatEvent.start(param.getChatId())),
+
+                        // Stream chat events with error handling
+                        applyErrorHandling(
+                                chatBot.chat(param.getUserMessage())
+                                        .flatMap(event -> formatter.format(event, chatContext))
+                                        // Collect answer content
+                                        .doOnNext(chatContext::collect)
+                                        .doOnNext(
+                                                event -> {
+                                                    if (recorder != null) {
+                                                        recorder.record(event);
+                                                    }
+                                                }),
+                                param.getChatId(),
+                                chatContext))
+                // Always emit DONE at the end
+                .concatWith(
+                        Flux.defer(
+                                () -> {
+                                    chatContext.stop();
+                                    cacheResponse(param, chatContext, recorder, cacheKey);
+                                    return Flux.just(
+                                            ChatEvent.done(
+                                                    param.getChatId(), chatContext.getUsage()));
+                                }))
+                // Unified result handling for all completion scenarios
+                .doFinally(signal -> resultHandler.accept(chatContext.toResult()));
+    }
+
+    private void cacheResponse(
+            InvokeModelParam param,
+            ChatContext chatContext,
+            ChatResponseCache.Recorder recorder,
+            String cacheKey) {
+        if (recorder == null || !chatContext.isSuccess()) {
+            return;
+        }
+        CachedResponse response = recorder.finish();
+        if (response != null) {
+            responseCache.put(param, cacheKey, response);
         }
     }
 
+    /**
+     * Answer from the response cache without calling the model
+     */
+    private Flux<ChatEvent> replayChat(
+            CachedResponse cached,
+            InvokeModelParam param,
+            ChatContext chatContext,
+            Consumer<LlmInvokeResult> resultHandler) {
+        chatContext.start();
+        return Flux.concat(
+                        Flux.just(ChatEvent.start(param.getChatId())),
+                        responseCache
+                                .replay(param.getChatId(), cached)
+                                .doOnNext(chatContext::collect)
+                                .doOnCancel(chatContext::fail))
+                .concatWith(
+                        Flux.defer(
+                                () -> {
+                                    chatContext.setUsage(cached.usage());
+                                    chatContext.stop();
+                                    // Later turns may run on the agent, keep its memory complete
+                                    // before DONE lets the client ask the next question
+                                    return responseCache
+                                            .remember(param, chatContext.getAnswer())
+                                            .thenMany(
+                                                    Flux.just(
+                                                            ChatEvent.done(
+                                                                    param.getChatId(),
+                                                                    chatContext.getUsage())));
+                                }))
+                .doFinally(signal -> resultHandler.accept(chatContext.toResult()));
+    }
+
+    private Flux<ChatEvent> failedChat(
+            Throwable e,
+            InvokeModelParam param,
+            ChatContext chatContext,
+            Consumer<LlmInvokeResult> resultHandler) {
+        log.error("Failed to process chat request for chatId: {}", param.getChatId(), e);
+        ChatError chatError = ChatError.from(e);
+        chatContext.fail();
+        chatContext.appendAnswer("[Sorry, something went wrong: " + e.getMessage() + "]");
+        resultHandler.accept(chatContext.toResult());
+
+        return Flux.just(
+                ChatEvent.start(param.getChatId()),
+                ChatEvent.error(
+                        param.getChatId(),
+                        chatError.name(),
+                        StrUtil.blankToDefault(e.getMessage(), chatError.getDescription())),
+                ChatEvent.done(param.getChatId(), null));
+    }
+
     private Flux<ChatEvent> applyErrorHandling(
             Flux<ChatEvent> flux, String chatId, ChatContext chatContext) {
         return flux.doOnCancel(
@@ -148,8 +258,11 @@ public abstract class AbstractLlmService implements LlmService {
         ProductResult product = param.getProduct();
 
         // Get gateway uris for model
+        long gatewayStart = System.currentTimeMillis();
         List<URI> gatewayUris =
                 gatewayUriCache.get(param.getGatewayId(), gatewayService::fetchGatewayUris);
+        param.getTimings()
+                .record(ChatPhaseTimings.GATEWAY_URIS, System.currentTimeMillis() - gatewayStart);
         CredentialContext credentialContext = param.getCredentialContext();
 
         return LlmChatRequest.builder()
@@ -158,6 +271,7 @@ public abstract class AbstractLlmService implements LlmService {
                 .product(product)
                 .userMessages(param.getUserMessage())
                 .historyMessages(param.getHistoryMessages())
+                .contextTokenBudget(param.getContextTokenBudget())
                 .apiKey(credentialContext.getApiKey())
                 // Clone headers and query params
                 .headers(credentialContext.copyHeaders())
@@ -167,6 +281,36 @@ public abstract class AbstractLlmService implements LlmService {
                 .build();
     }
 
+    /**
+     * Get the shared model client for the request, creating it on first use
+     *
+     * @param request request containing model config, credentials, and parameters
+     * @return model instance shared by requests with the same configuration
+     */
+    protected Model getOrCreateChatModel(LlmChatRequest request) {
+        return modelClientRegistry.getOrCreate(
+                buildModelFingerprint(request), () -> newChatModel(request));
+    }
+
+    /**
+     * Fingerprint of everything that shapes the model client, credentials are only kept hashed
+     */
+    protected String buildModelFingerprint(LlmChatRequest request) {
+        Map<String, Object> parts = new LinkedHashMap<>();
+        parts.put("service", getClass().getSimpleName());
+        parts.put("uri", Objects.toString(request.getUri(), null));
+        parts.put("feature", getOrDefaultModelFeature(request.getProduct()));
+        parts.put("apiKey", request.getApiKey());
+        parts.put("headers", sorted(request.getHeaders()));
+        parts.put("queryParams", sorted(request.getQueryParams()));
+        parts.put("bodyParams", request.getBodyParams());
+        return SecureUtil.sha256(JSONUtil.toJsonStr(parts));
+    }
+
+    private static <V> Map<String, V> sorted(Map<String, V> map) {
+        return map == null ? null : new TreeMap<>(map);
+    }
+
     protected ModelFeature getOrDefaultModelFeature(ProductResult product) {
         ModelFeature modelFeature =
                 Optional.ofNullable(product)
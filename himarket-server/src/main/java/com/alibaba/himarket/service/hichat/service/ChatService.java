@@ -18,53 +18,69 @@
  */
 package com.alibaba.himarket.service.hichat.service;
 
-import cn.hutool.core.codec.Base64;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.constant.Resources;
 import com.alibaba.himarket.core.event.ChatSessionDeletingEvent;
 import com.alibaba.himarket.core.exception.BusinessException;
+import com.alibaba.himarket.core.exception.ChatError;
 import com.alibaba.himarket.core.exception.ErrorCode;
 import com.alibaba.himarket.core.security.ContextHolder;
 import com.alibaba.himarket.core.utils.IdGenerator;
 import com.alibaba.himarket.dto.params.chat.CreateChatParam;
+import com.alibaba.himarket.dto.params.chat.CreateCompareChatParam;
 import com.alibaba.himarket.dto.result.chat.LlmInvokeResult;
-import com.alibaba.himarket.dto.result.consumer.CredentialContext;
-import com.alibaba.himarket.dto.result.product.ProductRefResult;
+import com.alibaba.himarket.dto.result.chat.ToolResultContentResult;
 import com.alibaba.himarket.dto.result.product.ProductResult;
-import com.alibaba.himarket.dto.result.product.SubscriptionResult;
 import com.alibaba.himarket.entity.Chat;
 import com.alibaba.himarket.entity.ChatAttachment;
 import com.alibaba.himarket.entity.ChatSession;
-import com.alibaba.himarket.entity.McpServerEndpoint;
-import com.alibaba.himarket.entity.McpServerMeta;
 import com.alibaba.himarket.repository.ChatAttachmentRepository;
 import com.alibaba.himarket.repository.ChatRepository;
-import com.alibaba.himarket.repository.McpServerEndpointRepository;
-import com.alibaba.himarket.repository.McpServerMetaRepository;
 import com.alibaba.himarket.service.*;
+import com.alibaba.himarket.service.hichat.attachment.MediaContentCache;
+import com.alibaba.himarket.service.hichat.manager.ChatAdmissionManager;
+import com.alibaba.himarket.service.hichat.manager.ChatAdmissionManager.Admission;
+import com.alibaba.himarket.service.hichat.manager.ChatArchiveManager;
+import com.alibaba.himarket.service.hichat.manager.ChatHistoryManager;
+import com.alibaba.himarket.service.hichat.manager.ChatMetrics;
+import com.alibaba.himarket.service.hichat.manager.ChatRequestContextResolver;
+import com.alibaba.himarket.service.hichat.manager.ChatResultPersister;
+import com.alibaba.himarket.service.hichat.manager.ChatStreamJournal;
+import com.alibaba.himarket.service.hichat.manager.ChatStreamJournal.ChatStream;
+import com.alibaba.himarket.service.hichat.manager.ToolResultSpiller;
 import com.alibaba.himarket.service.hichat.support.ChatEvent;
+import com.alibaba.himarket.service.hichat.support.ChatEventCoalescer;
+import com.alibaba.himarket.service.hichat.support.ChatPhaseTimings;
+import com.alibaba.himarket.service.hichat.support.ChatRequestContext;
+import com.alibaba.himarket.service.hichat.support.ChatStreamEvent;
 import com.alibaba.himarket.service.hichat.support.InvokeModelParam;
+import com.alibaba.himarket.service.hichat.support.TokenEstimator;
 import com.alibaba.himarket.support.chat.attachment.ChatAttachmentConfig;
-import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
 import com.alibaba.himarket.support.enums.ChatAttachmentType;
 import com.alibaba.himarket.support.enums.ChatStatus;
-import com.alibaba.himarket.support.enums.MCPTransportMode;
-import com.alibaba.himarket.support.enums.McpEndpointStatus;
-import com.alibaba.himarket.support.enums.McpProtocolType;
-import com.alibaba.himarket.support.enums.ProductType;
+import com.alibaba.himarket.support.product.ModelFeature;
+import com.alibaba.himarket.support.product.ProductFeature;
 import io.agentscope.core.message.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @Service
@@ -79,60 +95,422 @@ public class ChatService {
 
     private final ChatAttachmentRepository chatAttachmentRepository;
 
+    private final ChatAttachmentService chatAttachmentService;
+
     private final ContextHolder contextHolder;
 
-    private final ProductService productService;
+    private final ChatRequestContextResolver requestContextResolver;
+
+    private final ChatHistoryManager chatHistoryManager;
+
+    private final ChatResultPersister chatResultPersister;
+
+    private final ChatStreamJournal chatStreamJournal;
+
+    private final ChatAdmissionManager chatAdmissionManager;
 
-    private final ConsumerService consumerService;
+    private final MediaContentCache mediaContentCache;
 
-    private final McpServerMetaRepository mcpServerMetaRepository;
+    private final ChatMetrics chatMetrics;
 
-    private final McpServerEndpointRepository mcpServerEndpointRepository;
+    private final ToolResultSpiller toolResultSpiller;
 
-    public Flux<ChatEvent> chat(CreateChatParam param) {
-        performAllChecks(param);
+    private final ChatArchiveManager chatArchiveManager;
 
-        Chat chat = createChat(param);
-        InvokeModelParam invokeModelParam = buildInvokeModelParam(param, chat);
+    private final HiChatProperties hiChatProperties;
 
-        return getLlmService(invokeModelParam)
-                .invokeLlm(invokeModelParam, r -> updateChatResult(chat.getChatId(), r));
+    public Flux<ChatStreamEvent> chat(CreateChatParam param) {
+        long checksStart = System.currentTimeMillis();
+        performAllChecks(
+                param.getSessionId(), List.of(param.getProductId()), param.getMcpProducts());
+        long checksMillis = System.currentTimeMillis() - checksStart;
+
+        // Security and portal context are thread bound, carry them over to the worker
+        String userId = contextHolder.getUser();
+        Callable<PreparedChat> prepare =
+                contextHolder.wrap(
+                        () -> {
+                            // Holds the slots until generation ends, not until the client
+                            // disconnects
+                            long admissionStart = System.currentTimeMillis();
+                            Admission admission =
+                                    chatAdmissionManager.admit(userId, param.getProductId());
+                            long admissionMillis = System.currentTimeMillis() - admissionStart;
+
+                            try {
+                                long prepareStart = System.currentTimeMillis();
+                                Chat chat = createChat(param);
+                                InvokeModelParam invokeParam = buildInvokeModelParam(param, chat);
+
+                                ChatPhaseTimings timings = invokeParam.getTimings();
+                                timings.record(ChatPhaseTimings.CHECKS, checksMillis);
+                                timings.record(ChatPhaseTimings.ADMISSION, admissionMillis);
+                                timings.record(
+                                        ChatPhaseTimings.PREPARE,
+                                        System.currentTimeMillis() - prepareStart);
+                                return new PreparedChat(chat, invokeParam, false, admission);
+                            } catch (RuntimeException e) {
+                                admission.release();
+                                throw e;
+                            }
+                        });
+
+        return Mono.fromCallable(prepare)
+                // Waiting for a slot, database and product lookups are blocking, none of them
+                // runs on the request thread
+                .subscribeOn(Schedulers.boundedElastic())
+                // Generation never starts if the client left while the chat was prepared
+                .doOnDiscard(PreparedChat.class, prepared -> prepared.admission().release())
+                .map(this::startStream)
+                // Only a chat that never started gets the failure events, errors once events are
+                // out end the stream as they are
+                .onErrorResume(
+                        e -> {
+                            log.error(
+                                    "Failed to prepare chat for session: {}",
+                                    param.getSessionId(),
+                                    e);
+                            return Mono.just(failedStream(null, e));
+                        })
+                .flatMapMany(Function.identity());
     }
 
-    private void updateChatResult(String chatId, LlmInvokeResult result) {
-        chatRepository
-                .findByChatId(chatId)
-                .ifPresent(
-                        chat -> {
-                            chat.setAnswer(result.getAnswer());
-                            chat.setStatus(
-                                    result.isSuccess() ? ChatStatus.SUCCESS : ChatStatus.FAILED);
-                            chat.setChatUsage(result.getUsage());
-                            chat.setToolCalls(result.getToolCalls());
-                            chatRepository.save(chat);
+    /**
+     * Ask several products of the session the same question at once. Session checks, developer
+     * context and attachments are resolved once, then every product gets its own chat, journal and
+     * result, and their events are merged into one stream tagged with {@link
+     * ChatEvent#getProductId()}.
+     *
+     * <p>Event IDs are those of each chat's own journal, a client resumes a product it lost with
+     * {@link #resume(String, Long)} on that chat. Events of a product that failed to start have no
+     * ID.
+     *
+     * @param param compare param
+     */
+    public Flux<ChatStreamEvent> compare(CreateCompareChatParam param) {
+        List<String> productIds = param.getProductIds().stream().distinct().toList();
+        int maxProducts = hiChatProperties.getCompare().getMaxProducts();
+        if (productIds.size() > maxProducts) {
+            throw new BusinessException(
+                    ErrorCode.INVALID_PARAMETER,
+                    StrUtil.format("At most {} products can be compared", maxProducts));
+        }
+
+        long checksStart = System.currentTimeMillis();
+        performAllChecks(param.getSessionId(), productIds, param.getMcpProducts());
+        long checksMillis = System.currentTimeMillis() - checksStart;
+
+        // Security and portal context are thread bound, carry them over to the worker
+        String userId = contextHolder.getUser();
+        Callable<List<PreparedChat>> prepare =
+                contextHolder.wrap(
+                        () -> {
+                            // All products or none, held until each generation ends
+                            long admissionStart = System.currentTimeMillis();
+                            Map<String, Admission> admissions =
+                                    chatAdmissionManager.admitAll(userId, productIds);
+                            long admissionMillis = System.currentTimeMillis() - admissionStart;
+
+                            try {
+                                long prepareStart = System.currentTimeMillis();
+                                List<PreparedChat> prepared =
+                                        prepareCompare(param, productIds, admissions);
+
+                                long prepareMillis = System.currentTimeMillis() - prepareStart;
+                                for (PreparedChat chat : prepared) {
+                                    ChatPhaseTimings timings = chat.param().getTimings();
+                                    timings.record(ChatPhaseTimings.CHECKS, checksMillis);
+                                    timings.record(ChatPhaseTimings.ADMISSION, admissionMillis);
+                                    timings.record(ChatPhaseTimings.PREPARE, prepareMillis);
+                                }
+                                return prepared;
+                            } catch (RuntimeException e) {
+                                admissions.values().forEach(Admission::release);
+                                throw e;
+                            }
                         });
+
+        return Mono.fromCallable(prepare)
+                // Waiting for slots, database and product lookups are blocking, none of them
+                // runs on the request thread
+                .subscribeOn(Schedulers.boundedElastic())
+                // Generation never starts if the client left while the chats were prepared
+                .doOnDiscard(List.class, this::releaseAdmissions)
+                .map(this::startCompareStreams)
+                .onErrorResume(
+                        e -> {
+                            log.error(
+                                    "Failed to prepare compare chat for session: {}",
+                                    param.getSessionId(),
+                                    e);
+                            return Mono.just(failedStream(null, e));
+                        })
+                .flatMapMany(Function.identity());
     }
 
-    private void performAllChecks(CreateChatParam param) {
-        ChatSession session = sessionService.findUserSession(param.getSessionId());
+    /**
+     * Resume the event stream of a chat, replaying the events after the last received one
+     *
+     * @param chatId      Chat ID
+     * @param lastEventId ID of the last event the client received, null for all
+     */
+    public Flux<ChatStreamEvent> resume(String chatId, Long lastEventId) {
+        ChatStream stream =
+                chatStreamJournal
+                        .find(chatId)
+                        .filter(s -> StrUtil.equals(s.getUserId(), contextHolder.getUser()))
+                        .orElseThrow(
+                                () ->
+                                        new BusinessException(
+                                                ErrorCode.NOT_FOUND, Resources.CHAT, chatId));
+
+        return stream.subscribe(lastEventId == null ? 0 : lastEventId);
+    }
 
-        if (!session.getProducts().contains(param.getProductId())) {
-            throw new BusinessException(
-                    ErrorCode.INVALID_REQUEST,
-                    StrUtil.format("Product `{}` not in current session", param.getProductId()));
+    /**
+     * Get the full text of a tool result that was spilled because of its size
+     *
+     * @param chatId    Chat ID
+     * @param resultKey storage key from the {@link ToolResultSpiller#REF_PREFIX} reference
+     */
+    public ToolResultContentResult getToolResult(String chatId, String resultKey) {
+        Chat chat =
+                chatArchiveManager
+                        .findByChatId(chatId)
+                        .filter(c -> StrUtil.equals(c.getUserId(), contextHolder.getUser()))
+                        .orElseThrow(
+                                () ->
+                                        new BusinessException(
+                                                ErrorCode.NOT_FOUND, Resources.CHAT, chatId));
+
+        // Only results referenced by the chat's own tool calls
+        String ref = ToolResultSpiller.REF_PREFIX + resultKey;
+        boolean referenced =
+                CollUtil.emptyIfNull(chat.getToolCalls()).stream()
+                        .anyMatch(
+                                toolCall ->
+                                        StrUtil.contains(
+                                                JSONUtil.toJsonStr(toolCall.getResult()), ref));
+        if (!referenced) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, Resources.TOOL_RESULT, resultKey);
         }
 
-        if (CollUtil.isNotEmpty(param.getMcpProducts())) {
+        String content = toolResultSpiller.read(resultKey);
+        return ToolResultContentResult.builder()
+                .resultKey(resultKey)
+                .length(content.length())
+                .content(content)
+                .build();
+    }
+
+    /**
+     * Run the LLM invocation into the chat journal, so that generation is not tied to the client
+     * connection, and subscribe the caller to it
+     */
+    private Flux<ChatStreamEvent> startStream(PreparedChat prepared) {
+        Chat chat = prepared.chat();
+        InvokeModelParam param = prepared.param();
+        Admission admission = prepared.admission();
+        Flux<ChatEvent> events;
+        try {
+            events =
+                    coalesce(
+                                    getLlmService(param)
+                                            .invokeLlm(param, r -> completeChat(chat, param, r)))
+                            .doFinally(signal -> admission.release());
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+        if (prepared.compare()) {
+            // Events are fresh per chat, tagged before anyone can see them
+            events = events.doOnNext(event -> event.setProductId(chat.getProductId()));
+        }
+
+        ChatStream stream = chatStreamJournal.open(chat.getChatId(), chat.getUserId());
+        stream.attach(
+                events.subscribe(
+                        stream::append,
+                        e -> {
+                            log.error(
+                                    "Chat stream terminated with error, chatId: {}",
+                                    chat.getChatId(),
+                                    e);
+                            // Clients and resumers still get the terminal events
+                            ChatError chatError = ChatError.from(e);
+                            List<ChatEvent> terminal =
+                                    List.of(
+                                            ChatEvent.error(
+                                                    chat.getChatId(),
+                                                    chatError.name(),
+                                                    StrUtil.blankToDefault(
+                                                            e.getMessage(),
+                                                            chatError.getDescription())),
+                                            ChatEvent.done(chat.getChatId(), null));
+                            for (ChatEvent event : terminal) {
+                                if (prepared.compare()) {
+                                    event.setProductId(chat.getProductId());
+                                }
+                                stream.append(event);
+                            }
+                            stream.complete();
+                        },
+                        stream::complete));
+
+        return stream.subscribe(0);
+    }
+
+    /**
+     * Start every product of a compare request, their streams merged as events arrive
+     */
+    private Flux<ChatStreamEvent> startCompareStreams(List<PreparedChat> prepared) {
+        return Flux.fromIterable(prepared)
+                .flatMap(this::startCompareStream, Math.max(prepared.size(), 1));
+    }
+
+    /**
+     * Start one product of a compare request, its failure ends only its own part of the stream
+     */
+    private Flux<ChatStreamEvent> startCompareStream(PreparedChat prepared) {
+        String productId = prepared.chat().getProductId();
+        // Either the stream starts or, if the client left first, the slots are released
+        AtomicBoolean claimed = new AtomicBoolean();
+        return Mono.fromCallable(
+                        () ->
+                                claimed.compareAndSet(false, true)
+                                        ? startStream(prepared)
+                                        : Flux.<ChatStreamEvent>empty())
+                // Products start concurrently, model clients may be created on a cache miss
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnCancel(
+                        () -> {
+                            if (claimed.compareAndSet(false, true)) {
+                                prepared.admission().release();
+                            }
+                        })
+                .onErrorResume(
+                        e -> {
+                            log.error("Failed to start chat of product: {}", productId, e);
+                            return Mono.just(failedStream(productId, e));
+                        })
+                .flatMapMany(Function.identity());
+    }
+
+    /**
+     * Merge streamed text chunks into fewer SSE frames, if enabled
+     */
+    private Flux<ChatEvent> coalesce(Flux<ChatEvent> events) {
+        HiChatProperties.StreamProperties config = hiChatProperties.getStream();
+        return ChatEventCoalescer.coalesce(
+                events,
+                Duration.ofMillis(config.getCoalesceWindowMs()),
+                config.getCoalesceMaxChunks());
+    }
+
+    /**
+     * Stream of a chat that failed before generation started
+     *
+     * @param productId product to tag the events with, null outside compare mode
+     * @param e         failure
+     */
+    private Flux<ChatStreamEvent> failedStream(String productId, Throwable e) {
+        ChatError chatError = ChatError.from(e);
+        // Business errors such as a rejected admission keep their own code
+        String code = e instanceof BusinessException be ? be.getCode() : chatError.name();
+        List<ChatEvent> events =
+                List.of(
+                        ChatEvent.start(null),
+                        ChatEvent.error(
+                                null,
+                                code,
+                                StrUtil.blankToDefault(
+                                        e.getMessage(), chatError.getDescription())),
+                        ChatEvent.done(null, null));
+
+        // No journal to resume from, and journal IDs of other products share the compare stream
+        return Flux.fromIterable(events)
+                .doOnNext(event -> event.setProductId(productId))
+                .map(event -> new ChatStreamEvent(ChatStreamEvent.NO_ID, event));
+    }
+
+    /**
+     * Release the slots of compare chats that were prepared but never started
+     */
+    private void releaseAdmissions(List<?> prepared) {
+        prepared.forEach(chat -> ((PreparedChat) chat).admission().release());
+    }
+
+    private List<PreparedChat> prepareCompare(
+            CreateCompareChatParam param,
+            List<String> productIds,
+            Map<String, Admission> admissions) {
+        Map<String, ChatRequestContext> requestContexts =
+                requestContextResolver.resolveAll(productIds, param.getMcpProducts());
+
+        List<PreparedChat> prepared = new ArrayList<>(productIds.size());
+        Msg currentMsg = null;
+        for (String productId : productIds) {
+            CreateChatParam chatParam = param.toChatParam(productId);
+            Chat chat = createChat(chatParam);
+            if (currentMsg == null) {
+                // Same question and attachments for every product, loaded once
+                currentMsg = buildUserMsg(chat);
+            }
+            InvokeModelParam invokeParam =
+                    buildInvokeModelParam(
+                            chatParam, chat, requestContexts.get(productId), currentMsg);
+            prepared.add(
+                    new PreparedChat(chat, invokeParam, true, admissions.get(productId)));
+        }
+        return prepared;
+    }
+
+    private void completeChat(Chat chat, InvokeModelParam param, LlmInvokeResult result) {
+        long persistStart = System.currentTimeMillis();
+        updateChatResult(chat, result);
+
+        ProductResult product = param.getProduct();
+        chatMetrics.recordChatPhase(
+                ChatMetrics.PERSIST,
+                product.getProductId(),
+                ChatMetrics.getProtocol(product),
+                System.currentTimeMillis() - persistStart);
+        chatMetrics.recordChat(product, param.getTimings());
+    }
+
+    private void updateChatResult(Chat chat, LlmInvokeResult result) {
+        chat.setAnswer(result.getAnswer());
+        chat.setStatus(result.isSuccess() ? ChatStatus.SUCCESS : ChatStatus.FAILED);
+        chat.setChatUsage(result.getUsage());
+        chat.setToolCalls(result.getToolCalls());
+        chat.setAnswerTokens(TokenEstimator.estimate(result.getAnswer()));
+
+        // Written behind by batch, history is updated right away. A full queue is waited on off
+        // the stream thread
+        if (!chatResultPersister.offer(chat)) {
+            Schedulers.boundedElastic().schedule(() -> chatResultPersister.submit(chat));
+        }
+        chatHistoryManager.append(chat);
+    }
+
+    private void performAllChecks(
+            String sessionId, List<String> productIds, List<String> mcpProducts) {
+        ChatSession session = sessionService.findUserSession(sessionId);
+
+        for (String productId : productIds) {
+            if (!session.getProducts().contains(productId)) {
+                throw new BusinessException(
+                        ErrorCode.INVALID_REQUEST,
+                        StrUtil.format("Product `{}` not in current session", productId));
+            }
+        }
+
+        if (CollUtil.isNotEmpty(mcpProducts)) {
             Set<String> subscribedProductIds =
-                    consumerService
-                            .listConsumerSubscriptions(
-                                    consumerService.getPrimaryConsumer().getConsumerId())
-                            .stream()
-                            .map(SubscriptionResult::getProductId)
-                            .collect(Collectors.toSet());
+                    requestContextResolver.getSubscribedProductIds(false);
 
             Set<String> unsubscribedProducts =
-                    param.getMcpProducts().stream()
+                    mcpProducts.stream()
                             .filter(productId -> !subscribedProductIds.contains(productId))
                             .collect(Collectors.toSet());
 
@@ -157,8 +535,8 @@ public class ChatService {
         chat.setUserId(contextHolder.getUser());
 
         // Sequence represent the number of tries for this question
-        Integer sequence =
-                chatRepository.findCurrentSequence(
+        int sequence =
+                chatArchiveManager.findCurrentSequence(
                         param.getSessionId(),
                         param.getConversationId(),
                         param.getQuestionId(),
@@ -169,20 +547,23 @@ public class ChatService {
     }
 
     private InvokeModelParam buildInvokeModelParam(CreateChatParam param, Chat chat) {
-        // Get product config
-        ProductResult productResult = productService.getProduct(param.getProductId());
+        // Product config, target gateway, credential and MCP configs, cached across turns
+        ChatRequestContext requestContext =
+                requestContextResolver.resolve(param.getProductId(), param.getMcpProducts());
 
-        // Record target gateway
-        ProductRefResult productRef = productService.getProductRef(param.getProductId());
-        String gatewayId = productRef.getGatewayId();
+        // Build user msg and history msg list which will be passed to model
+        return buildInvokeModelParam(param, chat, requestContext, buildUserMsg(chat));
+    }
 
-        // Get authentication info
-        CredentialContext credentialContext =
-                consumerService.getDefaultCredential(contextHolder.getUser());
+    private InvokeModelParam buildInvokeModelParam(
+            CreateChatParam param, Chat chat, ChatRequestContext requestContext, Msg currentMsg) {
+        ProductResult productResult = requestContext.getProduct();
+        chat.setQuestionTokens(TokenEstimator.estimate(currentMsg));
 
-        // Build user msg and history msg list which will be passed to model
-        List<Msg> historyMsgList = buildHistoryMsgList(param);
-        Msg currentMsg = buildUserMsg(chat);
+        // History fills what is left of the context budget after the current message
+        int contextTokenBudget = resolveContextTokenBudget(productResult);
+        List<Msg> historyMsgList =
+                buildHistoryMsgList(param, contextTokenBudget - chat.getQuestionTokens());
 
         return InvokeModelParam.builder()
                 .chatId(chat.getChatId())
@@ -190,95 +571,84 @@ public class ChatService {
                 .userMessage(currentMsg)
                 .product(productResult)
                 .historyMessages(historyMsgList)
+                .contextTokenBudget(contextTokenBudget)
                 .enableWebSearch(param.getEnableWebSearch())
-                .gatewayId(gatewayId)
-                .mcpConfigs(buildMCPConfigs(param, credentialContext))
-                .credentialContext(credentialContext)
+                .gatewayId(requestContext.getGatewayId())
+                .mcpConfigs(requestContext.getMcpConfigs())
+                .credentialContext(requestContext.getCredentialContext())
                 .build();
     }
 
-    public List<Msg> buildHistoryMsgList(CreateChatParam param) {
-        List<Msg> messages = new ArrayList<>();
-
-        // 1. Query successful chat records from database
-        List<Chat> chats =
-                chatRepository.findBySessionIdAndStatus(
-                        param.getSessionId(),
-                        ChatStatus.SUCCESS,
-                        Sort.by(Sort.Direction.ASC, "createAt"));
-
-        if (CollUtil.isEmpty(chats)) {
+    /**
+     * Build history messages that fit into the token budget, newest conversations first
+     *
+     * @param param       chat param
+     * @param tokenBudget tokens available for history
+     * @return history messages, oldest first
+     */
+    public List<Msg> buildHistoryMsgList(CreateChatParam param, int tokenBudget) {
+        if (tokenBudget <= 0) {
             return CollUtil.empty(List.class);
         }
 
-        // 2. Filter and group chats
-        Map<String, List<Chat>> chatGroups =
-                chats.stream()
-                        // Filter valid chats (must have both question and answer)
-                        .filter(
-                                chat ->
-                                        StrUtil.isNotBlank(chat.getQuestion())
-                                                && StrUtil.isNotBlank(chat.getAnswer()))
-                        // Exclude current conversation
-                        .filter(chat -> !param.getConversationId().equals(chat.getConversationId()))
-                        // Ensure same product
-                        .filter(chat -> StrUtil.equals(chat.getProductId(), param.getProductId()))
-                        .collect(Collectors.groupingBy(Chat::getConversationId));
-
-        // 3. Get latest answer for each conversation
+        // 1. Get latest chat of each conversation (same product, excluding current conversation)
         // Note: A conversation may have multiple chats for the same question (retries,
-        // regenerations)
-        // We need to find the latest question, then get its latest answer
+        // regenerations), only the latest answer of the latest question is kept
         List<Chat> latestChats =
-                chatGroups.values().stream()
-                        .map(
-                                conversationChats -> {
-                                    // 3.1 Find the latest question ID
-                                    String latestQuestionId =
-                                            conversationChats.stream()
-                                                    .max(Comparator.comparing(Chat::getCreateAt))
-                                                    .map(Chat::getQuestionId)
-                                                    .orElse(null);
-
-                                    if (StrUtil.isBlank(latestQuestionId)) {
-                                        return null;
-                                    }
-
-                                    // 3.2 Get the latest answer for this question
-                                    return conversationChats.stream()
-                                            .filter(
-                                                    chat ->
-                                                            latestQuestionId.equals(
-                                                                    chat.getQuestionId()))
-                                            .max(Comparator.comparing(Chat::getCreateAt))
-                                            .orElse(null);
-                                })
-                        .filter(Objects::nonNull)
-                        .sorted(Comparator.comparing(Chat::getCreateAt))
-                        .toList();
-
-        // 4. Build AgentScope Msg objects (user + assistant pairs)
-        for (Chat chat : latestChats) {
-            // User message (with multimodal support)
-            Msg userMsg = buildUserMsg(chat);
-            messages.add(userMsg);
-
-            // Assistant message
-            Msg assistantMsg = buildAssistantMsg(chat);
-            messages.add(assistantMsg);
+                chatHistoryManager.getHistory(
+                        param.getSessionId(), param.getProductId(), param.getConversationId());
+
+        if (CollUtil.isEmpty(latestChats)) {
+            return CollUtil.empty(List.class);
         }
 
-        // 5. Truncate if too many messages
-        messages = truncateMessages(messages);
+        // 2. Walk from the newest conversation back, adding user + assistant pairs while they fit
+        LinkedList<Msg> messages = new LinkedList<>();
+        int usedTokens = 0;
+        int conversations = 0;
+        for (int i = latestChats.size() - 1; i >= 0; i--) {
+            Chat chat = latestChats.get(i);
+
+            // Check the budget with the token counts stored with the chat, messages (and their
+            // attachments) are built up front only for legacy rows that need an estimate
+            Msg userMsg = chat.getQuestionTokens() == null ? buildUserMsg(chat) : null;
+            Msg assistantMsg = chat.getAnswerTokens() == null ? buildAssistantMsg(chat) : null;
+            int tokens =
+                    (userMsg == null ? chat.getQuestionTokens() : TokenEstimator.estimate(userMsg))
+                            + (assistantMsg == null
+                                    ? chat.getAnswerTokens()
+                                    : TokenEstimator.estimate(assistantMsg));
+
+            if (usedTokens + tokens > tokenBudget) {
+                break;
+            }
+
+            messages.addFirst(assistantMsg != null ? assistantMsg : buildAssistantMsg(chat));
+            messages.addFirst(userMsg != null ? userMsg : buildUserMsg(chat));
+            usedTokens += tokens;
+            conversations++;
+        }
 
         log.debug(
-                "Built {} AgentScope messages from {} conversations for session: {}",
+                "Built {} AgentScope messages from {}/{} conversations for session: {}, tokens:"
+                        + " {}/{}",
                 messages.size(),
+                conversations,
                 latestChats.size(),
-                param.getSessionId());
+                param.getSessionId(),
+                usedTokens,
+                tokenBudget);
         return messages;
     }
 
+    private int resolveContextTokenBudget(ProductResult product) {
+        return Optional.ofNullable(product.getFeature())
+                .map(ProductFeature::getModelFeature)
+                .map(ModelFeature::getContextTokenBudget)
+                .filter(budget -> budget > 0)
+                .orElse(hiChatProperties.getContext().getDefaultTokenBudget());
+    }
+
     private Msg buildUserMsg(Chat chat) {
         List<ContentBlock> contentBlocks = new ArrayList<>();
 
@@ -302,16 +672,22 @@ public class ChatService {
                         chatAttachmentRepository.findByAttachmentIdIn(attachmentIds);
 
                 for (ChatAttachment attachment : attachments) {
-                    if (attachment == null || ArrayUtil.isEmpty(attachment.getData())) {
+                    if (attachment == null) {
                         continue;
                     }
 
                     // Process attachment based on type
                     if (attachment.getType() == ChatAttachmentType.TEXT) {
-                        buildTextContent(attachment, textContent);
+                        ByteBuffer data = chatAttachmentService.getAttachmentData(attachment);
+                        if (data != null && data.hasRemaining()) {
+                            buildTextContent(attachment, data, textContent);
+                        }
                     } else {
-                        // IMAGE, AUDIO, VIDEO
-                        buildMediaContent(attachment, contentBlocks);
+                        // IMAGE, AUDIO, VIDEO (encoded once and cached)
+                        ContentBlock mediaBlock = mediaContentCache.get(attachment);
+                        if (mediaBlock != null) {
+                            contentBlocks.add(mediaBlock);
+                        }
                     }
                 }
             }
@@ -332,146 +708,18 @@ public class ChatService {
         }
     }
 
-    private void buildTextContent(ChatAttachment attachment, StringBuilder textContent) {
-        String text = new String(attachment.getData(), StandardCharsets.UTF_8);
+    private void buildTextContent(
+            ChatAttachment attachment, ByteBuffer data, StringBuilder textContent) {
+        String text = StandardCharsets.UTF_8.decode(data).toString();
         textContent.append("\n\n## ").append(attachment.getName()).append("\n").append(text);
     }
 
-    private void buildMediaContent(ChatAttachment attachment, List<ContentBlock> contentBlocks) {
-
-        // Encode to pure Base64 string (no data URL prefix)
-        String base64Data = Base64.encode(attachment.getData());
-
-        // Use default mime type if not specified
-        String mediaType =
-                StrUtil.isBlank(attachment.getMimeType())
-                        ? "application/octet-stream"
-                        : attachment.getMimeType();
-
-        // Create Base64Source with pure base64 data
-        Base64Source source = Base64Source.builder().data(base64Data).mediaType(mediaType).build();
-
-        ContentBlock contentBlock;
-        switch (attachment.getType()) {
-            case IMAGE:
-                contentBlock = ImageBlock.builder().source(source).build();
-                break;
-            case AUDIO:
-                contentBlock = AudioBlock.builder().source(source).build();
-                break;
-            case VIDEO:
-                contentBlock = VideoBlock.builder().source(source).build();
-                break;
-            default:
-                log.warn("Unsupported media attachment type: {}", attachment.getType());
-                return;
-        }
-
-        contentBlocks.add(contentBlock);
-    }
-
     private Msg buildAssistantMsg(Chat chat) {
         String answer = StrUtil.isBlank(chat.getAnswer()) ? "" : chat.getAnswer();
         // Use textContent() convenience method for simple text messages
         return Msg.builder().role(MsgRole.ASSISTANT).textContent(answer).build();
     }
 
-    private List<Msg> truncateMessages(List<Msg> messages) {
-        // Max conversation pairs to keep
-        int maxHistoryPairs = 10;
-        int maxMessages = maxHistoryPairs * 2;
-
-        if (messages.size() > maxMessages) {
-            int startIndex = messages.size() - maxMessages;
-            List<Msg> truncated = messages.subList(startIndex, messages.size());
-            log.debug("Truncated history to last {} conversation pairs", maxHistoryPairs);
-            return truncated;
-        }
-
-        return messages;
-    }
-
-    private List<MCPTransportConfig> buildMCPConfigs(
-            CreateChatParam param, CredentialContext credentialContext) {
-        if (CollUtil.isEmpty(param.getMcpProducts())) {
-            return CollUtil.empty(List.class);
-        }
-
-        Map<String, ProductResult> productMap = productService.getProducts(param.getMcpProducts());
-
-        // 批量查 meta 和公共 endpoint，避免 N+1
-        List<String> productIds = new java.util.ArrayList<>(productMap.keySet());
-        Map<String, McpServerMeta> metaByProductId =
-                mcpServerMetaRepository.findByProductIdIn(productIds).stream()
-                        .collect(
-                                Collectors.toMap(McpServerMeta::getProductId, m -> m, (a, b) -> a));
-        List<String> mcpServerIds =
-                metaByProductId.values().stream()
-                        .map(McpServerMeta::getMcpServerId)
-                        .collect(Collectors.toList());
-        Map<String, McpServerEndpoint> endpointByMcpServerId =
-                mcpServerIds.isEmpty()
-                        ? java.util.Collections.emptyMap()
-                        : mcpServerEndpointRepository
-                                .findByMcpServerIdInAndUserIdInAndStatus(
-                                        mcpServerIds,
-                                        List.of(McpEndpointStatus.PUBLIC_USER_ID),
-                                        McpEndpointStatus.ACTIVE.name())
-                                .stream()
-                                .collect(
-                                        Collectors.toMap(
-                                                McpServerEndpoint::getMcpServerId,
-                                                ep -> ep,
-                                                (a, b) -> a));
-
-        return productMap.values().stream()
-                .filter(
-                        product ->
-                                product.getType() == ProductType.MCP_SERVER
-                                        || product.getMcpConfig() != null)
-                .map(
-                        product -> {
-                            // 优先从 endpoint 热数据构建（沙箱/自定义 MCP）
-                            McpServerMeta meta = metaByProductId.get(product.getProductId());
-                            if (meta != null) {
-                                McpServerEndpoint ep =
-                                        endpointByMcpServerId.get(meta.getMcpServerId());
-                                if (ep != null && StrUtil.isNotBlank(ep.getEndpointUrl())) {
-                                    String protocol =
-                                            StrUtil.blankToDefault(ep.getProtocol(), "sse");
-                                    MCPTransportMode mode =
-                                            McpProtocolType.resolveTransportMode(protocol);
-                                    MCPTransportConfig config =
-                                            MCPTransportConfig.builder()
-                                                    .mcpServerName(meta.getMcpName())
-                                                    .productId(product.getProductId())
-                                                    .transportMode(mode)
-                                                    .url(ep.getEndpointUrl())
-                                                    .headers(credentialContext.copyHeaders())
-                                                    .queryParams(
-                                                            credentialContext.copyQueryParams())
-                                                    .build();
-                                    return config;
-                                }
-                            }
-
-                            // fallback：从冷数据 mcpConfig 构建（网关导入的 MCP）
-                            if (product.getMcpConfig() == null) {
-                                return null;
-                            }
-                            MCPTransportConfig transportConfig =
-                                    product.getMcpConfig().toTransportConfig();
-                            if (transportConfig == null) {
-                                return null;
-                            }
-                            transportConfig.setHeaders(credentialContext.copyHeaders());
-                            transportConfig.setQueryParams(credentialContext.copyQueryParams());
-                            return transportConfig;
-                        })
-                .filter(java.util.Objects::nonNull)
-                .collect(Collectors.toList());
-    }
-
     private LlmService getLlmService(InvokeModelParam param) {
         // Get supported protocols from model config (not null)
         List<String> aiProtocols =
@@ -502,12 +750,22 @@ public class ChatService {
         try {
             log.info("Cleaning chat records and attachments for session: {}", sessionId);
 
-            // Delete all chat records
-            chatRepository.deleteAllBySessionId(sessionId);
+            // Delete all chat records, archived ones included
+            chatArchiveManager.deleteBySessionId(sessionId);
+
+            // Spilled tool results are only reachable through the deleted chats
+            toolResultSpiller.deleteBySessionId(sessionId);
 
             log.info("Successfully cleaned chat records for session: {}", sessionId);
         } catch (Exception e) {
             log.error("Failed to cleanup chat records for session: {}", sessionId, e);
         }
     }
+
+    /**
+     * @param compare   whether the chat is one product of a compare request
+     * @param admission slots of the chat, released when its generation ends
+     */
+    private record PreparedChat(
+            Chat chat, InvokeModelParam param, boolean compare, Admission admission) {}
 }
@@ -26,6 +26,8 @@ import com.alibaba.himarket.dto.result.chat.LlmInvokeResult;
 import com.alibaba.himarket.dto.result.product.ProductResult;
 import com.alibaba.himarket.service.GatewayService;
 import com.alibaba.himarket.service.hichat.manager.ChatBotManager;
+import com.alibaba.himarket.service.hichat.manager.ChatResponseCache;
+import com.alibaba.himarket.service.hichat.manager.ModelClientRegistry;
 import com.alibaba.himarket.service.hichat.service.dashscope.DashScopeImageChatModel;
 import com.alibaba.himarket.service.hichat.support.ChatContext;
 import com.alibaba.himarket.service.hichat.support.ChatEvent;
@@ -46,16 +48,23 @@ import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 @Slf4j
 public class DashScopeImageLlmService extends AbstractLlmService {
 
-    public DashScopeImageLlmService(GatewayService gatewayService, ChatBotManager chatBotManager) {
-        super(gatewayService, chatBotManager);
+    public DashScopeImageLlmService(
+            GatewayService gatewayService,
+            ChatBotManager chatBotManager,
+            ModelClientRegistry modelClientRegistry,
+            ChatResponseCache responseCache) {
+        super(gatewayService, chatBotManager, modelClientRegistry, responseCache);
     }
 
     @Override
@@ -64,60 +73,73 @@ public class DashScopeImageLlmService extends AbstractLlmService {
 
         // Create context to collect answer and usage
         ChatContext chatContext = new ChatContext(param.getChatId());
+        chatContext.setTimings(param.getTimings());
 
-        try {
-            LlmChatRequest request = composeRequest(param);
-            Model chatModel = newChatModel(request);
-            Msg userMsg = param.getUserMessage();
-
-            // Start estimate time and collect answer
-            chatContext.start();
-            return Flux.concat(
-                            // Emit START event
-                            Flux.just(ChatEvent.start(param.getChatId())),
-
-                            // Stream image generation events with error handling
-                            applyErrorHandling(
-                                    chatModel.stream(List.of(userMsg), null, null)
-                                            .next()
-                                            .flatMapMany(
-                                                    response ->
-                                                            convertToChatEvents(
-                                                                    response, chatContext))
-                                            // Collect answer content
-                                            .doOnNext(chatContext::collect),
-                                    param.getChatId(),
-                                    chatContext))
-                    // Always emit DONE at the end
-                    .concatWith(
-                            Flux.defer(
-                                    () -> {
-                                        chatContext.stop();
-                                        return Flux.just(
-                                                ChatEvent.done(
-                                                        param.getChatId(), chatContext.getUsage()));
-                                    }))
-                    // Unified result handling for all completion scenarios
-                    .doFinally(signal -> resultHandler.accept(chatContext.toResult()));
-
-        } catch (Exception e) {
-            log.error(
-                    "Failed to process image generation request for chatId: {}",
-                    param.getChatId(),
-                    e);
-            ChatError chatError = ChatError.from(e);
-            chatContext.fail();
-            chatContext.appendAnswer("[Image generation failed: " + e.getMessage() + "]");
-            resultHandler.accept(chatContext.toResult());
-
-            return Flux.just(
-                    ChatEvent.start(param.getChatId()),
-                    ChatEvent.error(
-                            param.getChatId(),
-                            chatError.name(),
-                            StrUtil.blankToDefault(e.getMessage(), chatError.getDescription())),
-                    ChatEvent.done(param.getChatId(), null));
-        }
+        return Mono.fromCallable(() -> getOrCreateChatModel(composeRequest(param)))
+                // Gateway URIs are fetched from the gateway on cache miss
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(chatModel -> streamImage(chatModel, param, chatContext, resultHandler))
+                .onErrorResume(
+                        e -> Mono.just(failedImage(e, param, chatContext, resultHandler)))
+                .flatMapMany(Function.identity());
+    }
+
+    private Flux<ChatEvent> streamImage(
+            Model chatModel,
+            InvokeModelParam param,
+            ChatContext chatContext,
+            Consumer<LlmInvokeResult> resultHandler) {
+        Msg userMsg = param.getUserMessage();
+
+        // Start estimate time and collect answer
+        chatContext.start();
+        return Flux.concat(
+                        // Emit START event
+                        Flux.just(ChatEvent.start(param.getChatId())),
+
+                        // Stream image generation events with error handling
+                        applyErrorHandling(
+                                chatModel.stream(List.of(userMsg), null, null)
+                                        .next()
+                                        .flatMapMany(
+                                                response ->
+                                                        convertToChatEvents(response, chatContext))
+                                        // Collect answer content
+                                        .doOnNext(chatContext::collect),
+                                param.getChatId(),
+                                chatContext))
+                // Always emit DONE at the end
+                .concatWith(
+                        Flux.defer(
+                                () -> {
+                                    chatContext.stop();
+                                    return Flux.just(
+                                            ChatEvent.done(
+                                                    param.getChatId(), chatContext.getUsage()));
+                                }))
+                // Unified result handling for all completion scenarios
+                .doFinally(signal -> resultHandler.accept(chatContext.toResult()));
+    }
+
+    private Flux<ChatEvent> failedImage(
+            Throwable e,
+            InvokeModelParam param,
+            ChatContext chatContext,
+            Consumer<LlmInvokeResult> resultHandler) {
+        log.error(
+                "Failed to process image generation request for chatId: {}", param.getChatId(), e);
+        ChatError chatError = ChatError.from(e);
+        chatContext.fail();
+        chatContext.appendAnswer("[Image generation failed: " + e.getMessage() + "]");
+        resultHandler.accept(chatContext.toResult());
+
+        return Flux.just(
+                ChatEvent.start(param.getChatId()),
+                ChatEvent.error(
+                        param.getChatId(),
+                        chatError.name(),
+                        StrUtil.blankToDefault(e.getMessage(), chatError.getDescription())),
+                ChatEvent.done(param.getChatId(), null));
     }
 
     private Flux<ChatEvent> applyErrorHandling(
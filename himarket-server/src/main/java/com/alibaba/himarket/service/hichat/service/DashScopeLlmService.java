@@ -22,6 +22,8 @@ import com.alibaba.himarket.dto.result.model.ModelConfigResult;
 import com.alibaba.himarket.dto.result.product.ProductResult;
 import com.alibaba.himarket.service.GatewayService;
 import com.alibaba.himarket.service.hichat.manager.ChatBotManager;
+import com.alibaba.himarket.service.hichat.manager.ChatResponseCache;
+import com.alibaba.himarket.service.hichat.manager.ModelClientRegistry;
 import com.alibaba.himarket.service.hichat.support.InvokeModelParam;
 import com.alibaba.himarket.service.hichat.support.LlmChatRequest;
 import com.alibaba.himarket.support.enums.AIProtocol;
@@ -38,8 +40,12 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class DashScopeLlmService extends AbstractLlmService {
 
-    public DashScopeLlmService(GatewayService gatewayService, ChatBotManager chatBotManager) {
-        super(gatewayService, chatBotManager);
+    public DashScopeLlmService(
+            GatewayService gatewayService,
+            ChatBotManager chatBotManager,
+            ModelClientRegistry modelClientRegistry,
+            ChatResponseCache responseCache) {
+        super(gatewayService, chatBotManager, modelClientRegistry, responseCache);
     }
 
     @Override
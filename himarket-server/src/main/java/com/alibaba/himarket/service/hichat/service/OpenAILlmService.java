@@ -6,6 +6,8 @@ import com.alibaba.himarket.dto.result.product.ProductResult;
 import com.alibaba.himarket.service.GatewayService;
 import com.alibaba.himarket.service.gateway.ModelEndpointResolver;
 import com.alibaba.himarket.service.hichat.manager.ChatBotManager;
+import com.alibaba.himarket.service.hichat.manager.ChatResponseCache;
+import com.alibaba.himarket.service.hichat.manager.ModelClientRegistry;
 import com.alibaba.himarket.service.hichat.support.InvokeModelParam;
 import com.alibaba.himarket.service.hichat.support.LlmChatRequest;
 import com.alibaba.himarket.support.enums.AIProtocol;
@@ -25,8 +27,12 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class OpenAILlmService extends AbstractLlmService {
 
-    public OpenAILlmService(GatewayService gatewayService, ChatBotManager chatBotManager) {
-        super(gatewayService, chatBotManager);
+    public OpenAILlmService(
+            GatewayService gatewayService,
+            ChatBotManager chatBotManager,
+            ModelClientRegistry modelClientRegistry,
+            ChatResponseCache responseCache) {
+        super(gatewayService, chatBotManager, modelClientRegistry, responseCache);
     }
 
     @Override
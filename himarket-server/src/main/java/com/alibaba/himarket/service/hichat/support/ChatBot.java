@@ -1,10 +1,10 @@
 package com.alibaba.himarket.service.hichat.support;
 
+import com.alibaba.himarket.service.hichat.memory.SessionMemory;
 import io.agentscope.core.ReActAgent;
 import io.agentscope.core.agent.Event;
 import io.agentscope.core.agent.EventType;
 import io.agentscope.core.agent.StreamOptions;
-import io.agentscope.core.memory.Memory;
 import io.agentscope.core.message.Msg;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +12,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @Data
@@ -24,6 +26,16 @@ public class ChatBot {
     private final ReActAgent agent;
     private final Map<String, ToolMeta> toolMetas;
 
+    /**
+     * Agent memory, shared across nodes through the memory store
+     */
+    private final SessionMemory memory;
+
+    /**
+     * Token budget of the prompt context, memory is trimmed to fit before each turn
+     */
+    private final Integer contextTokenBudget;
+
     /**
      * Whether this ChatBot is in degraded mode (some MCP tools failed to initialize)
      */
@@ -35,9 +47,6 @@ public class ChatBot {
     @Builder.Default private long createTime = System.currentTimeMillis();
 
     public Flux<Event> chat(Msg userMsg) {
-        // Truncate memory before adding new messages
-        truncateMemory();
-
         StreamOptions streamOptions =
                 StreamOptions.builder()
                         .eventTypes(EventType.ALL)
@@ -47,14 +56,33 @@ public class ChatBot {
                         .includeReasoningResult(true)
                         .build();
 
-        return agent.stream(userMsg, streamOptions);
+        return Mono.fromRunnable(
+                        () -> {
+                            // Another node may have served the previous turns
+                            memory.reload();
+
+                            // Truncate memory before adding new messages
+                            truncateMemory(userMsg);
+                        })
+                // Memory store is blocking
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenMany(Flux.defer(() -> agent.stream(userMsg, streamOptions)))
+                // Save the turn before completing, so the next turn is keyed and loaded with it
+                .concatWith(
+                        Mono.fromRunnable(memory::flush)
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then(Mono.empty()))
+                // Cancelled or failed turns save what they have
+                .doFinally(signal -> Schedulers.boundedElastic().schedule(memory::flush));
     }
 
     /**
-     * Truncate memory if it exceeds maximum size. Remove the oldest message.
+     * Truncate memory if it exceeds maximum size or the token budget left after the new user
+     * message. Remove the oldest messages first.
+     *
+     * @param userMsg new user message
      */
-    private void truncateMemory() {
-        Memory memory = agent.getMemory();
+    private void truncateMemory(Msg userMsg) {
         List<Msg> messages = memory.getMessages();
 
         if (messages.size() > MAX_MEMORY_SIZE) {
@@ -62,6 +90,25 @@ public class ChatBot {
             messages.remove(0);
             log.debug("Memory overflow, removed oldest message, current size: {}", messages.size());
         }
+
+        if (contextTokenBudget == null || messages.isEmpty()) {
+            return;
+        }
+
+        int budget = contextTokenBudget - TokenEstimator.estimate(userMsg);
+        int tokens = messages.stream().mapToInt(TokenEstimator::estimate).sum();
+        int removed = 0;
+        while (!messages.isEmpty() && tokens > budget) {
+            tokens -= TokenEstimator.estimate(messages.remove(0));
+            removed++;
+        }
+
+        if (removed > 0) {
+            log.debug(
+                    "Memory over token budget, removed {} oldest messages, current tokens: {}",
+                    removed,
+                    tokens);
+        }
     }
 
     /**
@@ -4,6 +4,7 @@ import com.alibaba.himarket.dto.result.chat.LlmInvokeResult;
 import com.alibaba.himarket.support.chat.ChatUsage;
 import com.alibaba.himarket.support.chat.ToolCallInfo;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,12 +55,28 @@ public class ChatContext {
      */
     private final Map<String, ToolCallInfo> toolCallMap = new LinkedHashMap<>();
 
+    /**
+     * Phase timings of the chat, shared with the invoke param
+     */
+    private ChatPhaseTimings timings = new ChatPhaseTimings();
+
+    /**
+     * Start of the current ReAct iteration, null while tools are running
+     */
+    private Long iterationStart;
+
+    /**
+     * Tool call ID to call start time
+     */
+    private final Map<String, Long> toolCallStarts = new HashMap<>();
+
     public ChatContext(String chatId) {
         this.chatId = chatId;
     }
 
     public void start() {
         this.startTime = System.currentTimeMillis();
+        this.iterationStart = startTime;
     }
 
     /**
@@ -80,9 +97,20 @@ public class ChatContext {
             return;
         }
 
-        long elapsedTime = System.currentTimeMillis() - startTime;
+        long now = System.currentTimeMillis();
+        long elapsedTime = now - startTime;
+
+        if (iterationStart != null) {
+            timings.record(ChatPhaseTimings.REASONING, now - iterationStart);
+            iterationStart = null;
+        }
+        if (firstByteTimeout != null) {
+            timings.record(ChatPhaseTimings.FIRST_TOKEN, firstByteTimeout);
+        }
+        timings.record(ChatPhaseTimings.TOTAL, elapsedTime);
 
         if (usage != null) {
+            usage.setPhaseTimings(timings.getPhases());
             usage.setElapsedTime(elapsedTime);
             log.debug("Total elapsed time: {} ms", elapsedTime);
 
@@ -125,6 +153,7 @@ public class ChatContext {
                                     .mcpServerName(tc.getMcpServerName())
                                     .build();
                     toolCallMap.put(tc.getId(), toolCallInfo);
+                    recordToolCallStart(tc.getId());
                 }
                 break;
 
@@ -137,6 +166,7 @@ public class ChatContext {
                     if (toolCallInfo != null) {
                         toolCallInfo.setResult(tr.getResult());
                     }
+                    recordToolCallEnd(tr.getId(), toolCallInfo);
                 }
                 break;
 
@@ -157,6 +187,34 @@ public class ChatContext {
         }
     }
 
+    /**
+     * The first tool call of a ReAct iteration ends its reasoning phase
+     */
+    private void recordToolCallStart(String toolCallId) {
+        long now = System.currentTimeMillis();
+        if (iterationStart != null) {
+            timings.record(ChatPhaseTimings.REASONING, now - iterationStart);
+            iterationStart = null;
+        }
+        toolCallStarts.put(toolCallId, now);
+    }
+
+    /**
+     * A tool result ends its call, and the next reasoning phase starts once all calls return
+     */
+    private void recordToolCallEnd(String toolCallId, ToolCallInfo toolCallInfo) {
+        long now = System.currentTimeMillis();
+        Long callStart = toolCallStarts.remove(toolCallId);
+        if (callStart != null) {
+            timings.recordToolCall(
+                    toolCallInfo == null ? null : toolCallInfo.getMcpServerName(),
+                    now - callStart);
+        }
+        if (toolCallStarts.isEmpty() && startTime != null) {
+            iterationStart = now;
+        }
+    }
+
     /**
      * Append additional content to answer
      *
@@ -19,6 +19,7 @@
 package com.alibaba.himarket.service.hichat.support;
 
 import com.alibaba.himarket.support.chat.ChatUsage;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -29,6 +30,7 @@ import lombok.Data;
  * <pre>
  * {
  *   "chatId": "chat-id",
+ *   "productId": "product-id", // compare mode only
  *   "type": "assistant|thinking|tool_call|tool_result|done|error",
  *   "content": ...,  // main content (varies by type)
  *   "usage": {...},  // token usage (optional)
@@ -46,6 +48,13 @@ public class ChatEvent {
      */
     private String chatId;
 
+    /**
+     * Product that produced the event, only set in compare mode where several products share
+     * one stream
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String productId;
+
     /**
      * Chunk type
      */
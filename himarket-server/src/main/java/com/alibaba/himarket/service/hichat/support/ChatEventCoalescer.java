@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.support;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import reactor.core.publisher.Flux;
+
+/**
+ * Merges consecutive text and thinking chunks into one event per flush window.
+ *
+ * <p>A run of ASSISTANT or THINKING chunks is flushed when the window elapses or the run reaches
+ * the max number of chunks. Any other event (tool call, tool result, error, done) ends the run
+ * and is passed through immediately, so nothing but streamed text is delayed.
+ */
+public final class ChatEventCoalescer {
+
+    private ChatEventCoalescer() {}
+
+    /**
+     * Coalesce chat events
+     *
+     * @param events    chat events
+     * @param window    max time a chunk waits for more chunks, zero disables coalescing
+     * @param maxChunks max chunks merged into one event
+     * @return coalesced chat events
+     */
+    public static Flux<ChatEvent> coalesce(Flux<ChatEvent> events, Duration window, int maxChunks) {
+        if (window.isZero() || window.isNegative() || maxChunks <= 1) {
+            return events;
+        }
+
+        return events.windowUntilChanged(ChatEvent::getType)
+                .concatMap(
+                        run ->
+                                run.switchOnFirst(
+                                        (first, flux) ->
+                                                first.hasValue() && isMergeable(first.get())
+                                                        ? flux.bufferTimeout(maxChunks, window)
+                                                                .map(ChatEventCoalescer::merge)
+                                                        : flux));
+    }
+
+    private static boolean isMergeable(ChatEvent event) {
+        return event.getType() == ChatEvent.EventType.ASSISTANT
+                || event.getType() == ChatEvent.EventType.THINKING;
+    }
+
+    private static ChatEvent merge(List<ChatEvent> chunks) {
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+
+        StringBuilder content = new StringBuilder();
+        chunks.forEach(chunk -> content.append(Objects.toString(chunk.getContent(), "")));
+
+        ChatEvent first = chunks.get(0);
+        return ChatEvent.builder()
+                .chatId(first.getChatId())
+                .type(first.getType())
+                .content(content.toString())
+                .build();
+    }
+}
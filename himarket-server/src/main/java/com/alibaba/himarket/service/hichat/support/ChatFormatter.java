@@ -28,7 +28,9 @@ import io.agentscope.core.message.ThinkingBlock;
 import io.agentscope.core.message.ToolResultBlock;
 import io.agentscope.core.message.ToolUseBlock;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 
@@ -50,6 +52,15 @@ public class ChatFormatter {
     /** Tracks whether any text content has been streamed (via isLast=false REASONING events) */
     private boolean hasStreamedText = false;
 
+    /**
+     * IDs of the tool calls of the current reasoning step, in call order. Parallel tool calls may
+     * finish in any order, their results are emitted in call order.
+     */
+    private final List<String> pendingToolCallIds = new ArrayList<>();
+
+    /** Tool results that arrived before the results of earlier tool calls */
+    private final Map<String, ChatEvent> bufferedToolResults = new HashMap<>();
+
     public Flux<ChatEvent> format(Event event, ChatContext chatContext) {
         try {
             Msg msg = event.getMessage();
@@ -63,16 +74,17 @@ public class ChatFormatter {
 
             switch (type) {
                 case REASONING:
-                    return handleReasoning(msg, event.isLast(), chatContext);
+                    return Flux.concat(
+                            flushToolResults(), handleReasoning(msg, event.isLast(), chatContext));
 
                 case TOOL_RESULT:
                     return handleToolResult(msg, chatContext);
 
                 case SUMMARY:
-                    return handleSummary(msg, chatContext);
+                    return Flux.concat(flushToolResults(), handleSummary(msg, chatContext));
 
                 case AGENT_RESULT:
-                    return handleAgentResult(msg, chatContext);
+                    return Flux.concat(flushToolResults(), handleAgentResult(msg, chatContext));
 
                 case HINT:
                     // Skip internal events (RAG context)
@@ -155,6 +167,7 @@ public class ChatFormatter {
                                     .mcpServerName(mcpServerName)
                                     .build();
                     chunks.add(ChatEvent.toolCall(chatId, tc));
+                    pendingToolCallIds.add(toolUse.getId());
                 }
             } else {
                 // Skip streaming tool call chunks (input is empty, contains fragments)
@@ -178,12 +191,40 @@ public class ChatFormatter {
                             .name(toolResult.getName())
                             .result(toolResult.getOutput())
                             .build();
-            chunks.add(ChatEvent.toolResult(chatId, tr));
+            ChatEvent event = ChatEvent.toolResult(chatId, tr);
+            if (pendingToolCallIds.contains(toolResult.getId())) {
+                bufferedToolResults.put(toolResult.getId(), event);
+            } else {
+                chunks.add(event);
+            }
+        }
+
+        // Release the results whose earlier calls have all returned
+        while (!pendingToolCallIds.isEmpty()
+                && bufferedToolResults.containsKey(pendingToolCallIds.get(0))) {
+            chunks.add(bufferedToolResults.remove(pendingToolCallIds.remove(0)));
         }
 
         return Flux.fromIterable(chunks);
     }
 
+    /**
+     * Emit buffered tool results in call order once the agent moves on, even if some calls never
+     * returned a result
+     */
+    private Flux<ChatEvent> flushToolResults() {
+        List<ChatEvent> chunks = new ArrayList<>();
+        for (String toolCallId : pendingToolCallIds) {
+            ChatEvent event = bufferedToolResults.remove(toolCallId);
+            if (event != null) {
+                chunks.add(event);
+            }
+        }
+        pendingToolCallIds.clear();
+        bufferedToolResults.clear();
+        return Flux.fromIterable(chunks);
+    }
+
     private Flux<ChatEvent> handleSummary(Msg msg, ChatContext chatContext) {
         // Get usage from SUMMARY (emitted when max iterations reached)
         getUsage(msg, chatContext);
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.support;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Milliseconds spent in each phase of a chat. Phases hit more than once (e.g. reasoning
+ * iterations, tool calls) accumulate.
+ */
+public class ChatPhaseTimings {
+
+    /**
+     * Session and subscription checks
+     */
+    public static final String CHECKS = "checks";
+
+    /**
+     * Waiting for a concurrency slot
+     */
+    public static final String ADMISSION = "admission";
+
+    /**
+     * Chat record creation and history, product and credential lookups
+     */
+    public static final String PREPARE = "prepare";
+
+    /**
+     * Gateway URI resolution
+     */
+    public static final String GATEWAY_URIS = "gatewayUris";
+
+    /**
+     * ChatBot lookup or creation, including MCP client initialization and tool listing
+     */
+    public static final String CHATBOT = "chatbot";
+
+    /**
+     * Time to the first answer token
+     */
+    public static final String FIRST_TOKEN = "firstToken";
+
+    /**
+     * Model reasoning, summed over ReAct iterations
+     */
+    public static final String REASONING = "reasoning";
+
+    /**
+     * Tool calls, summed over all calls
+     */
+    public static final String TOOL_CALLS = "toolCalls";
+
+    /**
+     * Model invocation from start to DONE
+     */
+    public static final String TOTAL = "total";
+
+    private final Map<String, Long> phases = new ConcurrentHashMap<>();
+
+    private final Queue<ToolTiming> toolTimings = new ConcurrentLinkedQueue<>();
+
+    public void record(String phase, long millis) {
+        phases.merge(phase, Math.max(millis, 0), Long::sum);
+    }
+
+    public void recordToolCall(String mcpServerName, long millis) {
+        record(TOOL_CALLS, millis);
+        toolTimings.add(new ToolTiming(mcpServerName, Math.max(millis, 0)));
+    }
+
+    /**
+     * Phase timings, ordered by phase name
+     */
+    public Map<String, Long> getPhases() {
+        return new TreeMap<>(phases);
+    }
+
+    public List<ToolTiming> getToolTimings() {
+        return List.copyOf(toolTimings);
+    }
+
+    public record ToolTiming(String mcpServerName, long millis) {}
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.support;
+
+import com.alibaba.himarket.dto.result.consumer.CredentialContext;
+import com.alibaba.himarket.dto.result.product.ProductResult;
+import com.alibaba.himarket.support.chat.mcp.MCPTransportConfig;
+import java.util.List;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Developer and product state a chat turn needs before invoking the model.
+ */
+@Data
+@Builder
+public class ChatRequestContext {
+
+    /**
+     * Model product
+     */
+    private ProductResult product;
+
+    /**
+     * Gateway the product is linked to, null if not linked
+     */
+    private String gatewayId;
+
+    /**
+     * Primary consumer of the developer, null if the developer has none
+     */
+    private String consumerId;
+
+    /**
+     * Credential for invoking the model and MCP servers
+     */
+    private CredentialContext credentialContext;
+
+    /**
+     * Products subscribed by the primary consumer
+     */
+    private Set<String> subscribedProductIds;
+
+    /**
+     * MCP servers of the requested MCP products, with the developer credential applied
+     */
+    private List<MCPTransportConfig> mcpConfigs;
+}
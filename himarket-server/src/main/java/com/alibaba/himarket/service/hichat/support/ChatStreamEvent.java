@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.support;
+
+/**
+ * Chat event with its position in the chat stream, sent as the SSE event id so that a client can
+ * resume with Last-Event-ID
+ *
+ * @param id    Sequence number within the chat, starting at 1, or {@link #NO_ID}
+ * @param event Chat event
+ */
+public record ChatStreamEvent(long id, ChatEvent event) {
+
+    /**
+     * ID of an event outside any chat journal, such as those of a chat that failed to start. Sent
+     * without an SSE event id, since there is nothing to resume.
+     */
+    public static final long NO_ID = 0;
+}
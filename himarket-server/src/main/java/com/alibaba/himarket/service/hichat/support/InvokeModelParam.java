@@ -37,6 +37,11 @@ public class InvokeModelParam {
      */
     private List<Msg> historyMessages;
 
+    /**
+     * Token budget of the prompt context
+     */
+    private Integer contextTokenBudget;
+
     /**
      * If need web search
      */
@@ -56,4 +61,9 @@ public class InvokeModelParam {
      * Credential for invoking the Model and MCP
      */
     private CredentialContext credentialContext;
+
+    /**
+     * Phase timings of the chat, collected along the way
+     */
+    @Builder.Default private ChatPhaseTimings timings = new ChatPhaseTimings();
 }
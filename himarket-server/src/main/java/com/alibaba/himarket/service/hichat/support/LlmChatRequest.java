@@ -40,6 +40,11 @@ public class LlmChatRequest {
      */
     private List<Msg> historyMessages;
 
+    /**
+     * Token budget of the prompt context
+     */
+    private Integer contextTokenBudget;
+
     /**
      * URI, use this uri to request model
      */
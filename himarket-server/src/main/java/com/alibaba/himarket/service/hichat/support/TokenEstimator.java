@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.support;
+
+import io.agentscope.core.message.AudioBlock;
+import io.agentscope.core.message.ImageBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.VideoBlock;
+
+/**
+ * Fast local token estimate, used to fit prompts into a token budget without a real tokenizer.
+ *
+ * <p>CJK characters count as one token each, other non-whitespace characters as a quarter token,
+ * which is close to what BPE tokenizers of common models produce for mixed Chinese and English
+ * text. Media blocks count as a fixed amount.
+ */
+public class TokenEstimator {
+
+    /**
+     * Estimated tokens of one image, audio or video block
+     */
+    public static final int MEDIA_BLOCK_TOKENS = 1024;
+
+    /**
+     * Per-message overhead (role and separators)
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private TokenEstimator() {}
+
+    /**
+     * Estimate tokens of plain text
+     *
+     * @param text text, may be null
+     * @return estimated tokens
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+
+        int cjkChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (isCjk(c)) {
+                cjkChars++;
+            } else {
+                otherChars++;
+            }
+        }
+
+        return cjkChars + (otherChars + 3) / 4;
+    }
+
+    /**
+     * Estimate tokens of a message, including media blocks
+     *
+     * @param msg message, may be null
+     * @return estimated tokens
+     */
+    public static int estimate(Msg msg) {
+        if (msg == null) {
+            return 0;
+        }
+
+        int mediaBlocks =
+                msg.getContentBlocks(ImageBlock.class).size()
+                        + msg.getContentBlocks(AudioBlock.class).size()
+                        + msg.getContentBlocks(VideoBlock.class).size();
+
+        return MESSAGE_OVERHEAD_TOKENS
+                + estimate(msg.getTextContent())
+                + mediaBlocks * MEDIA_BLOCK_TOKENS;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= '\u4E00' && c <= '\u9FFF') // CJK Unified Ideographs
+                || (c >= '\u3400' && c <= '\u4DBF') // CJK Extension A
+                || (c >= '\u3040' && c <= '\u30FF') // Hiragana, Katakana
+                || (c >= '\uAC00' && c <= '\uD7AF') // Hangul Syllables
+                || (c >= '\u3000' && c <= '\u303F') // CJK Punctuation
+                || (c >= '\uFF00' && c <= '\uFFEF'); // Fullwidth Forms
+    }
+}
@@ -19,7 +19,8 @@
 
 package com.alibaba.himarket.service.impl;
 
-import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.StrUtil;
 import com.alibaba.himarket.core.exception.BusinessException;
 import com.alibaba.himarket.core.exception.ErrorCode;
 import com.alibaba.himarket.core.security.ContextHolder;
@@ -30,7 +31,13 @@ import com.alibaba.himarket.dto.result.chat.ChatAttachmentResult;
 import com.alibaba.himarket.entity.ChatAttachment;
 import com.alibaba.himarket.repository.ChatAttachmentRepository;
 import com.alibaba.himarket.service.ChatAttachmentService;
+import com.alibaba.himarket.service.hichat.attachment.AttachmentStore;
 import com.alibaba.himarket.support.enums.ChatAttachmentType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -45,6 +52,8 @@ public class ChatAttachmentServiceImpl implements ChatAttachmentService {
 
     private final ChatAttachmentRepository chatAttachmentRepository;
 
+    private final AttachmentStore attachmentStore;
+
     @Override
     public ChatAttachmentResult uploadAttachment(MultipartFile file) {
         if (file == null || file.isEmpty()) {
@@ -58,8 +67,11 @@ public class ChatAttachmentServiceImpl implements ChatAttachmentService {
         String mimeType = file.getContentType();
         ChatAttachmentType type = determineAttachmentType(mimeType);
 
-        try {
-            // Build attachment entity
+        try (InputStream in = file.getInputStream()) {
+            // Stream content into the attachment store, deduplicated by SHA-256
+            String storageKey = attachmentStore.put(in);
+
+            // Build attachment entity (metadata only)
             ChatAttachment attachment =
                     ChatAttachment.builder()
                             .attachmentId(IdGenerator.genChatAttachmentId())
@@ -68,7 +80,7 @@ public class ChatAttachmentServiceImpl implements ChatAttachmentService {
                             .type(type)
                             .mimeType(mimeType)
                             .size(file.getSize())
-                            .data(file.getBytes())
+                            .storageKey(storageKey)
                             .build();
 
             // Save to database
@@ -109,7 +121,13 @@ public class ChatAttachmentServiceImpl implements ChatAttachmentService {
         ChatAttachment attachment = findAttachment(attachmentId);
 
         // Encode data to Base64
-        String base64Data = Base64.encode(attachment.getData());
+        ByteBuffer data = getAttachmentData(attachment);
+        String base64Data =
+                data == null
+                        ? ""
+                        : StandardCharsets.ISO_8859_1
+                                .decode(Base64.getEncoder().encode(data))
+                                .toString();
 
         log.debug(
                 "Retrieved attachment detail: attachmentId={}, size={}, base64Length={}",
@@ -127,6 +145,27 @@ public class ChatAttachmentServiceImpl implements ChatAttachmentService {
                 .build();
     }
 
+    @Override
+    public ByteBuffer getAttachmentData(ChatAttachment attachment) {
+        if (StrUtil.isNotBlank(attachment.getStorageKey())) {
+            try {
+                return attachmentStore.read(attachment.getStorageKey());
+            } catch (IOException e) {
+                log.error(
+                        "Failed to read attachment data: attachmentId={}, storageKey={}",
+                        attachment.getAttachmentId(),
+                        attachment.getStorageKey(),
+                        e);
+                return null;
+            }
+        }
+
+        // Legacy row, data still in database
+        return ArrayUtil.isEmpty(attachment.getData())
+                ? null
+                : ByteBuffer.wrap(attachment.getData()).asReadOnlyBuffer();
+    }
+
     private ChatAttachment findAttachment(String attachmentId) {
         return chatAttachmentRepository
                 .findByAttachmentId(attachmentId)
@@ -22,6 +22,7 @@ package com.alibaba.himarket.service.impl;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.extra.spring.SpringUtil;
 import com.alibaba.himarket.core.constant.Resources;
+import com.alibaba.himarket.core.event.ChatSessionCreatedEvent;
 import com.alibaba.himarket.core.event.ChatSessionDeletingEvent;
 import com.alibaba.himarket.core.exception.BusinessException;
 import com.alibaba.himarket.core.exception.ErrorCode;
@@ -31,7 +32,9 @@ import com.alibaba.himarket.dto.params.chat.CreateChatSessionParam;
 import com.alibaba.himarket.dto.params.chat.UpdateChatSessionParam;
 import com.alibaba.himarket.dto.result.chat.ChatSessionResult;
 import com.alibaba.himarket.dto.result.chat.ConversationResult_V1;
+import com.alibaba.himarket.dto.result.chat.ConversationSummaryResult;
 import com.alibaba.himarket.dto.result.chat.ProductConversationResult;
+import com.alibaba.himarket.dto.result.common.CursorPageResult;
 import com.alibaba.himarket.dto.result.common.PageResult;
 import com.alibaba.himarket.entity.Chat;
 import com.alibaba.himarket.entity.ChatSession;
@@ -39,6 +42,7 @@ import com.alibaba.himarket.repository.ChatRepository;
 import com.alibaba.himarket.repository.ChatSessionRepository;
 import com.alibaba.himarket.service.ChatSessionService;
 import com.alibaba.himarket.service.ProductService;
+import com.alibaba.himarket.service.hichat.manager.ChatArchiveManager;
 import java.util.*;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
@@ -57,7 +61,7 @@ public class ChatSessionServiceImpl implements ChatSessionService {
 
     private final ChatSessionRepository sessionRepository;
 
-    private final ChatRepository chatRepository;
+    private final ChatArchiveManager chatArchiveManager;
 
     private final ProductService productService;
 
@@ -68,6 +72,11 @@ public class ChatSessionServiceImpl implements ChatSessionService {
      */
     private static final int MAX_SESSIONS_PER_USER = 20;
 
+    /**
+     * Max conversations per page of the cursor listing
+     */
+    private static final int MAX_CONVERSATION_PAGE_SIZE = 100;
+
     @Override
     public ChatSessionResult createSession(CreateChatSessionParam param) {
         // Check products exist
@@ -83,6 +92,9 @@ public class ChatSessionServiceImpl implements ChatSessionService {
         sessionRepository.save(session);
         cleanupExtraSessions();
 
+        // Let chat components warm up before the first message
+        SpringUtil.getApplicationContext().publishEvent(new ChatSessionCreatedEvent(sessionId));
+
         return getSession(sessionId);
     }
 
@@ -173,10 +185,7 @@ public class ChatSessionServiceImpl implements ChatSessionService {
     @Override
     public List<ConversationResult_V1> listConversations(String sessionId) {
         List<Chat> chats =
-                chatRepository.findAllBySessionIdAndUserId(
-                        sessionId,
-                        contextHolder.getUser(),
-                        Sort.by(Sort.Direction.ASC, "createAt"));
+                chatArchiveManager.findAllBySessionIdAndUserId(sessionId, contextHolder.getUser());
         if (CollUtil.isEmpty(chats)) {
             return Collections.emptyList();
         }
@@ -276,16 +285,132 @@ public class ChatSessionServiceImpl implements ChatSessionService {
     public List<ProductConversationResult> listConversationsV2(String sessionId) {
         // 1. Query all chats for the session
         List<Chat> chats =
-                chatRepository.findAllBySessionIdAndUserId(
+                chatArchiveManager.findAllBySessionIdAndUserId(sessionId, contextHolder.getUser());
+
+        return buildProductConversationResults(chats);
+    }
+
+    @Override
+    public CursorPageResult<ConversationSummaryResult> listConversationSummaries(
+            String sessionId, Long cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_CONVERSATION_PAGE_SIZE);
+
+        // One extra row tells whether there is a next page
+        List<ChatRepository.ConversationCursor> cursors =
+                chatArchiveManager.findConversationCursors(
                         sessionId,
                         contextHolder.getUser(),
-                        Sort.by(Sort.Direction.ASC, "createAt"));
+                        cursor == null ? Long.MAX_VALUE : cursor,
+                        pageSize + 1);
+        if (cursors.isEmpty()) {
+            return CursorPageResult.of(Collections.emptyList(), pageSize, null);
+        }
+
+        boolean hasMore = cursors.size() > pageSize;
+        if (hasMore) {
+            cursors = cursors.subList(0, pageSize);
+        }
+
+        Map<String, List<ChatRepository.ChatSummary>> conversationChats =
+                chatArchiveManager
+                        .findChatSummaries(
+                                sessionId,
+                                contextHolder.getUser(),
+                                cursors.stream()
+                                        .map(ChatRepository.ConversationCursor::getConversationId)
+                                        .collect(Collectors.toList()))
+                        .stream()
+                        .collect(
+                                Collectors.groupingBy(
+                                        ChatRepository.ChatSummary::getConversationId,
+                                        LinkedHashMap::new,
+                                        Collectors.toList()));
+
+        List<ConversationSummaryResult> conversations =
+                cursors.stream()
+                        .map(ChatRepository.ConversationCursor::getConversationId)
+                        .filter(conversationChats::containsKey)
+                        .map(
+                                conversationId ->
+                                        buildConversationSummary(
+                                                conversationId,
+                                                conversationChats.get(conversationId)))
+                        .collect(Collectors.toList());
+
+        Long nextCursor = hasMore ? cursors.get(cursors.size() - 1).getFirstChatId() : null;
+        return CursorPageResult.of(conversations, pageSize, nextCursor);
+    }
+
+    private ConversationSummaryResult buildConversationSummary(
+            String conversationId, List<ChatRepository.ChatSummary> chats) {
+        // Group by question ID, chats are in creation order
+        Map<String, List<ChatRepository.ChatSummary>> questionGroups =
+                chats.stream()
+                        .collect(
+                                Collectors.groupingBy(
+                                        ChatRepository.ChatSummary::getQuestionId,
+                                        LinkedHashMap::new,
+                                        Collectors.toList()));
+
+        List<ConversationSummaryResult.QuestionSummary> questions = new ArrayList<>();
+        for (Map.Entry<String, List<ChatRepository.ChatSummary>> e : questionGroups.entrySet()) {
+            ChatRepository.ChatSummary firstChat = e.getValue().get(0);
+
+            List<ConversationSummaryResult.AnswerSummary> answers =
+                    e.getValue().stream()
+                            .filter(chat -> chat.getSequence() != null)
+                            .sorted(Comparator.comparing(ChatRepository.ChatSummary::getSequence))
+                            .map(
+                                    chat ->
+                                            ConversationSummaryResult.AnswerSummary.builder()
+                                                    .chatId(chat.getChatId())
+                                                    .answerId(chat.getAnswerId())
+                                                    .productId(chat.getProductId())
+                                                    .sequence(chat.getSequence())
+                                                    .status(chat.getStatus())
+                                                    .createdAt(chat.getCreateAt())
+                                                    .updatedAt(chat.getUpdatedAt())
+                                                    .build())
+                            .collect(Collectors.toList());
+
+            questions.add(
+                    ConversationSummaryResult.QuestionSummary.builder()
+                            .questionId(e.getKey())
+                            .content(firstChat.getQuestion())
+                            .createdAt(firstChat.getCreateAt())
+                            .answers(answers)
+                            .build());
+        }
+
+        return ConversationSummaryResult.builder()
+                .conversationId(conversationId)
+                .createdAt(chats.get(0).getCreateAt())
+                .updatedAt(
+                        chats.stream()
+                                .map(ChatRepository.ChatSummary::getUpdatedAt)
+                                .filter(Objects::nonNull)
+                                .max(Comparator.naturalOrder())
+                                .orElse(null))
+                .questions(questions)
+                .build();
+    }
+
+    @Override
+    public List<ProductConversationResult> getConversation(
+            String sessionId, String conversationId) {
+        List<Chat> chats =
+                chatArchiveManager.findAllByConversation(
+                        sessionId, contextHolder.getUser(), conversationId);
+
+        return buildProductConversationResults(chats);
+    }
 
+    private List<ProductConversationResult> buildProductConversationResults(List<Chat> chats) {
         if (CollUtil.isEmpty(chats)) {
             return Collections.emptyList();
         }
 
-        // 2. Group by productId
+        // Group by productId
         Map<String, List<Chat>> productGroups =
                 chats.stream()
                         .collect(
@@ -294,7 +419,7 @@ public class ChatSessionServiceImpl implements ChatSessionService {
                                         LinkedHashMap::new,
                                         Collectors.toList()));
 
-        // 3. Build result list for each product
+        // Build result list for each product
         return productGroups.entrySet().stream()
                 .map(
                         entry -> {
@@ -21,8 +21,10 @@ package com.alibaba.himarket.service.impl;
 
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.spring.SpringUtil;
 import cn.hutool.json.JSONUtil;
 import com.alibaba.himarket.core.constant.Resources;
+import com.alibaba.himarket.core.event.ConsumerChangedEvent;
 import com.alibaba.himarket.core.event.DeveloperDeletingEvent;
 import com.alibaba.himarket.core.event.ProductDeletingEvent;
 import com.alibaba.himarket.core.exception.BusinessException;
@@ -123,6 +125,8 @@ public class ConsumerServiceImpl implements ConsumerService {
         // Initialize credential
         ConsumerCredential credential = initCredential(consumerId);
         credentialRepository.save(credential);
+        SpringUtil.getApplicationContext()
+                .publishEvent(new ConsumerChangedEvent(consumerId, developerId));
 
         return getConsumer(consumerId);
     }
@@ -207,6 +211,8 @@ public class ConsumerServiceImpl implements ConsumerService {
 
         // 6. Delete consumer
         consumerRepository.delete(consumer);
+        SpringUtil.getApplicationContext()
+                .publishEvent(new ConsumerChangedEvent(consumerId, consumer.getDeveloperId()));
     }
 
     @Override
@@ -227,6 +233,7 @@ public class ConsumerServiceImpl implements ConsumerService {
         credential.setConsumerId(consumerId);
         complementCredentials(credential);
         credentialRepository.save(credential);
+        SpringUtil.getApplicationContext().publishEvent(new ConsumerChangedEvent(consumerId));
     }
 
     private ConsumerCredential initCredential(String consumerId) {
@@ -273,12 +280,14 @@ public class ConsumerServiceImpl implements ConsumerService {
         }
 
         credentialRepository.saveAndFlush(credential);
+        SpringUtil.getApplicationContext().publishEvent(new ConsumerChangedEvent(consumerId));
     }
 
     @Override
     public void deleteCredential(String consumerId) {
         existsConsumer(consumerId);
         credentialRepository.deleteAllByConsumerId(consumerId);
+        SpringUtil.getApplicationContext().publishEvent(new ConsumerChangedEvent(consumerId));
     }
 
     @Override
@@ -323,6 +332,8 @@ public class ConsumerServiceImpl implements ConsumerService {
         }
 
         subscriptionRepository.save(subscription);
+        SpringUtil.getApplicationContext()
+                .publishEvent(new ConsumerChangedEvent(consumerId, consumer.getDeveloperId()));
 
         SubscriptionResult r = new SubscriptionResult().convertFrom(subscription);
         r.setProductName(product.getName());
@@ -359,6 +370,7 @@ public class ConsumerServiceImpl implements ConsumerService {
 
         subscriptionRepository.deleteByConsumerIdAndProductId(
                 consumerId, subscription.getProductId());
+        SpringUtil.getApplicationContext().publishEvent(new ConsumerChangedEvent(consumerId));
     }
 
     private ProductSubscription findBySubscriptionIdOrProductId(
@@ -446,6 +458,8 @@ public class ConsumerServiceImpl implements ConsumerService {
         subscription.setConsumerAuthConfig(consumerAuthConfig);
         subscription.setStatus(SubscriptionStatus.APPROVED);
         subscriptionRepository.saveAndFlush(subscription);
+        SpringUtil.getApplicationContext()
+                .publishEvent(new ConsumerChangedEvent(consumerId, consumer.getDeveloperId()));
 
         ProductResult product = productService.getProduct(subscription.getProductId());
         SubscriptionResult result = new SubscriptionResult().convertFrom(subscription);
@@ -742,6 +756,8 @@ public class ConsumerServiceImpl implements ConsumerService {
 
         consumer.setIsPrimary(true);
         consumerRepository.save(consumer);
+        SpringUtil.getApplicationContext()
+                .publishEvent(new ConsumerChangedEvent(consumerId, consumer.getDeveloperId()));
     }
 
     @Override
@@ -22,8 +22,10 @@ package com.alibaba.himarket.service.impl;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.spring.SpringUtil;
 import cn.hutool.json.JSONUtil;
 import com.alibaba.himarket.core.constant.Resources;
+import com.alibaba.himarket.core.event.ProductChangedEvent;
 import com.alibaba.himarket.core.exception.BusinessException;
 import com.alibaba.himarket.core.exception.ErrorCode;
 import com.alibaba.himarket.core.security.ContextHolder;
@@ -706,6 +708,10 @@ public class McpServerServiceImpl implements McpServerService {
                         .build();
 
         endpointRepository.save(endpoint);
+        if (StrUtil.isNotBlank(meta.getProductId())) {
+            SpringUtil.getApplicationContext()
+                    .publishEvent(new ProductChangedEvent(meta.getProductId()));
+        }
         return new McpEndpointResult().convertFrom(endpoint);
     }
 
@@ -25,6 +25,7 @@ import cn.hutool.extra.spring.SpringUtil;
 import cn.hutool.json.JSONUtil;
 import com.alibaba.himarket.core.constant.Resources;
 import com.alibaba.himarket.core.event.PortalDeletingEvent;
+import com.alibaba.himarket.core.event.ProductChangedEvent;
 import com.alibaba.himarket.core.event.ProductConfigReloadEvent;
 import com.alibaba.himarket.core.event.ProductDeletingEvent;
 import com.alibaba.himarket.core.exception.BusinessException;
@@ -49,6 +50,7 @@ import com.alibaba.himarket.dto.result.product.*;
 import com.alibaba.himarket.entity.*;
 import com.alibaba.himarket.repository.*;
 import com.alibaba.himarket.service.*;
+import com.alibaba.himarket.service.hichat.manager.McpToolSchemaCache;
 import com.alibaba.himarket.service.hichat.manager.ToolManager;
 import com.alibaba.himarket.service.mcp.McpProtocolUtils;
 import com.alibaba.himarket.service.mcp.McpToolsConfigParser;
@@ -104,6 +106,8 @@ public class ProductServiceImpl implements ProductService {
 
     private final ToolManager toolManager;
 
+    private final McpToolSchemaCache mcpToolSchemaCache;
+
     private final McpServerMetaRepository mcpServerMetaRepository;
 
     private final McpServerEndpointRepository mcpServerEndpointRepository;
@@ -285,6 +289,7 @@ public class ProductServiceImpl implements ProductService {
 
         // Set product categories
         setProductCategories(product.getProductId(), param.getCategories());
+        SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
 
         return getProduct(product.getProductId());
     }
@@ -298,6 +303,7 @@ public class ProductServiceImpl implements ProductService {
             if (product.getStatus() != ProductStatus.PUBLISHED) {
                 product.setStatus(ProductStatus.PUBLISHED);
                 productRepository.save(product);
+                SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
             }
             return;
         }
@@ -316,6 +322,7 @@ public class ProductServiceImpl implements ProductService {
 
         publicationRepository.save(productPublication);
         productRepository.save(product);
+        SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
     }
 
     @Override
@@ -383,6 +390,7 @@ public class ProductServiceImpl implements ProductService {
 
         publicationRepository.delete(publication);
         productRepository.save(product);
+        SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
     }
 
     @Override
@@ -485,6 +493,7 @@ public class ProductServiceImpl implements ProductService {
 
         productRepository.save(product);
         productRefRepository.save(productRef);
+        SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
         // MCP 产品的 meta 已在 syncConfig → syncMcpConfigToMeta 中创建/更新
     }
 
@@ -523,6 +532,7 @@ public class ProductServiceImpl implements ProductService {
         product.setStatus(ProductStatus.PENDING);
         productRepository.save(product);
         productSyncCache.invalidate(productId);
+        SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
     }
 
     @EventListener
@@ -643,6 +653,7 @@ public class ProductServiceImpl implements ProductService {
         syncConfig(product, productRef);
         syncMcpTools(product, productRef);
         productRefRepository.saveAndFlush(productRef);
+        SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
     }
 
     @Override
@@ -677,18 +688,27 @@ public class ProductServiceImpl implements ProductService {
         }
         CredentialContext credentialContext =
                 consumerService.getDefaultCredential(contextHolder.getUser());
+        transportConfig.setProductId(productId);
         transportConfig.setHeaders(credentialContext.copyHeaders());
         transportConfig.setQueryParams(credentialContext.copyQueryParams());
 
         McpToolListResult result = new McpToolListResult();
 
+        // Serve known tool schemas without connecting to the MCP server
+        McpToolSchemaCache.ToolSchemas cached =
+                mcpToolSchemaCache.getCachedTools(transportConfig).block();
+        if (cached != null) {
+            result.setTools(cached.tools());
+            return result;
+        }
+
         McpClientWrapper mcpClientWrapper = toolManager.getOrCreateClient(transportConfig);
         if (mcpClientWrapper == null) {
             throw new BusinessException(
                     ErrorCode.INTERNAL_ERROR, "Failed to initialize MCP client");
         }
 
-        result.setTools(mcpClientWrapper.listTools().block());
+        result.setTools(mcpToolSchemaCache.getTools(transportConfig, mcpClientWrapper).block());
         return result;
     }
 
@@ -1292,6 +1312,7 @@ public class ProductServiceImpl implements ProductService {
             syncMcpTools(product, productRef);
 
             productRefRepository.save(productRef);
+            SpringUtil.getApplicationContext().publishEvent(new ProductChangedEvent(productId));
 
             log.info("Auto-sync product ref: {} successfully completed", productId);
         } catch (Exception e) {
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.task;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.entity.ChatAttachment;
+import com.alibaba.himarket.repository.ChatAttachmentRepository;
+import com.alibaba.himarket.service.hichat.attachment.AttachmentStore;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves legacy attachment data from the chat_attachment.data column into the attachment store.
+ *
+ * <p>Runs once after startup, walking rows by ID in small batches. Each migrated row gets its
+ * storage key set and its data column cleared. Rows that fail are skipped and retried on next
+ * startup; until then they are still served from the data column.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ChatAttachmentMigrationTask {
+
+    private static final int BATCH_SIZE = 20;
+
+    private final HiChatProperties hiChatProperties;
+    private final ChatAttachmentRepository chatAttachmentRepository;
+    private final AttachmentStore attachmentStore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("taskExecutor")
+    public void migrate() {
+        if (!hiChatProperties.getAttachment().isMigrateOnStartup()) {
+            return;
+        }
+
+        long lastId = 0;
+        int migrated = 0;
+        int failed = 0;
+
+        try {
+            while (true) {
+                List<ChatAttachment> attachments =
+                        chatAttachmentRepository
+                                .findByIdGreaterThanAndStorageKeyIsNullAndDataIsNotNull(
+                                        lastId,
+                                        PageRequest.of(
+                                                0, BATCH_SIZE, Sort.by(Sort.Direction.ASC, "id")));
+                if (attachments.isEmpty()) {
+                    break;
+                }
+
+                for (ChatAttachment attachment : attachments) {
+                    lastId = attachment.getId();
+                    try {
+                        String storageKey =
+                                attachmentStore.put(
+                                        new ByteArrayInputStream(attachment.getData()));
+                        attachment.setStorageKey(storageKey);
+                        attachment.setData(null);
+                        chatAttachmentRepository.save(attachment);
+                        migrated++;
+                    } catch (Exception e) {
+                        failed++;
+                        log.error(
+                                "Failed to migrate attachment: {}",
+                                attachment.getAttachmentId(),
+                                e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Unexpected error during attachment migration", e);
+        }
+
+        if (migrated > 0 || failed > 0) {
+            log.info("Attachment migration finished, migrated: {}, failed: {}", migrated, failed);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.core.exception.BusinessException;
+import com.alibaba.himarket.core.exception.ErrorCode;
+import com.alibaba.himarket.service.hichat.manager.ChatAdmissionManager.Admission;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Tests that admission slots are given back on release, rejection, interruption, and when the
+ * generation holding them fails or is cancelled, and that compare requests take theirs at once.
+ */
+class ChatAdmissionManagerTest {
+
+    private static final String USER = "user-1";
+
+    private static final String OTHER_USER = "user-2";
+
+    private static final String PRODUCT = "product-1";
+
+    private static final String OTHER_PRODUCT = "product-2";
+
+    @Test
+    void releaseFreesSlotsOnce() {
+        ChatAdmissionManager manager = newManager(100);
+
+        Admission admission = manager.admit(USER, PRODUCT);
+        admission.release();
+        admission.release();
+
+        // A second release must not add a slot, the product allows one chat
+        Admission next = manager.admit(USER, PRODUCT);
+        assertRejected(() -> manager.admit(OTHER_USER, PRODUCT));
+        next.release();
+    }
+
+    @Test
+    void rejectionReturnsSlotsAlreadyTaken() {
+        ChatAdmissionManager manager = newManager(100);
+        Admission running = manager.admit(USER, PRODUCT);
+
+        // The other user's slot is taken, then the product slot times out
+        assertRejected(() -> manager.admit(OTHER_USER, PRODUCT));
+        assertEquals(1, manager.getRejectedCount());
+
+        running.release();
+        manager.admit(OTHER_USER, PRODUCT).release();
+        assertEquals(0, manager.getQueued());
+    }
+
+    @Test
+    void interruptedWaitReturnsSlotsAlreadyTaken() throws Exception {
+        ChatAdmissionManager manager = newManager(10_000);
+        Admission running = manager.admit(USER, PRODUCT);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiter =
+                new Thread(
+                        () -> {
+                            try {
+                                manager.admit(OTHER_USER, PRODUCT);
+                            } catch (Throwable e) {
+                                failure.set(e);
+                            }
+                        });
+        waiter.start();
+        waitUntilQueued(manager);
+        waiter.interrupt();
+        waiter.join(5_000);
+
+        assertInstanceOf(BusinessException.class, failure.get());
+        assertEquals(0, manager.getQueued());
+        running.release();
+        manager.admit(OTHER_USER, PRODUCT).release();
+    }
+
+    @Test
+    void failedGenerationReleasesSlots() {
+        ChatAdmissionManager manager = newManager(100);
+        Admission admission = manager.admit(USER, PRODUCT);
+
+        Flux<String> generation =
+                Flux.<String>error(new IllegalStateException("model failed"))
+                        .doFinally(signal -> admission.release());
+        assertThrows(IllegalStateException.class, generation::blockLast);
+
+        manager.admit(OTHER_USER, PRODUCT).release();
+    }
+
+    @Test
+    void cancelledGenerationReleasesSlots() {
+        ChatAdmissionManager manager = newManager(100);
+        Admission admission = manager.admit(USER, PRODUCT);
+
+        Disposable generation =
+                Flux.<String>never().doFinally(signal -> admission.release()).subscribe();
+        assertRejected(() -> manager.admit(OTHER_USER, PRODUCT));
+        generation.dispose();
+
+        manager.admit(OTHER_USER, PRODUCT).release();
+    }
+
+    @Test
+    void compareTakesAllSlotsOfUserAtOnce() throws Exception {
+        ChatAdmissionManager manager = newManager(10_000, 2);
+        Map<String, Admission> running = manager.admitAll(USER, List.of(PRODUCT, OTHER_PRODUCT));
+
+        AtomicReference<Map<String, Admission>> waiting = new AtomicReference<>();
+        Thread waiter =
+                new Thread(
+                        () -> waiting.set(manager.admitAll(USER, List.of(PRODUCT, OTHER_PRODUCT))));
+        waiter.start();
+        waitUntilQueued(manager);
+
+        // The waiting compare holds no slot, so a single freed slot does not admit it
+        running.get(PRODUCT).release();
+        Thread.sleep(100);
+        assertNull(waiting.get());
+
+        running.get(OTHER_PRODUCT).release();
+        waiter.join(5_000);
+        assertEquals(2, waiting.get().size());
+        waiting.get().values().forEach(Admission::release);
+        assertEquals(0, manager.getRejectedCount());
+    }
+
+    @Test
+    void rejectedCompareReturnsAllSlotsTaken() {
+        ChatAdmissionManager manager = newManager(100, 2);
+        Admission running = manager.admit(OTHER_USER, OTHER_PRODUCT);
+
+        // User slots and the first product slot are taken, then the second product times out
+        assertRejected(() -> manager.admitAll(USER, List.of(PRODUCT, OTHER_PRODUCT)));
+
+        running.release();
+        manager.admitAll(USER, List.of(PRODUCT, OTHER_PRODUCT))
+                .values()
+                .forEach(Admission::release);
+        assertEquals(0, manager.getQueued());
+    }
+
+    @Test
+    void disabledAdmitsEverything() {
+        HiChatProperties properties = new HiChatProperties();
+        properties.getAdmission().setEnabled(false);
+        properties.getAdmission().setMaxConcurrent(1);
+        ChatAdmissionManager manager = new ChatAdmissionManager(properties);
+
+        manager.admit(USER, PRODUCT);
+        manager.admit(OTHER_USER, PRODUCT).release();
+        assertEquals(0, manager.getRejectedCount());
+    }
+
+    /**
+     * One chat per user and per product, users on separate stripes
+     */
+    private static ChatAdmissionManager newManager(long maxWaitMs) {
+        return newManager(maxWaitMs, 1);
+    }
+
+    /**
+     * One chat per product, users and products on separate stripes
+     */
+    private static ChatAdmissionManager newManager(long maxWaitMs, int maxConcurrentPerUser) {
+        HiChatProperties properties = new HiChatProperties();
+        HiChatProperties.AdmissionProperties config = properties.getAdmission();
+        config.setMaxConcurrent(10);
+        config.setMaxConcurrentPerUser(maxConcurrentPerUser);
+        config.setMaxConcurrentPerProduct(1);
+        config.setMaxWaitMs(maxWaitMs);
+        config.setStripes(1024);
+        return new ChatAdmissionManager(properties);
+    }
+
+    private static void assertRejected(Runnable admit) {
+        BusinessException e = assertThrows(BusinessException.class, admit::run);
+        assertEquals(ErrorCode.TOO_MANY_REQUESTS.name(), e.getCode());
+    }
+
+    private static void waitUntilQueued(ChatAdmissionManager manager) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (manager.getQueued() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Admission never waited");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.alibaba.himarket.service.hichat.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.entity.Chat;
+import com.alibaba.himarket.repository.ChatRepository;
+import com.alibaba.himarket.support.enums.ChatStatus;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that cached history picks up chats completed on other nodes.
+ */
+class ChatHistoryManagerTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private static final String PRODUCT_ID = "product-1";
+
+    private final ChatRepository chatRepository = mock(ChatRepository.class);
+
+    private final ChatArchiveManager chatArchiveManager = mock(ChatArchiveManager.class);
+
+    private final List<Chat> stored = new ArrayList<>();
+
+    private ChatHistoryManager manager;
+
+    @BeforeEach
+    void setUp() {
+        when(chatArchiveManager.findHistoryChats(anyString()))
+                .thenAnswer(invocation -> new ArrayList<>(stored));
+        manager =
+                new ChatHistoryManager(chatRepository, new HiChatProperties(), chatArchiveManager);
+    }
+
+    @Test
+    void warmSessionIsNotReloaded() {
+        LocalDateTime completed = LocalDateTime.now().minusMinutes(1);
+        stored.add(chat("conversation-1"));
+        when(chatRepository.findLatestUpdatedAt(SESSION_ID, ChatStatus.SUCCESS))
+                .thenReturn(completed);
+
+        manager.getHistory(SESSION_ID, PRODUCT_ID, null);
+        manager.getHistory(SESSION_ID, PRODUCT_ID, null);
+
+        verify(chatArchiveManager, times(1)).findHistoryChats(SESSION_ID);
+    }
+
+    @Test
+    void chatCompletedOnOtherNodeReloadsHistory() {
+        stored.add(chat("conversation-1"));
+        when(chatRepository.findLatestUpdatedAt(SESSION_ID, ChatStatus.SUCCESS))
+                .thenReturn(LocalDateTime.now().minusMinutes(1));
+        assertEquals(1, manager.getHistory(SESSION_ID, PRODUCT_ID, null).size());
+
+        // Another node completes a chat of the session
+        stored.add(chat("conversation-2"));
+        when(chatRepository.findLatestUpdatedAt(SESSION_ID, ChatStatus.SUCCESS))
+                .thenReturn(LocalDateTime.now());
+
+        List<Chat> history = manager.getHistory(SESSION_ID, PRODUCT_ID, null);
+        assertEquals(2, history.size());
+        assertEquals("conversation-2", history.get(1).getConversationId());
+    }
+
+    @Test
+    void localAppendKeepsHistoryWarm() {
+        when(chatRepository.findLatestUpdatedAt(SESSION_ID, ChatStatus.SUCCESS))
+                .thenReturn(null);
+        manager.getHistory(SESSION_ID, PRODUCT_ID, null);
+
+        Chat chat = chat("conversation-1");
+        manager.append(chat);
+        // The result is written behind with its completion time
+        when(chatRepository.findLatestUpdatedAt(SESSION_ID, ChatStatus.SUCCESS))
+                .thenReturn(LocalDateTime.now().minusSeconds(1));
+
+        assertEquals(List.of("conversation-1"), conversationIds());
+        verify(chatArchiveManager, times(1)).findHistoryChats(SESSION_ID);
+    }
+
+    private List<String> conversationIds() {
+        return manager.getHistory(SESSION_ID, PRODUCT_ID, null).stream()
+                .map(Chat::getConversationId)
+                .toList();
+    }
+
+    private static Chat chat(String conversationId) {
+        return Chat.builder()
+                .chatId("chat-" + conversationId)
+                .sessionId(SESSION_ID)
+                .conversationId(conversationId)
+                .productId(PRODUCT_ID)
+                .question("question")
+                .answer("answer")
+                .status(ChatStatus.SUCCESS)
+                .build();
+    }
+}
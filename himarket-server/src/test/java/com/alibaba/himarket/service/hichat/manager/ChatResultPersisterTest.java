@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.entity.Chat;
+import com.alibaba.himarket.support.enums.ChatStatus;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+/**
+ * Tests of the write-behind queue: backpressure when full and visibility of unwritten results.
+ */
+class ChatResultPersisterTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+
+    /**
+     * Held by the test to keep the writer inside a batch update
+     */
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+
+    private final CountDownLatch writerBlocked = new CountDownLatch(1);
+
+    private ChatResultPersister persister;
+
+    @BeforeEach
+    void setUp() {
+        HiChatProperties properties = new HiChatProperties();
+        properties.getPersistence().setBatchSize(1);
+        properties.getPersistence().setFlushIntervalMs(60_000);
+        properties.getPersistence().setMaxPending(1);
+
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenAnswer(
+                        invocation -> {
+                            writerBlocked.countDown();
+                            writerReleased.await(10, TimeUnit.SECONDS);
+                            return new int[] {1};
+                        });
+
+        persister = new ChatResultPersister(jdbcTemplate, properties, mock(ChatMetrics.class));
+        persister.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writerReleased.countDown();
+        persister.shutdown();
+    }
+
+    @Test
+    void overlayShowsResultsUntilWritten() throws Exception {
+        assertTrue(persister.offer(completed("chat-1", "answer")));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+
+        // Being written, the row read from the database is still the initial one
+        Chat stored = Chat.builder().chatId("chat-1").build();
+        Chat read = persister.overlay(stored);
+        assertNotSame(stored, read);
+        assertEquals("answer", read.getAnswer());
+        assertEquals(ChatStatus.SUCCESS, read.getStatus());
+        assertNull(stored.getAnswer());
+        assertEquals(ChatStatus.INIT, stored.getStatus());
+
+        writerReleased.countDown();
+        waitUntil(() -> persister.overlay(stored) == stored);
+        assertEquals(1, persister.getPersistedCount());
+    }
+
+    @Test
+    void submitWaitsForRoomWhenFull() throws Exception {
+        assertTrue(persister.offer(completed("chat-1", "first")));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        assertTrue(persister.offer(completed("chat-2", "second")));
+
+        // Queue is full while the writer is stuck, offer refuses and submit waits
+        assertFalse(persister.offer(completed("chat-3", "third")));
+        Thread submitter = new Thread(() -> persister.submit(completed("chat-3", "third")));
+        submitter.start();
+        submitter.join(300);
+        assertTrue(submitter.isAlive());
+
+        writerReleased.countDown();
+        submitter.join(5_000);
+        assertFalse(submitter.isAlive());
+        waitUntil(() -> persister.getPersistedCount() == 3);
+        assertEquals(0, persister.getQueueDepth());
+    }
+
+    @Test
+    void offerReplacesQueuedResultOfSameChat() throws Exception {
+        assertTrue(persister.offer(completed("chat-1", "first")));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        assertTrue(persister.offer(completed("chat-2", "partial")));
+        assertTrue(persister.offer(completed("chat-2", "final")));
+
+        Chat read = persister.overlay(List.of(Chat.builder().chatId("chat-2").build())).get(0);
+        assertEquals("final", read.getAnswer());
+    }
+
+    private static Chat completed(String chatId, String answer) {
+        return Chat.builder().chatId(chatId).answer(answer).status(ChatStatus.SUCCESS).build();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class McpPermitsTest {
+
+    @Test
+    void releasesPermitAfterCall() {
+        McpPermits permits = new McpPermits(1);
+
+        String result =
+                permits.withPermit(
+                                () -> Mono.just("ok"),
+                                Duration.ofMillis(100),
+                                IllegalStateException::new)
+                        .block();
+
+        assertEquals("ok", result);
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    void signalsBusyWhenNoPermitFreesUp() {
+        McpPermits permits = new McpPermits(0);
+
+        Mono<String> call =
+                permits.withPermit(
+                        () -> Mono.just("ok"),
+                        Duration.ofMillis(60),
+                        () -> new IllegalStateException("busy"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, call::block);
+        assertEquals("busy", e.getMessage());
+    }
+
+    @Test
+    void waitsForPermitToFreeUp() {
+        McpPermits permits = new McpPermits(1);
+        Sinks.One<String> holder = Sinks.one();
+        permits.withPermit(holder::asMono, null, null).subscribe();
+        Mono<String> call = permits.withPermit(() -> Mono.just("ok"), null, null);
+
+        Mono.delay(Duration.ofMillis(50)).subscribe(tick -> holder.tryEmitValue("done"));
+
+        assertEquals("ok", call.block(Duration.ofSeconds(5)));
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    void cancelReleasesPermit() {
+        McpPermits permits = new McpPermits(1);
+
+        Disposable subscription = permits.withPermit(Mono::never, null, null).subscribe();
+        assertEquals(0, permits.availablePermits());
+
+        subscription.dispose();
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    void permitsAreHandedToWaitersInArrivalOrder() {
+        McpPermits permits = new McpPermits(1);
+        List<Integer> started = new CopyOnWriteArrayList<>();
+        List<Sinks.One<String>> calls = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(Sinks.one());
+        }
+
+        // The first call holds the permit, the others queue behind it
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            permits.withPermit(
+                            () -> {
+                                started.add(index);
+                                return calls.get(index).asMono();
+                            },
+                            null,
+                            null)
+                    .subscribe();
+        }
+        assertEquals(List.of(0), started);
+
+        calls.get(0).tryEmitValue("done");
+        assertEquals(List.of(0, 1), started);
+
+        // A newcomer does not overtake the call still waiting
+        permits.withPermit(
+                        () -> {
+                            started.add(3);
+                            return calls.get(3).asMono();
+                        },
+                        null,
+                        null)
+                .subscribe();
+        calls.get(1).tryEmitValue("done");
+        assertEquals(List.of(0, 1, 2), started);
+
+        calls.get(2).tryEmitValue("done");
+        calls.get(3).tryEmitValue("done");
+        assertEquals(List.of(0, 1, 2, 3), started);
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    void cancelledWaiterIsSkipped() {
+        McpPermits permits = new McpPermits(1);
+        Sinks.One<String> holder = Sinks.one();
+        permits.withPermit(holder::asMono, null, null).subscribe();
+
+        Disposable cancelled =
+                permits.withPermit(() -> Mono.just("cancelled"), null, null).subscribe();
+        List<String> results = new CopyOnWriteArrayList<>();
+        permits.withPermit(() -> Mono.just("next"), null, null).subscribe(results::add);
+
+        cancelled.dispose();
+        holder.tryEmitValue("done");
+
+        assertEquals(List.of("next"), results);
+        assertEquals(1, permits.availablePermits());
+    }
+}
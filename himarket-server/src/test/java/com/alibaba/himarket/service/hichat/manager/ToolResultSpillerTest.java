@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.alibaba.himarket.service.hichat.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.service.hichat.attachment.AttachmentStore;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Tests that spilled results of a deleted session are removed unless still referenced.
+ */
+class ToolResultSpillerTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private final AttachmentStore attachmentStore = mock(AttachmentStore.class);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+
+    private final ToolResultSpiller spiller =
+            new ToolResultSpiller(attachmentStore, new HiChatProperties(), jdbcTemplate);
+
+    @Test
+    void deletesOnlyUnreferencedResults() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), anyMap(), eq(String.class)))
+                .thenReturn(List.of("own", "shared"));
+        when(jdbcTemplate.queryForObject(
+                        anyString(), eq(Map.of("resultKey", "own")), eq(Long.class)))
+                .thenReturn(0L);
+        when(jdbcTemplate.queryForObject(
+                        anyString(), eq(Map.of("resultKey", "shared")), eq(Long.class)))
+                .thenReturn(1L);
+
+        spiller.deleteBySessionId(SESSION_ID);
+
+        verify(jdbcTemplate).update(anyString(), eq(Map.of("sessionId", SESSION_ID)));
+        verify(attachmentStore).delete("own");
+        verify(attachmentStore, never()).delete("shared");
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.alibaba.himarket.service.hichat.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.alibaba.himarket.config.HiChatProperties;
+import com.alibaba.himarket.entity.ChatAttachment;
+import com.alibaba.himarket.repository.ChatAttachmentRepository;
+import com.alibaba.himarket.service.ChatAttachmentService;
+import com.alibaba.himarket.service.hichat.attachment.MediaContentCache;
+import com.alibaba.himarket.support.enums.ChatAttachmentType;
+import io.agentscope.core.message.Base64Source;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.ImageBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+/**
+ * Tests that media blocks are stored as attachment references and oversized messages are skipped.
+ */
+class JdbcChatMemoryStoreTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private static final String PRODUCT_ID = "product-1";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+
+    private final ChatAttachmentService chatAttachmentService = mock(ChatAttachmentService.class);
+
+    private final ChatAttachmentRepository chatAttachmentRepository =
+            mock(ChatAttachmentRepository.class);
+
+    private final HiChatProperties properties = new HiChatProperties();
+
+    private final ChatAttachment attachment =
+            ChatAttachment.builder()
+                    .attachmentId("attachment-1")
+                    .type(ChatAttachmentType.IMAGE)
+                    .mimeType("image/png")
+                    .build();
+
+    private MediaContentCache mediaContentCache;
+
+    private JdbcChatMemoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(chatAttachmentService.getAttachmentData(any()))
+                .thenAnswer(invocation -> ByteBuffer.wrap(new byte[64 * 1024]));
+        when(chatAttachmentRepository.findByAttachmentId("attachment-1"))
+                .thenReturn(Optional.of(attachment));
+
+        mediaContentCache =
+                new MediaContentCache(chatAttachmentService, chatAttachmentRepository, properties);
+        store = new JdbcChatMemoryStore(jdbcTemplate, properties, mediaContentCache);
+    }
+
+    @Test
+    void mediaIsStoredAsAttachmentReference() {
+        ContentBlock image = mediaContentCache.get(attachment);
+        Msg message =
+                Msg.builder()
+                        .role(MsgRole.USER)
+                        .content(List.of(TextBlock.builder().text("describe it").build(), image))
+                        .build();
+
+        store.append(SESSION_ID, PRODUCT_ID, List.of(message));
+
+        String stored = storedMessages().get(0);
+        String base64 = ((Base64Source) ((ImageBlock) image).getSource()).getData();
+        assertFalse(stored.contains(base64));
+        assertTrue(stored.contains("attachment://attachment-1"));
+        assertTrue(stored.length() < 1024);
+
+        when(jdbcTemplate.queryForList(anyString(), anyMap(), eq(String.class)))
+                .thenReturn(List.of(stored));
+        List<Msg> loaded = store.load(SESSION_ID, PRODUCT_ID);
+
+        assertEquals(1, loaded.size());
+        List<ContentBlock> content = loaded.get(0).getContent();
+        assertEquals(2, content.size());
+        assertInstanceOf(TextBlock.class, content.get(0));
+        ImageBlock loadedImage = assertInstanceOf(ImageBlock.class, content.get(1));
+        Base64Source source = assertInstanceOf(Base64Source.class, loadedImage.getSource());
+        assertEquals(base64, source.getData());
+        assertEquals("image/png", source.getMediaType());
+    }
+
+    @Test
+    void referenceToDeletedAttachmentIsDropped() {
+        Msg message =
+                Msg.builder()
+                        .role(MsgRole.USER)
+                        .content(
+                                List.of(
+                                        TextBlock.builder().text("describe it").build(),
+                                        mediaContentCache.get(attachment)))
+                        .build();
+        store.append(SESSION_ID, PRODUCT_ID, List.of(message));
+        String stored = storedMessages().get(0);
+
+        mediaContentCache =
+                new MediaContentCache(
+                        chatAttachmentService, mock(ChatAttachmentRepository.class), properties);
+        store = new JdbcChatMemoryStore(jdbcTemplate, properties, mediaContentCache);
+        when(jdbcTemplate.queryForList(anyString(), anyMap(), eq(String.class)))
+                .thenReturn(List.of(stored));
+        List<Msg> loaded = store.load(SESSION_ID, PRODUCT_ID);
+
+        assertEquals(1, loaded.size());
+        List<ContentBlock> content = loaded.get(0).getContent();
+        assertEquals(1, content.size());
+        assertInstanceOf(TextBlock.class, content.get(0));
+    }
+
+    @Test
+    void oversizedMessageIsSkipped() {
+        properties.getMemory().setMaxMessageChars(1000);
+        Msg small = Msg.builder().role(MsgRole.USER).textContent("hi").build();
+        Msg large = Msg.builder().role(MsgRole.USER).textContent("x".repeat(2000)).build();
+
+        store.append(SESSION_ID, PRODUCT_ID, List.of(large, small));
+
+        List<String> stored = storedMessages();
+        assertEquals(1, stored.size());
+        assertFalse(stored.get(0).contains("xxx"));
+    }
+
+    private List<String> storedMessages() {
+        ArgumentCaptor<SqlParameterSource[]> batch =
+                ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        return Arrays.stream(batch.getValue())
+                .map(params -> (String) params.getValue("message"))
+                .toList();
+    }
+}
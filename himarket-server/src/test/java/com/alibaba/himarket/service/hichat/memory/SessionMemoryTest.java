@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that memory messages survive concurrent turns and an unavailable store.
+ */
+class SessionMemoryTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private static final String PRODUCT_ID = "product-1";
+
+    @Test
+    void reloadWaitsForInFlightFlush() throws Exception {
+        CountDownLatch appending = new CountDownLatch(1);
+        CountDownLatch appendReleased = new CountDownLatch(1);
+        TestStore store =
+                new TestStore() {
+                    @Override
+                    public void append(String sessionId, String productId, List<Msg> messages) {
+                        appending.countDown();
+                        await(appendReleased);
+                        super.append(sessionId, productId, messages);
+                    }
+                };
+        SessionMemory memory = new SessionMemory(store, SESSION_ID, PRODUCT_ID, 10, null);
+        Msg previousTurn = msg("previous turn");
+        memory.addMessage(previousTurn);
+
+        // The previous turn is still being appended when the next turn reloads
+        Thread flusher = new Thread(memory::flush);
+        flusher.start();
+        assertTrue(appending.await(5, TimeUnit.SECONDS));
+        Thread reloader = new Thread(memory::reload);
+        reloader.start();
+        reloader.join(300);
+        assertTrue(reloader.isAlive());
+
+        appendReleased.countDown();
+        flusher.join(5_000);
+        reloader.join(5_000);
+        assertEquals(List.of(previousTurn), memory.getMessages());
+    }
+
+    @Test
+    void failedFlushKeepsLocalMessages() {
+        TestStore store = new TestStore();
+        SessionMemory memory = new SessionMemory(store, SESSION_ID, PRODUCT_ID, 10, null);
+        Msg message = msg("unsaved");
+        memory.addMessage(message);
+
+        store.available = false;
+        memory.reload();
+        assertEquals(List.of(message), memory.getMessages());
+
+        store.available = true;
+        assertTrue(memory.flush());
+        assertEquals(List.of(message), store.messages);
+    }
+
+    @Test
+    void unsavedMessagesAreCappedToStoreSize() {
+        TestStore store = new TestStore();
+        SessionMemory memory = new SessionMemory(store, SESSION_ID, PRODUCT_ID, 2, null);
+        store.available = false;
+
+        Msg first = msg("first");
+        Msg second = msg("second");
+        Msg third = msg("third");
+        memory.addMessage(first);
+        assertFalse(memory.flush());
+        memory.addMessage(second);
+        memory.addMessage(third);
+        assertFalse(memory.flush());
+
+        store.available = true;
+        assertTrue(memory.flush());
+        assertEquals(List.of(second, third), store.messages);
+    }
+
+    @Test
+    void rejectedMessagesAreDroppedAfterMaxAttempts() {
+        TestStore store = new TestStore();
+        SessionMemory memory = new SessionMemory(store, SESSION_ID, PRODUCT_ID, 10, null);
+        memory.addMessage(msg("rejected"));
+
+        store.available = false;
+        for (int i = 1; i < SessionMemory.MAX_FLUSH_ATTEMPTS; i++) {
+            assertFalse(memory.flush());
+        }
+        assertTrue(memory.flush());
+
+        // Reloads are no longer blocked by the dropped messages
+        store.available = true;
+        Msg shared = msg("shared");
+        store.messages.add(shared);
+        memory.reload();
+        assertEquals(List.of(shared), memory.getMessages());
+    }
+
+    @Test
+    void firstLoadSeedsEmptyStore() {
+        TestStore store = new TestStore();
+        Msg history = msg("history");
+        SessionMemory memory =
+                new SessionMemory(store, SESSION_ID, PRODUCT_ID, 10, List.of(history));
+
+        memory.reload();
+        assertEquals(List.of(history), memory.getMessages());
+
+        memory.flush();
+        assertEquals(List.of(history), store.messages);
+    }
+
+    private static Msg msg(String text) {
+        return Msg.builder().role(MsgRole.USER).textContent(text).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Store of a single memory that can be made unavailable
+     */
+    private static class TestStore implements ChatMemoryStore {
+
+        final List<Msg> messages = new ArrayList<>();
+
+        volatile boolean available = true;
+
+        @Override
+        public synchronized List<Msg> load(String sessionId, String productId) {
+            checkAvailable();
+            return new ArrayList<>(messages);
+        }
+
+        @Override
+        public synchronized void append(String sessionId, String productId, List<Msg> batch) {
+            checkAvailable();
+            messages.addAll(batch);
+        }
+
+        @Override
+        public void deleteSession(String sessionId) {
+            messages.clear();
+        }
+
+        private void checkAvailable() {
+            if (!available) {
+                throw new IllegalStateException("store unavailable");
+            }
+        }
+    }
+}
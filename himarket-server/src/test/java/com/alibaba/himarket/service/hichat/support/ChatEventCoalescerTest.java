@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.alibaba.himarket.service.hichat.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.alibaba.himarket.service.hichat.support.ChatEvent.EventType;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Tests of text chunk coalescing: order, type boundaries and flush limits.
+ */
+class ChatEventCoalescerTest {
+
+    private static final String CHAT_ID = "chat-1";
+
+    private static final Duration WINDOW = Duration.ofMillis(50);
+
+    @Test
+    void mergesTextRunInOrder() {
+        List<ChatEvent> events =
+                coalesce(
+                        Flux.just(
+                                ChatEvent.start(CHAT_ID),
+                                ChatEvent.text(CHAT_ID, "Hel"),
+                                ChatEvent.text(CHAT_ID, "lo, "),
+                                ChatEvent.text(CHAT_ID, "world"),
+                                ChatEvent.done(CHAT_ID, null)),
+                        10);
+
+        assertTypes(events, EventType.START, EventType.ASSISTANT, EventType.DONE);
+        assertEquals("Hello, world", events.get(1).getContent());
+        assertEquals(CHAT_ID, events.get(1).getChatId());
+    }
+
+    @Test
+    void neverMergesAcrossTypes() {
+        List<ChatEvent> events =
+                coalesce(
+                        Flux.just(
+                                ChatEvent.thinking(CHAT_ID, "let me "),
+                                ChatEvent.thinking(CHAT_ID, "think"),
+                                ChatEvent.text(CHAT_ID, "a"),
+                                ChatEvent.toolCall(CHAT_ID, toolCall("call-1")),
+                                ChatEvent.text(CHAT_ID, "b"),
+                                ChatEvent.text(CHAT_ID, "c"),
+                                ChatEvent.thinking(CHAT_ID, "again")),
+                        10);
+
+        assertTypes(
+                events,
+                EventType.THINKING,
+                EventType.ASSISTANT,
+                EventType.TOOL_CALL,
+                EventType.ASSISTANT,
+                EventType.THINKING);
+        assertEquals("let me think", events.get(0).getContent());
+        assertEquals("a", events.get(1).getContent());
+        assertEquals("bc", events.get(3).getContent());
+        assertEquals("again", events.get(4).getContent());
+    }
+
+    @Test
+    void passesOtherEventsThroughUnmerged() {
+        ChatEvent first = ChatEvent.toolCall(CHAT_ID, toolCall("call-1"));
+        ChatEvent second = ChatEvent.toolCall(CHAT_ID, toolCall("call-2"));
+        ChatEvent error = ChatEvent.error(CHAT_ID, "INTERNAL_ERROR", "failed");
+
+        List<ChatEvent> events = coalesce(Flux.just(first, second, error), 10);
+
+        assertEquals(3, events.size());
+        assertSame(first, events.get(0));
+        assertSame(second, events.get(1));
+        assertSame(error, events.get(2));
+    }
+
+    @Test
+    void flushesWhenRunReachesMaxChunks() {
+        List<ChatEvent> events =
+                coalesce(
+                        Flux.just("a", "b", "c", "d", "e").map(t -> ChatEvent.text(CHAT_ID, t)),
+                        2);
+
+        assertEquals(
+                List.of("ab", "cd", "e"), events.stream().map(ChatEvent::getContent).toList());
+    }
+
+    @Test
+    void flushesWhenWindowElapses() {
+        Flux<ChatEvent> chunks =
+                Flux.concat(
+                        Flux.just(ChatEvent.text(CHAT_ID, "a"), ChatEvent.text(CHAT_ID, "b")),
+                        Mono.just(ChatEvent.text(CHAT_ID, "c"))
+                                .delaySubscription(WINDOW.multipliedBy(6)));
+
+        List<ChatEvent> events = coalesce(chunks, 10);
+
+        assertEquals(List.of("ab", "c"), events.stream().map(ChatEvent::getContent).toList());
+    }
+
+    @Test
+    void keepsNullContentAsEmpty() {
+        List<ChatEvent> events =
+                coalesce(
+                        Flux.just(ChatEvent.text(CHAT_ID, "a"), ChatEvent.text(CHAT_ID, null)),
+                        10);
+
+        assertEquals(1, events.size());
+        assertEquals("a", events.get(0).getContent());
+    }
+
+    @Test
+    void disabledLeavesStreamUntouched() {
+        ChatEvent first = ChatEvent.text(CHAT_ID, "a");
+        ChatEvent second = ChatEvent.text(CHAT_ID, "b");
+
+        List<ChatEvent> byWindow =
+                ChatEventCoalescer.coalesce(Flux.just(first, second), Duration.ZERO, 10)
+                        .collectList()
+                        .block();
+        List<ChatEvent> byChunks =
+                ChatEventCoalescer.coalesce(Flux.just(first, second), WINDOW, 1)
+                        .collectList()
+                        .block();
+
+        assertEquals(List.of(first, second), byWindow);
+        assertEquals(List.of(first, second), byChunks);
+    }
+
+    private static List<ChatEvent> coalesce(Flux<ChatEvent> events, int maxChunks) {
+        return ChatEventCoalescer.coalesce(events, WINDOW, maxChunks)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+    }
+
+    private static ChatEvent.ToolCallContent toolCall(String id) {
+        return ChatEvent.ToolCallContent.builder().id(id).name("search").build();
+    }
+
+    private static void assertTypes(List<ChatEvent> events, EventType... types) {
+        assertEquals(List.of(types), events.stream().map(ChatEvent::getType).toList());
+    }
+}
@@ -51,6 +51,17 @@ export default function ModelFeatureForm({
           </Form.Item>
         </Col>
       </Row>
+      <Row gutter={16}>
+        <Col span={12}>
+          <Form.Item
+            label="Context Tokens"
+            name={['feature', 'modelFeature', 'contextTokenBudget']}
+            tooltip={{ title: '历史上下文 Token 预算，留空使用系统默认值', ...tooltipStyle }}
+          >
+            <InputNumber min={0} placeholder="8000" style={{ width: '100%' }} />
+          </Form.Item>
+        </Col>
+      </Row>
       <Row gutter={16}>
         <Col span={8}>
           <Form.Item
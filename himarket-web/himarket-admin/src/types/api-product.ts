@@ -217,6 +217,7 @@ export interface LinkedService {
 export interface ModelFeature {
   model?: string;
   maxTokens?: number;
+  contextTokenBudget?: number;
   temperature?: number;
   streaming?: boolean;
   webSearch?: boolean;